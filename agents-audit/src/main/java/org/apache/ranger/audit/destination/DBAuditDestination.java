@@ -19,6 +19,12 @@
 
 package org.apache.ranger.audit.destination;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -35,6 +41,7 @@ import javax.persistence.Persistence;
 import org.apache.ranger.audit.dao.DaoManager;
 import org.apache.ranger.audit.entity.AuthzAuditEventDbObj;
 import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
 
 public class DBAuditDestination extends AuditDestination {
@@ -47,6 +54,27 @@ public class DBAuditDestination extends AuditDestination {
 	public static final String PROP_DB_USER = "user";
 	public static final String PROP_DB_PASSWORD = "password";
 	public static final String PROP_DB_PASSWORD_ALIAS = "password.alias";
+	public static final String PROP_DB_JDBC_BATCH_ENABLED = "jdbc.batch.enabled";
+	public static final String PROP_DB_JDBC_BATCH_SIZE = "jdbc.batch.size";
+	/**
+	 * Number of rows written by the JDBC batch path in each transaction; 0
+	 * (the default) writes all the events given to log() in one transaction.
+	 * With a value greater than 0, a failure after the first commit makes
+	 * log() return false for all the events, including the ones already
+	 * committed. These will be written again when the events are retried,
+	 * for example from the file spool, leaving duplicate rows in the audit
+	 * table.
+	 */
+	public static final String PROP_DB_JDBC_BATCH_TRANSACTION_SIZE = "jdbc.batch.transaction.size";
+
+	public static final int DEFAULT_JDBC_BATCH_SIZE = 100;
+
+	// columns of xa_access_audit written by the JDBC batch path; id is
+	// generated by the database (from XA_ACCESS_AUDIT_SEQ on Oracle)
+	private static final String INSERT_COLUMNS = "repo_type, repo_name, request_user, event_time, access_type,"
+			+ " resource_path, resource_type, action, access_result, agent_id, policy_id, result_reason,"
+			+ " acl_enforcer, session_id, client_type, client_ip, request_data, tags";
+	private static final String INSERT_VALUES = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
 
 	private EntityManagerFactory entityManagerFactory;
 	private DaoManager daoManager;
@@ -54,8 +82,14 @@ public class DBAuditDestination extends AuditDestination {
 	private String jdbcDriver = null;
 	private String jdbcURL = null;
 	private String dbUser = null;
+	private String dbPassword = null;
 	private String dbPasswordAlias = "auditDBCred";
 
+	private boolean isJdbcBatchEnabled = false;
+	private int jdbcBatchSize = DEFAULT_JDBC_BATCH_SIZE;
+	private int jdbcBatchTransactionSize = 0;
+	private Connection jdbcConnection = null;
+
 	public DBAuditDestination() {
 		logger.info("DBAuditDestination() called");
 	}
@@ -64,6 +98,17 @@ public class DBAuditDestination extends AuditDestination {
 	public void init(Properties props, String propPrefix) {
 		logger.info("init() called");
 		super.init(props, propPrefix);
+
+		isJdbcBatchEnabled = MiscUtil.getBooleanProperty(props, propPrefix
+				+ "." + PROP_DB_JDBC_BATCH_ENABLED, false);
+		jdbcBatchSize = MiscUtil.getIntProperty(props, propPrefix + "."
+				+ PROP_DB_JDBC_BATCH_SIZE, DEFAULT_JDBC_BATCH_SIZE);
+		jdbcBatchTransactionSize = MiscUtil.getIntProperty(props, propPrefix
+				+ "." + PROP_DB_JDBC_BATCH_TRANSACTION_SIZE, 0);
+		logger.info("isJdbcBatchEnabled=" + isJdbcBatchEnabled
+				+ ", jdbcBatchSize=" + jdbcBatchSize
+				+ ", jdbcBatchTransactionSize=" + jdbcBatchTransactionSize);
+
 		// Initial connect
 		connect();
 
@@ -83,8 +128,10 @@ public class DBAuditDestination extends AuditDestination {
 		boolean retValue = false;
 		logStatusIfRequired();
 		addTotalCount(events.size());
-		
-		if (beginTransaction()) {
+
+		if (isJdbcBatchEnabled) {
+			retValue = logBatch(events);
+		} else if (beginTransaction()) {
 			boolean isFailed = false;
 			for (AuditEventBase event : events) {
 				try {
@@ -152,7 +199,7 @@ public class DBAuditDestination extends AuditDestination {
 						+ propPrefix + "." + PROP_DB_USER);
 				return;
 			}
-			String dbPassword = MiscUtil.getCredentialString(credFile,
+			dbPassword = MiscUtil.getCredentialString(credFile,
 					dbPasswordAlias);
 
 			if (dbPassword == null || dbPassword.isEmpty()) {
@@ -213,9 +260,170 @@ public class DBAuditDestination extends AuditDestination {
 			entityManagerFactory = null;
 			daoManager = null;
 		}
+		closeJdbcConnection();
 		logStatus();
 	}
 
+	/**
+	 * Writes the events to xa_access_audit with JDBC batch inserts, instead
+	 * of persisting each event through JPA. Rows are sent to the database in
+	 * batches of jdbc.batch.size and committed every
+	 * jdbc.batch.transaction.size rows; with the default transaction size of
+	 * 0, all the events are written in a single transaction. If a write fails
+	 * after a commit, the events committed earlier will be sent again along
+	 * with the rest of the events; see PROP_DB_JDBC_BATCH_TRANSACTION_SIZE.
+	 */
+	private boolean logBatch(Collection<AuditEventBase> events) {
+		boolean ret = false;
+		Connection conn = getJdbcConnection();
+
+		if (conn == null) {
+			return ret;
+		}
+
+		PreparedStatement stmt = null;
+		int committedCount = 0;
+		try {
+			stmt = conn.prepareStatement(getInsertSql());
+
+			int batchCount = 0;
+			int transactionCount = 0;
+			for (AuditEventBase event : events) {
+				setInsertParams(stmt, new AuthzAuditEventDbObj(
+						(AuthzAuditEvent) event));
+				stmt.addBatch();
+				batchCount++;
+				transactionCount++;
+
+				if (batchCount >= jdbcBatchSize) {
+					stmt.executeBatch();
+					batchCount = 0;
+				}
+				if (jdbcBatchTransactionSize > 0
+						&& transactionCount >= jdbcBatchTransactionSize) {
+					if (batchCount > 0) {
+						stmt.executeBatch();
+						batchCount = 0;
+					}
+					conn.commit();
+					committedCount += transactionCount;
+					transactionCount = 0;
+				}
+			}
+			if (batchCount > 0) {
+				stmt.executeBatch();
+			}
+			conn.commit();
+			ret = true;
+		} catch (Throwable t) {
+			logger.error("Error writing batch of " + events.size()
+					+ " events to audit database; " + committedCount
+					+ " of these were committed, and will be written again if the batch is retried. dbURL="
+					+ jdbcURL, t);
+			try {
+				conn.rollback();
+			} catch (Throwable excp) {
+				// ignore; connection will be reopened for the next batch
+			}
+			closeJdbcConnection();
+		} finally {
+			if (stmt != null) {
+				try {
+					stmt.close();
+				} catch (SQLException excp) {
+					// ignore
+				}
+			}
+		}
+		return ret;
+	}
+
+	private String getInsertSql() {
+		if (jdbcURL != null && jdbcURL.startsWith("jdbc:oracle:")) {
+			return "INSERT INTO xa_access_audit (id, " + INSERT_COLUMNS
+					+ ") VALUES (XA_ACCESS_AUDIT_SEQ.NEXTVAL, "
+					+ INSERT_VALUES + ")";
+		}
+		return "INSERT INTO xa_access_audit (" + INSERT_COLUMNS
+				+ ") VALUES (" + INSERT_VALUES + ")";
+	}
+
+	// values are read through the getters of AuthzAuditEventDbObj, so that
+	// they are truncated to the configured column lengths as in the JPA path
+	private static void setInsertParams(PreparedStatement stmt,
+			AuthzAuditEventDbObj dbObj) throws SQLException {
+		int idx = 1;
+		stmt.setInt(idx++, dbObj.getRepositoryType());
+		stmt.setString(idx++, dbObj.getRepositoryName());
+		stmt.setString(idx++, dbObj.getUser());
+		if (dbObj.getTimeStamp() != null) {
+			stmt.setTimestamp(idx++, new Timestamp(dbObj.getTimeStamp()
+					.getTime()));
+		} else {
+			stmt.setNull(idx++, Types.TIMESTAMP);
+		}
+		stmt.setString(idx++, dbObj.getAccessType());
+		stmt.setString(idx++, dbObj.getResourcePath());
+		stmt.setString(idx++, dbObj.getResourceType());
+		stmt.setString(idx++, dbObj.getAction());
+		stmt.setInt(idx++, dbObj.getAccessResult());
+		stmt.setString(idx++, dbObj.getAgentId());
+		stmt.setLong(idx++, dbObj.getPolicyId());
+		stmt.setString(idx++, dbObj.getResultReason());
+		stmt.setString(idx++, dbObj.getAclEnforcer());
+		stmt.setString(idx++, dbObj.getSessionId());
+		stmt.setString(idx++, dbObj.getClientType());
+		stmt.setString(idx++, dbObj.getClientIP());
+		stmt.setString(idx++, dbObj.getRequestData());
+		stmt.setString(idx++, dbObj.getTags());
+	}
+
+	private Connection getJdbcConnection() {
+		if (jdbcConnection == null) {
+			if (jdbcURL == null) {
+				connect();
+			}
+			if (jdbcURL != null) {
+				try {
+					Class.forName(jdbcDriver);
+
+					Properties connProps = new Properties();
+					if (dbUser != null) {
+						connProps.put("user", dbUser);
+					}
+					if (dbPassword != null) {
+						connProps.put("password", dbPassword);
+					}
+
+					jdbcConnection = DriverManager.getConnection(jdbcURL,
+							connProps);
+					jdbcConnection.setAutoCommit(false);
+
+					logger.info("Opened JDBC connection to audit database. dbURL="
+							+ jdbcURL + ", dbUser=" + dbUser);
+				} catch (Throwable t) {
+					logger.error("Error opening JDBC connection to audit database. dbURL="
+							+ jdbcURL + ", dbUser=" + dbUser, t);
+					closeJdbcConnection();
+				}
+			}
+		}
+		return jdbcConnection;
+	}
+
+	private void closeJdbcConnection() {
+		Connection conn = jdbcConnection;
+		jdbcConnection = null;
+
+		if (conn != null) {
+			try {
+				conn.close();
+			} catch (Throwable t) {
+				logger.warn("DBAuditDestination.closeJdbcConnection(): failed", t);
+			}
+		}
+	}
+
 	private EntityManager getEntityManager() {
 		DaoManager daoMgr = daoManager;
 
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Writes AuthzAuditEvent as JSON, without reflection. The output is the same
+ * as Gson's, created with setDateFormat(DATE_FORMAT): fields in declaration
+ * order, named as in their @SerializedName, null fields left out, and strings
+ * escaped as by Gson's HTML-safe JsonWriter. A field added to AuthzAuditEvent
+ * must be added here as well.
+ *
+ * Not thread-safe: the buffer and the date format are reused across events.
+ */
+public class AuthzAuditEventJsonWriter {
+	public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final String[] REPLACEMENT_CHARS = new String[128];
+
+	static {
+		for (int i = 0; i < 0x20; i++) {
+			REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+		}
+		REPLACEMENT_CHARS['"'] = "\\\"";
+		REPLACEMENT_CHARS['\\'] = "\\\\";
+		REPLACEMENT_CHARS['\t'] = "\\t";
+		REPLACEMENT_CHARS['\b'] = "\\b";
+		REPLACEMENT_CHARS['\n'] = "\\n";
+		REPLACEMENT_CHARS['\r'] = "\\r";
+		REPLACEMENT_CHARS['\f'] = "\\f";
+		REPLACEMENT_CHARS['<'] = "\\u003c";
+		REPLACEMENT_CHARS['>'] = "\\u003e";
+		REPLACEMENT_CHARS['&'] = "\\u0026";
+		REPLACEMENT_CHARS['='] = "\\u003d";
+		REPLACEMENT_CHARS['\''] = "\\u0027";
+	}
+
+	private final StringBuilder buffer = new StringBuilder(1024);
+	private char[] chars = new char[1024];
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+	private final StringBuffer dateBuffer = new StringBuffer(32);
+	private final FieldPosition datePosition = new FieldPosition(0);
+	private boolean isFirstField;
+
+	public String toJson(AuthzAuditEvent event) {
+		buffer.setLength(0);
+		write(event, buffer);
+
+		String ret = buffer.toString();
+
+		if (buffer.capacity() > 64 * 1024) { // don't hold on to buffers grown by a large event
+			buffer.setLength(0);
+			buffer.trimToSize();
+		}
+
+		return ret;
+	}
+
+	public void write(AuthzAuditEvent event, Writer out) throws IOException {
+		buffer.setLength(0);
+		write(event, buffer);
+
+		int length = buffer.length();
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+		buffer.getChars(0, length, chars, 0);
+		out.write(chars, 0, length);
+
+		if (buffer.capacity() > 64 * 1024) {
+			buffer.setLength(0);
+			buffer.trimToSize();
+			chars = new char[1024];
+		}
+	}
+
+	private void write(AuthzAuditEvent event, StringBuilder sb) {
+		isFirstField = true;
+
+		sb.append('{');
+		writeField(sb, "repoType", event.repositoryType);
+		writeField(sb, "repo", event.repositoryName);
+		writeField(sb, "reqUser", event.user);
+		writeField(sb, "evtTime", event.eventTime);
+		writeField(sb, "access", event.accessType);
+		writeField(sb, "resource", event.resourcePath);
+		writeField(sb, "resType", event.resourceType);
+		writeField(sb, "action", event.action);
+		writeField(sb, "result", event.accessResult);
+		writeField(sb, "agent", event.agentId);
+		writeField(sb, "policy", event.policyId);
+		writeField(sb, "reason", event.resultReason);
+		writeField(sb, "enforcer", event.aclEnforcer);
+		writeField(sb, "sess", event.sessionId);
+		writeField(sb, "cliType", event.clientType);
+		writeField(sb, "cliIP", event.clientIP);
+		writeField(sb, "reqData", event.requestData);
+		writeField(sb, "agentHost", event.agentHostname);
+		writeField(sb, "logType", event.logType);
+		writeField(sb, "id", event.eventId);
+		writeField(sb, "seq_num", event.seqNum);
+		writeField(sb, "event_count", event.eventCount);
+		writeField(sb, "event_dur_ms", event.eventDurationMS);
+		if (event.tags != null) {
+			writeName(sb, "tags");
+			sb.append('[');
+			boolean isFirst = true;
+			for (String tag : event.tags) {
+				if (!isFirst) {
+					sb.append(',');
+				}
+				if (tag == null) {
+					sb.append("null");
+				} else {
+					writeString(sb, tag);
+				}
+				isFirst = false;
+			}
+			sb.append(']');
+		}
+		sb.append('}');
+	}
+
+	private void writeField(StringBuilder sb, String name, long value) {
+		writeName(sb, name);
+		sb.append(value);
+	}
+
+	private void writeField(StringBuilder sb, String name, String value) {
+		if (value != null) {
+			writeName(sb, name);
+			writeString(sb, value);
+		}
+	}
+
+	private void writeField(StringBuilder sb, String name, Date value) {
+		if (value != null) {
+			writeName(sb, name);
+			dateBuffer.setLength(0);
+			dateFormat.format(value, dateBuffer, datePosition);
+			writeString(sb, dateBuffer);
+		}
+	}
+
+	// names are plain ASCII, and need no escaping
+	private void writeName(StringBuilder sb, String name) {
+		if (!isFirstField) {
+			sb.append(',');
+		}
+		sb.append('"').append(name).append("\":");
+		isFirstField = false;
+	}
+
+	// as JsonWriter.string(): HTML-safe, and escapes the JavaScript line separators U+2028 and U+2029
+	private static void writeString(StringBuilder sb, CharSequence value) {
+		sb.append('"');
+		int last = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 128) {
+				String replacement = REPLACEMENT_CHARS[c];
+				if (replacement == null) {
+					continue;
+				}
+				sb.append(value, last, i).append(replacement);
+			} else if (c == '\u2028' || c == '\u2029') {
+				sb.append(value, last, i).append("\\u").append(HEX_DIGITS[(c >> 12) & 0xf])
+						.append(HEX_DIGITS[(c >> 8) & 0xf]).append(HEX_DIGITS[(c >> 4) & 0xf])
+						.append(HEX_DIGITS[c & 0xf]);
+			} else {
+				continue;
+			}
+			last = i + 1;
+		}
+		sb.append(value, last, length);
+		sb.append('"');
+	}
+}
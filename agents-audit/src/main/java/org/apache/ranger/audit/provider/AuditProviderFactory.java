@@ -173,6 +173,18 @@ public class AuditProviderFactory {
 							+ destName);
 					queueName = "batch";
 				}
+				if (queueName.equalsIgnoreCase("none")
+						&& destNameList.size() > 1) {
+					// Each destination needs its own consumer thread, so that a
+					// slow destination doesn't hold up the others. The async
+					// queue doesn't batch, so events still go out as they come
+					LOG.info(destPropPrefix + "." + AuditQueue.PROP_QUEUE
+							+ " is none, but there are "
+							+ destNameList.size()
+							+ " destinations. Setting queue to async for "
+							+ destName);
+					queueName = "async";
+				}
 				LOG.info("queue for " + destName + " is " + queueName);
 				if (queueName != null && !queueName.isEmpty()
 						&& !queueName.equalsIgnoreCase("none")) {
@@ -18,6 +18,7 @@ package org.apache.ranger.audit.provider;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.InetAddress;
 import java.rmi.dgc.VMID;
 import java.security.Principal;
@@ -49,6 +50,8 @@ import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authentication.util.KerberosName;
 import org.apache.hadoop.security.authentication.util.KerberosUtil;
 import org.apache.log4j.helpers.LogLog;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.model.AuthzAuditEventJsonWriter;
 import org.apache.ranger.authorization.hadoop.utils.RangerCredentialProvider;
 
 import com.google.gson.Gson;
@@ -74,6 +77,12 @@ public class MiscUtil {
 	public static String LINE_SEPARATOR = System.getProperty("line.separator");
 
 	private static Gson sGsonBuilder = null;
+	private static final ThreadLocal<AuthzAuditEventJsonWriter> sAuthzAuditEventJsonWriter = new ThreadLocal<AuthzAuditEventJsonWriter>() {
+		@Override
+		protected AuthzAuditEventJsonWriter initialValue() {
+			return new AuthzAuditEventJsonWriter();
+		}
+	};
 	private static String sApplicationType = null;
 	private static UserGroupInformation ugiLoginUser = null;
 	private static Subject subjectLoginUser = null;
@@ -82,6 +91,26 @@ public class MiscUtil {
 	private static Map<String, LogHistory> logHistoryList = new Hashtable<String, LogHistory>();
 	private static int logInterval = 30000; // 30 seconds
 
+	private static final UserGroupCache.GroupsLoader UGI_GROUPS_LOADER = new UserGroupCache.GroupsLoader() {
+		@Override
+		public Set<String> getGroups(String userName) throws Exception {
+			UserGroupInformation ugi = UserGroupInformation
+					.createRemoteUser(userName);
+			String groups[] = ugi.getGroupNames();
+			if (groups != null && groups.length > 0) {
+				Set<String> groupsSet = new java.util.HashSet<String>();
+				for (int i = 0; i < groups.length; i++) {
+					groupsSet.add(groups[i]);
+				}
+				return groupsSet;
+			}
+			return null;
+		}
+	};
+
+	private static volatile UserGroupCache userGroupCache = new UserGroupCache(UGI_GROUPS_LOADER, UserGroupCache.DEFAULT_MAX_SIZE, UserGroupCache.DEFAULT_TTL_MS,
+			UserGroupCache.DEFAULT_NEGATIVE_TTL_MS, UserGroupCache.DEFAULT_REFRESH_AHEAD_MS);
+
 	static {
 		try {
 			sGsonBuilder = new GsonBuilder().setDateFormat(
@@ -294,6 +323,9 @@ public class MiscUtil {
 		if (log != null) {
 			if (log instanceof String) {
 				ret = (String) log;
+			} else if (log.getClass() == AuthzAuditEvent.class) {
+				// same output as Gson, without reflection; subclasses, which may have more fields, go to Gson
+				ret = sAuthzAuditEventJsonWriter.get().toJson((AuthzAuditEvent) log);
 			} else if (MiscUtil.sGsonBuilder != null) {
 				ret = MiscUtil.sGsonBuilder.toJson(log);
 			} else {
@@ -304,6 +336,18 @@ public class MiscUtil {
 		return ret;
 	}
 
+	/**
+	 * Writes the JSON of the object to out, as returned by stringify(). An
+	 * AuthzAuditEvent is written without creating a String.
+	 */
+	public static void writeJson(Object log, Writer out) throws IOException {
+		if (log != null && log.getClass() == AuthzAuditEvent.class) {
+			sAuthzAuditEventJsonWriter.get().write((AuthzAuditEvent) log, out);
+		} else {
+			out.write(String.valueOf(stringify(log)));
+		}
+	}
+
 	static public <T> T fromJson(String jsonStr, Class<T> clazz) {
 		return sGsonBuilder.fromJson(jsonStr, clazz);
 	}
@@ -529,17 +573,15 @@ public class MiscUtil {
 		if (userName == null) {
 			return null;
 		}
+
+		UserGroupCache groupCache = userGroupCache;
+
+		if (groupCache != null) {
+			return groupCache.getGroups(userName);
+		}
+
 		try {
-			UserGroupInformation ugi = UserGroupInformation
-					.createRemoteUser(userName);
-			String groups[] = ugi.getGroupNames();
-			if (groups != null && groups.length > 0) {
-				Set<String> groupsSet = new java.util.HashSet<String>();
-				for (int i = 0; i < groups.length; i++) {
-					groupsSet.add(groups[i]);
-				}
-				return groupsSet;
-			}
+			return UGI_GROUPS_LOADER.getGroups(userName);
 		} catch (Throwable e) {
 			logErrorMessageByInterval(logger,
 					"Error getting groups for users. userName=" + userName, e);
@@ -547,6 +589,31 @@ public class MiscUtil {
 		return null;
 	}
 
+	/**
+	 * Replaces the cache used by getGroupsForRequestUser(); the cache is shared by all plugins in the JVM, hence the
+	 * configuration of the plugin initialized last is used.
+	 *
+	 * @param enabled false to lookup groups on every call
+	 */
+	static public void initUserGroupCache(boolean enabled, int maxSize, long ttlMs, long negativeTtlMs, long refreshAheadMs) {
+		UserGroupCache oldCache = userGroupCache;
+
+		userGroupCache = enabled ? new UserGroupCache(UGI_GROUPS_LOADER, maxSize, ttlMs, negativeTtlMs, refreshAheadMs) : null;
+
+		if (oldCache != null) {
+			oldCache.shutdown();
+		}
+
+		logger.info("initUserGroupCache(): " + (userGroupCache != null ? userGroupCache.toString() : "disabled"));
+	}
+
+	/**
+	 * @return the cache used by getGroupsForRequestUser(), for its hit/miss/load-time counters; null if disabled
+	 */
+	static public UserGroupCache getUserGroupCache() {
+		return userGroupCache;
+	}
+
 	static public boolean logErrorMessageByInterval(Log useLogger,
 			String message) {
 		return logErrorMessageByInterval(useLogger, message, null);
@@ -26,6 +26,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.model.AuditEventBase;
 
+/**
+ * Sends each event to all the providers, one after the other, on the caller's
+ * thread. For a slow provider not to hold up the others, each provider should
+ * be a queue with its own consumer thread, as set up by AuditProviderFactory.
+ */
 public class MultiDestAuditProvider extends BaseAuditHandler {
 
 	private static final Log LOG = LogFactory
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.audit.provider;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Groups of users, as resolved by a GroupsLoader (by default, the Hadoop groups mapping via UserGroupInformation),
+ * cached for a configured time. Users for whom no groups are found, or whose first lookup fails, are cached for a
+ * shorter time. When a lookup fails for a user with cached groups, the groups are kept for another negativeTtlMs. An
+ * entry read within refreshAheadMs of its expiry is reloaded in a background thread, so that users active at expiry
+ * don't wait for the lookup. Concurrent lookups of the same user are made only once. The cache holds at most maxSize
+ * users.
+ */
+public class UserGroupCache {
+	private static final Log LOG = LogFactory.getLog(UserGroupCache.class);
+
+	public static final int  DEFAULT_MAX_SIZE         = 10000;
+	public static final long DEFAULT_TTL_MS           = 60 * 1000L;
+	public static final long DEFAULT_NEGATIVE_TTL_MS  = 30 * 1000L;
+	public static final long DEFAULT_REFRESH_AHEAD_MS = 10 * 1000L;
+
+	private static final int MAX_PENDING_REFRESH = 1000;
+
+	public interface GroupsLoader {
+		/**
+		 * @return groups of the user; null or empty if the user has no groups
+		 */
+		Set<String> getGroups(String userName) throws Exception;
+	}
+
+	private final GroupsLoader                                      loader;
+	private final int                                               maxSize;
+	private final long                                              ttlMs;
+	private final long                                              negativeTtlMs;
+	private final long                                              refreshAheadMs;
+	private final ConcurrentHashMap<String, CacheEntry>             cache = new ConcurrentHashMap<String, CacheEntry>();
+	private final ConcurrentHashMap<String, FutureTask<CacheEntry>> loads = new ConcurrentHashMap<String, FutureTask<CacheEntry>>();
+	private final ThreadPoolExecutor                                refresher;
+
+	private final AtomicLong hitCount          = new AtomicLong();
+	private final AtomicLong negativeHitCount  = new AtomicLong();
+	private final AtomicLong missCount         = new AtomicLong();
+	private final AtomicLong loadCount         = new AtomicLong();
+	private final AtomicLong loadFailureCount  = new AtomicLong();
+	private final AtomicLong refreshCount      = new AtomicLong();
+	private final AtomicLong evictionCount     = new AtomicLong();
+	private final AtomicLong totalLoadTimeNs   = new AtomicLong();
+	private final AtomicLong maxLoadTimeNs     = new AtomicLong();
+
+	public UserGroupCache(GroupsLoader loader, int maxSize, long ttlMs, long negativeTtlMs, long refreshAheadMs) {
+		this.loader         = loader;
+		this.maxSize        = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+		this.ttlMs          = ttlMs;
+		this.negativeTtlMs  = negativeTtlMs;
+		this.refreshAheadMs = refreshAheadMs;
+
+		if (refreshAheadMs > 0) {
+			refresher = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_PENDING_REFRESH), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "UserGroupCache.refresher");
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+
+			refresher.allowCoreThreadTimeOut(true);
+		} else {
+			refresher = null;
+		}
+	}
+
+	/**
+	 * @return groups of the user, in a set owned by the caller; null if the user has no groups
+	 */
+	public Set<String> getGroups(final String userName) {
+		if (userName == null) {
+			return null;
+		}
+
+		long       now   = System.currentTimeMillis();
+		CacheEntry entry = cache.get(userName);
+
+		if (entry != null && now < entry.expiryTimeMs) {
+			if (entry.groups == null) {
+				negativeHitCount.incrementAndGet();
+			} else {
+				hitCount.incrementAndGet();
+			}
+
+			if (refresher != null && now >= (entry.expiryTimeMs - refreshAheadMs)) {
+				scheduleRefresh(userName, entry);
+			}
+		} else {
+			missCount.incrementAndGet();
+
+			entry = load(userName, entry);
+		}
+
+		return entry.groups == null ? null : new HashSet<String>(entry.groups);
+	}
+
+	public void invalidate(String userName) {
+		if (userName != null) {
+			cache.remove(userName);
+		}
+	}
+
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	public void shutdown() {
+		if (refresher != null) {
+			refresher.shutdownNow();
+		}
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getNegativeHitCount() {
+		return negativeHitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getLoadCount() {
+		return loadCount.get();
+	}
+
+	public long getLoadFailureCount() {
+		return loadFailureCount.get();
+	}
+
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getAverageLoadTimeMs() {
+		long count = loadCount.get();
+
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLoadTimeNs.get() / count);
+	}
+
+	public long getMaxLoadTimeMs() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLoadTimeNs.get());
+	}
+
+	@Override
+	public String toString() {
+		return "UserGroupCache={size=" + getSize() + ", maxSize=" + maxSize + ", ttlMs=" + ttlMs + ", negativeTtlMs=" + negativeTtlMs + ", refreshAheadMs=" + refreshAheadMs
+				+ ", hitCount=" + getHitCount() + ", negativeHitCount=" + getNegativeHitCount() + ", missCount=" + getMissCount()
+				+ ", loadCount=" + getLoadCount() + ", loadFailureCount=" + getLoadFailureCount() + ", refreshCount=" + getRefreshCount() + ", evictionCount=" + getEvictionCount()
+				+ ", averageLoadTimeMs=" + getAverageLoadTimeMs() + ", maxLoadTimeMs=" + getMaxLoadTimeMs() + "}";
+	}
+
+	// lookups of the same user that are in progress are waited for, instead of being made again
+	private CacheEntry load(final String userName, final CacheEntry prevEntry) {
+		FutureTask<CacheEntry> task = new FutureTask<CacheEntry>(new Callable<CacheEntry>() {
+			@Override
+			public CacheEntry call() {
+				return doLoad(userName, prevEntry);
+			}
+		});
+
+		FutureTask<CacheEntry> existingTask = loads.putIfAbsent(userName, task);
+
+		if (existingTask == null) {
+			try {
+				task.run();
+			} finally {
+				loads.remove(userName, task);
+			}
+		} else {
+			task = existingTask;
+		}
+
+		boolean isInterrupted = false;
+
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException excp) {
+					isInterrupted = true;
+				} catch (ExecutionException excp) { // not expected: doLoad() handles errors from the loader
+					LOG.error("UserGroupCache.load(" + userName + "): failed", excp.getCause());
+
+					return prevEntry != null ? prevEntry : new CacheEntry(null, System.currentTimeMillis() + negativeTtlMs);
+				}
+			}
+		} finally {
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private CacheEntry doLoad(String userName, CacheEntry prevEntry) {
+		Set<String> groups    = null;
+		boolean     isFailed  = false;
+		long        startTime = System.nanoTime();
+
+		try {
+			groups = loader.getGroups(userName);
+		} catch (Throwable excp) {
+			isFailed = true;
+
+			loadFailureCount.incrementAndGet();
+
+			MiscUtil.logErrorMessageByInterval(LOG, "Error getting groups for users. userName=" + userName, excp);
+		}
+
+		long loadTimeNs = System.nanoTime() - startTime;
+
+		loadCount.incrementAndGet();
+		totalLoadTimeNs.addAndGet(loadTimeNs);
+
+		for (long max = maxLoadTimeNs.get(); loadTimeNs > max && !maxLoadTimeNs.compareAndSet(max, loadTimeNs); max = maxLoadTimeNs.get()) {
+			// retry until the max is updated, or another thread recorded a higher value
+		}
+
+		long       now = System.currentTimeMillis();
+		CacheEntry ret;
+
+		if (isFailed && prevEntry != null && prevEntry.groups != null) {
+			// keep the groups found earlier, rather than dropping them due to an error in lookup
+			ret = new CacheEntry(prevEntry.groups, Math.max(prevEntry.expiryTimeMs, now + negativeTtlMs));
+		} else if (groups != null && !groups.isEmpty()) {
+			ret = new CacheEntry(new HashSet<String>(groups), now + ttlMs);
+		} else {
+			ret = new CacheEntry(null, now + negativeTtlMs);
+		}
+
+		if (!cache.containsKey(userName) && cache.size() >= maxSize) {
+			evict();
+		}
+
+		cache.put(userName, ret);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("UserGroupCache.load(" + userName + "): groups=" + groups + ", isFailed=" + isFailed + ", loadTimeMs=" + TimeUnit.NANOSECONDS.toMillis(loadTimeNs));
+		}
+
+		return ret;
+	}
+
+	private void scheduleRefresh(final String userName, final CacheEntry entry) {
+		if (!entry.isRefreshing.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			refresher.execute(new Runnable() {
+				@Override
+				public void run() {
+					refreshCount.incrementAndGet();
+
+					load(userName, entry);
+				}
+			});
+		} catch (RejectedExecutionException excp) {
+			entry.isRefreshing.set(false); // the queue is full; a later read can retry
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("UserGroupCache.scheduleRefresh(" + userName + "): refresh queue is full");
+			}
+		}
+	}
+
+	// removes expired entries; if none expired, removes about a tenth of the entries, in no particular order
+	private void evict() {
+		long now     = System.currentTimeMillis();
+		int  evicted = 0;
+
+		for (Iterator<Map.Entry<String, CacheEntry>> iter = cache.entrySet().iterator(); iter.hasNext(); ) {
+			if (now >= iter.next().getValue().expiryTimeMs) {
+				iter.remove();
+				evicted++;
+			}
+		}
+
+		if (evicted == 0) {
+			int toEvict = Math.max(1, maxSize / 10);
+
+			for (Iterator<String> iter = cache.keySet().iterator(); iter.hasNext() && evicted < toEvict; ) {
+				iter.next();
+				iter.remove();
+				evicted++;
+			}
+		}
+
+		evictionCount.addAndGet(evicted);
+	}
+
+	private static class CacheEntry {
+		final Set<String>   groups;
+		final long          expiryTimeMs;
+		final AtomicBoolean isRefreshing = new AtomicBoolean(false);
+
+		CacheEntry(Set<String> groups, long expiryTimeMs) {
+			this.groups       = groups;
+			this.expiryTimeMs = expiryTimeMs;
+		}
+	}
+}
@@ -22,6 +22,9 @@ package org.apache.ranger.audit.queue;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.commons.logging.Log;
@@ -31,12 +34,14 @@ import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
 
 /**
- * This is a non-blocking queue with no limit on capacity.
+ * This is a non-blocking queue. Events are dropped once it holds maxQueueSize
+ * events. With queue.impl=ringbuffer the events are held in a lock-free
+ * AuditRingBufferQueue, instead of a LinkedBlockingQueue.
  */
 public class AuditAsyncQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditAsyncQueue.class);
 
-	LinkedBlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
+	BlockingQueue<AuditEventBase> queue = new LinkedBlockingQueue<AuditEventBase>();
 	Thread consumerThread = null;
 
 	static final int MAX_DRAIN = 1000;
@@ -58,25 +63,43 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 	@Override
 	public boolean log(AuditEventBase event) {
 		// Add to the queue and return ASAP
-		if (queue.size() >= getMaxQueueSize()) {
+		if (queue.size() >= getMaxQueueSize() || !queue.offer(event)) {
+			addDroppedCount(1);
 			return false;
 		}
-		queue.add(event);
 		return true;
 	}
 
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	@Override
+	public long getLagMS() {
+		AuditEventBase head = queue.peek();
+		Date headTime = head == null ? null : head.getEventTime();
+		return headTime == null ? 0 : Math.max(0, System.currentTimeMillis()
+				- headTime.getTime());
+	}
+
 	@Override
 	public boolean log(Collection<AuditEventBase> events) {
 		boolean ret = true;
 		for (AuditEventBase event : events) {
-			ret = log(event);
-			if (!ret) {
-				break;
+			if (!log(event)) {
+				ret = false;
 			}
 		}
 		return ret;
 	}
 
+	@Override
+	public void init(Properties props, String basePropertyName) {
+		super.init(props, basePropertyName);
+		queue = createQueue(getMaxQueueSize(), false);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -147,6 +170,8 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 
 	public void runDoAs() {
 		while (true) {
+			logStatusIfRequired();
+
 			try {
 				AuditEventBase event = null;
 				if (!isDrain()) {
@@ -191,6 +216,7 @@ public class AuditAsyncQueue extends AuditQueue implements Runnable {
 		} catch (Throwable t) {
 			logger.error("Error while calling stop on consumer.", t);
 		}
+		logStatus();
 		logger.info("Exiting consumerThread.run() method. name=" + getName());
 	}
 
@@ -22,8 +22,8 @@ package org.apache.ranger.audit.queue;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Properties;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -36,7 +36,7 @@ import org.apache.ranger.audit.provider.MiscUtil;
 public class AuditBatchQueue extends AuditQueue implements Runnable {
 	private static final Log logger = LogFactory.getLog(AuditBatchQueue.class);
 
-	private BlockingQueue<AuditEventBase> queue = null;
+	private volatile BlockingQueue<AuditEventBase> queue = null;
 	private Collection<AuditEventBase> localBatchBuffer = new ArrayList<AuditEventBase>();
 
 	Thread consumerThread = null;
@@ -57,23 +57,61 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 	 */
 	@Override
 	public boolean log(AuditEventBase event) {
-		// Add to batchQueue. Block if full
-		queue.add(event);
-		return true;
+		// Add to batchQueue. Don't block if full: the caller might be sending
+		// the same event to other destinations as well. Spooling is left to
+		// the consumer thread, so the caller never waits on disk I/O
+		if (queue.offer(event)) {
+			return true;
+		}
+		addDroppedCount(1);
+		logFailedEvent(event, "queue is full. name=" + getName()
+				+ ", maxQueueSize=" + getMaxQueueSize());
+		return false;
 	}
 
 	@Override
 	public boolean log(Collection<AuditEventBase> events) {
 		boolean ret = true;
 		for (AuditEventBase event : events) {
-			ret = log(event);
-			if (!ret) {
-				break;
+			if (!log(event)) {
+				ret = false;
 			}
 		}
 		return ret;
 	}
 
+	@Override
+	public int getQueueSize() {
+		BlockingQueue<AuditEventBase> queue = this.queue;
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Lag of the events in the queue or, while the destination is down, in the
+	 * file spool. Spooled events are aged from the creation of their spool file.
+	 */
+	@Override
+	public long getLagMS() {
+		long oldestTime = 0;
+
+		BlockingQueue<AuditEventBase> queue = this.queue;
+		AuditEventBase head = queue == null ? null : queue.peek();
+		Date headTime = head == null ? null : head.getEventTime();
+		if (headTime != null) {
+			oldestTime = headTime.getTime();
+		}
+
+		if (fileSpoolerEnabled && fileSpooler.isPending()) {
+			long spoolTime = fileSpooler.getOldestPendingFileTime();
+			if (spoolTime != 0 && (oldestTime == 0 || spoolTime < oldestTime)) {
+				oldestTime = spoolTime;
+			}
+		}
+
+		return oldestTime == 0 ? 0 : Math.max(0,
+				System.currentTimeMillis() - oldestTime);
+	}
+
 	@Override
 	public void init(Properties prop, String basePropertyName) {
 		String propPrefix = "xasecure.audit.batch";
@@ -96,9 +134,7 @@ public class AuditBatchQueue extends AuditQueue implements Runnable {
 			logger.error("Provider is already started. name=" + getName());
 			return;
 		}
-		logger.info("Creating ArrayBlockingQueue with maxSize="
-				+ getMaxQueueSize());
-		queue = new ArrayBlockingQueue<AuditEventBase>(getMaxQueueSize());
+		queue = createQueue(getMaxQueueSize(), true);
 
 		// Start the consumer first
 		consumer.start();
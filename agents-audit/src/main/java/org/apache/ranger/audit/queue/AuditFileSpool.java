@@ -28,6 +28,8 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -69,6 +71,13 @@ public class AuditFileSpool implements Runnable {
 	// public static final String PROP_FILE_SPOOL_INDEX_DONE_FILE =
 	// "filespool.index.done_filename";
 	public static final String PROP_FILE_SPOOL_DEST_RETRY_MS = "filespool.destination.retry.ms";
+	public static final String PROP_FILE_SPOOL_FILE_FORMAT = "filespool.file.format";
+	public static final String PROP_FILE_SPOOL_BLOCK_SIZE = "filespool.file.block.size";
+
+	// text: one JSON event per line; binary: compressed blocks of events, see
+	// AuditSpoolBlockWriter
+	public static final String FILE_FORMAT_TEXT = "text";
+	public static final String FILE_FORMAT_BINARY = "binary";
 
 	AuditQueue queueProvider = null;
 	AuditHandler consumerProvider = null;
@@ -87,6 +96,8 @@ public class AuditFileSpool implements Runnable {
 	int retryDestinationMS = 30 * 1000; // Default 30 seconds
 	int fileRolloverSec = 24 * 60 * 60; // In seconds
 	int maxArchiveFiles = 100;
+	String fileFormat = FILE_FORMAT_TEXT;
+	int blockSize = AuditSpoolBlockWriter.DEFAULT_BLOCK_SIZE;
 
 	int errorLogIntervalMS = 30 * 1000; // Every 30 seconds
 	long lastErrorLogMS = 0;
@@ -154,6 +165,18 @@ public class AuditFileSpool implements Runnable {
 					+ PROP_FILE_SPOOL_FILE_ROLLOVER, fileRolloverSec);
 			maxArchiveFiles = MiscUtil.getIntProperty(props, propPrefix + "."
 					+ PROP_FILE_SPOOL_ARCHIVE_MAX_FILES_COUNT, maxArchiveFiles);
+			String fileFormatProp = MiscUtil.getStringProperty(props,
+					propPrefix + "." + PROP_FILE_SPOOL_FILE_FORMAT);
+			if (FILE_FORMAT_BINARY.equalsIgnoreCase(fileFormatProp)) {
+				fileFormat = FILE_FORMAT_BINARY;
+			} else if (fileFormatProp != null
+					&& !FILE_FORMAT_TEXT.equalsIgnoreCase(fileFormatProp)) {
+				logger.warn("Unknown " + propPrefix + "."
+						+ PROP_FILE_SPOOL_FILE_FORMAT + "=" + fileFormatProp
+						+ ". Using " + FILE_FORMAT_TEXT);
+			}
+			blockSize = MiscUtil.getIntProperty(props, propPrefix + "."
+					+ PROP_FILE_SPOOL_BLOCK_SIZE, blockSize);
 
 			logger.info("retryDestinationMS=" + retryDestinationMS
 					+ ", queueName=" + queueProvider.getName());
@@ -161,6 +184,8 @@ public class AuditFileSpool implements Runnable {
 					+ queueProvider.getName());
 			logger.info("maxArchiveFiles=" + maxArchiveFiles + ", queueName="
 					+ queueProvider.getName());
+			logger.info("fileFormat=" + fileFormat + ", blockSize="
+					+ blockSize + ", queueName=" + queueProvider.getName());
 
 			if (logFolderProp == null || logFolderProp.isEmpty()) {
 				logger.fatal("Audit spool folder is not configured. Please set "
@@ -400,6 +425,22 @@ public class AuditFileSpool implements Runnable {
 		return System.currentTimeMillis() - lastAttemptTime;
 	}
 
+	/**
+	 * @return creation time of the oldest spool file not yet sent to the
+	 *         destination, or 0 if there is none
+	 */
+	synchronized public long getOldestPendingFileTime() {
+		long ret = 0;
+		for (AuditIndexRecord indexRecord : indexRecords) {
+			if (indexRecord.status != SPOOL_FILE_STATUS.done
+					&& indexRecord.fileCreateTime != null
+					&& (ret == 0 || indexRecord.fileCreateTime.getTime() < ret)) {
+				ret = indexRecord.fileCreateTime.getTime();
+			}
+		}
+		return ret;
+	}
+
 	synchronized public void stashLogs(AuditEventBase event) {
 		if (isDrain) {
 			// Stop has been called, so this method shouldn't be called
@@ -411,8 +452,8 @@ public class AuditFileSpool implements Runnable {
 			isWriting = true;
 			PrintWriter logOut = getLogFileStream();
 			// Convert event to json
-			String jsonStr = MiscUtil.stringify(event);
-			logOut.println(jsonStr);
+			MiscUtil.writeJson(event, logOut);
+			logOut.println();
 			isPending = true;
 		} catch (Exception ex) {
 			logger.error("Error writing to file. event=" + event, ex);
@@ -499,13 +540,14 @@ public class AuditFileSpool implements Runnable {
 			logger.info("Creating new file. queueName="
 					+ queueProvider.getName() + ", fileName=" + fileName);
 			// Open the file
-			logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-					outLogFile)));
+			logWriter = new PrintWriter(openSpoolFileWriter(outLogFile, false,
+					fileFormat));
 
 			AuditIndexRecord tmpIndexRecord = new AuditIndexRecord();
 
 			tmpIndexRecord.id = MiscUtil.generateUniqueId();
 			tmpIndexRecord.filePath = outLogFile.getPath();
+			tmpIndexRecord.fileFormat = fileFormat;
 			tmpIndexRecord.status = SPOOL_FILE_STATUS.write_inprogress;
 			tmpIndexRecord.fileCreateTime = currentTime;
 			tmpIndexRecord.lastAttempt = true;
@@ -520,13 +562,22 @@ public class AuditFileSpool implements Runnable {
 				logger.info("Opening existing file for append. queueName="
 						+ queueProvider.getName() + ", fileName="
 						+ currentWriterIndexRecord.filePath);
-				logWriter = new PrintWriter(new BufferedWriter(new FileWriter(
-						currentWriterIndexRecord.filePath, true)));
+				logWriter = new PrintWriter(openSpoolFileWriter(new File(
+						currentWriterIndexRecord.filePath), true,
+						currentWriterIndexRecord.fileFormat));
 			}
 		}
 		return logWriter;
 	}
 
+	private Writer openSpoolFileWriter(File file, boolean append,
+			String format) throws IOException {
+		if (FILE_FORMAT_BINARY.equals(format)) {
+			return new AuditSpoolBlockWriter(file, append, blockSize);
+		}
+		return new BufferedWriter(new FileWriter(file, append));
+	}
+
 	synchronized private void closeFileIfNeeded() throws FileNotFoundException,
 			IOException {
 		// Is there file open to write or there are no pending file, then close
@@ -716,6 +767,7 @@ public class AuditFileSpool implements Runnable {
 		String id;
 		String filePath;
 		int linePosition = 0;
+		String fileFormat; // null for text files, written before this field was added
 		SPOOL_FILE_STATUS status = SPOOL_FILE_STATUS.write_inprogress;
 		Date fileCreateTime;
 		Date writeCompleteTime;
@@ -728,6 +780,7 @@ public class AuditFileSpool implements Runnable {
 		@Override
 		public String toString() {
 			return "AuditIndexRecord [id=" + id + ", filePath=" + filePath
+					+ ", fileFormat=" + fileFormat
 					+ ", linePosition=" + linePosition + ", status=" + status
 					+ ", fileCreateTime=" + fileCreateTime
 					+ ", writeCompleteTime=" + writeCompleteTime
@@ -812,12 +865,23 @@ public class AuditFileSpool implements Runnable {
 					isRemoveIndex = true;
 				} else {
 					// Let's open the file to write
-					BufferedReader br = new BufferedReader(new FileReader(
-							currentConsumerIndexRecord.filePath));
+					int startLine = currentConsumerIndexRecord.linePosition;
+					int currLine = 0;
+					Reader fileReader = null;
+					if (FILE_FORMAT_BINARY
+							.equals(currentConsumerIndexRecord.fileFormat)) {
+						AuditSpoolBlockReader blockReader = new AuditSpoolBlockReader(
+								consumerFile);
+						// Skip the blocks already sent, without decompressing
+						currLine = blockReader.skipRecords(Math.max(0,
+								startLine - 1));
+						fileReader = blockReader;
+					} else {
+						fileReader = new FileReader(consumerFile);
+					}
+					BufferedReader br = new BufferedReader(fileReader);
 					try {
-						int startLine = currentConsumerIndexRecord.linePosition;
 						String line;
-						int currLine = 0;
 						List<String> lines = new ArrayList<String>();
 						while ((line = br.readLine()) != null) {
 							currLine++;
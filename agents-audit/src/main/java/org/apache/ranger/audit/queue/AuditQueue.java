@@ -20,10 +20,15 @@
 package org.apache.ranger.audit.queue;
 
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.BaseAuditHandler;
 import org.apache.ranger.audit.provider.MiscUtil;
@@ -42,12 +47,17 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	private int maxQueueSize = AUDIT_MAX_QUEUE_SIZE_DEFAULT;
 	private int maxBatchInterval = AUDIT_BATCH_INTERVAL_DEFAULT_MS;
 	private int maxBatchSize = AUDIT_BATCH_SIZE_DEFAULT;
+	private String queueImpl = QUEUE_IMPL_BLOCKING;
 
 	public static final String PROP_QUEUE = "queue";
 
 	public static final String PROP_BATCH_SIZE = "batch.size";
 	public static final String PROP_QUEUE_SIZE = "queue.size";
 	public static final String PROP_BATCH_INTERVAL = "batch.interval.ms";
+	public static final String PROP_QUEUE_IMPL = "queue.impl";
+
+	public static final String QUEUE_IMPL_BLOCKING = "blocking";
+	public static final String QUEUE_IMPL_RING_BUFFER = "ringbuffer";
 
 	public static final String PROP_FILE_SPOOL_ENABLE = "filespool.enable";
 	public static final String PROP_FILE_SPOOL_WAIT_FOR_FULL_DRAIN = "filespool.drain.full.wait.ms";
@@ -66,6 +76,10 @@ public abstract class AuditQueue extends BaseAuditHandler {
 	// This is set when the first time stop is called.
 	protected long stopTime = 0;
 
+	// updated by the producer threads, unlike the counters in BaseAuditHandler
+	private final AtomicLong totalDroppedCount = new AtomicLong(0);
+	private long lastDroppedCount = 0;
+
 	/**
 	 * @param consumer
 	 */
@@ -94,6 +108,11 @@ public abstract class AuditQueue extends BaseAuditHandler {
 				+ PROP_QUEUE_SIZE, getMaxQueueSize()));
 		setMaxBatchInterval(MiscUtil.getIntProperty(props, propPrefix + "."
 				+ PROP_BATCH_INTERVAL, getMaxBatchInterval()));
+		String queueImplProp = MiscUtil.getStringProperty(props, propPrefix
+				+ "." + PROP_QUEUE_IMPL);
+		if (queueImplProp != null) {
+			setQueueImpl(queueImplProp.trim());
+		}
 
 		fileSpoolerEnabled = MiscUtil.getBooleanProperty(props, propPrefix
 				+ "." + PROP_FILE_SPOOL_ENABLE, false);
@@ -196,6 +215,100 @@ public abstract class AuditQueue extends BaseAuditHandler {
 		this.maxBatchSize = maxBatchSize;
 	}
 
+	public String getQueueImpl() {
+		return queueImpl;
+	}
+
+	public void setQueueImpl(String queueImpl) {
+		this.queueImpl = queueImpl;
+	}
+
+	public boolean isRingBufferQueue() {
+		return QUEUE_IMPL_RING_BUFFER.equalsIgnoreCase(queueImpl);
+	}
+
+	/**
+	 * Creates the queue between the producers and the consumer thread. With
+	 * queue.impl=ringbuffer, this is a lock-free AuditRingBufferQueue of the
+	 * given capacity. Otherwise it is an ArrayBlockingQueue of the given
+	 * capacity if isBounded, else an unbounded LinkedBlockingQueue.
+	 */
+	protected BlockingQueue<AuditEventBase> createQueue(int capacity,
+			boolean isBounded) {
+		BlockingQueue<AuditEventBase> ret = null;
+		if (isRingBufferQueue()) {
+			ret = new AuditRingBufferQueue<AuditEventBase>(capacity);
+		} else {
+			if (!QUEUE_IMPL_BLOCKING.equalsIgnoreCase(queueImpl)) {
+				LOG.warn("Unknown " + propPrefix + "." + PROP_QUEUE_IMPL
+						+ "=" + queueImpl + ". Using " + QUEUE_IMPL_BLOCKING
+						+ ". name=" + getName());
+			}
+			if (isBounded) {
+				ret = new ArrayBlockingQueue<AuditEventBase>(capacity);
+			} else {
+				ret = new LinkedBlockingQueue<AuditEventBase>();
+			}
+		}
+		LOG.info("Created " + ret.getClass().getSimpleName()
+				+ " with maxSize=" + capacity + ". name=" + getName());
+		return ret;
+	}
+
+	/**
+	 * Events dropped because the queue was full
+	 */
+	public long addDroppedCount(int count) {
+		return totalDroppedCount.addAndGet(count);
+	}
+
+	public long getTotalDroppedCount() {
+		return totalDroppedCount.get();
+	}
+
+	/**
+	 * @return number of events in the queue
+	 */
+	public int getQueueSize() {
+		return 0;
+	}
+
+	/**
+	 * @return milliseconds since the event time of the oldest event yet to be
+	 *         sent to the consumer, or 0 if there is none
+	 */
+	public long getLagMS() {
+		return 0;
+	}
+
+	@Override
+	public void logStatus() {
+		super.logStatus();
+
+		try {
+			long dropped = totalDroppedCount.get();
+			long diffDropped = dropped - lastDroppedCount;
+			int queueSize = getQueueSize();
+			long lagMS = getLagMS();
+
+			if (diffDropped == 0 && queueSize == 0
+					&& lagMS == 0) {
+				return;
+			}
+
+			lastDroppedCount = dropped;
+
+			LOG.info("Audit Queue Status: name=" + getName()
+					+ ", finalDestination=" + getFinalPath()
+					+ ", queueSize=" + queueSize
+					+ ", lag=" + formatIntervalForLog(lagMS)
+					+ (diffDropped > 0 ? (", droppedCount=" + diffDropped) : "")
+					+ (dropped > 0 ? (", totalDroppedCount=" + dropped) : ""));
+		} catch (Throwable t) {
+			LOG.error("Error while printing queue stats. name=" + getName(), t);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free queue for many producer threads and a single consumer thread.
+ *
+ * Elements are kept in a ring buffer allocated up front. Producers claim a slot with a CAS on the tail; the consumer
+ * reads slots in order and releases them by moving the head, once per drainTo() call. The head and the tail are kept
+ * on separate cache lines, so that producers and the consumer don't invalidate each other's line on every update.
+ *
+ * Thread safety:
+ * <ul>
+ * <li>offer(), put() and offer() with a timeout can be called from any number of threads.</li>
+ * <li>poll(), take(), drainTo() and the other methods that remove elements must be called only from the consumer
+ * thread.</li>
+ * <li>peek(), size(), isEmpty(), remainingCapacity() and iterator() can be called from any thread. When called from a
+ * thread other than the consumer, these return an approximation that can already be stale: for example, peek() can
+ * return an element the consumer has just removed.</li>
+ * </ul>
+ * Producers don't block: put() and offer() with a timeout wait by parking for short intervals.
+ */
+public class AuditRingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	// 16 longs (128 bytes) between the head and the tail, to cover the adjacent cache-line prefetch as well
+	private static final int  PAD              = 16;
+	private static final int  TAIL             = PAD;
+	private static final int  HEAD             = 2 * PAD;
+	private static final long PRODUCER_WAIT_NS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final int                     capacity;
+	private final int                     mask;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray         counters = new AtomicLongArray(3 * PAD);
+
+	private volatile Thread waitingConsumer = null;
+
+	public AuditRingBufferQueue(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be greater than 0: " + capacity);
+		}
+
+		int bufferSize = Integer.highestOneBit(capacity);
+
+		if (bufferSize < capacity) {
+			bufferSize <<= 1;
+		}
+
+		this.capacity = capacity;
+		this.mask     = bufferSize - 1;
+		this.buffer   = new AtomicReferenceArray<E>(bufferSize);
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		long tail;
+
+		do {
+			tail = counters.get(TAIL);
+
+			if (tail - counters.get(HEAD) >= capacity) {
+				return false;
+			}
+		} while (!counters.compareAndSet(TAIL, tail, tail + 1));
+
+		// a volatile write, followed by the read of waitingConsumer: either the consumer sees this element, or this
+		// thread sees the consumer waiting
+		buffer.set(index(tail), e);
+
+		Thread consumer = waitingConsumer;
+
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+
+		return true;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		while (!offer(e)) {
+			waitForSpace();
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while (!offer(e)) {
+			if (deadline - System.nanoTime() <= 0) {
+				return false;
+			}
+
+			waitForSpace();
+		}
+
+		return true;
+	}
+
+	@Override
+	public E poll() {
+		long head = counters.get(HEAD);
+		int  index = index(head);
+		E    ret   = buffer.get(index);
+
+		if (ret != null) {
+			buffer.lazySet(index, null);
+			counters.lazySet(HEAD, head + 1);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E ret = poll();
+
+		while (ret == null) {
+			awaitElement(0);
+
+			ret = poll();
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E ret = poll();
+
+		if (ret == null) {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+			for (long remaining = unit.toNanos(timeout); ret == null && remaining > 0; remaining = deadline - System.nanoTime()) {
+				awaitElement(remaining);
+
+				ret = poll();
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+
+		long head = counters.get(HEAD);
+		int  ret  = 0;
+
+		while (ret < maxElements) {
+			int index = index(head + ret);
+			E   e     = buffer.get(index);
+
+			if (e == null) {
+				break;
+			}
+
+			buffer.lazySet(index, null);
+			c.add(e);
+
+			ret++;
+		}
+
+		if (ret > 0) {
+			counters.lazySet(HEAD, head + ret);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public E peek() {
+		return buffer.get(index(counters.get(HEAD)));
+	}
+
+	/**
+	 * @return number of elements in the queue, including the ones whose producers have claimed a slot but not yet
+	 * stored the element
+	 */
+	@Override
+	public int size() {
+		long head = counters.get(HEAD);
+		long tail = counters.get(TAIL);
+
+		return (int) Math.max(0, Math.min(tail - head, capacity));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return counters.get(TAIL) == counters.get(HEAD);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	/**
+	 * @return iterator over a snapshot of the elements in the queue; remove() is not supported
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> elements = new ArrayList<E>();
+		long    head     = counters.get(HEAD);
+		long    tail     = counters.get(TAIL);
+
+		for (long i = head; i < tail; i++) {
+			E e = buffer.get(index(i));
+
+			if (e != null) {
+				elements.add(e);
+			}
+		}
+
+		return Collections.unmodifiableList(elements).iterator();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private int index(long sequence) {
+		return (int) (sequence & mask);
+	}
+
+	// called by the consumer; returns when an element might be available, after timeoutNs (0 to wait without a limit) or on interrupt
+	private void awaitElement(long timeoutNs) throws InterruptedException {
+		waitingConsumer = Thread.currentThread();
+
+		try {
+			if (buffer.get(index(counters.get(HEAD))) == null) {
+				if (timeoutNs > 0) {
+					LockSupport.parkNanos(this, timeoutNs);
+				} else {
+					LockSupport.park(this);
+				}
+			}
+		} finally {
+			waitingConsumer = null;
+		}
+
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	private void waitForSpace() throws InterruptedException {
+		LockSupport.parkNanos(this, PRODUCER_WAIT_NS);
+
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+}
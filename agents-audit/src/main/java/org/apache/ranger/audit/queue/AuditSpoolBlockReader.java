@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reads a spool file written by AuditSpoolBlockWriter, one block at a time,
+ * returning each record as a line. Wrap in a BufferedReader to read records
+ * with readLine().
+ *
+ * Reading stops at an incomplete block at the end of the file, which is left
+ * when the process stops while writing a block. Reading also stops at a block
+ * whose header or data fails the checksum, or can't be decoded; the records
+ * after it are logged as lost. Such errors are not thrown, so that the caller
+ * doesn't retry reading the same file.
+ */
+public class AuditSpoolBlockReader extends Reader {
+	private static final Log logger = LogFactory
+			.getLog(AuditSpoolBlockReader.class);
+
+	private final String fileName;
+	private final long fileLength;
+	private final DataInputStream in;
+	private final Inflater inflater = new Inflater();
+	private final CRC32 crc = new CRC32();
+
+	private BlockHeader nextHeader = null;
+	private boolean isEOF = false;
+	private String blockText = null;
+	private int blockTextPos = 0;
+
+	public AuditSpoolBlockReader(File file) throws IOException {
+		this.fileName = file.getPath();
+		this.fileLength = file.length();
+		this.in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+	}
+
+	/**
+	 * Skips whole blocks, as long as they hold no more than maxRecords records
+	 * in total, without decompressing them. Must be called before any read.
+	 * Record counts are taken from block headers, which are checksummed.
+	 *
+	 * @return number of records skipped
+	 */
+	public int skipRecords(int maxRecords) throws IOException {
+		int ret = 0;
+		while (true) {
+			BlockHeader header = peekHeader();
+			if (header == null || ret + header.recordCount > maxRecords) {
+				break;
+			}
+			if (!skipFully(header.compressedLength)) {
+				isEOF = true;
+				break;
+			}
+			nextHeader = null;
+			ret += header.recordCount;
+		}
+		return ret;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (blockText == null || blockTextPos >= blockText.length()) {
+			if (!readBlock()) {
+				return -1;
+			}
+		}
+		int ret = Math.min(len, blockText.length() - blockTextPos);
+		blockText.getChars(blockTextPos, blockTextPos + ret, cbuf, off);
+		blockTextPos += ret;
+		return ret;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			in.close();
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @return length of the file up to the end of the last complete block that
+	 *         passes the checksum
+	 */
+	static long getValidLength(File file) throws IOException {
+		long ret = 0;
+		AuditSpoolBlockReader reader = new AuditSpoolBlockReader(file);
+		try {
+			while (true) {
+				BlockHeader header = reader.peekHeader();
+				if (header == null) {
+					break;
+				}
+				byte[] data = reader.readCompressed(header);
+				if (data == null) {
+					break;
+				}
+				ret += AuditSpoolBlockWriter.BLOCK_HEADER_LENGTH
+						+ header.compressedLength;
+			}
+		} finally {
+			reader.close();
+		}
+		return ret;
+	}
+
+	private boolean readBlock() throws IOException {
+		BlockHeader header = peekHeader();
+		if (header == null) {
+			return false;
+		}
+		byte[] compressed = readCompressed(header);
+		if (compressed == null) {
+			return false;
+		}
+
+		byte[] data = new byte[header.uncompressedLength];
+		try {
+			inflater.reset();
+			inflater.setInput(compressed);
+			int len = 0;
+			while (len < data.length && !inflater.finished()) {
+				int n = inflater.inflate(data, len, data.length - len);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				len += n;
+			}
+			if (len != data.length) {
+				throw new DataFormatException("expected " + data.length
+						+ " bytes, found " + len);
+			}
+		} catch (DataFormatException excp) {
+			logger.error("Error decompressing block in spool file. Rest of the file will be skipped. file="
+					+ fileName, excp);
+			isEOF = true;
+			return false;
+		}
+
+		DataInputStream records = new DataInputStream(new ByteArrayInputStream(
+				data));
+		StringBuilder sb = new StringBuilder(data.length + header.recordCount);
+		try {
+			for (int i = 0; i < header.recordCount; i++) {
+				int len = records.readInt();
+				if (len < 0 || len > records.available()) {
+					throw new IOException("invalid record length " + len
+							+ " in record #" + i + " of " + header.recordCount);
+				}
+				byte[] record = new byte[len];
+				records.readFully(record);
+				sb.append(new String(record, AuditSpoolBlockWriter.UTF8)).append('\n');
+			}
+			if (records.available() != 0) {
+				throw new IOException(records.available()
+						+ " bytes left after " + header.recordCount
+						+ " records");
+			}
+		} catch (IOException excp) {
+			logger.error("Error decoding block in spool file. Rest of the file will be skipped. file="
+					+ fileName, excp);
+			isEOF = true;
+			return false;
+		}
+		blockText = sb.toString();
+		blockTextPos = 0;
+		return true;
+	}
+
+	// returns null, and stops reading, if the block is incomplete or fails the checksum
+	private byte[] readCompressed(BlockHeader header) throws IOException {
+		nextHeader = null;
+
+		byte[] ret = new byte[header.compressedLength];
+		try {
+			in.readFully(ret);
+		} catch (EOFException excp) {
+			logger.warn("Incomplete block at the end of spool file. file="
+					+ fileName);
+			isEOF = true;
+			return null;
+		}
+
+		crc.reset();
+		crc.update(ret, 0, ret.length);
+		if (crc.getValue() != header.checksum) {
+			logger.error("Checksum mismatch in spool file. Rest of the file will be skipped. file="
+					+ fileName);
+			isEOF = true;
+			return null;
+		}
+		return ret;
+	}
+
+	private BlockHeader peekHeader() throws IOException {
+		if (nextHeader == null && !isEOF) {
+			byte[] buf = new byte[AuditSpoolBlockWriter.BLOCK_HEADER_LENGTH];
+			int len = 0;
+			while (len < buf.length) {
+				int n = in.read(buf, len, buf.length - len);
+				if (n < 0) {
+					break;
+				}
+				len += n;
+			}
+			if (len < buf.length) {
+				if (len > 0) {
+					logger.warn("Incomplete block header at the end of spool file. file="
+							+ fileName);
+				}
+				isEOF = true;
+				return null;
+			}
+
+			DataInputStream headerIn = new DataInputStream(
+					new ByteArrayInputStream(buf));
+			int magic = headerIn.readInt();
+			BlockHeader header = new BlockHeader();
+			header.recordCount = headerIn.readInt();
+			header.uncompressedLength = headerIn.readInt();
+			header.compressedLength = headerIn.readInt();
+			header.checksum = headerIn.readLong();
+			int headerChecksum = headerIn.readInt();
+
+			crc.reset();
+			crc.update(buf, 0, buf.length - 4);
+
+			// each record takes at least 4 bytes; only a block of a single
+			// record can be larger than the block size
+			if (magic != AuditSpoolBlockWriter.BLOCK_MAGIC
+					|| headerChecksum != (int) crc.getValue()
+					|| header.recordCount <= 0
+					|| header.uncompressedLength < 4L * header.recordCount
+					|| (header.uncompressedLength > AuditSpoolBlockWriter.MAX_BLOCK_SIZE && header.recordCount > 1)
+					|| header.compressedLength < 0
+					|| header.compressedLength > fileLength) {
+				logger.error("Invalid block header in spool file. Rest of the file will be skipped. file="
+						+ fileName);
+				isEOF = true;
+				return null;
+			}
+			nextHeader = header;
+		}
+		return nextHeader;
+	}
+
+	private boolean skipFully(int len) throws IOException {
+		int remaining = len;
+		while (remaining > 0) {
+			int n = in.skipBytes(remaining);
+			if (n <= 0) {
+				if (in.read() < 0) {
+					return false;
+				}
+				n = 1;
+			}
+			remaining -= n;
+		}
+		return true;
+	}
+
+	static class BlockHeader {
+		int recordCount;
+		int uncompressedLength;
+		int compressedLength;
+		long checksum;
+	}
+}
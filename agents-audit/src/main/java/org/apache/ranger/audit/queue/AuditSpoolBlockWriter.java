@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writes lines to a spool file in compressed blocks, to be read back by
+ * AuditSpoolBlockReader. Each line written (terminated by '\n') is one record.
+ *
+ * A block is written when the records buffered reach the block size, and on
+ * flush(). A block holds no more than the block size of records, except for a
+ * block of a single larger record. Block layout:
+ *
+ * <pre>
+ * int  magic
+ * int  record count
+ * int  uncompressed length
+ * int  compressed length
+ * long CRC32 of the compressed bytes
+ * int  CRC32 of the header fields above
+ * byte[compressed length] deflate compressed records: (int length, UTF-8 bytes)*
+ * </pre>
+ */
+public class AuditSpoolBlockWriter extends Writer {
+	private static final Log logger = LogFactory
+			.getLog(AuditSpoolBlockWriter.class);
+
+	static final int BLOCK_MAGIC = 0x52535032; // "RSP2"
+	static final int BLOCK_HEADER_LENGTH = 4 + 4 + 4 + 4 + 8 + 4;
+	static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final DataOutputStream out;
+	private final int blockSize;
+	private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+	private final DataOutputStream blockData = new DataOutputStream(blockBuffer);
+	private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+	private final byte[] deflateBuffer = new byte[8 * 1024];
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final CRC32 crc = new CRC32();
+	private final ByteArrayOutputStream header = new ByteArrayOutputStream(BLOCK_HEADER_LENGTH);
+	private final DataOutputStream headerData = new DataOutputStream(header);
+	private final StringBuilder record = new StringBuilder();
+	private int recordCount = 0;
+
+	/**
+	 * @param append
+	 *            if true, records are added after the last complete block in
+	 *            the file; a partially written block at the end is discarded
+	 */
+	public AuditSpoolBlockWriter(File file, boolean append, int blockSize)
+			throws IOException {
+		if (append && file.exists()) {
+			truncateToLastValidBlock(file);
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file, append)));
+		this.blockSize = blockSize > 0 ? Math.min(blockSize, MAX_BLOCK_SIZE)
+				: DEFAULT_BLOCK_SIZE;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			char c = cbuf[i];
+			if (c == '\n') {
+				endRecord();
+			} else {
+				record.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffered records as a block
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBlock();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (record.length() > 0) {
+				endRecord();
+			}
+			flush();
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+
+	private void endRecord() throws IOException {
+		int len = record.length();
+		if (len > 0 && record.charAt(len - 1) == '\r') {
+			record.setLength(len - 1);
+		}
+		byte[] bytes = record.toString().getBytes(UTF8);
+		record.setLength(0);
+
+		// keep the block within blockSize; a larger record gets a block of its own
+		if (recordCount > 0 && blockBuffer.size() + 4 + bytes.length > blockSize) {
+			writeBlock();
+		}
+
+		blockData.writeInt(bytes.length);
+		blockData.write(bytes);
+		recordCount++;
+
+		if (blockBuffer.size() >= blockSize) {
+			writeBlock();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (recordCount == 0) {
+			return;
+		}
+		byte[] data = blockBuffer.toByteArray();
+
+		compressed.reset();
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		while (!deflater.finished()) {
+			int len = deflater.deflate(deflateBuffer);
+			compressed.write(deflateBuffer, 0, len);
+		}
+
+		crc.reset();
+		crc.update(compressed.toByteArray(), 0, compressed.size());
+
+		header.reset();
+		headerData.writeInt(BLOCK_MAGIC);
+		headerData.writeInt(recordCount);
+		headerData.writeInt(data.length);
+		headerData.writeInt(compressed.size());
+		headerData.writeLong(crc.getValue());
+
+		crc.reset();
+		crc.update(header.toByteArray(), 0, header.size());
+		headerData.writeInt((int) crc.getValue());
+
+		header.writeTo(out);
+		compressed.writeTo(out);
+
+		blockBuffer.reset();
+		recordCount = 0;
+	}
+
+	private static void truncateToLastValidBlock(File file) throws IOException {
+		long validLength = AuditSpoolBlockReader.getValidLength(file);
+		if (validLength < file.length()) {
+			logger.warn("Discarding incomplete block at the end of spool file. file="
+					+ file
+					+ ", fileLength="
+					+ file.length()
+					+ ", validLength=" + validLength);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(validLength);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.destination;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes audit events to an in-memory H2 database, through JPA and through JDBC batches.
+ */
+public class TestDBAuditDestination {
+	private static final String PROP_PREFIX = "xasecure.audit.destination.db";
+	private static final String USER        = "sa";
+	private static final String PASSWORD    = "password";
+
+	private String     jdbcUrl;
+	private Connection conn;
+
+	@Before
+	public void setUp() throws Exception {
+		jdbcUrl = "jdbc:h2:mem:TestDBAuditDestination-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+		conn    = DriverManager.getConnection(jdbcUrl, USER, PASSWORD);
+
+		Statement stmt = conn.createStatement();
+
+		try {
+			stmt.execute("CREATE SEQUENCE XA_ACCESS_AUDIT_SEQ");
+			stmt.execute("CREATE TABLE xa_access_audit (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_type INT, repo_name VARCHAR(255),"
+					+ " request_user VARCHAR(255), event_time TIMESTAMP, access_type VARCHAR(255), resource_path VARCHAR(4000),"
+					+ " resource_type VARCHAR(255), action VARCHAR(2000), access_result INT, agent_id VARCHAR(255), policy_id BIGINT,"
+					+ " result_reason VARCHAR(255), acl_enforcer VARCHAR(255), session_id VARCHAR(255), client_type VARCHAR(255),"
+					+ " client_ip VARCHAR(255), request_data VARCHAR(4000), tags VARCHAR(4000),"
+					+ " CHECK (request_user IS NULL OR request_user <> 'fail'))");
+		} finally {
+			stmt.close();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Statement stmt = conn.createStatement();
+
+		try {
+			stmt.execute("DROP ALL OBJECTS");
+		} finally {
+			stmt.close();
+			conn.close();
+		}
+	}
+
+	@Test
+	public void testBatchWritesSameRowsAsJpa() throws Exception {
+		List<AuditEventBase> events = createEvents(25);
+
+		DBAuditDestination jpaDest = createDestination(false, 0, 0);
+
+		try {
+			assertTrue(jpaDest.log(events));
+		} finally {
+			jpaDest.stop();
+		}
+
+		List<List<Object>> jpaRows = readRows();
+
+		deleteRows();
+
+		// batch size that doesn't divide the number of events
+		DBAuditDestination batchDest = createDestination(true, 7, 0);
+
+		try {
+			assertTrue(batchDest.log(events));
+		} finally {
+			batchDest.stop();
+		}
+
+		List<List<Object>> batchRows = readRows();
+
+		assertEquals(events.size(), jpaRows.size());
+		assertEquals(jpaRows, batchRows);
+
+		// spot check of the column mapping
+		AuthzAuditEvent event = (AuthzAuditEvent) events.get(3);
+		List<Object>    row   = batchRows.get(3);
+
+		assertEquals(Arrays.<Object>asList(event.getRepositoryType(), event.getRepositoryName(), event.getUser(),
+				MiscUtil.getUTCDateForLocalDate(event.getEventTime()).getTime(), event.getAccessType(), event.getResourcePath(),
+				event.getResourceType(), event.getAction(), (int) event.getAccessResult(), event.getAgentId(), event.getPolicyId(),
+				event.getResultReason(), event.getAclEnforcer(), event.getSessionId(), event.getClientType(), event.getClientIP(),
+				event.getRequestData(), "PII"), row);
+	}
+
+	@Test
+	public void testFailureRollsBackTransaction() throws Exception {
+		List<AuditEventBase> events = createEvents(25);
+
+		((AuthzAuditEvent) events.get(12)).setUser("fail");
+
+		DBAuditDestination dest = createDestination(true, 5, 0);
+
+		try {
+			assertFalse(dest.log(events));
+			assertEquals(0, readRows().size());
+
+			// the connection is reopened for the next batch
+			assertTrue(dest.log(events.subList(0, 12)));
+			assertEquals(12, readRows().size());
+		} finally {
+			dest.stop();
+		}
+	}
+
+	@Test
+	public void testFailureAfterCommitKeepsCommittedRows() throws Exception {
+		List<AuditEventBase> events = createEvents(25);
+
+		((AuthzAuditEvent) events.get(12)).setUser("fail");
+
+		DBAuditDestination dest = createDestination(true, 3, 5);
+
+		try {
+			// rows of the first 2 transactions remain committed, and will be duplicated when the batch is retried; see
+			// DBAuditDestination.PROP_DB_JDBC_BATCH_TRANSACTION_SIZE
+			assertFalse(dest.log(events));
+			assertEquals(10, readRows().size());
+		} finally {
+			dest.stop();
+		}
+	}
+
+	private DBAuditDestination createDestination(boolean isBatchEnabled, int batchSize, int transactionSize) {
+		Properties props = new Properties();
+
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_JDBC_DRIVER, "org.h2.Driver");
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_JDBC_URL, jdbcUrl);
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_USER, USER);
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_PASSWORD, PASSWORD);
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_JDBC_BATCH_ENABLED, String.valueOf(isBatchEnabled));
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_JDBC_BATCH_SIZE, String.valueOf(batchSize));
+		props.setProperty(PROP_PREFIX + "." + DBAuditDestination.PROP_DB_JDBC_BATCH_TRANSACTION_SIZE, String.valueOf(transactionSize));
+
+		DBAuditDestination ret = new DBAuditDestination();
+
+		ret.init(props, PROP_PREFIX);
+
+		return ret;
+	}
+
+	private static List<AuditEventBase> createEvents(int count) {
+		List<AuditEventBase> ret       = new ArrayList<AuditEventBase>();
+		Date                 eventTime = new Date(1500000000000L);
+
+		for (int i = 0; i < count; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setRepositoryType(i % 3);
+			event.setRepositoryName("hdfs-" + i);
+			event.setUser("user-" + i);
+			event.setEventTime(new Date(eventTime.getTime() + i * 1000L));
+			event.setAccessType("read");
+			event.setResourcePath("/data/path/" + i);
+			event.setResourceType("path");
+			event.setAction("read-" + i);
+			event.setAccessResult((short) (i % 2));
+			event.setAgentId("agent-" + i);
+			event.setPolicyId(100 + i);
+			event.setResultReason("reason-" + i);
+			event.setAclEnforcer("ranger-acl");
+			event.setSessionId("session-" + i);
+			event.setClientType("client-" + i);
+			event.setClientIP("10.0.0." + i);
+			event.setRequestData("select * from t" + i);
+			event.setTags(new HashSet<String>(Arrays.asList("PII")));
+
+			ret.add(event);
+		}
+
+		return ret;
+	}
+
+	// all the columns except id, in the order of id
+	private List<List<Object>> readRows() throws Exception {
+		List<List<Object>> ret  = new ArrayList<List<Object>>();
+		Statement          stmt = conn.createStatement();
+
+		try {
+			ResultSet         rs       = stmt.executeQuery("SELECT * FROM xa_access_audit ORDER BY id");
+			ResultSetMetaData metaData = rs.getMetaData();
+
+			while (rs.next()) {
+				List<Object> row = new ArrayList<Object>();
+
+				for (int i = 2; i <= metaData.getColumnCount(); i++) {
+					Object value = rs.getObject(i);
+
+					row.add(value instanceof Date ? ((Date) value).getTime() : value);
+				}
+
+				ret.add(row);
+			}
+		} finally {
+			stmt.close();
+		}
+
+		return ret;
+	}
+
+	private void deleteRows() throws Exception {
+		Statement stmt = conn.createStatement();
+
+		try {
+			stmt.execute("DELETE FROM xa_access_audit");
+		} finally {
+			stmt.close();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class TestAuthzAuditEventJsonWriter {
+	private static final Gson gson = new GsonBuilder().setDateFormat(AuthzAuditEventJsonWriter.DATE_FORMAT).create();
+
+	@Test
+	public void testDefaultEvent() {
+		assertSameAsGson(new AuthzAuditEvent());
+	}
+
+	@Test
+	public void testAllFields() {
+		AuthzAuditEvent event = new AuthzAuditEvent(1, "hdfsdev", "user1", new Date(1476700000123L), "READ", "/data/a b/<c>", "path",
+		                                            "read", (short) 1, "hdfs", 12L, "/data", "ranger-acl", "sess-1", "CLI", "10.0.0.1", "cat /data/'x'=1&y");
+
+		event.setAgentHostname("nn1.example.com");
+		event.setLogType("RangerAudit");
+		event.setEventId("a8f6-01");
+		event.setSeqNum(Long.MAX_VALUE);
+		event.setEventCount(-1);
+		event.setEventDurationMS(250);
+		event.setTags(new LinkedHashSet<String>(Arrays.asList("PII", "PCI \"gold\"")));
+
+		assertSameAsGson(event);
+	}
+
+	@Test
+	public void testNullsAreSkipped() {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setEventTime(null);
+		event.setTags(null);
+
+		assertSameAsGson(event);
+
+		event.setTags(new LinkedHashSet<String>(Arrays.asList("PII", null)));
+
+		assertSameAsGson(event);
+	}
+
+	@Test
+	public void testEscapingOfAllChars() {
+		StringBuilder sb = new StringBuilder();
+
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			sb.append((char) c);
+		}
+
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setResourcePath(sb.toString());
+		event.setRequestData("\u0000\u001f\u007f\u2028\u2029\ud83d\ude00");
+
+		assertSameAsGson(event);
+	}
+
+	@Test
+	public void testReuse() {
+		AuthzAuditEventJsonWriter writer = new AuthzAuditEventJsonWriter();
+		AuthzAuditEvent           large  = new AuthzAuditEvent();
+		AuthzAuditEvent           small  = new AuthzAuditEvent();
+		char[]                    data   = new char[100 * 1024];
+
+		Arrays.fill(data, 'x');
+		large.setRequestData(new String(data));
+		small.setUser("user1");
+
+		assertEquals(gson.toJson(large), writer.toJson(large));
+		assertEquals(gson.toJson(small), writer.toJson(small));
+		assertEquals(gson.toJson(large), writer.toJson(large));
+	}
+
+	@Test
+	public void testStringify() {
+		AuthzAuditEvent event = new AuthzAuditEvent();
+
+		event.setUser("user1");
+		event.setAccessType("select");
+
+		assertEquals(gson.toJson(event), MiscUtil.stringify(event));
+	}
+
+	private void assertSameAsGson(AuthzAuditEvent event) {
+		String                    expected = gson.toJson(event);
+		AuthzAuditEventJsonWriter writer   = new AuthzAuditEventJsonWriter();
+		StringWriter              out      = new StringWriter();
+
+		assertEquals(expected, writer.toJson(event));
+
+		try {
+			writer.write(event, out);
+		} catch (Exception excp) {
+			throw new RuntimeException(excp);
+		}
+
+		assertEquals(expected, out.toString());
+	}
+}
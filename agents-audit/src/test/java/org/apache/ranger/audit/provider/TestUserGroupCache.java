@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestUserGroupCache {
+	private UserGroupCache cache;
+
+	@After
+	public void tearDown() {
+		if (cache != null) {
+			cache.shutdown();
+		}
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		TestLoader loader = new TestLoader();
+
+		loader.setGroups("user1", "group1");
+
+		cache = new UserGroupCache(loader, 10, 200, 100, 0);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		loader.setGroups("user1", "group2");
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+		assertEquals(1, loader.getCount("user1"));
+
+		Thread.sleep(300);
+
+		assertEquals(groups("group2"), cache.getGroups("user1"));
+		assertEquals(2, loader.getCount("user1"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testNegativeTtl() throws Exception {
+		TestLoader loader = new TestLoader();
+
+		cache = new UserGroupCache(loader, 10, 10 * 1000, 200, 0);
+
+		assertNull(cache.getGroups("user1"));
+
+		loader.setGroups("user1", "group1");
+
+		assertNull(cache.getGroups("user1"));
+		assertEquals(1, cache.getNegativeHitCount());
+
+		Thread.sleep(300);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		// a failed first lookup is cached for negativeTtlMs as well
+		loader.setFailing("user2", true);
+
+		assertNull(cache.getGroups("user2"));
+		assertNull(cache.getGroups("user2"));
+		assertEquals(1, loader.getCount("user2"));
+		assertEquals(1, cache.getLoadFailureCount());
+	}
+
+	@Test
+	public void testRefreshAhead() throws Exception {
+		TestLoader loader = new TestLoader();
+
+		loader.setGroups("user1", "group1");
+
+		cache = new UserGroupCache(loader, 10, 300, 100, 250);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		loader.setGroups("user1", "group2");
+
+		Thread.sleep(100);
+
+		// within refreshAheadMs of expiry: cached groups are returned, and reloaded in the background
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		waitForCount(loader, "user1", 2);
+
+		assertEquals(groups("group2"), cache.getGroups("user1"));
+		assertEquals(1, cache.getRefreshCount());
+	}
+
+	@Test
+	public void testRefreshFailureKeepsGroups() throws Exception {
+		TestLoader loader = new TestLoader();
+
+		loader.setGroups("user1", "group1");
+
+		cache = new UserGroupCache(loader, 10, 300, 1000, 250);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		loader.setFailing("user1", true);
+
+		Thread.sleep(100);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+
+		waitForCount(loader, "user1", 2);
+
+		// past the original expiry: groups are kept for negativeTtlMs after the failed refresh
+		Thread.sleep(300);
+
+		assertEquals(groups("group1"), cache.getGroups("user1"));
+		assertEquals(1, cache.getLoadFailureCount());
+	}
+
+	@Test
+	public void testConcurrentLoadsOfSameUser() throws Exception {
+		final TestLoader     loader  = new TestLoader();
+		final CountDownLatch release = new CountDownLatch(1);
+		final int            count   = 5;
+
+		loader.setGroups("user1", "group1");
+		loader.release = release;
+
+		cache = new UserGroupCache(loader, 10, 10 * 1000, 100, 0);
+
+		final CountDownLatch done    = new CountDownLatch(count);
+		final AtomicInteger  matched = new AtomicInteger();
+
+		for (int i = 0; i < count; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					if (groups("group1").equals(cache.getGroups("user1"))) {
+						matched.incrementAndGet();
+					}
+
+					done.countDown();
+				}
+			}.start();
+		}
+
+		waitForCount(loader, "user1", 1);
+		Thread.sleep(100); // for the other threads to wait for the load in progress
+
+		release.countDown();
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(count, matched.get());
+		assertEquals(1, loader.getCount("user1"));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		TestLoader loader = new TestLoader();
+
+		cache = new UserGroupCache(loader, 10, 10 * 1000, 10 * 1000, 0);
+
+		for (int i = 0; i < 25; i++) {
+			loader.setGroups("user" + i, "group" + i);
+
+			assertEquals(groups("group" + i), cache.getGroups("user" + i));
+			assertTrue("size=" + cache.getSize(), cache.getSize() <= 10);
+		}
+
+		assertTrue(cache.getEvictionCount() >= 15);
+
+		// evicted users are loaded again
+		for (int i = 0; i < 25; i++) {
+			assertEquals(groups("group" + i), cache.getGroups("user" + i));
+		}
+
+		assertTrue("missCount=" + cache.getMissCount(), cache.getMissCount() > 25);
+	}
+
+	private static Set<String> groups(String... groups) {
+		Set<String> ret = new HashSet<String>();
+
+		Collections.addAll(ret, groups);
+
+		return ret;
+	}
+
+	private static void waitForCount(TestLoader loader, String userName, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10 * 1000;
+
+		while (loader.getCount(userName) < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(expected, loader.getCount(userName));
+	}
+
+	static class TestLoader implements UserGroupCache.GroupsLoader {
+		final Map<String, Set<String>>                 userGroups   = new ConcurrentHashMap<String, Set<String>>();
+		final ConcurrentHashMap<String, AtomicInteger> counts       = new ConcurrentHashMap<String, AtomicInteger>();
+		final Set<String>                              failingUsers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		volatile CountDownLatch                        release;
+
+		void setGroups(String userName, String... groups) {
+			userGroups.put(userName, groups(groups));
+		}
+
+		void setFailing(String userName, boolean isFailing) {
+			if (isFailing) {
+				failingUsers.add(userName);
+			} else {
+				failingUsers.remove(userName);
+			}
+		}
+
+		int getCount(String userName) {
+			AtomicInteger count = counts.get(userName);
+
+			return count == null ? 0 : count.get();
+		}
+
+		@Override
+		public Set<String> getGroups(String userName) throws Exception {
+			counts.putIfAbsent(userName, new AtomicInteger());
+			counts.get(userName).incrementAndGet();
+
+			if (release != null) {
+				release.await(10, TimeUnit.SECONDS);
+			}
+
+			if (failingUsers.contains(userName)) {
+				throw new Exception("lookup failed for " + userName);
+			}
+
+			return userGroups.get(userName);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ranger.audit.destination.AuditDestination;
+import org.apache.ranger.audit.model.AuditEventBase;
+import org.apache.ranger.audit.model.AuthzAuditEvent;
+import org.apache.ranger.audit.provider.MultiDestAuditProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAuditBatchQueue {
+	private static final int EVENT_COUNT     = 100;
+	private static final int SLOW_QUEUE_SIZE = 10;
+
+	private CountDownLatch slowDestRelease;
+	private File           spoolDir;
+
+	@Before
+	public void setUp() {
+		slowDestRelease = new CountDownLatch(1);
+		spoolDir        = new File(System.getProperty("java.io.tmpdir"), "TestAuditBatchQueue-" + System.nanoTime());
+	}
+
+	@After
+	public void tearDown() {
+		slowDestRelease.countDown();
+		deleteRecursive(spoolDir);
+	}
+
+	@Test
+	public void testSlowDestinationDoesNotBlockOthers() throws Exception {
+		TestDestination fastDest  = new TestDestination(null);
+		TestDestination slowDest  = new TestDestination(slowDestRelease);
+		AuditBatchQueue fastQueue = createQueue("fast", fastDest, EVENT_COUNT, false);
+		AuditBatchQueue slowQueue = createQueue("slow", slowDest, SLOW_QUEUE_SIZE, false);
+
+		logAll(fastQueue, slowQueue);
+
+		waitForCount(fastDest.count, EVENT_COUNT);
+
+		assertEquals(EVENT_COUNT, fastDest.count.get());
+		assertEquals(0, fastQueue.getTotalDroppedCount());
+		assertTrue("droppedCount=" + slowQueue.getTotalDroppedCount(), slowQueue.getTotalDroppedCount() > 0);
+		assertTrue("lagMS=" + slowQueue.getLagMS(), slowQueue.getLagMS() >= 60 * 1000);
+		assertEquals(0, fastQueue.getLagMS());
+	}
+
+	@Test
+	public void testFullQueueDropsEvenWithFileSpool() throws Exception {
+		TestDestination fastDest  = new TestDestination(null);
+		TestDestination slowDest  = new TestDestination(slowDestRelease);
+		AuditBatchQueue fastQueue = createQueue("fast", fastDest, EVENT_COUNT, false);
+		AuditBatchQueue slowQueue = createQueue("slow", slowDest, SLOW_QUEUE_SIZE, true);
+
+		logAll(fastQueue, slowQueue);
+
+		waitForCount(fastDest.count, EVENT_COUNT);
+
+		long dropped = slowQueue.getTotalDroppedCount();
+
+		assertEquals(EVENT_COUNT, fastDest.count.get());
+		assertTrue("droppedCount=" + dropped, dropped > 0);
+
+		// once the destination is back, the queued events are sent
+		slowDestRelease.countDown();
+
+		waitForCount(slowDest.count, (int) (EVENT_COUNT - dropped));
+
+		assertEquals(EVENT_COUNT - dropped, slowDest.count.get());
+	}
+
+	private void logAll(AuditBatchQueue... queues) {
+		MultiDestAuditProvider multiDest = new MultiDestAuditProvider();
+
+		for (AuditBatchQueue queue : queues) {
+			multiDest.addAuditProvider(queue);
+		}
+
+		multiDest.start();
+
+		Date eventTime = new Date(System.currentTimeMillis() - 60 * 1000);
+
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			AuthzAuditEvent event = new AuthzAuditEvent();
+
+			event.setEventId("event-" + i);
+			event.setEventTime(eventTime);
+
+			multiDest.log(event);
+		}
+	}
+
+	private AuditBatchQueue createQueue(String name, TestDestination dest, int queueSize, boolean isSpoolEnabled) {
+		String     propPrefix = "xasecure.audit.destination." + name + ".batch";
+		Properties props      = new Properties();
+
+		props.setProperty(propPrefix + "." + AuditQueue.PROP_QUEUE_SIZE, String.valueOf(queueSize));
+		props.setProperty(propPrefix + "." + AuditQueue.PROP_BATCH_SIZE, "1");
+		props.setProperty(propPrefix + "." + AuditQueue.PROP_BATCH_INTERVAL, "10");
+
+		if (isSpoolEnabled) {
+			props.setProperty(propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_LOCAL_DIR, new File(spoolDir, name).getPath());
+			props.setProperty(propPrefix + "." + AuditFileSpool.PROP_FILE_SPOOL_DEST_RETRY_MS, "100");
+		}
+
+		AuditBatchQueue ret = new AuditBatchQueue(dest);
+
+		ret.init(props, propPrefix);
+
+		return ret;
+	}
+
+	private static void waitForCount(AtomicInteger count, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30 * 1000;
+
+		while (count.get() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static void deleteRecursive(File file) {
+		File[] children = file.listFiles();
+
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursive(child);
+			}
+		}
+
+		file.delete();
+	}
+
+	static class TestDestination extends AuditDestination {
+		final AtomicInteger  count = new AtomicInteger();
+		final CountDownLatch release;
+
+		TestDestination(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public boolean log(Collection<AuditEventBase> events) {
+			if (release != null) {
+				try {
+					release.await(60, TimeUnit.SECONDS);
+				} catch (InterruptedException excp) {
+					return false;
+				}
+			}
+
+			count.addAndGet(events.size());
+
+			return true;
+		}
+	}
+}
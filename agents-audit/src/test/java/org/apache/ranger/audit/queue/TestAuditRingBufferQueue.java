@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TestAuditRingBufferQueue {
+	private static final int PRODUCER_COUNT        = 4;
+	private static final int ELEMENTS_PER_PRODUCER = 50000;
+
+	@Test
+	public void testMultipleProducersNoLossOrDuplication() throws Exception {
+		final int                           capacity  = 1000;
+		final int                           maxDrain  = 100;
+		final AuditRingBufferQueue<Integer> queue     = new AuditRingBufferQueue<Integer>(capacity);
+		final CountDownLatch                start     = new CountDownLatch(1);
+		final AtomicReference<Throwable>    error     = new AtomicReference<Throwable>();
+		List<Thread>                        producers = new ArrayList<Thread>();
+
+		for (int p = 0; p < PRODUCER_COUNT; p++) {
+			final int producerId = p;
+
+			Thread producer = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+
+						for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+							queue.put(producerId * ELEMENTS_PER_PRODUCER + i);
+
+							if (queue.size() > capacity) {
+								error.compareAndSet(null, new AssertionError("size=" + queue.size()));
+							}
+						}
+					} catch (Throwable excp) {
+						error.compareAndSet(null, excp);
+					}
+				}
+			};
+
+			producer.start();
+			producers.add(producer);
+		}
+
+		int[]         received      = new int[PRODUCER_COUNT * ELEMENTS_PER_PRODUCER];
+		int[]         lastFromEach  = new int[PRODUCER_COUNT];
+		int           receivedCount = 0;
+		List<Integer> batch         = new ArrayList<Integer>();
+
+		Arrays.fill(lastFromEach, -1);
+
+		start.countDown();
+
+		long deadline = System.currentTimeMillis() + 60 * 1000;
+
+		while (receivedCount < received.length && System.currentTimeMillis() < deadline) {
+			batch.clear();
+
+			Integer first = queue.poll(100, TimeUnit.MILLISECONDS);
+
+			if (first == null) {
+				continue;
+			}
+
+			batch.add(first);
+
+			int drained = queue.drainTo(batch, maxDrain);
+
+			assertTrue("drained=" + drained, drained <= maxDrain);
+			assertEquals(drained + 1, batch.size());
+
+			for (Integer e : batch) {
+				int producerId = e / ELEMENTS_PER_PRODUCER;
+				int sequence   = e % ELEMENTS_PER_PRODUCER;
+
+				received[e]++;
+
+				// elements of each producer are received in the order they were put
+				assertTrue("element " + e + " after " + lastFromEach[producerId], sequence > lastFromEach[producerId]);
+
+				lastFromEach[producerId] = sequence;
+			}
+
+			receivedCount += batch.size();
+		}
+
+		for (Thread producer : producers) {
+			producer.join(10 * 1000);
+		}
+
+		assertNull(error.get());
+		assertEquals(received.length, receivedCount);
+
+		for (int i = 0; i < received.length; i++) {
+			assertEquals("element " + i, 1, received[i]);
+		}
+
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testCapacityAndDrainTo() {
+		AuditRingBufferQueue<Integer> queue = new AuditRingBufferQueue<Integer>(10);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.offer(i));
+		}
+
+		assertFalse(queue.offer(10));
+		assertEquals(10, queue.size());
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals(Integer.valueOf(0), queue.peek());
+
+		List<Integer> drained = new ArrayList<Integer>();
+
+		assertEquals(3, queue.drainTo(drained, 3));
+		assertEquals(Arrays.asList(0, 1, 2), drained);
+		assertEquals(7, queue.size());
+
+		// the buffer is 16 elements, but no more than capacity are accepted
+		for (int i = 10; i < 13; i++) {
+			assertTrue(queue.offer(i));
+		}
+
+		assertFalse(queue.offer(13));
+		assertEquals(0, queue.drainTo(drained, 0));
+
+		drained.clear();
+
+		assertEquals(10, queue.drainTo(drained));
+		assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8, 9, 10, 11, 12), drained);
+		assertTrue(queue.isEmpty());
+		assertEquals(10, queue.remainingCapacity());
+		assertEquals(0, queue.drainTo(drained));
+	}
+
+	@Test
+	public void testPollWithTimeout() throws Exception {
+		final AuditRingBufferQueue<Integer> queue = new AuditRingBufferQueue<Integer>(10);
+
+		long startTime = System.nanoTime();
+
+		assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+
+					queue.offer(1);
+				} catch (InterruptedException excp) {
+					// test fails on poll() below
+				}
+			}
+		};
+
+		producer.start();
+
+		startTime = System.nanoTime();
+
+		// the waiting consumer is woken up by the producer
+		assertEquals(Integer.valueOf(1), queue.poll(30, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+
+		producer.join();
+	}
+
+	@Test
+	public void testOfferWithTimeout() throws Exception {
+		AuditRingBufferQueue<Integer> queue = new AuditRingBufferQueue<Integer>(1);
+
+		assertTrue(queue.offer(1, 100, TimeUnit.MILLISECONDS));
+
+		long startTime = System.nanoTime();
+
+		assertFalse(queue.offer(2, 100, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void testInterrupt() throws Exception {
+		final AuditRingBufferQueue<Integer> queue = new AuditRingBufferQueue<Integer>(1);
+
+		assertInterrupted(new Interruptible() {
+			@Override
+			public void run() throws InterruptedException {
+				queue.take();
+			}
+		});
+
+		assertInterrupted(new Interruptible() {
+			@Override
+			public void run() throws InterruptedException {
+				queue.poll(30, TimeUnit.SECONDS);
+			}
+		});
+
+		queue.put(1);
+
+		assertInterrupted(new Interruptible() {
+			@Override
+			public void run() throws InterruptedException {
+				queue.put(2);
+			}
+		});
+
+		assertInterrupted(new Interruptible() {
+			@Override
+			public void run() throws InterruptedException {
+				queue.offer(2, 30, TimeUnit.SECONDS);
+			}
+		});
+
+		assertEquals(Integer.valueOf(1), queue.take());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new AuditRingBufferQueue<Integer>(0);
+
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException excp) {
+			// expected
+		}
+
+		AuditRingBufferQueue<Integer> queue = new AuditRingBufferQueue<Integer>(10);
+
+		try {
+			queue.offer(null);
+
+			fail("expected NullPointerException");
+		} catch (NullPointerException excp) {
+			// expected
+		}
+
+		try {
+			queue.drainTo(queue);
+
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException excp) {
+			// expected
+		}
+	}
+
+	// runs the operation in another thread, which is interrupted while the operation waits
+	private static void assertInterrupted(final Interruptible operation) throws Exception {
+		final CountDownLatch             started = new CountDownLatch(1);
+		final AtomicReference<Throwable> result  = new AtomicReference<Throwable>();
+
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				started.countDown();
+
+				try {
+					operation.run();
+				} catch (Throwable excp) {
+					result.set(excp);
+				}
+			}
+		};
+
+		thread.start();
+		started.await();
+		Thread.sleep(100);
+		thread.interrupt();
+		thread.join(10 * 1000);
+
+		assertFalse(thread.isAlive());
+		assertTrue("result=" + result.get(), result.get() instanceof InterruptedException);
+	}
+
+	interface Interruptible {
+		void run() throws InterruptedException;
+	}
+}
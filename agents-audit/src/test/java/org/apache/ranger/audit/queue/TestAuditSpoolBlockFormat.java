@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.audit.queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAuditSpoolBlockFormat {
+	private static final int BLOCK_SIZE   = 1024;
+	private static final int RECORD_COUNT = 200;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("TestAuditSpoolBlockFormat-", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		List<String> records = createRecords(RECORD_COUNT);
+
+		records.add("");
+		records.add("{\"reqUser\":\"üser\"}");
+		records.add(createRecord(0, 3 * BLOCK_SIZE)); // larger than the block size
+
+		write(records, false);
+
+		assertEquals(records, read(file));
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		List<String> records = createRecords(RECORD_COUNT);
+
+		write(records.subList(0, 50), false);
+		write(records.subList(50, RECORD_COUNT), true);
+
+		assertEquals(records, read(file));
+	}
+
+	@Test
+	public void testResumeAtLinePosition() throws IOException {
+		List<String> records = createRecords(RECORD_COUNT);
+
+		write(records, false);
+
+		for (int linePosition : new int[] { 1, 2, 57, RECORD_COUNT, RECORD_COUNT + 1 }) {
+			// same as AuditFileSpool: skip whole blocks, then the lines before linePosition
+			AuditSpoolBlockReader reader = new AuditSpoolBlockReader(file);
+			BufferedReader        br     = new BufferedReader(reader);
+			List<String>          actual = new ArrayList<String>();
+
+			try {
+				int skipped  = reader.skipRecords(linePosition - 1);
+				int currLine = skipped;
+
+				assertTrue("skipped=" + skipped, skipped <= linePosition - 1);
+
+				for (String line = br.readLine(); line != null; line = br.readLine()) {
+					currLine++;
+
+					if (currLine >= linePosition) {
+						actual.add(line);
+					}
+				}
+			} finally {
+				br.close();
+			}
+
+			assertEquals("linePosition=" + linePosition, records.subList(Math.min(linePosition - 1, RECORD_COUNT), RECORD_COUNT), actual);
+		}
+	}
+
+	@Test
+	public void testTruncatedTail() throws IOException {
+		List<String> records = createRecords(RECORD_COUNT);
+
+		write(records.subList(0, 100), false);
+
+		long validLength = file.length();
+
+		write(records.subList(100, RECORD_COUNT), true);
+
+		// process stopped while writing the last block
+		for (long length : new long[] { validLength + 10, file.length() - 1 }) {
+			setLength(length);
+
+			assertEquals(records.subList(0, 100), read(file));
+			assertEquals(validLength, AuditSpoolBlockReader.getValidLength(file));
+		}
+
+		// append discards the incomplete block
+		write(records.subList(100, RECORD_COUNT), true);
+
+		assertEquals(records, read(file));
+	}
+
+	@Test
+	public void testCorruptedBlock() throws IOException {
+		List<String> records = createRecords(RECORD_COUNT);
+
+		write(records.subList(0, 100), false);
+
+		long secondBlockOffset = file.length();
+
+		write(records.subList(100, RECORD_COUNT), true);
+
+		// each field of the header of the second block, and its data
+		int[] offsets = { 0, 4, 8, 12, 16, 24, AuditSpoolBlockWriter.BLOCK_HEADER_LENGTH + 1 };
+
+		for (int offset : offsets) {
+			byte[] original = corrupt(secondBlockOffset + offset);
+
+			// rest of the file is lost, without an error to the caller
+			assertEquals("offset=" + offset, records.subList(0, 100), read(file));
+
+			// record count in a corrupted header isn't trusted
+			if (offset < AuditSpoolBlockWriter.BLOCK_HEADER_LENGTH) {
+				AuditSpoolBlockReader reader = new AuditSpoolBlockReader(file);
+
+				try {
+					assertEquals("offset=" + offset, 100, reader.skipRecords(Integer.MAX_VALUE));
+				} finally {
+					reader.close();
+				}
+			}
+
+			restore(secondBlockOffset + offset, original);
+		}
+
+		assertEquals(records, read(file));
+	}
+
+	private void write(List<String> records, boolean append) throws IOException {
+		AuditSpoolBlockWriter writer = new AuditSpoolBlockWriter(file, append, BLOCK_SIZE);
+
+		try {
+			for (String record : records) {
+				writer.write(record);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static List<String> read(File file) throws IOException {
+		List<String>          ret    = new ArrayList<String>();
+		AuditSpoolBlockReader reader = new AuditSpoolBlockReader(file);
+		BufferedReader        br     = new BufferedReader(reader);
+
+		try {
+			for (String line = br.readLine(); line != null; line = br.readLine()) {
+				ret.add(line);
+			}
+		} finally {
+			br.close();
+		}
+
+		return ret;
+	}
+
+	private static List<String> createRecords(int count) {
+		List<String> ret = new ArrayList<String>();
+
+		for (int i = 0; i < count; i++) {
+			ret.add(createRecord(i, 50));
+		}
+
+		return ret;
+	}
+
+	private static String createRecord(int id, int length) {
+		StringBuilder sb = new StringBuilder("{\"id\":\"event-" + id + "\",\"data\":\"");
+
+		for (int i = 0; sb.length() < length; i++) {
+			sb.append((char) ('a' + (i * 7 + id) % 26));
+		}
+
+		return sb.append("\"}").toString();
+	}
+
+	private void setLength(long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private byte[] corrupt(long offset) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+		try {
+			byte[] ret = new byte[1];
+
+			raf.seek(offset);
+			raf.readFully(ret);
+			raf.seek(offset);
+			raf.write(ret[0] ^ 0x10);
+
+			return ret;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void restore(long offset, byte[] original) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+		try {
+			raf.seek(offset);
+			raf.write(original);
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -23,6 +23,7 @@
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.GenericType;
 import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,6 +44,15 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 	private String           pluginId    = null;
 	private RangerRESTClient restClient  = null;
 	private RangerRESTUtils  restUtils   = new RangerRESTUtils();
+	private boolean          supportsPolicyDeltas = false;
+	private boolean          supportsTagDeltas    = false;
+	private boolean          isLongPollEnabled    = true;
+	private long             longPollWaitMs       = 60 * 1000;
+	private int              restClientReadTimeOutMs;
+
+	// wait supported by ranger-admin for the download; -1 when ranger-admin doesn't support long-poll
+	private volatile long policyLongPollMaxWaitMs = -1;
+	private volatile long tagLongPollMaxWaitMs    = -1;
 
 
 	public RangerAdminRESTClient() {
@@ -77,6 +87,11 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		int	 restClientConnTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.connection.timeoutMs", 120 * 1000);
 		int	 restClientReadTimeOutMs	= RangerConfiguration.getInstance().getInt(propertyPrefix + ".policy.rest.client.read.timeoutMs", 30 * 1000);
 
+		supportsPolicyDeltas = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.supports.policy.deltas", false);
+		supportsTagDeltas    = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.supports.tag.deltas", false);
+		isLongPollEnabled    = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.longpoll.enabled", true);
+		longPollWaitMs       = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.rest.longpoll.wait.ms", 60 * 1000);
+
 		init(url, sslConfigFileName, restClientConnTimeOutMs , restClientReadTimeOutMs);
 	}
 
@@ -91,7 +106,25 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		WebResource webResource = createWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED + serviceName)
 										.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
 										.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
-		ClientResponse response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
+
+		// the response can then have only the policies changed since lastKnownVersion; see ServicePolicies.applyDelta()
+		if(supportsPolicyDeltas && lastKnownVersion >= 0) {
+			webResource = webResource.queryParam(RangerRESTUtils.REST_PARAM_SUPPORTS_POLICY_DELTAS, Boolean.TRUE.toString());
+		}
+
+		webResource = addLongPollWait(webResource, lastKnownVersion, policyLongPollMaxWaitMs);
+
+		WebResource.Builder builder = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON);
+
+		if(lastKnownVersion >= 0) {
+			builder = builder.header(RangerRESTUtils.REST_HEADER_IF_NONE_MATCH, "\"" + lastKnownVersion + "\"");
+		}
+
+		policyLongPollMaxWaitMs = -1; // until a successful response from ranger-admin
+
+		ClientResponse response = builder.get(ClientResponse.class);
+
+		policyLongPollMaxWaitMs = getLongPollMaxWaitMs(response);
 
 		if(response != null && response.getStatus() == 200) {
 			ret = response.getEntity(ServicePolicies.class);
@@ -224,6 +257,8 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 			LOG.debug("==> RangerAdminRESTClient.init(" + url + ", " + sslConfigFileName + ")");
 		}
 
+		this.restClientReadTimeOutMs = restClientReadTimeOutMs;
+
 		restClient = new RangerRESTClient(url, sslConfigFileName);
 		restClient.setRestClientConnTimeOutMs(restClientConnTimeOutMs);
 		restClient.setRestClientReadTimeOutMs(restClientReadTimeOutMs);
@@ -239,6 +274,51 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		return ret;
 	}
 
+	// true if getServicePoliciesIfUpdated() waits at ranger-admin for policies to change; the caller can then
+	// call it again without waiting for its polling interval
+	public boolean isLongPollingPolicies() {
+		return isLongPollEnabled && policyLongPollMaxWaitMs > 0;
+	}
+
+	// true if getServiceTagsIfUpdated() waits at ranger-admin for tags to change
+	public boolean isLongPollingTags() {
+		return isLongPollEnabled && tagLongPollMaxWaitMs > 0;
+	}
+
+	// asks ranger-admin to hold the request until a change past lastKnownVersion; read timeout is extended by the wait
+	private WebResource addLongPollWait(WebResource webResource, long lastKnownVersion, long adminMaxWaitMs) {
+		WebResource ret = webResource;
+
+		if(isLongPollEnabled && adminMaxWaitMs > 0 && lastKnownVersion >= 0) {
+			long waitMs = Math.min(longPollWaitMs, adminMaxWaitMs);
+
+			ret = webResource.queryParam(RangerRESTUtils.REST_PARAM_LONG_POLL_WAIT_MS, Long.toString(waitMs));
+
+			ret.setProperty(ClientConfig.PROPERTY_READ_TIMEOUT, (int) (waitMs + restClientReadTimeOutMs));
+		}
+
+		return ret;
+	}
+
+	private long getLongPollMaxWaitMs(ClientResponse response) {
+		long   ret    = -1;
+		String header = null;
+
+		if(response != null && (response.getStatus() == 200 || response.getStatus() == 304)) {
+			header = response.getHeaders().getFirst(RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS);
+		}
+
+		if(header != null) {
+			try {
+				ret = Long.parseLong(header.trim());
+			} catch(NumberFormatException excp) {
+				LOG.warn("invalid value in response header " + RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS + ": " + header);
+			}
+		}
+
+		return ret;
+	}
+
 	@Override
 	public ServiceTags getServiceTagsIfUpdated(long lastKnownVersion) throws Exception {
 		if(LOG.isDebugEnabled()) {
@@ -251,8 +331,19 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 				.queryParam(RangerRESTUtils.LAST_KNOWN_TAG_VERSION_PARAM, Long.toString(lastKnownVersion))
 				.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
 
+		// the response can then have only the tags and resources changed since lastKnownVersion; see ServiceTags.applyDelta()
+		if(supportsTagDeltas && lastKnownVersion >= 0) {
+			webResource = webResource.queryParam(RangerRESTUtils.REST_PARAM_SUPPORTS_TAG_DELTAS, Boolean.TRUE.toString());
+		}
+
+		webResource = addLongPollWait(webResource, lastKnownVersion, tagLongPollMaxWaitMs);
+
+		tagLongPollMaxWaitMs = -1; // until a successful response from ranger-admin
+
 		ClientResponse response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
 
+		tagLongPollMaxWaitMs = getLongPollMaxWaitMs(response);
+
 		if(response != null && response.getStatus() == 200) {
 			ret = response.getEntity(ServiceTags.class);
 		} else if(response != null && response.getStatus() == 304) {
@@ -24,19 +24,59 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.util.RangerPerfTracer;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerScriptConditionEvaluator.class);
 
-	private ScriptEngine scriptEngine;
+	private static final Log PERF_SCRIPT_CONDITION_REQUEST_LOG = RangerPerfTracer.getPerfLogger("policycondition.script.request");
+
+	public static final String OPTION_ENGINE_NAME    = "engineName";
+	public static final String OPTION_TIMEOUT_MS     = "timeoutMs";
+	public static final String OPTION_ENABLE_SANDBOX = "enableSandbox";
+
+	public static final String PROP_TIMEOUT_MS          = "ranger.plugin.script.condition.timeout.ms";
+	public static final String PROP_ENABLE_SANDBOX      = "ranger.plugin.script.condition.sandbox.enabled";
+	public static final String PROP_TIMEOUT_MAX_THREADS = "ranger.plugin.script.condition.timeout.max.threads";
+
+	private static final String   NASHORN_FACTORY_CLASSNAME = "jdk.nashorn.api.scripting.NashornScriptEngineFactory";
+	private static final String[] NASHORN_SANDBOX_ARGS      = new String[] { "--no-java" }; // removes Java, Packages, java, javax.. from scripts
+
+	private static volatile TimeoutExecutor timeoutExecutor = null;
+
+	private ScriptEngine   scriptEngine;
+	private CompiledScript compiledScript;
+	private long           timeoutMs    = 0;
+	private boolean        isInitFailed = false;
+
+	private final AtomicLong evalCount      = new AtomicLong();
+	private final AtomicLong evalTimeNanos  = new AtomicLong();
+	private final AtomicLong maxEvalNanos   = new AtomicLong();
+	private final AtomicLong errorCount     = new AtomicLong();
+	private final AtomicLong timeoutCount   = new AtomicLong();
 
 	@Override
 	public void init() {
@@ -52,24 +92,49 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 		Map<String, String> evalOptions = conditionDef. getEvaluatorOptions();
 
 		if (MapUtils.isNotEmpty(evalOptions)) {
-			engineName = evalOptions.get("engineName");
+			engineName = evalOptions.get(OPTION_ENGINE_NAME);
 		}
 
 		if (StringUtils.isBlank(engineName)) {
 			engineName = "JavaScript";
 		}
 
+		RangerConfiguration config = RangerConfiguration.getInstance();
+
+		boolean enableSandbox = Boolean.parseBoolean(MapUtils.getString(evalOptions, OPTION_ENABLE_SANDBOX, Boolean.toString(config.getBoolean(PROP_ENABLE_SANDBOX, false))));
+
+		timeoutMs = MapUtils.getLongValue(evalOptions, OPTION_TIMEOUT_MS, config.getLong(PROP_TIMEOUT_MS, 0));
+
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("RangerScriptConditionEvaluator.init() - engineName=" + engineName);
+			LOG.debug("RangerScriptConditionEvaluator.init() - engineName=" + engineName + ", enableSandbox=" + enableSandbox + ", timeoutMs=" + timeoutMs);
 		}
 
 		try {
 			ScriptEngineManager manager = new ScriptEngineManager();
-			scriptEngine = manager.getEngineByName(engineName);
+			scriptEngine = enableSandbox ? getSandboxedEngine(manager, engineName) : manager.getEngineByName(engineName);
 		} catch (Exception exp) {
 			LOG.error("RangerScriptConditionEvaluator.init() failed with exception=" + exp);
 		}
 
+		if (scriptEngine == null) {
+			// with enableSandbox, don't fall back to an engine without the sandbox; scripts are not evaluated
+			isInitFailed = true;
+
+			LOG.error("RangerScriptConditionEvaluator.init(): script engine " + engineName + (enableSandbox ? " with sandbox" : "") + " is not available. Condition will evaluate to true, condition=" + condition);
+		}
+
+		if (scriptEngine != null) {
+			String script = getScript();
+
+			if (StringUtils.isNotBlank(script) && scriptEngine instanceof Compilable) {
+				try {
+					compiledScript = ((Compilable) scriptEngine).compile(script);
+				} catch (ScriptException exception) {
+					LOG.error("RangerScriptConditionEvaluator.init(): failed to compile script, will be evaluated for each request. exception=" + exception);
+				}
+			}
+		}
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerScriptConditionEvaluator.init(" + condition + ")");
 		}
@@ -82,26 +147,40 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 		}
 		boolean result = true;
 
-		if (scriptEngine != null) {
+		final String script = getScript();
 
-			String script = getScript();
+		if (isInitFailed) {
+			if (StringUtils.isNotBlank(script)) {
+				errorCount.incrementAndGet();
+			}
+		} else {
 
 			if (StringUtils.isNotBlank(script)) {
 
 				RangerAccessRequest readOnlyRequest = request.getReadOnlyCopy();
 
-				RangerScriptExecutionContext context = new RangerScriptExecutionContext(readOnlyRequest);
-
-				Bindings bindings = scriptEngine.createBindings();
-
-				bindings.put("ctx", context);
+				final RangerScriptExecutionContext context = new RangerScriptExecutionContext(readOnlyRequest);
 
 				if (LOG.isDebugEnabled()) {
 					LOG.debug("RangerScriptConditionEvaluator.isMatched(): script={" + script + "}");
 				}
+
+				RangerPerfTracer perf = null;
+
+				if (RangerPerfTracer.isPerfTraceEnabled(PERF_SCRIPT_CONDITION_REQUEST_LOG)) {
+					perf = RangerPerfTracer.getPerfTracer(PERF_SCRIPT_CONDITION_REQUEST_LOG, "RangerScriptConditionEvaluator.isMatched(conditionType=" + condition.getType() + ")");
+				}
+
+				long startTime = System.nanoTime();
+
 				try {
+					Object ret;
 
-					Object ret = scriptEngine.eval(script, bindings);
+					if (timeoutMs > 0) {
+						ret = evaluateWithTimeout(script, context);
+					} else {
+						ret = evaluate(script, context);
+					}
 
 					if (ret == null) {
 						ret = context.getResult();
@@ -111,12 +190,24 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 					}
 
 				} catch (NullPointerException nullp) {
+					errorCount.incrementAndGet();
+
 					LOG.error("RangerScriptConditionEvaluator.isMatched(): eval called with NULL argument(s)");
 
 				} catch (ScriptException exception) {
+					errorCount.incrementAndGet();
+
 					LOG.error("RangerScriptConditionEvaluator.isMatched(): failed to evaluate script," +
 							" exception=" + exception);
+				} catch (TimeoutException exception) {
+					timeoutCount.incrementAndGet();
+
+					LOG.error("RangerScriptConditionEvaluator.isMatched(): script evaluation did not complete in " + timeoutMs + "ms, script={" + script + "}");
 				}
+
+				updateMetrics(System.nanoTime() - startTime);
+
+				RangerPerfTracer.log(perf);
 			}
 
 		}
@@ -129,6 +220,233 @@ public class RangerScriptConditionEvaluator extends RangerAbstractConditionEvalu
 
 	}
 
+	public long getEvalCount() { return evalCount.get(); }
+
+	public long getEvalTimeNanos() { return evalTimeNanos.get(); }
+
+	public long getMaxEvalTimeNanos() { return maxEvalNanos.get(); }
+
+	public long getErrorCount() { return errorCount.get(); }
+
+	public long getTimeoutCount() { return timeoutCount.get(); }
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("RangerScriptConditionEvaluator={");
+		sb.append("condition={").append(condition).append("} ");
+		sb.append("isCompiled={").append(compiledScript != null).append("} ");
+		sb.append("timeoutMs={").append(timeoutMs).append("} ");
+		sb.append("isInitFailed={").append(isInitFailed).append("} ");
+		sb.append("evalCount={").append(getEvalCount()).append("} ");
+		sb.append("evalTimeNanos={").append(getEvalTimeNanos()).append("} ");
+		sb.append("maxEvalTimeNanos={").append(getMaxEvalTimeNanos()).append("} ");
+		sb.append("errorCount={").append(getErrorCount()).append("} ");
+		sb.append("timeoutCount={").append(getTimeoutCount()).append("} ");
+		sb.append("}");
+
+		return sb.toString();
+	}
+
+	// new bindings for each request, so that globals set by the script don't carry over to the next request
+	private Object evaluate(String script, RangerScriptExecutionContext context) throws ScriptException {
+		Bindings bindings = scriptEngine.createBindings();
+
+		bindings.put("ctx", context);
+
+		return compiledScript != null ? compiledScript.eval(bindings) : scriptEngine.eval(script, bindings);
+	}
+
+	private Object evaluateWithTimeout(final String script, final RangerScriptExecutionContext context) throws ScriptException, TimeoutException {
+		final TimeoutExecutor executor = getTimeoutExecutor();
+		final ScriptTask      task     = new ScriptTask(executor);
+		Future<Object>        future;
+
+		try {
+			future = executor.executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					if (!task.start()) {
+						return null;
+					}
+
+					try {
+						return evaluate(script, context);
+					} finally {
+						task.finish();
+					}
+				}
+			});
+		} catch (RejectedExecutionException excp) { // all threads are busy, possibly with scripts that didn't complete
+			retireTimeoutExecutor(executor);
+
+			throw new TimeoutException("no thread available to evaluate script");
+		}
+
+		try {
+			return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException excp) {
+			future.cancel(true);
+			task.timedOut();
+
+			throw excp;
+		} catch (InterruptedException excp) {
+			future.cancel(true);
+			task.timedOut();
+
+			Thread.currentThread().interrupt();
+
+			throw new TimeoutException("interrupted while waiting for script evaluation");
+		} catch (ExecutionException excp) {
+			Throwable cause = excp.getCause();
+
+			if (cause instanceof ScriptException) {
+				throw (ScriptException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new ScriptException(String.valueOf(cause));
+		}
+	}
+
+	private void updateMetrics(long elapsedNanos) {
+		evalCount.incrementAndGet();
+		evalTimeNanos.addAndGet(elapsedNanos);
+
+		for (long max = maxEvalNanos.get(); elapsedNanos > max; max = maxEvalNanos.get()) {
+			if (maxEvalNanos.compareAndSet(max, elapsedNanos)) {
+				break;
+			}
+		}
+	}
+
+	static int getTimeoutExecutorActiveCount() {
+		TimeoutExecutor executor = timeoutExecutor;
+
+		return executor == null ? 0 : executor.executor.getActiveCount();
+	}
+
+	static void shutdownTimeoutExecutor() {
+		synchronized (RangerScriptConditionEvaluator.class) {
+			if (timeoutExecutor != null) {
+				timeoutExecutor.executor.shutdown();
+
+				timeoutExecutor = null;
+			}
+		}
+	}
+
+	/*
+	 * Script engines don't check for interrupts, so Future.cancel() doesn't stop a script that doesn't complete, like
+	 * one in an endless loop; such a script holds its pool thread until it completes. Threads are not stopped, as that
+	 * could leave the script engine shared by the threads in an inconsistent state. Instead, once the pool has no thread
+	 * left because of such scripts, it is replaced with a new one; see retireTimeoutExecutor().
+	 */
+	private static class TimeoutExecutor {
+		final ThreadPoolExecutor executor;
+		final AtomicInteger      hungCount = new AtomicInteger(); // scripts that timed out and are still running
+
+		TimeoutExecutor(ThreadPoolExecutor executor) {
+			this.executor = executor;
+		}
+	}
+
+	private static class ScriptTask {
+		private static final int NEW       = 0;
+		private static final int RUNNING   = 1;
+		private static final int FINISHED  = 2;
+		private static final int TIMED_OUT = 3;
+
+		private final TimeoutExecutor executor;
+		private final AtomicInteger   state = new AtomicInteger(NEW);
+
+		ScriptTask(TimeoutExecutor executor) {
+			this.executor = executor;
+		}
+
+		boolean start() {
+			return state.compareAndSet(NEW, RUNNING);
+		}
+
+		void finish() {
+			if (!state.compareAndSet(RUNNING, FINISHED)) { // timed out, while running
+				executor.hungCount.decrementAndGet();
+			}
+		}
+
+		// a task that didn't start will not run; one that is running holds its thread until the script completes
+		void timedOut() {
+			if (!state.compareAndSet(NEW, TIMED_OUT) && state.compareAndSet(RUNNING, TIMED_OUT)) {
+				executor.hungCount.incrementAndGet();
+			}
+		}
+	}
+
+	private static ScriptEngine getSandboxedEngine(ScriptEngineManager manager, String engineName) throws Exception {
+		ScriptEngine ret = null;
+
+		ScriptEngine engine = manager.getEngineByName(engineName);
+
+		if (engine != null) {
+			ScriptEngineFactory factory = engine.getFactory();
+
+			if (factory != null && NASHORN_FACTORY_CLASSNAME.equals(factory.getClass().getName())) {
+				// Nashorn API is not referred to directly, so that this compiles and runs on JDKs without it
+				ret = (ScriptEngine) factory.getClass().getMethod("getScriptEngine", String[].class).invoke(factory, (Object) NASHORN_SANDBOX_ARGS);
+			} else {
+				LOG.error("RangerScriptConditionEvaluator: sandbox is not supported for script engine " + engineName + "; scripts will not be evaluated");
+			}
+		}
+
+		return ret;
+	}
+
+	private static TimeoutExecutor getTimeoutExecutor() {
+		TimeoutExecutor ret = timeoutExecutor;
+
+		if (ret == null) {
+			synchronized (RangerScriptConditionEvaluator.class) {
+				ret = timeoutExecutor;
+
+				if (ret == null) {
+					int maxThreads = RangerConfiguration.getInstance().getInt(PROP_TIMEOUT_MAX_THREADS, 32);
+
+					ret = new TimeoutExecutor(new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+						private final AtomicInteger threadCount = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "ranger-script-condition-" + threadCount.incrementAndGet());
+
+							t.setDaemon(true);
+
+							return t;
+						}
+					}));
+
+					timeoutExecutor = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	// replaces a full pool if any of its threads is held by a script that timed out; the old pool's threads exit as their scripts complete
+	private static void retireTimeoutExecutor(TimeoutExecutor executor) {
+		synchronized (RangerScriptConditionEvaluator.class) {
+			if (timeoutExecutor == executor && executor.hungCount.get() > 0) {
+				LOG.error("RangerScriptConditionEvaluator: " + executor.hungCount.get() + " scripts that timed out are still running; replacing the script evaluation thread pool");
+
+				executor.executor.shutdown();
+
+				timeoutExecutor = null;
+			}
+		}
+	}
+
 	protected String getScript() {
 		String ret = null;
 
@@ -39,8 +39,6 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			LOG.debug("==> RangerScriptTemplateConditionEvaluator.init(" + condition + ")");
 		}
 
-		super.init();
-
 		if(CollectionUtils.isNotEmpty(condition.getValues())) {
 			String expectedScriptReturn = condition.getValues().get(0);
 
@@ -57,6 +55,8 @@ public class RangerScriptTemplateConditionEvaluator extends RangerScriptConditio
 			}
 		}
 
+		super.init(); // after the script is set, so that it gets compiled
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerScriptTemplateConditionEvaluator.init(" + condition + "): script=" + script + "; reverseResult=" + reverseResult);
 		}
@@ -23,6 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.RangerAdminClient;
+import org.apache.ranger.admin.client.RangerAdminRESTClient;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 import org.apache.ranger.plugin.util.ServiceTags;
 
@@ -68,5 +69,10 @@ public class RangerAdminTagRetriever extends RangerTagRetriever {
 		return serviceTags;
 	}
 
+	@Override
+	public boolean isLongPolling() {
+		return adminClient instanceof RangerAdminRESTClient && ((RangerAdminRESTClient) adminClient).isLongPollingTags();
+	}
+
 }
 
@@ -19,44 +19,57 @@
 
 package org.apache.ranger.plugin.contextenricher;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
 import org.apache.ranger.plugin.model.RangerServiceResource;
 import org.apache.ranger.plugin.model.RangerTag;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 import org.apache.ranger.plugin.policyresourcematcher.RangerDefaultPolicyResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.RangerCacheFile;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerResourceTrie;
 import org.apache.ranger.plugin.util.ServiceTags;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerTagEnricher extends RangerAbstractContextEnricher {
 	private static final Log LOG = LogFactory.getLog(RangerTagEnricher.class);
 
 	private static final Log PERF_CONTEXTENRICHER_INIT_LOG = RangerPerfTracer.getPerfLogger("contextenricher.init");
+	private static final Log PERF_TRIE_INIT_LOG            = RangerPerfTracer.getPerfLogger("resourcetrie.init");
+	private static final Log PERF_TRIE_LOOKUP_LOG          = RangerPerfTracer.getPerfLogger("resourcetrie.lookup");
 
 	public static final String TAG_REFRESHER_POLLINGINTERVAL_OPTION = "tagRefresherPollingInterval";
 
 	public static final String TAG_RETRIEVER_CLASSNAME_OPTION = "tagRetrieverClassName";
 
+	public static final String DISABLE_TRIE_LOOKUP_PREFILTER_OPTION = "disableTrieLookupPrefilter";
+
 	private RangerTagRefresher tagRefresher = null;
 
 	private RangerTagRetriever tagRetriever = null;
 
-	ServiceTags serviceTags = null;
+	private volatile EnrichedServiceTags enrichedServiceTags = null;
+
+	private boolean disableTrieLookupPrefilter = false;
 
-	List<RangerServiceResourceMatcher> serviceResourceMatchers;
+	private final AtomicLong serviceTagsGeneration = new AtomicLong();
 
 	@Override
 	public void init() {
@@ -70,6 +83,8 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 
 		long pollingIntervalMs = getLongOption(TAG_REFRESHER_POLLINGINTERVAL_OPTION, 60 * 1000);
 
+		disableTrieLookupPrefilter = getBooleanOption(DISABLE_TRIE_LOOKUP_PREFILTER_OPTION, false);
+
 		if (StringUtils.isNotBlank(tagRetrieverClassName)) {
 
 			try {
@@ -96,12 +111,13 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 				cacheFilename = cacheFilename.replace(File.pathSeparatorChar,  '_');
 
 				String cacheFile = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename);
+				boolean isBinaryCache = RangerCacheFile.isBinaryFormat(RangerConfiguration.getInstance().get(propertyPrefix + ".policy.cache.format", RangerCacheFile.FORMAT_JSON));
 				tagRetriever.setServiceName(serviceName);
 				tagRetriever.setServiceDef(serviceDef);
 				tagRetriever.setAppId(appId);
 				tagRetriever.init(enricherDef.getEnricherOptions());
 
-				tagRefresher = new RangerTagRefresher(tagRetriever, this, -1L, cacheFile, pollingIntervalMs);
+				tagRefresher = new RangerTagRefresher(tagRetriever, this, -1L, cacheFile, isBinaryCache, pollingIntervalMs);
 
 				try {
 					tagRefresher.populateTags();
@@ -126,9 +142,13 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 			LOG.debug("==> RangerTagEnricher.enrich(" + request + ")");
 		}
 
+		// read the generation before the tags, so that a concurrent setServiceTags() can only make it look older
+		long tagsGeneration = serviceTagsGeneration.get();
+
 		List<RangerTag> matchedTags = findMatchingTags(request.getResource());
 
 		RangerAccessRequestUtil.setRequestTagsInContext(request.getContext(), matchedTags);
+		RangerAccessRequestUtil.setRequestTagsGenerationInContext(request.getContext(), tagsGeneration);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerTagEnricher.enrich(" + request + "): tags count=" + (matchedTags == null ? 0 : matchedTags.size()));
@@ -142,28 +162,66 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		List<RangerServiceResource> serviceResources = serviceTags.getServiceResources();
 
 		if (CollectionUtils.isNotEmpty(serviceResources)) {
+			// service-resources not changed by a delta are the same instances as in the current service-tags; reuse their matchers
+			Map<RangerServiceResource, RangerServiceResourceMatcher> currentMatchers = getCurrentMatchers();
+
+			int reusedMatcherCount = 0;
 
 			for (RangerServiceResource serviceResource : serviceResources) {
-				RangerDefaultPolicyResourceMatcher matcher = new RangerDefaultPolicyResourceMatcher();
+				RangerServiceResourceMatcher serviceResourceMatcher = currentMatchers.get(serviceResource);
 
-				matcher.setServiceDef(this.serviceDef);
-				matcher.setPolicyResources(serviceResource.getResourceElements());
+				if (serviceResourceMatcher != null) {
+					reusedMatcherCount++;
+				} else {
+					RangerDefaultPolicyResourceMatcher matcher = new RangerDefaultPolicyResourceMatcher();
 
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("RangerTagEnricher.setServiceTags() - Initializing matcher with (resource=" + serviceResource
-							+ ", serviceDef=" + this.serviceDef.getName() + ")");
+					matcher.setServiceDef(this.serviceDef);
+					matcher.setPolicyResources(serviceResource.getResourceElements());
 
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("RangerTagEnricher.setServiceTags() - Initializing matcher with (resource=" + serviceResource
+								+ ", serviceDef=" + this.serviceDef.getName() + ")");
+
+					}
+					matcher.init();
+
+					serviceResourceMatcher = new RangerServiceResourceMatcher(serviceResource, matcher);
 				}
-				matcher.init();
 
-				RangerServiceResourceMatcher serviceResourceMatcher = new RangerServiceResourceMatcher(serviceResource, matcher);
 				resourceMatchers.add(serviceResourceMatcher);
 			}
 
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerTagEnricher.setServiceTags(): serviceResourceCount=" + serviceResources.size() + ", reusedMatcherCount=" + reusedMatcherCount);
+			}
 		}
 
-		this.serviceResourceMatchers = resourceMatchers;
-		this.serviceTags = serviceTags;
+		Map<String, RangerResourceTrie> serviceResourceTrie = disableTrieLookupPrefilter ? null : createResourceTrieMap(resourceMatchers);
+
+		this.enrichedServiceTags = new EnrichedServiceTags(serviceTags, resourceMatchers, serviceResourceTrie);
+
+		serviceTagsGeneration.incrementAndGet();
+	}
+
+	private Map<RangerServiceResource, RangerServiceResourceMatcher> getCurrentMatchers() {
+		Map<RangerServiceResource, RangerServiceResourceMatcher> ret = new IdentityHashMap<RangerServiceResource, RangerServiceResourceMatcher>();
+
+		final EnrichedServiceTags enrichedServiceTags = this.enrichedServiceTags;
+
+		if (enrichedServiceTags != null) {
+			for (RangerServiceResourceMatcher serviceResourceMatcher : enrichedServiceTags.serviceResourceMatchers) {
+				ret.put(serviceResourceMatcher.getServiceResource(), serviceResourceMatcher);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return a counter that is incremented every time service-tags are replaced; used to invalidate results cached with older tags
+	 */
+	public long getServiceTagsGeneration() {
+		return serviceTagsGeneration.get();
 	}
 
 	@Override
@@ -191,22 +249,25 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		}
 
 		List<RangerTag> ret = null;
-		final List<RangerServiceResourceMatcher> serviceResourceMatchers = this.serviceResourceMatchers;
+		final EnrichedServiceTags enrichedServiceTags = this.enrichedServiceTags;
 
-		if (CollectionUtils.isNotEmpty(serviceResourceMatchers)) {
+		if (enrichedServiceTags != null) {
+			final List<RangerServiceResourceMatcher> serviceResourceMatchers = getEvaluators(enrichedServiceTags, resource);
 
-			final ServiceTags serviceTags = this.serviceTags;
+			if (CollectionUtils.isNotEmpty(serviceResourceMatchers)) {
+				final ServiceTags serviceTags = enrichedServiceTags.serviceTags;
 
-			for (RangerServiceResourceMatcher resourceMatcher : serviceResourceMatchers) {
+				for (RangerServiceResourceMatcher resourceMatcher : serviceResourceMatchers) {
 
-				boolean matchResult = resourceMatcher.isMatch(resource);
+					boolean matchResult = resourceMatcher.isMatch(resource);
 
-				if (matchResult) {
-					if (ret == null) {
-						ret = new ArrayList<RangerTag>();
+					if (matchResult) {
+						if (ret == null) {
+							ret = new ArrayList<RangerTag>();
+						}
+						// Find tags from serviceResource
+						ret.addAll(getTagsForServiceResource(serviceTags, resourceMatcher.getServiceResource()));
 					}
-					// Find tags from serviceResource
-					ret.addAll(getTagsForServiceResource(serviceTags, resourceMatcher.getServiceResource()));
 				}
 			}
 		}
@@ -226,6 +287,108 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		return ret;
 	}
 
+	/*
+	 * Returns the matchers of service-resources that might match the given resource, using the resource-trie; the
+	 * returned matchers still need to be evaluated, but service-resources not returned are guaranteed not to match.
+	 */
+	private List<RangerServiceResourceMatcher> getEvaluators(EnrichedServiceTags enrichedServiceTags, RangerAccessResource resource) {
+		final List<RangerServiceResourceMatcher> serviceResourceMatchers = enrichedServiceTags.serviceResourceMatchers;
+		final Map<String, RangerResourceTrie>    serviceResourceTrie     = enrichedServiceTags.serviceResourceTrie;
+
+		if (MapUtils.isEmpty(serviceResourceTrie) || resource == null || CollectionUtils.isEmpty(serviceResourceMatchers)) {
+			return serviceResourceMatchers;
+		}
+
+		RangerPerfTracer perf = null;
+
+		if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_LOOKUP_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_LOOKUP_LOG, "RangerTagEnricher.getEvaluators(resource=" + resource.getAsString() + ")");
+		}
+
+		BitSet candidates = null;
+
+		for (Map.Entry<String, RangerResourceTrie> entry : serviceResourceTrie.entrySet()) {
+			String resourceValue = resource.getValue(entry.getKey());
+
+			// no filtering when all values are requested at this level; service-resources are matched as usual by the matchers
+			if (StringUtils.isEmpty(resourceValue) || RangerAbstractResourceMatcher.WILDCARD_ASTERISK.equals(resourceValue)) {
+				continue;
+			}
+
+			BitSet ordinals = entry.getValue().getOrdinalsForResource(resourceValue);
+
+			if (candidates == null) {
+				candidates = ordinals;
+			} else {
+				candidates.and(ordinals);
+			}
+
+			if (candidates.isEmpty()) {
+				break;
+			}
+		}
+
+		final List<RangerServiceResourceMatcher> ret;
+
+		if (candidates == null) {
+			ret = serviceResourceMatchers;
+		} else {
+			ret = new ArrayList<RangerServiceResourceMatcher>(candidates.cardinality());
+
+			for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+				ret.add(serviceResourceMatchers.get(i));
+			}
+		}
+
+		RangerPerfTracer.log(perf);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerTagEnricher.getEvaluators(" + resource.getAsString() + "): " + ret.size() + " of " + serviceResourceMatchers.size() + " service-resources");
+		}
+
+		return ret;
+	}
+
+	private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerServiceResourceMatcher> resourceMatchers) {
+		Map<String, RangerResourceTrie> ret = null;
+
+		if (serviceDef != null && CollectionUtils.isNotEmpty(serviceDef.getResources()) && CollectionUtils.isNotEmpty(resourceMatchers)) {
+			RangerPerfTracer perf = null;
+
+			if (RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
+				perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(serviceName=" + serviceName + ",serviceResourceCount=" + resourceMatchers.size() + ")");
+			}
+
+			ret = new HashMap<String, RangerResourceTrie>();
+
+			for (RangerResourceDef resourceDef : serviceDef.getResources()) {
+				if (!RangerResourceTrie.isIndexable(resourceDef)) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("RangerTagEnricher.createResourceTrieMap(): resource " + resourceDef.getName() + " uses custom matcher " + resourceDef.getMatcher() + ". Not indexed");
+					}
+
+					continue;
+				}
+
+				RangerResourceTrie trie = new RangerResourceTrie(resourceDef);
+
+				for (int i = 0; i < resourceMatchers.size(); i++) {
+					Map<String, RangerPolicyResource> resourceElements = resourceMatchers.get(i).getServiceResource().getResourceElements();
+
+					trie.add(resourceElements == null ? null : resourceElements.get(resourceDef.getName()), i);
+				}
+
+				trie.done();
+
+				ret.put(resourceDef.getName(), trie);
+			}
+
+			RangerPerfTracer.log(perf);
+		}
+
+		return ret;
+	}
+
 	static private List<RangerTag> getTagsForServiceResource(final ServiceTags serviceTags, final RangerServiceResource serviceResource) {
 
 		List<RangerTag> ret = new ArrayList<RangerTag>();
@@ -255,34 +418,47 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 		return ret;
 	}
 
+	/*
+	 * service-tags with the matchers and resource-trie built from them; replaced as a whole, so that a request sees
+	 * matchers and trie of the same service-tags
+	 */
+	static final class EnrichedServiceTags {
+		final ServiceTags                        serviceTags;
+		final List<RangerServiceResourceMatcher> serviceResourceMatchers;
+		final Map<String, RangerResourceTrie>    serviceResourceTrie;
+
+		EnrichedServiceTags(ServiceTags serviceTags, List<RangerServiceResourceMatcher> serviceResourceMatchers, Map<String, RangerResourceTrie> serviceResourceTrie) {
+			this.serviceTags             = serviceTags;
+			this.serviceResourceMatchers = serviceResourceMatchers;
+			this.serviceResourceTrie     = serviceResourceTrie;
+		}
+	}
+
 	static class RangerTagRefresher extends Thread {
 		private static final Log LOG = LogFactory.getLog(RangerTagRefresher.class);
 
 		private final RangerTagRetriever tagRetriever;
 		private final RangerTagEnricher tagEnricher;
 		private long lastKnownVersion = -1L;
+		private ServiceTags lastKnownServiceTags = null;
 
 		private final long pollingIntervalMs;
 		private final String cacheFile;
+		private final boolean isBinaryCache;
 		private boolean hasProvidedTagsToReceiver = false;
-		private Gson gson;
 
 
 		final long getPollingIntervalMs() {
 			return pollingIntervalMs;
 		}
 
-		RangerTagRefresher(RangerTagRetriever tagRetriever, RangerTagEnricher tagEnricher, long lastKnownVersion, String cacheFile, long pollingIntervalMs) {
+		RangerTagRefresher(RangerTagRetriever tagRetriever, RangerTagEnricher tagEnricher, long lastKnownVersion, String cacheFile, boolean isBinaryCache, long pollingIntervalMs) {
 			this.tagRetriever = tagRetriever;
 			this.tagEnricher = tagEnricher;
 			this.lastKnownVersion = lastKnownVersion;
 			this.cacheFile = cacheFile;
+			this.isBinaryCache = isBinaryCache;
 			this.pollingIntervalMs = pollingIntervalMs;
-			try {
-				gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").setPrettyPrinting().create();
-			} catch(Throwable excp) {
-				LOG.fatal("failed to create GsonBuilder object", excp);
-			}
 		}
 
 		@Override
@@ -296,11 +472,13 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 
 				try {
 
-					// Sleep first and then fetch tags
-					if (pollingIntervalMs > 0) {
-						Thread.sleep(pollingIntervalMs);
-					} else {
+					// Sleep first and then fetch tags; with long-poll, ranger-admin holds the retrieval until tags change
+					if (pollingIntervalMs <= 0) {
 						break;
+					} else if (!tagRetriever.isLongPolling()) {
+						Thread.sleep(pollingIntervalMs);
+					} else if (Thread.interrupted()) {
+						throw new InterruptedException();
 					}
 					RangerPerfTracer perf = null;
 
@@ -329,6 +507,10 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 
 				serviceTags = tagRetriever.retrieveTags(lastKnownVersion);
 
+				if (serviceTags != null && serviceTags.getDeltaFromVersion() != null) {
+					serviceTags = applyDelta(serviceTags);
+				}
+
 				if (serviceTags == null) {
 					if (!hasProvidedTagsToReceiver) {
 						serviceTags = loadFromCache();
@@ -341,6 +523,7 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 					tagEnricher.setServiceTags(serviceTags);
 					LOG.info("RangerTagRefresher.populateTags() - Updated tags-cache to new version of tags, lastKnownVersion=" + lastKnownVersion + "; newVersion=" + serviceTags.getTagVersion());
 					lastKnownVersion = serviceTags.getTagVersion();
+					lastKnownServiceTags = serviceTags;
 					hasProvidedTagsToReceiver = true;
 				} else {
 					if (LOG.isDebugEnabled()) {
@@ -353,6 +536,25 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 			}
 		}
 
+		private ServiceTags applyDelta(ServiceTags delta) throws InterruptedException {
+			ServiceTags ret = ServiceTags.applyDelta(lastKnownServiceTags, delta);
+
+			if (ret != null) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("RangerTagRefresher.applyDelta(): applied tag delta from version " + delta.getDeltaFromVersion() + ": changedTags=" + delta.getTags().size() + ", deletedTags=" + (delta.getDeletedTagIds() == null ? 0 : delta.getDeletedTagIds().size())
+							+ ", changedResources=" + delta.getServiceResources().size() + ", deletedResources=" + (delta.getDeletedServiceResourceIds() == null ? 0 : delta.getDeletedServiceResourceIds().size()));
+				}
+			} else {
+				LOG.warn("RangerTagRefresher.applyDelta(): tag delta from version " + delta.getDeltaFromVersion() + " can't be applied to lastKnownVersion=" + lastKnownVersion + ". Downloading all tags");
+
+				lastKnownVersion = -1L;
+
+				ret = tagRetriever.retrieveTags(lastKnownVersion);
+			}
+
+			return ret;
+		}
+
 		void cleanup() {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("==> RangerTagRefresher.cleanup()");
@@ -379,7 +581,12 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 				super.interrupt();
 
 				try {
-					super.join();
+					// a long-poll retrieval in progress doesn't end on interrupt; don't wait for it beyond the polling interval
+					if (tagRetriever.isLongPolling()) {
+						super.join(pollingIntervalMs);
+					} else {
+						super.join();
+					}
 				} catch (InterruptedException excp) {
 					LOG.error("RangerTagRefresher(): error while waiting for thread to exit", excp);
 				}
@@ -397,12 +604,8 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 			File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
 			if (cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-				Reader reader = null;
-
 				try {
-					reader = new FileReader(cacheFile);
-
-					serviceTags = gson.fromJson(reader, ServiceTags.class);
+					serviceTags = RangerCacheFile.load(cacheFile, ServiceTags.class);
 
 					if (serviceTags != null) {
 						if (!StringUtils.equals(tagEnricher.getServiceName(), serviceTags.getServiceName())) {
@@ -413,14 +616,6 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 					}
 				} catch (Exception excp) {
 					LOG.error("failed to load service-tags from cache file " + cacheFile.getAbsolutePath(), excp);
-				} finally {
-					if (reader != null) {
-						try {
-							reader.close();
-						} catch (Exception excp) {
-							LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-						}
-					}
 				}
 			} else {
 				LOG.warn("cache file does not exist or not readble '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
@@ -442,22 +637,10 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 				File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
 				if (cacheFile != null) {
-					Writer writer = null;
-
 					try {
-						writer = new FileWriter(cacheFile);
-
-						gson.toJson(serviceTags, writer);
+						RangerCacheFile.save(cacheFile, serviceTags, isBinaryCache);
 					} catch (Exception excp) {
 						LOG.error("failed to save service-tags to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-					} finally {
-						if (writer != null) {
-							try {
-								writer.close();
-							} catch (Exception excp) {
-								LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-							}
-						}
 					}
 				}
 			} else {
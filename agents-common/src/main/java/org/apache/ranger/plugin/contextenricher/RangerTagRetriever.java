@@ -37,6 +37,13 @@ public abstract class RangerTagRetriever {
 
 	public abstract ServiceTags retrieveTags(long lastKnownVersion) throws InterruptedException;
 
+	/**
+	 * @return true if retrieveTags() waits for tags to change, in which case the caller needn't wait between calls
+	 */
+	public boolean isLongPolling() {
+		return false;
+	}
+
 	public String getServiceName() {
 		return serviceName;
 	}
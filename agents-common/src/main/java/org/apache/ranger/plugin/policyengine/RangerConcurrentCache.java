@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+
+/**
+ * Bounded cache for use from many threads, as a replacement for a synchronized CacheMap.
+ *
+ * Entries are spread over a number of segments, each with its own ConcurrentHashMap and eviction state. Reads don't
+ * take any lock; writes lock only the segment of the key. Eviction is approximate LRU using the CLOCK algorithm: a read
+ * marks the entry as referenced, and eviction skips (and un-marks) referenced entries. A maxSize of 0 or less disables
+ * the cache: nothing is stored.
+ */
+public class RangerConcurrentCache<K, V> {
+	public static final String PROP_CONCURRENCY_LEVEL    = "ranger.policyengine.cache.concurrency.level";
+	public static final int    DEFAULT_CONCURRENCY_LEVEL = 0; // derived from maxSize
+
+	private static final int MIN_SEGMENT_SIZE  = 64;
+	private static final int MAX_SEGMENT_COUNT = 64;
+
+	private final Segment<K, V>[] segments;
+	private final int             segmentMask;
+	private final int             maxSize;
+
+	public RangerConcurrentCache(int maxSize) {
+		this(maxSize, RangerConfiguration.getInstance().getInt(PROP_CONCURRENCY_LEVEL, DEFAULT_CONCURRENCY_LEVEL));
+	}
+
+	/**
+	 * @param concurrencyLevel number of segments, rounded up to a power of 2; 0 or less to derive it from maxSize
+	 */
+	public RangerConcurrentCache(int maxSize, int concurrencyLevel) {
+		int segmentCount = 0;
+
+		if(maxSize > 0) {
+			if(concurrencyLevel <= 0) {
+				// a small cache isn't worth splitting: segments of at least MIN_SEGMENT_SIZE entries
+				concurrencyLevel = Math.min(MAX_SEGMENT_COUNT, maxSize / MIN_SEGMENT_SIZE);
+			}
+
+			segmentCount = 1;
+
+			// power of 2 segments, no more than maxSize
+			while(segmentCount < concurrencyLevel && segmentCount < maxSize) {
+				segmentCount <<= 1;
+			}
+		}
+
+		int segmentSize = segmentCount == 0 ? 0 : (maxSize + segmentCount - 1) / segmentCount;
+
+		@SuppressWarnings("unchecked")
+		Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+
+		this.maxSize     = Math.max(0, maxSize);
+		this.segmentMask = segmentCount - 1;
+		this.segments    = segments;
+
+		for(int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment<K, V>(segmentSize);
+		}
+	}
+
+	public V get(K key) {
+		return segments.length == 0 ? null : segmentFor(key).get(key);
+	}
+
+	public boolean containsKey(K key) {
+		return get(key) != null;
+	}
+
+	public void put(K key, V value) {
+		if(key != null && value != null && segments.length > 0) {
+			segmentFor(key).put(key, value);
+		}
+	}
+
+	public void clear() {
+		for(Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+		int ret = 0;
+
+		for(Segment<K, V> segment : segments) {
+			ret += segment.map.size();
+		}
+
+		return ret;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	int getSegmentCount() {
+		return segments.length;
+	}
+
+	public long getHitCount() {
+		long ret = 0;
+
+		for(Segment<K, V> segment : segments) {
+			ret += segment.hitCount.get();
+		}
+
+		return ret;
+	}
+
+	public long getMissCount() {
+		long ret = 0;
+
+		for(Segment<K, V> segment : segments) {
+			ret += segment.missCount.get();
+		}
+
+		return ret;
+	}
+
+	public long getEvictionCount() {
+		long ret = 0;
+
+		for(Segment<K, V> segment : segments) {
+			ret += segment.evictionCount.get();
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerConcurrentCache={");
+
+		sb.append("maxSize={").append(maxSize).append("} ");
+		sb.append("segments={").append(segments.length).append("} ");
+		sb.append("size={").append(size()).append("} ");
+		sb.append("hitCount={").append(getHitCount()).append("} ");
+		sb.append("missCount={").append(getMissCount()).append("} ");
+		sb.append("evictionCount={").append(getEvictionCount()).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int h = key == null ? 0 : key.hashCode();
+
+		h ^= (h >>> 16);
+
+		return segments[h & segmentMask];
+	}
+
+	private static class Entry<K, V> {
+		final K          key;
+		volatile V       value;
+		volatile boolean referenced;
+		int              slot;
+
+		Entry(K key, V value, int slot) {
+			this.key   = key;
+			this.value = value;
+			this.slot  = slot;
+		}
+	}
+
+	private static class Segment<K, V> {
+		final ConcurrentHashMap<K, Entry<K, V>> map;
+		final int                               capacity;
+		final ReentrantLock                     lock          = new ReentrantLock();
+		final List<Entry<K, V>>                 slots         = new ArrayList<Entry<K, V>>();
+		final AtomicLong                        hitCount      = new AtomicLong();
+		final AtomicLong                        missCount     = new AtomicLong();
+		final AtomicLong                        evictionCount = new AtomicLong();
+		int                                     clockHand     = 0;
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.map      = new ConcurrentHashMap<K, Entry<K, V>>(Math.min(capacity, 16), 0.75f, 1);
+		}
+
+		V get(K key) {
+			Entry<K, V> entry = key == null ? null : map.get(key);
+
+			if(entry == null) {
+				missCount.incrementAndGet();
+
+				return null;
+			}
+
+			if(!entry.referenced) { // avoid writing to the entry on every read of a hot entry
+				entry.referenced = true;
+			}
+
+			hitCount.incrementAndGet();
+
+			return entry.value;
+		}
+
+		void put(K key, V value) {
+			lock.lock();
+
+			try {
+				Entry<K, V> existing = map.get(key);
+
+				if(existing != null) {
+					existing.value      = value;
+					existing.referenced = true;
+
+					return;
+				}
+
+				final Entry<K, V> entry;
+
+				if(slots.size() < capacity) {
+					entry = new Entry<K, V>(key, value, slots.size());
+
+					slots.add(entry);
+				} else {
+					Entry<K, V> victim = findVictim();
+
+					map.remove(victim.key);
+					evictionCount.incrementAndGet();
+
+					entry = new Entry<K, V>(key, value, victim.slot);
+
+					slots.set(victim.slot, entry);
+				}
+
+				map.put(key, entry);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void clear() {
+			lock.lock();
+
+			try {
+				map.clear();
+				slots.clear();
+
+				clockHand = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// CLOCK: advance the hand, giving referenced entries a second chance; terminates within two sweeps
+		private Entry<K, V> findVictim() {
+			while(true) {
+				if(clockHand >= slots.size()) {
+					clockHand = 0;
+				}
+
+				Entry<K, V> entry = slots.get(clockHand++);
+
+				if(entry.referenced) {
+					entry.referenced = false;
+				} else {
+					return entry;
+				}
+			}
+		}
+	}
+}
@@ -25,6 +25,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerTag;
 import org.apache.ranger.plugin.model.RangerServiceDef;
@@ -35,6 +36,10 @@ import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	private static final Log LOG = LogFactory.getLog(RangerPolicyEngineImpl.class);
@@ -46,14 +51,38 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 	private static final int MAX_POLICIES_FOR_CACHE_TYPE_EVALUATOR = 100;
 
+	// pools are shared by all engine instances with the same parallelism, as an engine is replaced on every policy update
+	private static final ConcurrentMap<Integer, ForkJoinPool> batchEvaluationPools = new ConcurrentHashMap<Integer, ForkJoinPool>();
+
 	private final RangerPolicyRepository policyRepository;
 	private final RangerPolicyRepository tagPolicyRepository;
 
 	private List<RangerContextEnricher> allContextEnrichers;
 
+	// enrichers shared with the engine this one was built from, until this engine replaces it, or with the engine that
+	// replaced this one; these must not be cleaned-up along with this engine
+	private volatile Collection<RangerContextEnricher> contextEnrichersInUseElsewhere = Collections.emptySet();
+
+	private final RangerConcurrentCache<String, CachedAccessResult> accessResultCache;
+	private final RangerTagEnricher                                  tagEnricher;
+	private final boolean                                            isResultDeterminedByRequestKey;
+	private final boolean                                            hasResourcePoliciesWithConditions;
+	private final boolean                                            hasTagPoliciesWithConditions;
+	private final ForkJoinPool                                       batchEvaluationPool;
+	private final int                                                minBatchSizeForParallelEvaluation;
+
 	public RangerPolicyEngineImpl(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+		this(appId, servicePolicies, options, null);
+	}
+
+	/**
+	 * Builds a policy engine to replace the given engine. Policy evaluators and context enrichers that are not affected
+	 * by the changes since the given engine was built are reused, instead of being built again. Reused context enrichers
+	 * are cleaned-up with the given engine, until takeOverContextEnrichers() is called after the swap.
+	 */
+	public RangerPolicyEngineImpl(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options, RangerPolicyEngine prevEngine) {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerPolicyEngineImpl(" + appId + ", " + servicePolicies + ", " + options + ")");
+			LOG.debug("==> RangerPolicyEngineImpl(" + appId + ", " + servicePolicies + ", " + options + ", " + prevEngine + ")");
 		}
 
 		RangerPerfTracer perf = null;
@@ -87,7 +116,9 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			options.evaluatorType = RangerPolicyEvaluator.EVALUATOR_TYPE_OPTIMIZED;
 		}
 
-		policyRepository = new RangerPolicyRepository(appId, servicePolicies, options);
+		RangerPolicyEngineImpl other = (prevEngine instanceof RangerPolicyEngineImpl) ? (RangerPolicyEngineImpl) prevEngine : null;
+
+		policyRepository = new RangerPolicyRepository(appId, servicePolicies, options, other == null ? null : other.policyRepository);
 
 		ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
 
@@ -101,7 +132,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 				LOG.debug("RangerPolicyEngineImpl : Building tag-policy-repository for tag-service " + tagPolicies.getServiceName());
 			}
 
-			tagPolicyRepository = new RangerPolicyRepository(appId, tagPolicies, options, servicePolicies.getServiceDef(), servicePolicies.getServiceName());
+			tagPolicyRepository = new RangerPolicyRepository(appId, tagPolicies, options, servicePolicies.getServiceDef(), servicePolicies.getServiceName(), other == null ? null : other.tagPolicyRepository);
 
 		} else {
 			if (LOG.isDebugEnabled()) {
@@ -126,6 +157,48 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		this.allContextEnrichers = tmpList;
 
+		RangerTagEnricher tmpTagEnricher = null;
+		boolean           isKeyable      = true;
+		boolean           isCacheable    = options.cacheAccessResults && options.accessResultCacheSize > 0;
+
+		if (CollectionUtils.isNotEmpty(allContextEnrichers)) {
+			// results can be reused only when the enrichment is a function of the resource alone, i.e. a single tag-enricher
+			if (allContextEnrichers.size() == 1 && allContextEnrichers.get(0) instanceof RangerTagEnricher) {
+				tmpTagEnricher = (RangerTagEnricher) allContextEnrichers.get(0);
+			} else {
+				if (isCacheable) {
+					LOG.info("RangerPolicyEngineImpl: access-result cache disabled for service " + servicePolicies.getServiceName() + ", as it has context-enrichers " + allContextEnrichers);
+				}
+
+				isKeyable = false;
+			}
+		}
+
+		if (isKeyable && tmpTagEnricher == null && hasTagPolicies()) {
+			// tags would be provided by the caller in request context
+			if (isCacheable) {
+				LOG.info("RangerPolicyEngineImpl: access-result cache disabled for service " + servicePolicies.getServiceName() + ", as it has tag-policies but no tag-enricher");
+			}
+
+			isKeyable = false;
+		}
+
+		this.tagEnricher                       = isKeyable ? tmpTagEnricher : null;
+		this.isResultDeterminedByRequestKey    = isKeyable;
+		this.accessResultCache                 = (isKeyable && isCacheable) ? new RangerConcurrentCache<String, CachedAccessResult>(options.accessResultCacheSize) : null;
+		this.hasResourcePoliciesWithConditions = hasPoliciesWithConditions(policyRepository);
+		this.hasTagPoliciesWithConditions      = hasPoliciesWithConditions(tagPolicyRepository);
+		this.batchEvaluationPool               = options.evaluateBatchInParallel ? getBatchEvaluationPool(options.batchParallelism) : null;
+		this.minBatchSizeForParallelEvaluation = Math.max(2, options.minBatchSizeForParallelEvaluation);
+
+		if (other != null && CollectionUtils.isNotEmpty(allContextEnrichers) && CollectionUtils.isNotEmpty(other.allContextEnrichers)) {
+			Set<RangerContextEnricher> reused = newIdentitySet(other.allContextEnrichers);
+
+			reused.retainAll(allContextEnrichers);
+
+			this.contextEnrichersInUseElsewhere = reused;
+		}
+
 		RangerPerfTracer.log(perf);
 
 		if (LOG.isDebugEnabled()) {
@@ -148,6 +221,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return policyRepository.getPolicyVersion();
 	}
 
+	RangerPolicyRepository getPolicyRepository() {
+		return policyRepository;
+	}
+
     @Override
 	public RangerAccessResult createAccessResult(RangerAccessRequest request) {
 		return new RangerAccessResult(this.getServiceName(), policyRepository.getServiceDef(), request);
@@ -197,12 +274,25 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 				setResourceServiceDef(request);
 			}
 
-			List<RangerContextEnricher> enrichers = allContextEnrichers;
+			final List<RangerContextEnricher> enrichers = allContextEnrichers;
 
 			if(CollectionUtils.isNotEmpty(enrichers)) {
-				for(RangerContextEnricher enricher : enrichers) {
-					for(RangerAccessRequest request : requests) {
-						enricher.enrich(request);
+				if(isParallelBatch(requests.size())) {
+					final RangerAccessRequest[] batch = requests.toArray(new RangerAccessRequest[requests.size()]);
+
+					batchEvaluationPool.invoke(new BatchTask(0, batch.length, getBatchSplitSize(batch.length)) {
+						@Override
+						void process(int index) {
+							for(RangerContextEnricher enricher : enrichers) {
+								enricher.enrich(batch[index]);
+							}
+						}
+					});
+				} else {
+					for(RangerContextEnricher enricher : enrichers) {
+						for(RangerAccessRequest request : requests) {
+							enricher.enrich(request);
+						}
 					}
 				}
 			}
@@ -253,15 +343,17 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowed(" + requests + ")");
 		}
 
-		Collection<RangerAccessResult> ret = new ArrayList<RangerAccessResult>();
+		Collection<RangerAccessResult> ret;
 
 		if (requests != null) {
-			for (RangerAccessRequest request : requests) {
+			RangerAccessRequest[] batch   = requests.toArray(new RangerAccessRequest[requests.size()]);
+			RangerAccessResult[]  results = new RangerAccessResult[batch.length];
 
-				RangerAccessResult result = isAccessAllowedNoAudit(request);
+			isAccessAllowedNoAudit(batch, results);
 
-				ret.add(result);
-			}
+			ret = new ArrayList<RangerAccessResult>(Arrays.asList(results));
+		} else {
+			ret = new ArrayList<RangerAccessResult>();
 		}
 
 		if (resultProcessor != null) {
@@ -284,7 +376,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		RangerDataMaskResult ret = new RangerDataMaskResult(getServiceName(), getServiceDef(), request);
 
 		if(request != null) {
-			List<RangerPolicyEvaluator> evaluators = policyRepository.getDataMaskPolicyEvaluators();
+			List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchDataMaskPolicyEvaluators(request.getResource());
 			for (RangerPolicyEvaluator evaluator : evaluators) {
 				evaluator.evaluate(request, ret);
 
@@ -323,7 +415,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 		boolean ret = false;
 
-		for (RangerPolicyEvaluator evaluator : policyRepository.getPolicyEvaluators()) {
+		for (RangerPolicyEvaluator evaluator : policyRepository.getLikelyMatchPolicyEvaluators(resource)) {
 			ret = evaluator.isAccessAllowed(resource, user, userGroups, accessType);
 
 			if (ret) {
@@ -489,7 +581,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 				for (RangerTag tag : tags) {
 					RangerAccessRequest tagEvalRequest = new RangerTagAccessRequest(tag, tagPolicyRepository.getServiceDef(), request);
 
-					for (RangerPolicyEvaluator evaluator : tagPolicyEvaluators) {
+					for (RangerPolicyEvaluator evaluator : tagPolicyRepository.getLikelyMatchPolicyEvaluators(tagEvalRequest.getResource())) {
 						evaluator.getResourceAccessInfo(tagEvalRequest, ret);
 					}
 				}
@@ -519,6 +611,22 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		RangerAccessResult ret = createAccessResult(request);
 
+		String cacheKey = (ret != null && request != null) ? getAccessResultCacheKey(request) : null;
+
+		if (cacheKey != null) {
+			CachedAccessResult cachedResult = accessResultCache.get(cacheKey);
+
+			if (cachedResult != null && cachedResult.tagsGeneration == getCurrentTagsGeneration()) {
+				cachedResult.copyTo(ret);
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("<== RangerPolicyEngineImpl.isAccessAllowedNoAudit(" + request + "): " + ret + " (from access-result cache)");
+				}
+
+				return ret;
+			}
+		}
+
 		if (ret != null && request != null) {
 			if (hasTagPolicies()) {
 				isAccessAllowedForTagPolicies(request, ret);
@@ -542,7 +650,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					ret.setIsAccessDetermined(false); // discard allowed result by tag-policies, to evaluate resource policies for possible deny
 				}
 
-				List<RangerPolicyEvaluator> evaluators = policyRepository.getPolicyEvaluators();
+				List<RangerPolicyEvaluator> evaluators = policyRepository.getLikelyMatchPolicyEvaluators(request.getResource());
 				for (RangerPolicyEvaluator evaluator : evaluators) {
 					evaluator.evaluate(request, ret);
 
@@ -563,6 +671,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					policyRepository.storeAuditEnabledInCache(request, ret);
 				}
 			}
+
+			if (cacheKey != null && !hasConditionalPolicyCandidates(request)) {
+				accessResultCache.put(cacheKey, new CachedAccessResult(ret, getRequestTagsGeneration(request)));
+			}
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -572,6 +684,89 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return ret;
 	}
 
+	/**
+	 * Evaluates a batch of requests, filling results in the same order. Requests having the same key (see
+	 * getRequestKey()) are evaluated once, unless a policy with custom conditions can match them; their results are
+	 * copied to the other requests. Large batches are evaluated in the batch-evaluation pool, if one is configured.
+	 */
+	private void isAccessAllowedNoAudit(final RangerAccessRequest[] requests, final RangerAccessResult[] results) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowedNoAudit(batchSize=" + requests.length + ")");
+		}
+
+		int[] resultFrom   = null; // index of the request whose result is to be copied; -1 if the request is evaluated
+		int[] toEvaluate   = new int[requests.length];
+		int   evaluateCount = 0;
+
+		if (isResultDeterminedByRequestKey && requests.length > 1) {
+			Map<String, Integer> keyIndexes = new HashMap<String, Integer>();
+
+			resultFrom = new int[requests.length];
+
+			for (int i = 0; i < requests.length; i++) {
+				RangerAccessRequest request = requests[i];
+				String              key     = request == null ? null : getRequestKey(request);
+
+				resultFrom[i] = -1;
+
+				if (key != null) {
+					key = key + '\u0002' + getRequestTagsGeneration(request); // tags in context could be from different versions
+
+					Integer keyIndex = keyIndexes.get(key);
+
+					if (keyIndex == null) {
+						keyIndexes.put(key, hasConditionalPolicyCandidates(request) ? -1 : i);
+					} else if (keyIndex != -1) {
+						resultFrom[i] = keyIndex;
+
+						continue;
+					}
+				}
+
+				toEvaluate[evaluateCount++] = i;
+			}
+		} else {
+			for (int i = 0; i < requests.length; i++) {
+				toEvaluate[i] = i;
+			}
+
+			evaluateCount = requests.length;
+		}
+
+		if (isParallelBatch(evaluateCount)) {
+			final int[] indexes = toEvaluate;
+
+			batchEvaluationPool.invoke(new BatchTask(0, evaluateCount, getBatchSplitSize(evaluateCount)) {
+				@Override
+				void process(int index) {
+					results[indexes[index]] = isAccessAllowedNoAudit(requests[indexes[index]]);
+				}
+			});
+		} else {
+			for (int i = 0; i < evaluateCount; i++) {
+				results[toEvaluate[i]] = isAccessAllowedNoAudit(requests[toEvaluate[i]]);
+			}
+		}
+
+		if (resultFrom != null && evaluateCount < requests.length) {
+			for (int i = 0; i < requests.length; i++) {
+				if (resultFrom[i] != -1) {
+					RangerAccessResult evaluatedResult = results[resultFrom[i]];
+					RangerAccessResult result          = createAccessResult(requests[i]);
+
+					result.setAccessResultFrom(evaluatedResult);
+					result.setAuditResultFrom(evaluatedResult);
+
+					results[i] = result;
+				}
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyEngineImpl.isAccessAllowedNoAudit(batchSize=" + requests.length + "): evaluatedCount=" + evaluateCount);
+		}
+	}
+
 	protected void isAccessAllowedForTagPolicies(final RangerAccessRequest request, RangerAccessResult result) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowedForTagPolicies(" + request + ", " + result + ")");
@@ -599,7 +794,9 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 					}
 					tagEvalResult.setAuditResultFrom(result);
 
-					for (RangerPolicyEvaluator evaluator : evaluators) {
+					List<RangerPolicyEvaluator> tagTypeEvaluators = tagPolicyRepository.getLikelyMatchPolicyEvaluators(tagEvalRequest.getResource());
+
+					for (RangerPolicyEvaluator evaluator : tagTypeEvaluators) {
 						if(! evaluator.isMatch(tagEvalRequest.getResource())) 
 							continue;
 
@@ -650,6 +847,168 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	private String getAccessResultCacheKey(RangerAccessRequest request) {
+		return accessResultCache == null ? null : getRequestKey(request);
+	}
+
+	/**
+	 * @return key for the request, or null if the result of this request can't be reused for another request. The key
+	 * includes everything other than request context (tags, custom-condition inputs) that the result depends on.
+	 */
+	private String getRequestKey(RangerAccessRequest request) {
+		if (!isResultDeterminedByRequestKey) {
+			return null;
+		}
+
+		RangerAccessResource resource = request.getResource();
+		RangerServiceDef     serviceDef = policyRepository.getServiceDef();
+
+		if (resource == null || serviceDef == null || serviceDef.getResources() == null) {
+			return null;
+		}
+
+		if (tagEnricher != null && getRequestTagsGeneration(request) == -1) { // request not enriched, i.e. tags not known
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
+			String value = resource.getValue(resourceDef.getName());
+
+			if (value != null) {
+				sb.append(resourceDef.getName()).append('=').append(value).append('\u0001');
+			}
+		}
+
+		sb.append('\u0002').append(request.getUser()).append('\u0002');
+
+		Set<String> userGroups = request.getUserGroups();
+
+		if (CollectionUtils.isNotEmpty(userGroups)) {
+			for (String userGroup : (userGroups.size() == 1 ? userGroups : new TreeSet<String>(userGroups))) {
+				sb.append(userGroup).append('\u0001');
+			}
+		}
+
+		sb.append('\u0002').append(request.getAccessType());
+		sb.append('\u0002').append(request.getResourceMatchingScope());
+
+		return sb.toString();
+	}
+
+	// results from evaluators having custom conditions depend on request data, hence can't be cached
+	private boolean hasConditionalPolicyCandidates(RangerAccessRequest request) {
+		if (hasResourcePoliciesWithConditions) {
+			for (RangerPolicyEvaluator evaluator : policyRepository.getLikelyMatchPolicyEvaluators(request.getResource())) {
+				if (evaluator.getCustomConditionsCount() > 0) {
+					return true;
+				}
+			}
+		}
+
+		if (hasTagPoliciesWithConditions) {
+			List<RangerTag> tags = RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext());
+
+			if (CollectionUtils.isNotEmpty(tags)) {
+				for (RangerTag tag : tags) {
+					RangerAccessResource tagResource = new RangerTagResource(tag.getType(), tagPolicyRepository.getServiceDef());
+
+					for (RangerPolicyEvaluator evaluator : tagPolicyRepository.getLikelyMatchPolicyEvaluators(tagResource)) {
+						if (evaluator.getCustomConditionsCount() > 0) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private long getCurrentTagsGeneration() {
+		return tagEnricher == null ? 0 : tagEnricher.getServiceTagsGeneration();
+	}
+
+	private long getRequestTagsGeneration(RangerAccessRequest request) {
+		if (tagEnricher == null) {
+			return 0;
+		}
+
+		Long ret = RangerAccessRequestUtil.getRequestTagsGenerationFromContext(request.getContext());
+
+		return ret == null ? -1 : ret;
+	}
+
+	/**
+	 * To be called once this engine has replaced the engine it was built from. Context enrichers reused from that engine
+	 * are then cleaned-up with this engine, instead of with that engine.
+	 */
+	public void takeOverContextEnrichers(RangerPolicyEngine prevEngine) {
+		Collection<RangerContextEnricher> reused = contextEnrichersInUseElsewhere;
+
+		if (prevEngine instanceof RangerPolicyEngineImpl && !reused.isEmpty()) {
+			((RangerPolicyEngineImpl) prevEngine).contextEnrichersInUseElsewhere = reused;
+
+			this.contextEnrichersInUseElsewhere = Collections.emptySet();
+		}
+	}
+
+	private static Set<RangerContextEnricher> newIdentitySet(Collection<RangerContextEnricher> enrichers) {
+		Set<RangerContextEnricher> ret = Collections.newSetFromMap(new IdentityHashMap<RangerContextEnricher, Boolean>());
+
+		ret.addAll(enrichers);
+
+		return ret;
+	}
+
+	private boolean isInUseElsewhere(RangerContextEnricher contextEnricher) {
+		return contextEnrichersInUseElsewhere.contains(contextEnricher);
+	}
+
+	private boolean isParallelBatch(int batchSize) {
+		return batchEvaluationPool != null && batchSize >= minBatchSizeForParallelEvaluation;
+	}
+
+	private int getBatchSplitSize(int batchSize) {
+		// a few tasks per worker, so that workers finishing early can steal from the rest
+		return Math.max(1, batchSize / (batchEvaluationPool.getParallelism() * 4));
+	}
+
+	private static ForkJoinPool getBatchEvaluationPool(int parallelism) {
+		if (parallelism <= 0) {
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+
+		ForkJoinPool ret = batchEvaluationPools.get(parallelism);
+
+		if (ret == null) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+			ret = batchEvaluationPools.putIfAbsent(parallelism, pool);
+
+			if (ret == null) {
+				ret = pool;
+			} else {
+				pool.shutdown();
+			}
+		}
+
+		return ret;
+	}
+
+	private static boolean hasPoliciesWithConditions(RangerPolicyRepository repository) {
+		if (repository != null && repository.getPolicyEvaluators() != null) {
+			for (RangerPolicyEvaluator evaluator : repository.getPolicyEvaluators()) {
+				if (evaluator.getCustomConditionsCount() > 0) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
 	private void setResourceServiceDef(RangerAccessRequest request) {
 		RangerAccessResource resource = request.getResource();
 
@@ -681,6 +1040,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		if (CollectionUtils.isNotEmpty(allContextEnrichers)) {
 			for (RangerContextEnricher contextEnricher : allContextEnrichers) {
+				if (isInUseElsewhere(contextEnricher)) {
+					continue;
+				}
+
 				boolean notReadyForCleanup = contextEnricher.preCleanup();
 				if (!notReadyForCleanup) {
 					if (LOG.isDebugEnabled()) {
@@ -714,6 +1077,10 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 		if (CollectionUtils.isNotEmpty(allContextEnrichers)) {
 			for (RangerContextEnricher contextEnricher : allContextEnrichers) {
+				if (isInUseElsewhere(contextEnricher)) {
+					continue;
+				}
+
 				contextEnricher.cleanup();
 			}
 		}
@@ -752,10 +1119,87 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		sb.append("serviceName={").append(this.getServiceName()).append("} ");
 		sb.append(policyRepository);
 
+		if (accessResultCache != null) {
+			sb.append(" accessResultCache={");
+			accessResultCache.toString(sb);
+			sb.append("}");
+		}
+
 		sb.append("}");
 
 		return sb;
 	}
+
+	// processes requests in [start, end), splitting the range until it is no larger than splitSize
+	private static abstract class BatchTask extends RecursiveAction {
+		private final int start;
+		private final int end;
+		private final int splitSize;
+
+		BatchTask(int start, int end, int splitSize) {
+			this.start     = start;
+			this.end       = end;
+			this.splitSize = splitSize;
+		}
+
+		abstract void process(int index);
+
+		@Override
+		protected void compute() {
+			if (end - start <= splitSize) {
+				for (int i = start; i < end; i++) {
+					process(i);
+				}
+			} else {
+				final BatchTask outer = this;
+				final int       mid   = (start + end) >>> 1;
+
+				invokeAll(new BatchTask(start, mid, splitSize) {
+					@Override
+					void process(int index) {
+						outer.process(index);
+					}
+				}, new BatchTask(mid, end, splitSize) {
+					@Override
+					void process(int index) {
+						outer.process(index);
+					}
+				});
+			}
+		}
+	}
+
+	private static class CachedAccessResult {
+		final boolean isAccessDetermined;
+		final boolean isAllowed;
+		final boolean isAuditedDetermined;
+		final boolean isAudited;
+		final long    policyId;
+		final String  reason;
+		final long    tagsGeneration;
+
+		CachedAccessResult(RangerAccessResult result, long tagsGeneration) {
+			this.isAccessDetermined  = result.getIsAccessDetermined();
+			this.isAllowed           = result.getIsAllowed();
+			this.isAuditedDetermined = result.getIsAuditedDetermined();
+			this.isAudited           = result.getIsAudited();
+			this.policyId            = result.getPolicyId();
+			this.reason              = result.getReason();
+			this.tagsGeneration      = tagsGeneration;
+		}
+
+		void copyTo(RangerAccessResult result) {
+			result.setIsAllowed(isAllowed);
+			result.setIsAccessDetermined(isAccessDetermined);
+
+			if (isAuditedDetermined) {
+				result.setIsAudited(isAudited);
+			}
+
+			result.setPolicyId(policyId);
+			result.setReason(reason);
+		}
+	}
 }
 class RangerTagResource extends RangerAccessResourceImpl {
 	private static final String KEY_TAG = "tag";
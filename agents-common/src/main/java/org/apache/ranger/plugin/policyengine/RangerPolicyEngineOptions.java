@@ -29,4 +29,15 @@ public class RangerPolicyEngineOptions {
 	public boolean disableCustomConditions = false;
 	public boolean disableTagPolicyEvaluation = true;
 	public boolean evaluateDelegateAdminOnly = false;
+	public boolean disableTrieLookupPrefilter = false;
+	public boolean cacheAccessResults = false;
+	public int     accessResultCacheSize = 64 * 1024;
+	public boolean disablePolicyEvaluatorReuse = false;
+	public boolean evaluateBatchInParallel = false;
+	public int     batchParallelism = 0; // 0: number of available processors
+	public int     minBatchSizeForParallelEvaluation = 32;
+	public boolean warmUpPolicyEngine = false;
+	public int     warmUpRequestCount = 1000; // number of recent requests kept for replay against a new policy engine
+	public int     warmUpSampleRate = 100;    // 1 in warmUpSampleRate requests is recorded
+	public long    warmUpMaxTimeMs = 5000L;
 }
@@ -25,13 +25,21 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
+import org.apache.ranger.plugin.model.RangerBaseModelObject;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerAbstractPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerCachedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerNameIds;
+import org.apache.ranger.plugin.util.RangerPolicyDeduplicator;
+import org.apache.ranger.plugin.util.RangerResourceTrie;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.*;
@@ -40,6 +48,8 @@ public class RangerPolicyRepository {
     private static final Log LOG = LogFactory.getLog(RangerPolicyRepository.class);
 
     private static final Log PERF_CONTEXTENRICHER_INIT_LOG = RangerPerfTracer.getPerfLogger("contextenricher.init");
+    private static final Log PERF_TRIE_INIT_LOG            = RangerPerfTracer.getPerfLogger("resourcetrie.init");
+    private static final Log PERF_TRIE_LOOKUP_LOG          = RangerPerfTracer.getPerfLogger("resourcetrie.lookup");
 
     private final String                      serviceName;
     private final String                      appId;
@@ -49,12 +59,28 @@ public class RangerPolicyRepository {
     private List<RangerContextEnricher>       contextEnrichers;
     private List<RangerPolicyEvaluator>       policyEvaluators;
     private List<RangerPolicyEvaluator>       dataMaskPolicyEvaluators;
-    private final Map<String, Boolean>        accessAuditCache;
+    private Map<String, RangerResourceTrie>   policyResourceTrie;
+    private Map<String, RangerResourceTrie>   dataMaskResourceTrie;
+    private final RangerConcurrentCache<String, Boolean> accessAuditCache;
+    private RangerNameIds                     nameIds;
 
     private final String                      componentServiceName;
     private final RangerServiceDef            componentServiceDef;
+    private final String                      evaluatorType;
+    private final boolean                     disableContextEnrichers;
+    private final boolean                     disableCustomConditions;
+    private final boolean                     evaluateDelegateAdminOnly;
+    private int                               reusedEvaluatorCount = 0;
 
     RangerPolicyRepository(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options) {
+        this(appId, servicePolicies, options, null);
+    }
+
+    /**
+     * Builds the repository for the given policies, reusing from the given repository the evaluators of policies that
+     * haven't changed (same id and version) and the context enrichers, when the service-def hasn't changed.
+     */
+    RangerPolicyRepository(String appId, ServicePolicies servicePolicies, RangerPolicyEngineOptions options, RangerPolicyRepository other) {
         super();
 
         this.componentServiceName = this.serviceName = servicePolicies.getServiceName();
@@ -75,17 +101,27 @@ public class RangerPolicyRepository {
             final int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64*1024;
 
             int auditResultCacheSize = RangerConfiguration.getInstance().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
-            accessAuditCache = Collections.synchronizedMap(new CacheMap<String, Boolean>(auditResultCacheSize));
+            accessAuditCache = new RangerConcurrentCache<String, Boolean>(auditResultCacheSize);
         } else {
-                accessAuditCache = null;
-            }
+            accessAuditCache = null;
+        }
+
+        this.evaluatorType             = options.evaluatorType;
+        this.disableContextEnrichers   = options.disableContextEnrichers;
+        this.disableCustomConditions   = options.disableCustomConditions;
+        this.evaluateDelegateAdminOnly = options.evaluateDelegateAdminOnly;
 
-        init(options);
+        init(options, other);
 
     }
 
     RangerPolicyRepository(String appId, ServicePolicies.TagPolicies tagPolicies, RangerPolicyEngineOptions options,
                            RangerServiceDef componentServiceDef, String componentServiceName) {
+        this(appId, tagPolicies, options, componentServiceDef, componentServiceName, null);
+    }
+
+    RangerPolicyRepository(String appId, ServicePolicies.TagPolicies tagPolicies, RangerPolicyEngineOptions options,
+                           RangerServiceDef componentServiceDef, String componentServiceName, RangerPolicyRepository other) {
         super();
 
         this.serviceName = tagPolicies.getServiceName();
@@ -104,7 +140,12 @@ public class RangerPolicyRepository {
             LOG.debug("RangerPolicyRepository : building tag-policy-repository for tag service " + serviceName);
         }
 
-        init(options);
+        this.evaluatorType             = options.evaluatorType;
+        this.disableContextEnrichers   = options.disableContextEnrichers;
+        this.disableCustomConditions   = options.disableCustomConditions;
+        this.evaluateDelegateAdminOnly = options.evaluateDelegateAdminOnly;
+
+        init(options, other);
 
     }
 
@@ -132,6 +173,23 @@ public class RangerPolicyRepository {
         return dataMaskPolicyEvaluators;
     }
 
+    int getReusedEvaluatorCount() {
+        return reusedEvaluatorCount;
+    }
+
+    /**
+     * Returns the evaluators of policies that might match the given resource, in evaluation order. Policies not in the
+     * returned list are guaranteed not to match (or head-match) the resource. For a tag-policy repository the resource
+     * is the tag, hence only the policies for the tag type are returned.
+     */
+    public List<RangerPolicyEvaluator> getLikelyMatchPolicyEvaluators(RangerAccessResource resource) {
+        return getLikelyMatchEvaluators(policyResourceTrie, policyEvaluators, resource);
+    }
+
+    public List<RangerPolicyEvaluator> getLikelyMatchDataMaskPolicyEvaluators(RangerAccessResource resource) {
+        return getLikelyMatchEvaluators(dataMaskResourceTrie, dataMaskPolicyEvaluators, resource);
+    }
+
     private RangerServiceDef normalizeAccessTypeDefs(RangerServiceDef serviceDef, final String componentType) {
 
         if (serviceDef != null && StringUtils.isNotBlank(componentType)) {
@@ -196,13 +254,14 @@ public class RangerPolicyRepository {
 
     private List<RangerPolicy> normalizeAndPrunePolicies(List<RangerPolicy> rangerPolicies, final String componentType) {
         if (CollectionUtils.isNotEmpty(rangerPolicies) && StringUtils.isNotBlank(componentType)) {
-            List<RangerPolicy> policiesToPrune = null;
+            List<RangerPolicy>       policiesToPrune = null;
+            RangerPolicyDeduplicator deduplicator    = new RangerPolicyDeduplicator();
 
             for (RangerPolicy policy : rangerPolicies) {
-                normalizeAndPrunePolicyItems(policy.getPolicyItems(), componentType);
-                normalizeAndPrunePolicyItems(policy.getDenyPolicyItems(), componentType);
-                normalizeAndPrunePolicyItems(policy.getAllowExceptions(), componentType);
-                normalizeAndPrunePolicyItems(policy.getDenyExceptions(), componentType);
+                normalizeAndPrunePolicyItems(policy.getPolicyItems(), componentType, deduplicator);
+                normalizeAndPrunePolicyItems(policy.getDenyPolicyItems(), componentType, deduplicator);
+                normalizeAndPrunePolicyItems(policy.getAllowExceptions(), componentType, deduplicator);
+                normalizeAndPrunePolicyItems(policy.getDenyExceptions(), componentType, deduplicator);
 
                 if (!policy.getIsAuditEnabled() &&
                     CollectionUtils.isEmpty(policy.getPolicyItems()) &&
@@ -226,7 +285,7 @@ public class RangerPolicyRepository {
         return rangerPolicies;
     }
 
-    private List<RangerPolicy.RangerPolicyItem> normalizeAndPrunePolicyItems(List<RangerPolicy.RangerPolicyItem> policyItems, final String componentType) {
+    private List<RangerPolicy.RangerPolicyItem> normalizeAndPrunePolicyItems(List<RangerPolicy.RangerPolicyItem> policyItems, final String componentType, RangerPolicyDeduplicator deduplicator) {
         if(CollectionUtils.isNotEmpty(policyItems)) {
             final String                        prefix       = componentType + AbstractServiceStore.COMPONENT_ACCESSTYPE_SEPARATOR;
             List<RangerPolicy.RangerPolicyItem> itemsToPrune = null;
@@ -237,13 +296,14 @@ public class RangerPolicyRepository {
                 if (CollectionUtils.isNotEmpty(policyItemAccesses)) {
                     List<RangerPolicy.RangerPolicyItemAccess> accessesToPrune = null;
 
-                    for (RangerPolicy.RangerPolicyItemAccess access : policyItemAccesses) {
-                        String accessType = access.getType();
+                    for (ListIterator<RangerPolicy.RangerPolicyItemAccess> iter = policyItemAccesses.listIterator(); iter.hasNext(); ) {
+                        RangerPolicy.RangerPolicyItemAccess access     = iter.next();
+                        String                              accessType = access.getType();
 
                         if (StringUtils.startsWith(accessType, prefix)) {
                             String newAccessType = StringUtils.removeStart(accessType, prefix);
 
-                            access.setType(newAccessType);
+                            iter.set(deduplicator.dedup(new RangerPolicy.RangerPolicyItemAccess(newAccessType, access.getIsAllowed())));
                         } else if (accessType.contains(AbstractServiceStore.COMPONENT_ACCESSTYPE_SEPARATOR)) {
                             if(accessesToPrune == null) {
                                 accessesToPrune = new ArrayList<RangerPolicy.RangerPolicyItemAccess>();
@@ -311,17 +371,34 @@ public class RangerPolicyRepository {
         return ret;
     }
 
-    private void init(RangerPolicyEngineOptions options) {
+    private void init(RangerPolicyEngineOptions options, RangerPolicyRepository other) {
 
         List<RangerPolicyEvaluator> policyEvaluators = new ArrayList<RangerPolicyEvaluator>();
         List<RangerPolicyEvaluator> dataMaskPolicyEvaluators = new ArrayList<RangerPolicyEvaluator>();
 
+        boolean                          isReusable         = other != null && !options.disablePolicyEvaluatorReuse && isSameServiceDefAndOptions(other);
+        Map<Long, RangerPolicyEvaluator> reusableEvaluators = null;
+
+        // reused evaluators hold ids from the previous dictionaries; start afresh once most of those names are unused
+        if (isReusable && other.nameIds.size() <= 2 * RangerNameIds.countNames(policies)) {
+            nameIds            = other.nameIds.copy();
+            reusableEvaluators = other.getEvaluatorsById();
+        } else {
+            nameIds = new RangerNameIds();
+        }
+
         for (RangerPolicy policy : policies) {
             if (skipBuildingPolicyEvaluator(policy, options)) {
                 continue;
             }
 
-            RangerPolicyEvaluator evaluator = buildPolicyEvaluator(policy, serviceDef, options);
+            RangerPolicyEvaluator evaluator = reusableEvaluators == null ? null : reusableEvaluators.get(policy.getId());
+
+            if (evaluator != null && isSameVersion(evaluator.getPolicy(), policy)) {
+                reusedEvaluatorCount++;
+            } else {
+                evaluator = buildPolicyEvaluator(policy, serviceDef, options);
+            }
 
             if (evaluator != null) {
                 if(policy.getPolicyType() == null || policy.getPolicyType() == RangerPolicy.POLICY_TYPE_ACCESS) {
@@ -339,9 +416,20 @@ public class RangerPolicyRepository {
         Collections.sort(dataMaskPolicyEvaluators);
         this.dataMaskPolicyEvaluators = Collections.unmodifiableList(dataMaskPolicyEvaluators);
 
+        if (options.disableTrieLookupPrefilter) {
+            this.policyResourceTrie   = null;
+            this.dataMaskResourceTrie = null;
+        } else {
+            this.policyResourceTrie   = createResourceTrieMap(this.policyEvaluators);
+            this.dataMaskResourceTrie = createResourceTrieMap(this.dataMaskPolicyEvaluators);
+        }
+
         List<RangerContextEnricher> contextEnrichers = new ArrayList<RangerContextEnricher>();
         if (CollectionUtils.isNotEmpty(this.policyEvaluators)) {
-            if (!options.disableContextEnrichers && !CollectionUtils.isEmpty(serviceDef.getContextEnrichers())) {
+            if (isReusable && CollectionUtils.isNotEmpty(other.policyEvaluators) && other.contextEnrichers != null) {
+                // enrichers are built from the service-def only, which hasn't changed
+                contextEnrichers.addAll(other.contextEnrichers);
+            } else if (!options.disableContextEnrichers && !CollectionUtils.isEmpty(serviceDef.getContextEnrichers())) {
                 for (RangerServiceDef.RangerContextEnricherDef enricherDef : serviceDef.getContextEnrichers()) {
                     if (enricherDef == null) {
                         continue;
@@ -357,6 +445,11 @@ public class RangerPolicyRepository {
         }
         this.contextEnrichers = Collections.unmodifiableList(contextEnrichers);
 
+        if (other != null) {
+            LOG.info("RangerPolicyRepository: service " + serviceName + ", version " + policyVersion + ": reused " + reusedEvaluatorCount + " policy-evaluators from version " + other.policyVersion
+                    + ", built " + (this.policyEvaluators.size() + this.dataMaskPolicyEvaluators.size() - reusedEvaluatorCount));
+        }
+
         if(LOG.isDebugEnabled()) {
             LOG.debug("policy evaluation order: " + this.policyEvaluators.size() + " policies");
 
@@ -378,6 +471,144 @@ public class RangerPolicyRepository {
         }
     }
 
+    private boolean isSameServiceDefAndOptions(RangerPolicyRepository other) {
+        return StringUtils.equals(serviceName, other.serviceName)
+                && StringUtils.equals(componentServiceName, other.componentServiceName)
+                && StringUtils.equals(appId, other.appId)
+                && isSameVersion(serviceDef, other.serviceDef)
+                && isSameVersion(componentServiceDef, other.componentServiceDef)
+                && StringUtils.equals(evaluatorType, other.evaluatorType)
+                && disableContextEnrichers == other.disableContextEnrichers
+                && disableCustomConditions == other.disableCustomConditions
+                && evaluateDelegateAdminOnly == other.evaluateDelegateAdminOnly;
+    }
+
+    private Map<Long, RangerPolicyEvaluator> getEvaluatorsById() {
+        Map<Long, RangerPolicyEvaluator> ret = new HashMap<Long, RangerPolicyEvaluator>();
+
+        for (List<RangerPolicyEvaluator> evaluators : Arrays.asList(policyEvaluators, dataMaskPolicyEvaluators)) {
+            for (RangerPolicyEvaluator evaluator : evaluators) {
+                RangerPolicy policy = evaluator.getPolicy();
+
+                if (policy != null && policy.getId() != null) {
+                    ret.put(policy.getId(), evaluator);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    // objects without a version are never considered to be the same
+    private static boolean isSameVersion(RangerBaseModelObject obj1, RangerBaseModelObject obj2) {
+        return obj1 != null && obj2 != null && obj1.getVersion() != null && obj1.getVersion().equals(obj2.getVersion());
+    }
+
+    private Map<String, RangerResourceTrie> createResourceTrieMap(List<RangerPolicyEvaluator> evaluators) {
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerPolicyRepository.createResourceTrieMap(" + evaluators.size() + " evaluators)");
+        }
+
+        Map<String, RangerResourceTrie> ret = null;
+
+        if (serviceDef != null && CollectionUtils.isNotEmpty(serviceDef.getResources())) {
+            RangerPerfTracer perf = null;
+
+            if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
+                perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.init(serviceName=" + serviceName + ",policyCount=" + evaluators.size() + ")");
+            }
+
+            ret = new HashMap<String, RangerResourceTrie>();
+
+            for (RangerResourceDef resourceDef : serviceDef.getResources()) {
+                if (!RangerResourceTrie.isIndexable(resourceDef)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("RangerPolicyRepository.createResourceTrieMap(): resource " + resourceDef.getName() + " uses custom matcher " + resourceDef.getMatcher() + ". Not indexed");
+                    }
+
+                    continue;
+                }
+
+                RangerResourceTrie trie = new RangerResourceTrie(resourceDef);
+
+                for (int i = 0; i < evaluators.size(); i++) {
+                    RangerPolicy                      policy          = evaluators.get(i).getPolicy();
+                    Map<String, RangerPolicyResource> policyResources = policy == null ? null : policy.getResources();
+
+                    trie.add(policyResources == null ? null : policyResources.get(resourceDef.getName()), i);
+                }
+
+                trie.done();
+
+                ret.put(resourceDef.getName(), trie);
+            }
+
+            RangerPerfTracer.log(perf);
+        }
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository.createResourceTrieMap(" + evaluators.size() + " evaluators): " + ret);
+        }
+
+        return ret;
+    }
+
+    private List<RangerPolicyEvaluator> getLikelyMatchEvaluators(Map<String, RangerResourceTrie> trieMap, List<RangerPolicyEvaluator> evaluators, RangerAccessResource resource) {
+        if (trieMap == null || trieMap.isEmpty() || resource == null || CollectionUtils.isEmpty(evaluators)) {
+            return evaluators;
+        }
+
+        RangerPerfTracer perf = null;
+
+        if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_LOOKUP_LOG)) {
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_LOOKUP_LOG, "RangerPolicyRepository.getLikelyMatchEvaluators(resource=" + resource.getAsString() + ")");
+        }
+
+        BitSet candidates = null;
+
+        for (Map.Entry<String, RangerResourceTrie> entry : trieMap.entrySet()) {
+            String resourceValue = resource.getValue(entry.getKey());
+
+            // no filtering when all values are requested at this level; policies are matched as usual by the evaluators
+            if (StringUtils.isEmpty(resourceValue) || RangerAbstractResourceMatcher.WILDCARD_ASTERISK.equals(resourceValue)) {
+                continue;
+            }
+
+            BitSet ordinals = entry.getValue().getOrdinalsForResource(resourceValue);
+
+            if (candidates == null) {
+                candidates = ordinals;
+            } else {
+                candidates.and(ordinals);
+            }
+
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+
+        final List<RangerPolicyEvaluator> ret;
+
+        if (candidates == null) {
+            ret = evaluators;
+        } else {
+            ret = new ArrayList<RangerPolicyEvaluator>(candidates.cardinality());
+
+            // ordinals are positions in the sorted evaluator list, hence the result is in evalOrder
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                ret.add(evaluators.get(i));
+            }
+        }
+
+        RangerPerfTracer.log(perf);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("RangerPolicyRepository.getLikelyMatchEvaluators(" + resource.getAsString() + "): " + ret.size() + " of " + evaluators.size() + " evaluators");
+        }
+
+        return ret;
+    }
+
     private RangerContextEnricher buildContextEnricher(RangerServiceDef.RangerContextEnricherDef enricherDef) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerPolicyRepository.buildContextEnricher(" + enricherDef + ")");
@@ -427,7 +658,7 @@ public class RangerPolicyRepository {
         }
 
         scrubPolicy(policy);
-        RangerPolicyEvaluator ret;
+        RangerAbstractPolicyEvaluator ret;
 
         if(StringUtils.equalsIgnoreCase(options.evaluatorType, RangerPolicyEvaluator.EVALUATOR_TYPE_CACHED)) {
             ret = new RangerCachedPolicyEvaluator();
@@ -435,6 +666,7 @@ public class RangerPolicyRepository {
             ret = new RangerOptimizedPolicyEvaluator();
         }
 
+        ret.setNameIds(nameIds);
         ret.init(policy, serviceDef, options);
 
         if(LOG.isDebugEnabled()) {
@@ -552,6 +784,10 @@ public class RangerPolicyRepository {
 
         sb.append("} ");
 
+        if (accessAuditCache != null) {
+            sb.append("accessAuditCache={").append(accessAuditCache).append("} ");
+        }
+
         return sb;
     }
 
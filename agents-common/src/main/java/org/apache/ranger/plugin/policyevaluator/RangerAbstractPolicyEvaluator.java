@@ -28,6 +28,7 @@ import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerNameIds;
 
 public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvaluator {
 	private static final Log LOG = LogFactory.getLog(RangerAbstractPolicyEvaluator.class);
@@ -35,6 +36,7 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 	private RangerPolicy     policy     = null;
 	private RangerServiceDef serviceDef = null;
 	private int              evalOrder  = 0;
+	private RangerNameIds    nameIds    = null;
 
 
 	@Override
@@ -51,6 +53,22 @@ public abstract class RangerAbstractPolicyEvaluator implements RangerPolicyEvalu
 		}
 	}
 
+	/**
+	 * Sets the dictionaries of the repository this evaluator is built for; to be called before init()
+	 */
+	public void setNameIds(RangerNameIds nameIds) {
+		this.nameIds = nameIds;
+	}
+
+	// an evaluator built outside of a repository gets dictionaries of its own
+	protected RangerNameIds getNameIds() {
+		if(nameIds == null) {
+			nameIds = new RangerNameIds();
+		}
+
+		return nameIds;
+	}
+
 	@Override
 	public RangerPolicy getPolicy() {
 		return policy;
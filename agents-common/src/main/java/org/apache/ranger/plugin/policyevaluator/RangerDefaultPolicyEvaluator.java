@@ -565,7 +565,9 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 						policyItem.getAccesses().add(impliedAccess);
 					} else {
 						if(! impliedAccess.getIsAllowed()) {
-							impliedAccess.setIsAllowed(access.getIsAllowed());
+							List<RangerPolicyItemAccess> accesses = policyItem.getAccesses();
+
+							accesses.set(accesses.indexOf(impliedAccess), new RangerPolicyItemAccess(impliedAccess.getType(), access.getIsAllowed()));
 						}
 					}
 				}
@@ -647,7 +649,7 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 			int policyItemCounter = 1;
 
 			for(RangerPolicyItem policyItem : policyItems) {
-				RangerPolicyItemEvaluator itemEvaluator = new RangerDefaultPolicyItemEvaluator(serviceDef, policy, policyItem, policyItemType, policyItemCounter++, options);
+				RangerPolicyItemEvaluator itemEvaluator = new RangerDefaultPolicyItemEvaluator(serviceDef, policy, policyItem, policyItemType, policyItemCounter++, options, getNameIds());
 
 				itemEvaluator.init();
 
@@ -861,7 +863,7 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 			int policyItemCounter = 1;
 
 			for(RangerDataMaskPolicyItem policyItem : policyItems) {
-				RangerDataMaskPolicyItemEvaluator itemEvaluator = new RangerDefaultDataMaskPolicyItemEvaluator(serviceDef, policy, policyItem, policyItemCounter++, options);
+				RangerDataMaskPolicyItemEvaluator itemEvaluator = new RangerDefaultDataMaskPolicyItemEvaluator(serviceDef, policy, policyItem, policyItemCounter++, options, getNameIds());
 
 				itemEvaluator.init();
 
@@ -19,6 +19,7 @@
 package org.apache.ranger.plugin.policyevaluator;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Set;
 
@@ -37,6 +38,8 @@ import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.RangerNameIds;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 
 
@@ -48,8 +51,37 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 	private static final Log PERF_POLICYCONDITION_INIT_LOG = RangerPerfTracer.getPerfLogger("policycondition.init");
 	private static final Log PERF_POLICYCONDITION_REQUEST_LOG = RangerPerfTracer.getPerfLogger("policycondition.request");
 
-	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options) {
+	private final boolean       hasPublicGroup;
+	private final boolean       hasAllowedAccess;
+	private final BitSet        userIds;
+	private final BitSet        groupIds;
+	private final BitSet        allowedAccessTypeIds; // ids of lower-cased access-types
+	private final RangerNameIds nameIds;
+
+	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options, RangerNameIds nameIds) {
 		super(serviceDef, policy, policyItem, policyItemType, policyItemIndex, options);
+
+		boolean tmpHasAllowedAccess     = false;
+		BitSet  tmpAllowedAccessTypeIds = new BitSet();
+
+		if(policyItem != null && policyItem.getAccesses() != null) {
+			for(RangerPolicyItemAccess access : policyItem.getAccesses()) {
+				if(access.getIsAllowed()) {
+					tmpHasAllowedAccess = true;
+
+					if(access.getType() != null) {
+						tmpAllowedAccessTypeIds.set(nameIds.getAccessTypes().getOrCreateId(RangerNameIds.toAccessTypeName(access.getType())));
+					}
+				}
+			}
+		}
+
+		this.hasPublicGroup       = policyItem != null && policyItem.getGroups() != null && policyItem.getGroups().contains(RangerPolicyEngine.GROUP_PUBLIC);
+		this.hasAllowedAccess     = tmpHasAllowedAccess;
+		this.userIds              = nameIds.getUsers().getOrCreateIds(policyItem == null ? null : policyItem.getUsers());
+		this.groupIds             = nameIds.getGroups().getOrCreateIds(policyItem == null ? null : policyItem.getGroups());
+		this.allowedAccessTypeIds = tmpAllowedAccessTypeIds;
+		this.nameIds              = nameIds;
 	}
 
 	public void init() {
@@ -120,28 +152,22 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 		}
 
 		if(policyItem != null) {
-			if(matchUserGroup(request.getUser(), request.getUserGroups())) {
+			RangerNameIds.RequestIds requestIds = RangerAccessRequestUtil.getRequestIds(request, nameIds);
+
+			if(matchUserGroup(requestIds)) {
 				if (request.isAccessTypeDelegatedAdmin()) { // used only in grant/revoke scenario
 					if (policyItem.getDelegateAdmin()) {
 						ret = true;
 					}
-				} else if (CollectionUtils.isNotEmpty(policyItem.getAccesses())) {
-					boolean isAccessTypeMatched = false;
+				} else if (hasAllowedAccess) {
+					boolean isAccessTypeMatched;
 
 					if (request.isAccessTypeAny()) {
-						for (RangerPolicy.RangerPolicyItemAccess access : policyItem.getAccesses()) {
-							if (access.getIsAllowed()) {
-								isAccessTypeMatched = true;
-								break;
-							}
-						}
+						isAccessTypeMatched = true;
 					} else {
-						for (RangerPolicy.RangerPolicyItemAccess access : policyItem.getAccesses()) {
-							if (access.getIsAllowed() && StringUtils.equalsIgnoreCase(access.getType(), request.getAccessType())) {
-								isAccessTypeMatched = true;
-								break;
-							}
-						}
+						int accessTypeId = requestIds.getAccessTypeId();
+
+						isAccessTypeMatched = accessTypeId != -1 && allowedAccessTypeIds.get(accessTypeId);
 					}
 
 					if(isAccessTypeMatched) {
@@ -162,6 +188,12 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 		return ret;
 	}
 
+	private boolean matchUserGroup(RangerNameIds.RequestIds requestIds) {
+		int userId = requestIds.getUserId();
+
+		return (userId != -1 && userIds.get(userId)) || (requestIds.hasUserGroups() && (hasPublicGroup || groupIds.intersects(requestIds.getGroupIds())));
+	}
+
 	@Override
 	public boolean matchUserGroup(String user, Set<String> userGroups) {
 		if(LOG.isDebugEnabled()) {
@@ -28,6 +28,8 @@ import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.RangerNameIds;
 
 import java.util.*;
 
@@ -40,6 +42,8 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
     private boolean     delegateAdmin  = false;
     private boolean     hasAllPerms    = false;
     private boolean     hasPublicGroup = false;
+    private BitSet      userIds        = null;
+    private BitSet      groupIds       = null;
 
 
     // For computation of priority
@@ -76,6 +80,8 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         preprocessPolicyItems(policy.getDenyExceptions());
 
         hasAllPerms = checkIfHasAllPerms();
+        userIds     = getNameIds().getUsers().getOrCreateIds(users);
+        groupIds    = getNameIds().getGroups().getOrCreateIds(groups);
 
         for (String group : groups) {
             if (group.equalsIgnoreCase(RangerPolicyEngine.GROUP_PUBLIC)) {
@@ -231,7 +237,7 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
     protected boolean hasMatchablePolicyItem(RangerAccessRequest request) {
         boolean ret = false;
 
-        if (hasPublicGroup || users.contains(request.getUser()) || CollectionUtils.containsAny(groups, request.getUserGroups())) {
+        if (hasPublicGroup || hasMatchableUserGroup(RangerAccessRequestUtil.getRequestIds(request, getNameIds()))) {
             if(request.isAccessTypeDelegatedAdmin()) {
                 ret = delegateAdmin;
             } else if(hasAllPerms) {
@@ -244,6 +250,12 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         return ret;
     }
 
+    private boolean hasMatchableUserGroup(RangerNameIds.RequestIds requestIds) {
+        int userId = requestIds.getUserId();
+
+        return (userId != -1 && userIds.get(userId)) || groupIds.intersects(requestIds.getGroupIds());
+    }
+
     private boolean hasMatchablePolicyItem(String user, Set<String> userGroups, String accessType) {
         boolean ret = false;
 
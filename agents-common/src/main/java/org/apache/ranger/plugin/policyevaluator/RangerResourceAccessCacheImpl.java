@@ -19,28 +19,26 @@
 package org.apache.ranger.plugin.policyevaluator;
 
 
-import java.util.Map;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
-import org.apache.ranger.plugin.policyengine.CacheMap;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyengine.RangerConcurrentCache;
 
 
 public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache {
     private static final Log LOG = LogFactory.getLog(RangerResourceAccessCacheImpl.class);
 
-    public synchronized static RangerResourceAccessCache getInstance(RangerServiceDef serviceDef, RangerPolicy policy) {
+    public static RangerResourceAccessCache getInstance(RangerServiceDef serviceDef, RangerPolicy policy) {
         return new RangerResourceAccessCacheImpl(serviceDef, policy);
     }
 
     private RangerServiceDef serviceDef = null;
 
-    private Map<String, String> matchedResourceCache    = null;
-    private Map<String, String> notMatchedResourceCache = null;
+    private RangerConcurrentCache<String, Boolean> matchedResourceCache    = null;
+    private RangerConcurrentCache<String, Boolean> notMatchedResourceCache = null;
 
     private RangerResourceAccessCacheImpl(RangerServiceDef serviceDef, RangerPolicy policy) {
         if(LOG.isDebugEnabled()) {
@@ -52,8 +50,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
 
         this.serviceDef = serviceDef;
 
-        matchedResourceCache    = new CacheMap<String, String>(matchedCacheSize);
-        notMatchedResourceCache = new CacheMap<String, String>(notMatchedCacheSize);
+        matchedResourceCache    = new RangerConcurrentCache<String, Boolean>(matchedCacheSize);
+        notMatchedResourceCache = new RangerConcurrentCache<String, Boolean>(notMatchedCacheSize);
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.constructor(), policyName:" + policy.getName());
@@ -71,13 +69,11 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
         LookupResult result = LookupResult.NOT_FOUND;
 
         try {
-        	synchronized(this) {
-	            if (matchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_MATCHED_CACHE;
-	            } else if(notMatchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_NOTMATCHED_CACHE;
-	            }
-        	}
+            if (matchedResourceCache.containsKey(strResource)) {
+                result = LookupResult.IN_MATCHED_CACHE;
+            } else if(notMatchedResourceCache.containsKey(strResource)) {
+                result = LookupResult.IN_NOTMATCHED_CACHE;
+            }
         } catch (Exception exception) {
             result = LookupResult.ERROR;
         }
@@ -97,22 +93,25 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
             LOG.debug("==> RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
         }
 
-        synchronized(this) {
-	        switch (cacheType) {
-	            case MATCHED_CACHE:
-	                matchedResourceCache.put(strResource, strResource);
-	                break;
-	
-	            case NOTMATCHED_CACHE:
-	                notMatchedResourceCache.put(strResource, strResource);
-	                break;
-	            default:
-	                break;
-	        }
+        switch (cacheType) {
+            case MATCHED_CACHE:
+                matchedResourceCache.put(strResource, Boolean.TRUE);
+                break;
+
+            case NOTMATCHED_CACHE:
+                notMatchedResourceCache.put(strResource, Boolean.TRUE);
+                break;
+            default:
+                break;
         }
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
         }
     }
+
+    @Override
+    public String toString() {
+        return "RangerResourceAccessCacheImpl={matchedResourceCache=" + matchedResourceCache + ", notMatchedResourceCache=" + notMatchedResourceCache + "}";
+    }
 }
@@ -20,9 +20,6 @@
 package org.apache.ranger.plugin.resourcematcher;
 
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOCase;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -30,6 +27,23 @@ import org.apache.commons.logging.LogFactory;
 public class RangerDefaultResourceMatcher extends RangerAbstractResourceMatcher {
 	private static final Log LOG = LogFactory.getLog(RangerDefaultResourceMatcher.class);
 
+	private RangerPolicyValueMatcher valueMatcher = null;
+
+	@Override
+	public void init() {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerDefaultResourceMatcher.init()");
+		}
+
+		super.init();
+
+		valueMatcher = new RangerPolicyValueMatcher(policyValues, optIgnoreCase, optWildCard);
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerDefaultResourceMatcher.init()");
+		}
+	}
+
 	@Override
 	public boolean isMatch(String resource) {
 		if(LOG.isDebugEnabled()) {
@@ -42,19 +56,7 @@ public class RangerDefaultResourceMatcher extends RangerAbstractResourceMatcher
 		if(allValuesRequested || isMatchAny) {
 			ret = isMatchAny;
 		} else {
-			for(String policyValue : policyValues) {
-				if(optWildCard) {
-					ret = optIgnoreCase ? FilenameUtils.wildcardMatch(resource, policyValue, IOCase.INSENSITIVE)
-										: FilenameUtils.wildcardMatch(resource, policyValue, IOCase.SENSITIVE);
-				} else {
-					ret = optIgnoreCase ? StringUtils.equalsIgnoreCase(resource, policyValue)
-										: StringUtils.equals(resource, policyValue);
-				}
-
-				if(ret) {
-					break;
-				}
-			}
+			ret = getValueMatcher().isMatch(resource);
 		}
 
 		ret = applyExcludes(allValuesRequested, ret);
@@ -80,6 +82,18 @@ public class RangerDefaultResourceMatcher extends RangerAbstractResourceMatcher
 		return ret;
 	}
 
+	private RangerPolicyValueMatcher getValueMatcher() {
+		RangerPolicyValueMatcher ret = valueMatcher;
+
+		if(ret == null) { // subclasses might set policyValues without calling init()
+			ret = new RangerPolicyValueMatcher(policyValues, optIgnoreCase, optWildCard);
+
+			valueMatcher = ret;
+		}
+
+		return ret;
+	}
+
 	public StringBuilder toString(StringBuilder sb) {
 		sb.append("RangerDefaultResourceMatcher={");
 
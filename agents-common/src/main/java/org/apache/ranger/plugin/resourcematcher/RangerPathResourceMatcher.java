@@ -40,6 +40,7 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 	private boolean      policyIsRecursive    = false;
 	private char         pathSeparatorChar    = DEFAULT_PATH_SEPERATOR_CHAR;
 	private List<String> policyValuesForMatch = null;
+	private RangerPolicyValueMatcher valueMatcher = null;
 
 	@Override
 	public void init() {
@@ -66,6 +67,8 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 			policyValuesForMatch = policyValues;
 		}
 
+		valueMatcher = new RangerPolicyValueMatcher(policyValuesForMatch, optIgnoreCase, optWildCard);
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerPathResourceMatcher.init()");
 		}
@@ -82,26 +85,31 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 
 		if(allValuesRequested || isMatchAny) {
 			ret = isMatchAny;
-		} else {
-			IOCase caseSensitivity = optIgnoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
+		} else if(policyIsRecursive && optWildCard) {
+			if(hasConsecutiveSeparators(resource, pathSeparatorChar)) { // legacy match collapses consecutive separators
+				IOCase caseSensitivity = optIgnoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE;
 
-			for(String policyValue : policyValuesForMatch) {
-				if(policyIsRecursive && optWildCard) {
+				for(String policyValue : policyValuesForMatch) {
 					ret = isRecursiveWildCardMatch(resource, policyValue, pathSeparatorChar, caseSensitivity);
-				} else if(policyIsRecursive) {
-					ret = optIgnoreCase ? StringUtils.startsWithIgnoreCase(resource, policyValue)
-										: StringUtils.startsWith(resource, policyValue);
-				} else if(optWildCard) {
-					ret = FilenameUtils.wildcardMatch(resource, policyValue, caseSensitivity);
-				} else {
-					ret = optIgnoreCase ? StringUtils.equalsIgnoreCase(resource, policyValue)
-										: StringUtils.equals(resource, policyValue);
+
+					if(ret) {
+						break;
+					}
 				}
+			} else {
+				ret = valueMatcher.isRecursiveMatch(resource, pathSeparatorChar);
+			}
+		} else if(policyIsRecursive) {
+			for(String policyValue : policyValuesForMatch) {
+				ret = optIgnoreCase ? StringUtils.startsWithIgnoreCase(resource, policyValue)
+									: StringUtils.startsWith(resource, policyValue);
 
 				if(ret) {
 					break;
 				}
 			}
+		} else {
+			ret = valueMatcher.isMatch(resource);
 		}
 
 		ret = applyExcludes(allValuesRequested, ret);
@@ -113,6 +121,16 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 		return ret;
 	}
 
+	private static boolean hasConsecutiveSeparators(String path, char pathSeparatorChar) {
+		for(int i = 1; i < path.length(); i++) {
+			if(path.charAt(i) == pathSeparatorChar && path.charAt(i - 1) == pathSeparatorChar) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	private boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, char pathSeparatorChar, IOCase caseSensitivity) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPathResourceMatcher.isRecursiveWildCardMatch(" + pathToCheck + ", " + wildcardPath + ", " + pathSeparatorChar + ")");
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Policy values of a resource matcher, compiled once so that matching a resource doesn't parse the values again.
+ *
+ * Each value is compiled to the cheapest form that gives the same result as FilenameUtils.wildcardMatch() (or
+ * equals()/equalsIgnoreCase() for values without wildcards):
+ *  - values without wildcards: a hash set lookup
+ *  - values like 'abc*' or '*abc': a prefix or suffix comparison
+ *  - other values: a glob automaton, simulated with bit-parallel state sets; doesn't allocate while matching. Patterns
+ *    that the automaton can't handle the same way as FilenameUtils.wildcardMatch() are matched with it, as earlier.
+ *
+ * When ignoreCase is set, the values are folded once and each resource character is folded as it is read.
+ */
+final class RangerPolicyValueMatcher {
+	private static final int KIND_PREFIX = 1;
+	private static final int KIND_SUFFIX = 2;
+	private static final int KIND_GLOB   = 3;
+
+	private static final int MAX_STATES = 63; // states of a glob automaton must fit in a long
+
+	private final boolean       ignoreCase;
+	private final Set<String>   exactValues;   // folded, if ignoreCase
+	private final String[]      exactList;     // same as exactValues, for recursive match
+	private final GlobPattern[] patterns;
+
+	RangerPolicyValueMatcher(List<String> policyValues, boolean ignoreCase, boolean wildCard) {
+		this.ignoreCase = ignoreCase;
+
+		Set<String>       exacts = new HashSet<String>();
+		List<GlobPattern> globs  = new ArrayList<GlobPattern>();
+
+		if(policyValues != null) {
+			for(String policyValue : policyValues) {
+				if(StringUtils.isEmpty(policyValue)) {
+					continue;
+				}
+
+				String value = fold(policyValue);
+
+				if(wildCard && StringUtils.containsAny(value, RangerAbstractResourceMatcher.WILDCARDS)) {
+					globs.add(new GlobPattern(value, ignoreCase));
+				} else {
+					exacts.add(value);
+				}
+			}
+		}
+
+		this.exactValues = exacts;
+		this.exactList   = exacts.toArray(new String[exacts.size()]);
+		this.patterns    = globs.toArray(new GlobPattern[globs.size()]);
+	}
+
+	boolean isMatch(String resource) {
+		if(resource == null) {
+			return false;
+		}
+
+		if(exactList.length > 0 && exactValues.contains(fold(resource))) {
+			return true;
+		}
+
+		for(GlobPattern pattern : patterns) {
+			if(pattern.isMatch(resource)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Same result as calling isMatch() on every prefix of the path that ends at the end of a path element, but in a
+	 * single pass over the path. The path must not have consecutive separators: the caller is expected to handle
+	 * such paths, as the legacy match collapses them.
+	 */
+	boolean isRecursiveMatch(String path, char pathSeparatorChar) {
+		if(StringUtils.isEmpty(path)) {
+			return false;
+		}
+
+		for(String value : exactList) {
+			int len = value.length();
+
+			if(path.regionMatches(ignoreCase, 0, value, 0, len) && (path.length() == len || path.charAt(len) == pathSeparatorChar)) {
+				if(value.charAt(len - 1) != pathSeparatorChar || StringUtils.containsOnly(path, new char[] { pathSeparatorChar })) {
+					return true;
+				}
+			}
+		}
+
+		for(GlobPattern pattern : patterns) {
+			if(pattern.isRecursiveMatch(path, pathSeparatorChar)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// same folding as String.equalsIgnoreCase() and FilenameUtils.wildcardMatch(IOCase.INSENSITIVE)
+	private String fold(String str) {
+		if(!ignoreCase || str == null) {
+			return str;
+		}
+
+		char[] chars = null;
+
+		for(int i = 0; i < str.length(); i++) {
+			char c      = str.charAt(i);
+			char folded = foldChar(c);
+
+			if(folded != c) {
+				if(chars == null) {
+					chars = str.toCharArray();
+				}
+
+				chars[i] = folded;
+			}
+		}
+
+		return chars == null ? str : new String(chars);
+	}
+
+	private static char foldChar(char c) {
+		if(c < 128) {
+			return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+		}
+
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static final class GlobPattern {
+		final String  pattern;    // folded, if ignoreCase
+		final boolean ignoreCase;
+		final int     kind;
+		final String  literal;    // for KIND_PREFIX and KIND_SUFFIX
+
+		// automaton: state i means 'first i non-star characters of the pattern matched'. A '*' is a self-loop on the
+		// state it occurs in; a '?' or a literal character moves to the next state
+		final boolean useAutomaton;
+		final long    selfLoopMask;
+		final long    anyCharMask;
+		final long    acceptMask;
+		final long[]  asciiMasks;
+		final char[]  otherChars;  // sorted, for binary search
+		final long[]  otherMasks;
+
+		GlobPattern(String pattern, boolean ignoreCase) {
+			this.pattern    = pattern;
+			this.ignoreCase = ignoreCase;
+
+			int firstWildcard = StringUtils.indexOfAny(pattern, RangerAbstractResourceMatcher.WILDCARDS);
+			int lastNonStar   = lastIndexOfNonStar(pattern);
+
+			if(pattern.indexOf('?') == -1 && firstWildcard > 0 && firstWildcard > lastNonStar) {
+				kind    = KIND_PREFIX;
+				literal = pattern.substring(0, firstWildcard);
+			} else if(pattern.indexOf('?') == -1 && firstWildcard == 0 && !StringUtils.containsAny(pattern.substring(firstNonStar(pattern)), RangerAbstractResourceMatcher.WILDCARDS)) {
+				kind    = KIND_SUFFIX;
+				literal = pattern.substring(firstNonStar(pattern));
+			} else {
+				kind    = KIND_GLOB;
+				literal = null;
+			}
+
+			long                 selfLoops = 0;
+			long                 anyChars  = 0;
+			long[]               ascii     = new long[128];
+			Map<Character, Long> others    = new TreeMap<Character, Long>();
+			int                  state     = 0;
+
+			for(int i = 0; i < pattern.length() && state <= MAX_STATES; i++) {
+				char c = pattern.charAt(i);
+
+				if(c == '*') {
+					selfLoops |= (1L << state);
+
+					continue;
+				}
+
+				if(state == MAX_STATES) { // no room for the next state
+					state++;
+
+					break;
+				}
+
+				if(c == '?') {
+					anyChars |= (1L << state);
+				} else if(c < 128) {
+					ascii[c] |= (1L << state);
+				} else {
+					Long mask = others.get(c);
+
+					others.put(c, (mask == null ? 0L : mask) | (1L << state));
+				}
+
+				state++;
+			}
+
+			// FilenameUtils.wildcardMatch() ignores a '*' that is followed by '?'; such patterns are left to it
+			useAutomaton = state <= MAX_STATES && !pattern.contains("*?");
+			selfLoopMask = selfLoops;
+			anyCharMask  = anyChars;
+			acceptMask   = useAutomaton ? (1L << state) : 0;
+			asciiMasks   = ascii;
+			otherChars   = new char[others.size()];
+			otherMasks   = new long[others.size()];
+
+			int idx = 0;
+
+			for(Map.Entry<Character, Long> e : others.entrySet()) {
+				otherChars[idx] = e.getKey();
+				otherMasks[idx] = e.getValue();
+
+				idx++;
+			}
+		}
+
+		boolean isMatch(String str) {
+			switch(kind) {
+				case KIND_PREFIX:
+					return str.regionMatches(ignoreCase, 0, literal, 0, literal.length());
+
+				case KIND_SUFFIX:
+					return str.length() >= literal.length() && str.regionMatches(ignoreCase, str.length() - literal.length(), literal, 0, literal.length());
+
+				default:
+					break;
+			}
+
+			if(!useAutomaton) {
+				return FilenameUtils.wildcardMatch(str, pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+			}
+
+			long states = 1L;
+
+			for(int i = 0; i < str.length() && states != 0; i++) {
+				states = step(states, str.charAt(i));
+			}
+
+			return (states & acceptMask) != 0;
+		}
+
+		boolean isRecursiveMatch(String path, char pathSeparatorChar) {
+			if(!useAutomaton) {
+				return isRecursiveMatchLegacy(path, pathSeparatorChar);
+			}
+
+			long    states     = 1L;
+			boolean hasElement = false;
+			int     len        = path.length();
+
+			for(int i = 0; i < len && states != 0; i++) {
+				char c = path.charAt(i);
+
+				if(c == pathSeparatorChar) {
+					if(i > 0 && path.charAt(i - 1) != pathSeparatorChar) { // end of a path element
+						hasElement = true;
+
+						if((states & acceptMask) != 0) {
+							return true;
+						}
+					}
+				}
+
+				states = step(states, c);
+			}
+
+			if(len > 0 && path.charAt(len - 1) != pathSeparatorChar) { // last path element
+				hasElement = true;
+			}
+
+			if(!hasElement || path.charAt(len - 1) != pathSeparatorChar) { // a path of only separators is matched as is
+				return (states & acceptMask) != 0;
+			}
+
+			return false;
+		}
+
+		private boolean isRecursiveMatchLegacy(String path, char pathSeparatorChar) {
+			for(int i = 1; i <= path.length(); i++) {
+				boolean isElementEnd = (i == path.length() || path.charAt(i) == pathSeparatorChar) && path.charAt(i - 1) != pathSeparatorChar;
+
+				if(isElementEnd && FilenameUtils.wildcardMatch(path.substring(0, i), pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE)) {
+					return true;
+				}
+			}
+
+			return StringUtils.containsOnly(path, new char[] { pathSeparatorChar }) && isMatch(path);
+		}
+
+		private long step(long states, char c) {
+			if(ignoreCase) {
+				c = foldChar(c);
+			}
+
+			long charMask;
+
+			if(c < 128) {
+				charMask = asciiMasks[c];
+			} else {
+				int idx = Arrays.binarySearch(otherChars, c);
+
+				charMask = idx < 0 ? 0 : otherMasks[idx];
+			}
+
+			return ((states & (charMask | anyCharMask)) << 1) | (states & selfLoopMask);
+		}
+
+		private static int firstNonStar(String str) {
+			int ret = 0;
+
+			while(ret < str.length() && str.charAt(ret) == '*') {
+				ret++;
+			}
+
+			return ret;
+		}
+
+		private static int lastIndexOfNonStar(String str) {
+			int ret = str.length() - 1;
+
+			while(ret >= 0 && str.charAt(ret) == '*') {
+				ret--;
+			}
+
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+
+/**
+ * Keeps a sample of recent access requests in a fixed-size ring buffer, to be replayed against a new policy engine
+ * before it replaces the current one; this fills the caches of the new engine and its evaluators, and lets the JIT
+ * compile their code, before they serve real requests.
+ *
+ * One in sampleRate requests is recorded, as a copy, so that the replay doesn't see (or make) later changes to the
+ * request and its context. Replay evaluates a fresh copy of each recorded request, without audit.
+ */
+class RangerAccessRequestRecorder {
+	private static final Log LOG = LogFactory.getLog(RangerAccessRequestRecorder.class);
+
+	private final AtomicReferenceArray<RangerAccessRequest> requests;
+	private final AtomicInteger                             nextIndex = new AtomicInteger();
+	private final int                                       sampleRate;
+
+	RangerAccessRequestRecorder(int capacity, int sampleRate) {
+		this.requests   = new AtomicReferenceArray<RangerAccessRequest>(Math.max(capacity, 1));
+		this.sampleRate = Math.max(sampleRate, 1);
+	}
+
+	void record(RangerAccessRequest request) {
+		if (request == null || request.getResource() == null) {
+			return;
+		}
+
+		if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+			return;
+		}
+
+		try {
+			int index = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % requests.length();
+
+			requests.set(index, copyOf(request));
+		} catch (Exception excp) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerAccessRequestRecorder.record(" + request + "): failed to copy request", excp);
+			}
+		}
+	}
+
+	List<RangerAccessRequest> getRequests() {
+		List<RangerAccessRequest> ret = new ArrayList<RangerAccessRequest>(requests.length());
+
+		for (int i = 0; i < requests.length(); i++) {
+			RangerAccessRequest request = requests.get(i);
+
+			if (request != null) {
+				ret.add(request);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Evaluates the recorded requests with the given policy engine, until all are done or maxTimeMs elapses.
+	 *
+	 * @return number of requests evaluated
+	 */
+	int replay(RangerPolicyEngine policyEngine, long maxTimeMs) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerAccessRequestRecorder.replay(maxTimeMs=" + maxTimeMs + ")");
+		}
+
+		int  ret        = 0;
+		int  errorCount = 0;
+		long endTimeMs  = maxTimeMs > 0 ? System.currentTimeMillis() + maxTimeMs : Long.MAX_VALUE;
+
+		for (RangerAccessRequest recorded : getRequests()) {
+			if (System.currentTimeMillis() >= endTimeMs) {
+				LOG.info("RangerAccessRequestRecorder.replay(): stopped after " + ret + " requests, on reaching maxTimeMs=" + maxTimeMs);
+
+				break;
+			}
+
+			try {
+				RangerAccessRequest request = copyOf(recorded);
+
+				policyEngine.preProcess(request);
+				policyEngine.isAccessAllowed(request, null);
+
+				ret++;
+			} catch (Exception excp) {
+				if (errorCount++ == 0) {
+					LOG.warn("RangerAccessRequestRecorder.replay(): failed to evaluate request " + recorded, excp);
+				}
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerAccessRequestRecorder.replay(maxTimeMs=" + maxTimeMs + "): evaluated=" + ret + ", errors=" + errorCount);
+		}
+
+		return ret;
+	}
+
+	private static RangerAccessRequest copyOf(RangerAccessRequest request) {
+		RangerAccessResource    resource = request.getResource();
+		RangerAccessRequestImpl ret      = new RangerAccessRequestImpl();
+
+		ret.setResource(new RangerAccessResourceImpl(new HashMap<String, String>(resource.getAsMap()), resource.getOwnerUser()));
+		ret.setAccessType(request.getAccessType());
+		ret.setUser(request.getUser());
+		ret.setUserGroups(request.getUserGroups() == null ? null : new HashSet<String>(request.getUserGroups()));
+		ret.setAccessTime(request.getAccessTime());
+		ret.setClientIPAddress(request.getClientIPAddress());
+		ret.setClientType(request.getClientType());
+		ret.setAction(request.getAction());
+		ret.setRequestData(request.getRequestData());
+		ret.setSessionId(request.getSessionId());
+		ret.setResourceMatchingScope(request.getResourceMatchingScope());
+		ret.setContext(request.getContext() == null ? null : new HashMap<String, Object>(request.getContext()));
+
+		return ret;
+	}
+}
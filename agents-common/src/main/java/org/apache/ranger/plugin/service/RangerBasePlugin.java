@@ -26,12 +26,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.RangerAdminClient;
 import org.apache.ranger.admin.client.RangerAdminRESTClient;
+import org.apache.ranger.audit.provider.MiscUtil;
+import org.apache.ranger.audit.provider.UserGroupCache;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.policyengine.*;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.util.AlterRequest;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
+import org.apache.ranger.plugin.util.PerfDataRecorder;
 import org.apache.ranger.plugin.util.PolicyRefresher;
 import org.apache.ranger.plugin.util.ServicePolicies;
 
@@ -43,9 +46,13 @@ public class RangerBasePlugin {
 	private String                    appId        = null;
 	private String                    serviceName  = null;
 	private PolicyRefresher           refresher    = null;
-	private RangerPolicyEngine        policyEngine = null;
+	private volatile RangerPolicyEngine policyEngine = null;
 	private RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
 	private RangerAccessResultProcessor resultProcessor = null;
+	private volatile RangerAccessRequestRecorder requestRecorder = null;
+	private volatile long policyEngineBuildTimeMs = -1;
+	private volatile long policyEngineWarmUpTimeMs = -1;
+	private volatile int  policyEngineWarmUpRequestCount = 0;
 
 	Map<String, LogHistory> logHistoryList = new Hashtable<String, RangerBasePlugin.LogHistory>();
 	int logInterval = 30000; // 30 seconds
@@ -97,6 +104,25 @@ public class RangerBasePlugin {
 		policyEngineOptions.disableContextEnrichers = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.disable.context.enrichers", false);
 		policyEngineOptions.disableCustomConditions = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.disable.custom.conditions", false);
 		policyEngineOptions.disableTagPolicyEvaluation = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.disable.tagpolicy.evaluation", false);
+		policyEngineOptions.disableTrieLookupPrefilter = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.disable.trie.lookup.prefilter", false);
+		policyEngineOptions.cacheAccessResults = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.cache.access.results", false);
+		policyEngineOptions.accessResultCacheSize = RangerConfiguration.getInstance().getInt(propertyPrefix + ".policyengine.option.access.result.cache.size", 64 * 1024);
+		policyEngineOptions.disablePolicyEvaluatorReuse = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.disable.policy.evaluator.reuse", false);
+		policyEngineOptions.evaluateBatchInParallel = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.evaluate.batch.in.parallel", false);
+		policyEngineOptions.batchParallelism = RangerConfiguration.getInstance().getInt(propertyPrefix + ".policyengine.option.batch.parallelism", 0);
+		policyEngineOptions.minBatchSizeForParallelEvaluation = RangerConfiguration.getInstance().getInt(propertyPrefix + ".policyengine.option.min.batch.size.for.parallel.evaluation", 32);
+		policyEngineOptions.warmUpPolicyEngine = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policyengine.option.warmup.enabled", false);
+		policyEngineOptions.warmUpRequestCount = RangerConfiguration.getInstance().getInt(propertyPrefix + ".policyengine.option.warmup.request.count", 1000);
+		policyEngineOptions.warmUpSampleRate = RangerConfiguration.getInstance().getInt(propertyPrefix + ".policyengine.option.warmup.sample.rate", 100);
+		policyEngineOptions.warmUpMaxTimeMs = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policyengine.option.warmup.max.time.ms", 5000L);
+
+		MiscUtil.initUserGroupCache(RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".groups.cache.enabled", true),
+									RangerConfiguration.getInstance().getInt(propertyPrefix + ".groups.cache.max.size", UserGroupCache.DEFAULT_MAX_SIZE),
+									RangerConfiguration.getInstance().getLong(propertyPrefix + ".groups.cache.ttl.ms", UserGroupCache.DEFAULT_TTL_MS),
+									RangerConfiguration.getInstance().getLong(propertyPrefix + ".groups.cache.negative.ttl.ms", UserGroupCache.DEFAULT_NEGATIVE_TTL_MS),
+									RangerConfiguration.getInstance().getLong(propertyPrefix + ".groups.cache.refresh.ahead.ms", UserGroupCache.DEFAULT_REFRESH_AHEAD_MS));
+
+		requestRecorder = policyEngineOptions.warmUpPolicyEngine ? new RangerAccessRequestRecorder(policyEngineOptions.warmUpRequestCount, policyEngineOptions.warmUpSampleRate) : null;
 
 		RangerAdminClient admin = createAdminClient(serviceName, appId, propertyPrefix);
 
@@ -110,10 +136,21 @@ public class RangerBasePlugin {
 		try {
 			RangerPolicyEngine oldPolicyEngine = this.policyEngine;
 
-			RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions);
+			long startTimeMs = System.currentTimeMillis();
+
+			RangerPolicyEngineImpl policyEngine = new RangerPolicyEngineImpl(appId, policies, policyEngineOptions, oldPolicyEngine);
+
+			policyEngineBuildTimeMs = System.currentTimeMillis() - startTimeMs;
+
+			PerfDataRecorder.recordStatistic("RangerBasePlugin.buildPolicyEngine", policyEngineBuildTimeMs);
+
+			warmUp(policyEngine);
 
 			this.policyEngine = policyEngine;
 
+			// only now that the old engine is replaced, it must leave the enrichers reused by the new engine alone
+			policyEngine.takeOverContextEnrichers(oldPolicyEngine);
+
 			if (oldPolicyEngine != null && !oldPolicyEngine.preCleanup()) {
 				LOG.error("preCleanup() failed on the previous policy engine instance !!");
 			}
@@ -122,6 +159,27 @@ public class RangerBasePlugin {
 		}
 	}
 
+	/**
+	 * @return time, in milliseconds, taken to build the policy engine from the last policies set; -1 if none were set
+	 */
+	public long getPolicyEngineBuildTimeMs() {
+		return policyEngineBuildTimeMs;
+	}
+
+	/**
+	 * @return time, in milliseconds, taken to warm-up the last policy engine before it replaced the previous one; -1 if not warmed-up
+	 */
+	public long getPolicyEngineWarmUpTimeMs() {
+		return policyEngineWarmUpTimeMs;
+	}
+
+	/**
+	 * @return number of recorded requests replayed to warm-up the last policy engine
+	 */
+	public int getPolicyEngineWarmUpRequestCount() {
+		return policyEngineWarmUpRequestCount;
+	}
+
 	public void cleanup() {
 
 		PolicyRefresher refresher = this.refresher;
@@ -161,6 +219,8 @@ public class RangerBasePlugin {
 		RangerPolicyEngine policyEngine = this.policyEngine;
 
 		if(policyEngine != null) {
+			recordRequest(request);
+
 			policyEngine.preProcess(request);
 
 			return policyEngine.isAccessAllowed(request, resultProcessor);
@@ -173,6 +233,12 @@ public class RangerBasePlugin {
 		RangerPolicyEngine policyEngine = this.policyEngine;
 
 		if(policyEngine != null) {
+			if(requests != null) {
+				for(RangerAccessRequest request : requests) {
+					recordRequest(request);
+				}
+			}
+
 			policyEngine.preProcess(requests);
 
 			return policyEngine.isAccessAllowed(requests, resultProcessor);
@@ -347,6 +413,32 @@ public class RangerBasePlugin {
 		return ret;
 	}
 
+	private void recordRequest(RangerAccessRequest request) {
+		RangerAccessRequestRecorder requestRecorder = this.requestRecorder;
+
+		if(requestRecorder != null) {
+			requestRecorder.record(request);
+		}
+	}
+
+	private void warmUp(RangerPolicyEngine policyEngine) {
+		RangerAccessRequestRecorder requestRecorder = this.requestRecorder;
+
+		if(requestRecorder == null) {
+			return;
+		}
+
+		long startTimeMs  = System.currentTimeMillis();
+		int  requestCount = requestRecorder.replay(policyEngine, policyEngineOptions.warmUpMaxTimeMs);
+
+		policyEngineWarmUpTimeMs       = System.currentTimeMillis() - startTimeMs;
+		policyEngineWarmUpRequestCount = requestCount;
+
+		PerfDataRecorder.recordStatistic("RangerBasePlugin.warmUpPolicyEngine", policyEngineWarmUpTimeMs);
+
+		LOG.info("policy engine for service " + serviceName + ": buildTimeMs=" + policyEngineBuildTimeMs + ", warmUpTimeMs=" + policyEngineWarmUpTimeMs + ", warmUpRequestCount=" + requestCount);
+	}
+
 	private void auditGrantRevoke(GrantRevokeRequest request, String action, boolean isSuccess, RangerAccessResultProcessor resultProcessor) {
 		if(request != null && resultProcessor != null) {
 			RangerAccessRequestImpl accessRequest = new RangerAccessRequestImpl();
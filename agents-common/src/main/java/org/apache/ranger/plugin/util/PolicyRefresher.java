@@ -20,20 +20,15 @@
 package org.apache.ranger.plugin.util;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
-import java.io.Writer;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.RangerAdminClient;
+import org.apache.ranger.admin.client.RangerAdminRESTClient;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
 
 public class PolicyRefresher extends Thread {
 	private static final Log LOG = LogFactory.getLog(PolicyRefresher.class);
@@ -45,11 +40,14 @@ public class PolicyRefresher extends Thread {
 	private final String            serviceName;
 	private final RangerAdminClient rangerAdmin;
 	private final String            cacheFile;
-	private final Gson              gson;
+	private final boolean           isBinaryCache;
+	private final boolean           isDedupPolicies;
 
 	private long 	pollingIntervalMs   = 30 * 1000;
 	private long 	lastKnownVersion    = -1;
 	private boolean policiesSetInPlugin = false;
+	private ServicePolicies lastKnownPolicies = null; // to apply policy deltas downloaded from policy-admin
+	private boolean isPolicyDownloadFailed = false;
 
 
 	public PolicyRefresher(RangerBasePlugin plugIn, String serviceType, String appId, String serviceName, RangerAdminClient rangerAdmin, long pollingIntervalMs, String cacheDir) {
@@ -71,15 +69,9 @@ public class PolicyRefresher extends Thread {
 		cacheFilename = cacheFilename.replace(File.separatorChar,  '_');
 		cacheFilename = cacheFilename.replace(File.pathSeparatorChar,  '_');
 
-		this.cacheFile = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename);
-
-		Gson gson = null;
-		try {
-			gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").setPrettyPrinting().create();
-		} catch(Throwable excp) {
-			LOG.fatal("PolicyRefresher(): failed to create GsonBuilder object", excp);
-		}
-		this.gson = gson;
+		this.cacheFile     = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename);
+		this.isBinaryCache = RangerCacheFile.isBinaryFormat(RangerConfiguration.getInstance().get("ranger.plugin." + serviceType + ".policy.cache.format", RangerCacheFile.FORMAT_JSON));
+		this.isDedupPolicies = RangerConfiguration.getInstance().getBoolean("ranger.plugin." + serviceType + ".policy.dedup.enabled", true);
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").PolicyRefresher()");
@@ -140,7 +132,12 @@ public class PolicyRefresher extends Thread {
 		super.interrupt();
 
 	    try {
-	        super.join();
+	        // a long-poll download in progress doesn't end on interrupt; don't wait for it beyond the polling interval
+	        if(isLongPolling()) {
+	            super.join(pollingIntervalMs);
+	        } else {
+	            super.join();
+	        }
 	      } catch (InterruptedException excp) {
 	        LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): error while waiting for thread to exit", excp);
 	      }
@@ -153,9 +150,14 @@ public class PolicyRefresher extends Thread {
 		}
 
 		while(true) {
-			loadPolicy();
+			boolean isLoaded = loadPolicy();
 			try {
-				Thread.sleep(pollingIntervalMs);
+				// with long-poll, ranger-admin held the download until policies changed or its wait expired
+				if(!isLoaded || !isLongPolling()) {
+					Thread.sleep(pollingIntervalMs);
+				} else if(Thread.interrupted()) {
+					throw new InterruptedException();
+				}
 			} catch(InterruptedException excp) {
 				LOG.info("PolicyRefresher(serviceName=" + serviceName + ").run(): interrupted! Exiting thread", excp);
 				break;
@@ -167,7 +169,15 @@ public class PolicyRefresher extends Thread {
 		}
 	}
 
-	private void loadPolicy() {
+	// only the REST client supports long-poll; RangerAdminClient is left as-is for external implementations
+	private boolean isLongPolling() {
+		return rangerAdmin instanceof RangerAdminRESTClient && ((RangerAdminRESTClient) rangerAdmin).isLongPollingPolicies();
+	}
+
+	/**
+	 * @return false if policies could not be downloaded from ranger-admin
+	 */
+	private boolean loadPolicy() {
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyRefresher(serviceName=" + serviceName + ").loadPolicy()");
@@ -181,11 +191,14 @@ public class PolicyRefresher extends Thread {
 
 		//load policy from PolicyAdmin
 		ServicePolicies svcPolicies = loadPolicyfromPolicyAdmin();
+		boolean         ret         = !isPolicyDownloadFailed;
 
 		if ( svcPolicies == null) {
 		  //if Policy fetch from Policy Admin Fails, load from cache
 		  if (!policiesSetInPlugin) {
 			   svcPolicies = loadFromCache();
+
+			   dedupPolicies(svcPolicies);
 			}
 		} else {
 			saveToCache(svcPolicies);
@@ -199,7 +212,40 @@ public class PolicyRefresher extends Thread {
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").loadPolicy()");
+			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").loadPolicy(): " + ret);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * policies downloaded from ranger-admin or read from the cache have separate instances of strings and accesses for
+	 * each policy; these are shared across policies before policy engine is built with them. Only policies just read
+	 * are to be given here: policies merged from lastKnownPolicies are in use by the current policy engine
+	 */
+	private void dedupPolicies(ServicePolicies svcPolicies) {
+		if(svcPolicies == null) {
+			return;
+		}
+
+		long retainedSizeBefore = LOG.isDebugEnabled() ? RangerObjectSizeEstimator.estimateRetainedSize(svcPolicies) : -1;
+
+		if(isDedupPolicies) {
+			RangerPolicyDeduplicator deduplicator = new RangerPolicyDeduplicator();
+
+			deduplicator.dedup(svcPolicies);
+
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("PolicyRefresher(serviceName=" + serviceName + ").dedupPolicies(): " + deduplicator);
+			}
+		}
+
+		if(LOG.isDebugEnabled()) {
+			long retainedSize = isDedupPolicies ? RangerObjectSizeEstimator.estimateRetainedSize(svcPolicies) : retainedSizeBefore;
+
+			LOG.debug("PolicyRefresher(serviceName=" + serviceName + "): policyVersion=" + svcPolicies.getPolicyVersion() + ", policyCount=" + (svcPolicies.getPolicies() == null ? 0 : svcPolicies.getPolicies().size())
+					+ ", tagPolicyCount=" + (svcPolicies.getTagPolicies() == null || svcPolicies.getTagPolicies().getPolicies() == null ? 0 : svcPolicies.getTagPolicies().getPolicies().size())
+					+ ", estimatedRetainedHeapBytes=" + retainedSize + (isDedupPolicies ? (" (before dedup: " + retainedSizeBefore + ")") : ""));
 		}
 	}
 
@@ -211,9 +257,33 @@ public class PolicyRefresher extends Thread {
 
 		ServicePolicies svcPolicies = null;
 
+		isPolicyDownloadFailed = false;
+
 		try {
 			svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion);
 
+			dedupPolicies(svcPolicies);
+
+			if(svcPolicies != null && svcPolicies.getDeltaFromVersion() != null) {
+				ServicePolicies mergedPolicies = ServicePolicies.applyDelta(lastKnownPolicies, svcPolicies);
+
+				if(mergedPolicies != null) {
+					if(LOG.isDebugEnabled()) {
+						LOG.debug("PolicyRefresher(serviceName=" + serviceName + "): applied policy delta from version " + svcPolicies.getDeltaFromVersion() + ": changedPolicies=" + (svcPolicies.getPolicies() == null ? 0 : svcPolicies.getPolicies().size()) + ", deletedPolicies=" + (svcPolicies.getDeletedPolicyIds() == null ? 0 : svcPolicies.getDeletedPolicyIds().size()));
+					}
+
+					svcPolicies = mergedPolicies;
+				} else {
+					LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): policy delta from version " + svcPolicies.getDeltaFromVersion() + " can't be applied to lastKnownVersion=" + lastKnownVersion + ". Downloading all policies");
+
+					lastKnownVersion = -1;
+
+					svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion);
+
+					dedupPolicies(svcPolicies);
+				}
+			}
+
 			boolean isUpdated = svcPolicies != null;
 
 			if(isUpdated) {
@@ -227,7 +297,8 @@ public class PolicyRefresher extends Thread {
 
 				LOG.info("PolicyRefresher(serviceName=" + serviceName + "): found updated version. lastKnownVersion=" + lastKnownVersion + "; newVersion=" + newVersion);
 
-			   	lastKnownVersion = newVersion;
+			   	lastKnownVersion  = newVersion;
+			   	lastKnownPolicies = svcPolicies;
 
 			} else {
 				if(LOG.isDebugEnabled()) {
@@ -235,6 +306,8 @@ public class PolicyRefresher extends Thread {
 				}
 			}
    		 } catch(Exception excp) {
+   			isPolicyDownloadFailed = true;
+
    			LOG.error("PolicyRefresher(serviceName=" + serviceName + "): failed to refresh policies. Will continue to use last known version of policies (" + lastKnownVersion + ")", excp);
    		 }
 
@@ -257,12 +330,8 @@ public class PolicyRefresher extends Thread {
 		File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
     	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-    		Reader reader = null;
-
     		try {
-	        	reader = new FileReader(cacheFile);
-
-		        policies = gson.fromJson(reader, ServicePolicies.class);
+		        policies = RangerCacheFile.load(cacheFile, ServicePolicies.class);
 
 		        if(policies != null) {
 		        	if(!StringUtils.equals(serviceName, policies.getServiceName())) {
@@ -271,18 +340,11 @@ public class PolicyRefresher extends Thread {
 		        		policies.setServiceName(serviceName);
 		        	}
 
-		        	lastKnownVersion = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
+		        	lastKnownVersion  = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
+		        	lastKnownPolicies = policies;
 		         }
 	        } catch (Exception excp) {
 	        	LOG.error("failed to load policies from cache file " + cacheFile.getAbsolutePath(), excp);
-	        } finally {
-	        	if(reader != null) {
-	        		try {
-	        			reader.close();
-	        		} catch(Exception excp) {
-	        			LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-	        		}
-	        	}
 	        }
 		} else {
 			LOG.warn("cache file does not exist or not readble '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
@@ -304,22 +366,10 @@ public class PolicyRefresher extends Thread {
 	    	File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
 
 	    	if(cacheFile != null) {
-				Writer writer = null;
-	
 				try {
-					writer = new FileWriter(cacheFile);
-	
-			        gson.toJson(policies, writer);
+					RangerCacheFile.save(cacheFile, policies, isBinaryCache);
 		        } catch (Exception excp) {
 		        	LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-		        	if(writer != null) {
-		        		try {
-		        			writer.close();
-		        		} catch(Exception excp) {
-		        			LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        		}
-		        	}
 		        }
 	    	}
 		} else {
@@ -28,6 +28,7 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 
 public class RangerAccessRequestUtil {
@@ -37,6 +38,8 @@ public class RangerAccessRequestUtil {
 	public static final String KEY_CONTEXT_TAG_OBJECT          = "TAG_OBJECT";
 	public static final String KEY_CONTEXT_RESOURCE            = "RESOURCE";
 	public static final String KEY_CONTEXT_REQUESTED_RESOURCES = "REQUESTED_RESOURCES";
+	public static final String KEY_CONTEXT_TAGS_GENERATION     = "TAGS_GENERATION";
+	public static final String KEY_CONTEXT_REQUEST_IDS         = "REQUEST_IDS";
 
 	public static void setRequestTagsInContext(Map<String, Object> context, List<RangerTag> tags) {
 		if(CollectionUtils.isEmpty(tags)) {
@@ -64,6 +67,21 @@ public class RangerAccessRequestUtil {
 		return ret;
 	}
 
+	public static void setRequestTagsGenerationInContext(Map<String, Object> context, long tagsGeneration) {
+		context.put(KEY_CONTEXT_TAGS_GENERATION, Long.valueOf(tagsGeneration));
+	}
+
+	public static Long getRequestTagsGenerationFromContext(Map<String, Object> context) {
+		Long   ret = null;
+		Object val = context.get(KEY_CONTEXT_TAGS_GENERATION);
+
+		if(val != null && val instanceof Long) {
+			ret = (Long)val;
+		}
+
+		return ret;
+	}
+
 	public static void setCurrentTagInContext(Map<String, Object> context, RangerTag tag) {
 		context.put(KEY_CONTEXT_TAG_OBJECT, tag);
 	}
@@ -109,6 +127,40 @@ public class RangerAccessRequestUtil {
 		return ret;
 	}
 
+	/**
+	 * @return ids of user, groups and access-type of the request in the given dictionaries; computed on first call and
+	 *         saved in request context
+	 */
+	public static RangerNameIds.RequestIds getRequestIds(RangerAccessRequest request, RangerNameIds nameIds) {
+		Map<String, Object>      context = request.getContext();
+		Object                   val     = context == null ? null : context.get(KEY_CONTEXT_REQUEST_IDS);
+		RangerNameIds.RequestIds ret     = null;
+
+		if(val != null && val instanceof RangerNameIds.RequestIds) {
+			ret = (RangerNameIds.RequestIds)val;
+
+			if(!ret.isValidFor(request, nameIds)) {
+				ret = null;
+			}
+		}
+
+		if(ret == null) {
+			ret = new RangerNameIds.RequestIds(request, nameIds);
+
+			if(context != null) {
+				try {
+					context.put(KEY_CONTEXT_REQUEST_IDS, ret);
+				} catch(UnsupportedOperationException excp) { // read-only request; ids will be computed on each call
+					if(LOG.isDebugEnabled()) {
+						LOG.debug("getRequestIds(): failed to save ids in request context", excp);
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	public static Map<String, Object> copyContext(Map<String, Object> context) {
 		final Map<String, Object> ret;
 
@@ -120,6 +172,8 @@ public class RangerAccessRequestUtil {
 			ret.remove(KEY_CONTEXT_TAGS);
 			ret.remove(KEY_CONTEXT_TAG_OBJECT);
 			ret.remove(KEY_CONTEXT_RESOURCE);
+			ret.remove(KEY_CONTEXT_TAGS_GENERATION);
+			ret.remove(KEY_CONTEXT_REQUEST_IDS);
 			// don't remove REQUESTED_RESOURCES
 		}
 
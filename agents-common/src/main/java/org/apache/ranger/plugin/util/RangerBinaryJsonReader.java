@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import static org.apache.ranger.plugin.util.RangerBinaryJsonWriter.*;
+
+/**
+ * Reads the token stream written by RangerBinaryJsonWriter, for Gson to create objects from. As no text is parsed,
+ * this is much faster than reading JSON; and each distinct string is created only once, and shared by all objects
+ * having the value.
+ *
+ * Gson reads keys of maps using an internal API that works only with its own readers; so a Gson used with this reader
+ * must have the map type-adapter in RangerCacheFile registered.
+ */
+class RangerBinaryJsonReader extends JsonReader {
+	private static final int PEEKED_NONE = -1;
+
+	private final ByteBuffer   buffer;
+	private final List<String> strings = new ArrayList<String>();
+	private       int          peeked  = PEEKED_NONE;
+
+	RangerBinaryJsonReader(ByteBuffer buffer) {
+		super(new CharArrayReader(new char[0])); // not used
+
+		this.buffer = buffer;
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		consume(TOKEN_BEGIN_ARRAY);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		consume(TOKEN_END_ARRAY);
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		consume(TOKEN_BEGIN_OBJECT);
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		consume(TOKEN_END_OBJECT);
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		JsonToken token = peek();
+
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		if (peeked == PEEKED_NONE) {
+			if (!buffer.hasRemaining()) {
+				return JsonToken.END_DOCUMENT;
+			}
+
+			peeked = buffer.get();
+		}
+
+		switch (peeked) {
+			case TOKEN_BEGIN_OBJECT:
+				return JsonToken.BEGIN_OBJECT;
+			case TOKEN_END_OBJECT:
+				return JsonToken.END_OBJECT;
+			case TOKEN_BEGIN_ARRAY:
+				return JsonToken.BEGIN_ARRAY;
+			case TOKEN_END_ARRAY:
+				return JsonToken.END_ARRAY;
+			case TOKEN_NAME:
+				return JsonToken.NAME;
+			case TOKEN_STRING:
+				return JsonToken.STRING;
+			case TOKEN_LONG:
+			case TOKEN_DOUBLE:
+			case TOKEN_NUMBER:
+				return JsonToken.NUMBER;
+			case TOKEN_TRUE:
+			case TOKEN_FALSE:
+				return JsonToken.BOOLEAN;
+			case TOKEN_NULL:
+				return JsonToken.NULL;
+			default:
+				throw new JsonSyntaxException("invalid token " + peeked + " at offset " + (buffer.position() - 1));
+		}
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		consume(TOKEN_NAME);
+
+		return readString();
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		peek();
+
+		final String ret;
+
+		switch (peeked) {
+			case TOKEN_STRING:
+			case TOKEN_NUMBER:
+				ret = readString();
+				break;
+			case TOKEN_LONG:
+				ret = Long.toString(readLong());
+				break;
+			case TOKEN_DOUBLE:
+				ret = Double.toString(readDouble());
+				break;
+			default:
+				throw new IllegalStateException("Expected a string but was " + peek());
+		}
+
+		peeked = PEEKED_NONE;
+
+		return ret;
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		peek();
+
+		final boolean ret;
+
+		if (peeked == TOKEN_TRUE) {
+			ret = true;
+		} else if (peeked == TOKEN_FALSE) {
+			ret = false;
+		} else {
+			throw new IllegalStateException("Expected a boolean but was " + peek());
+		}
+
+		peeked = PEEKED_NONE;
+
+		return ret;
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		consume(TOKEN_NULL);
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		peek();
+
+		final double ret;
+
+		switch (peeked) {
+			case TOKEN_DOUBLE:
+				ret = readDouble();
+				break;
+			case TOKEN_LONG:
+				ret = readLong();
+				break;
+			case TOKEN_STRING:
+			case TOKEN_NUMBER:
+				ret = Double.parseDouble(readString());
+				break;
+			default:
+				throw new IllegalStateException("Expected a double but was " + peek());
+		}
+
+		peeked = PEEKED_NONE;
+
+		return ret;
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		peek();
+
+		final long ret;
+
+		switch (peeked) {
+			case TOKEN_LONG:
+				ret = readLong();
+				break;
+			case TOKEN_DOUBLE: {
+				double value = readDouble();
+
+				ret = (long) value;
+
+				if (ret != value) {
+					throw new NumberFormatException("Expected a long but was " + value);
+				}
+			}
+			break;
+			case TOKEN_STRING:
+			case TOKEN_NUMBER:
+				ret = Long.parseLong(readString());
+				break;
+			default:
+				throw new IllegalStateException("Expected a long but was " + peek());
+		}
+
+		peeked = PEEKED_NONE;
+
+		return ret;
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		long ret = nextLong();
+
+		if (ret != (int) ret) {
+			throw new NumberFormatException("Expected an int but was " + ret);
+		}
+
+		return (int) ret;
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		int depth = 0;
+
+		do {
+			peek();
+
+			switch (peeked) {
+				case TOKEN_BEGIN_OBJECT:
+				case TOKEN_BEGIN_ARRAY:
+					depth++;
+					break;
+				case TOKEN_END_OBJECT:
+				case TOKEN_END_ARRAY:
+					depth--;
+					break;
+				case TOKEN_NAME:
+				case TOKEN_STRING:
+				case TOKEN_NUMBER:
+					readString(); // new strings must be added to the string table
+					break;
+				case TOKEN_LONG:
+					readLong();
+					break;
+				case TOKEN_DOUBLE:
+					readDouble();
+					break;
+				default:
+					break;
+			}
+
+			peeked = PEEKED_NONE;
+		} while (depth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		peeked = PEEKED_NONE;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " at offset " + buffer.position();
+	}
+
+	private void consume(byte token) throws IOException {
+		JsonToken actual = peek();
+
+		if (peeked != token) {
+			throw new IllegalStateException("Unexpected " + actual + " at offset " + (buffer.position() - 1));
+		}
+
+		peeked = PEEKED_NONE;
+	}
+
+	private String readString() {
+		int    ref = (int) readVarLong();
+		String ret;
+
+		if (ref == 0) {
+			int    len   = (int) readVarLong();
+			byte[] bytes = new byte[len];
+
+			buffer.get(bytes);
+
+			ret = new String(bytes, UTF8);
+
+			strings.add(ret);
+		} else {
+			ret = strings.get(ref - 1);
+		}
+
+		return ret;
+	}
+
+	private long readLong() {
+		long value = readVarLong();
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private double readDouble() {
+		return Double.longBitsToDouble(buffer.getLong());
+	}
+
+	private long readVarLong() {
+		long ret   = 0;
+		int  shift = 0;
+
+		while (true) {
+			byte b = buffer.get();
+
+			ret |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				break;
+			}
+
+			shift += 7;
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the JSON token stream generated by Gson in a compact binary form, read by RangerBinaryJsonReader.
+ *
+ * Each token is a byte, followed by its value if any: numbers as variable-length integers or 8-byte doubles, and
+ * strings (names and values) as a reference to the string table. The first occurrence of a string adds it to the
+ * string table: reference 0 followed by the length-prefixed UTF-8 bytes. Later occurrences are written as the index
+ * in the table plus 1; names of fields and frequently repeated values, like user/group names and access types, are
+ * written only once.
+ */
+class RangerBinaryJsonWriter extends JsonWriter {
+	static final byte TOKEN_BEGIN_OBJECT = 1;
+	static final byte TOKEN_END_OBJECT   = 2;
+	static final byte TOKEN_BEGIN_ARRAY  = 3;
+	static final byte TOKEN_END_ARRAY    = 4;
+	static final byte TOKEN_NAME         = 5;
+	static final byte TOKEN_STRING       = 6;
+	static final byte TOKEN_LONG         = 7;
+	static final byte TOKEN_DOUBLE       = 8;
+	static final byte TOKEN_NUMBER       = 9; // number that doesn't fit in long/double; written as string
+	static final byte TOKEN_TRUE         = 10;
+	static final byte TOKEN_FALSE        = 11;
+	static final byte TOKEN_NULL         = 12;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final OutputStream         out;
+	private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+	private       String               deferredName  = null;
+
+	RangerBinaryJsonWriter(OutputStream out) {
+		super(new CharArrayWriter(0)); // not used
+
+		this.out = out;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		out.write(TOKEN_BEGIN_ARRAY);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		out.write(TOKEN_END_ARRAY);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		out.write(TOKEN_BEGIN_OBJECT);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		out.write(TOKEN_END_OBJECT);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) throws IOException {
+		if (name == null) {
+			throw new NullPointerException("name == null");
+		}
+
+		if (deferredName != null) {
+			throw new IllegalStateException("name " + name + " follows name " + deferredName);
+		}
+
+		deferredName = name;
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+
+		writeDeferredName();
+		out.write(TOKEN_STRING);
+		writeString(value);
+
+		return this;
+	}
+
+	// like JsonWriter, name of a null value is skipped unless serializeNulls is set
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		if (deferredName != null && !getSerializeNulls()) {
+			deferredName = null;
+
+			return this;
+		}
+
+		writeDeferredName();
+		out.write(TOKEN_NULL);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		out.write(value ? TOKEN_TRUE : TOKEN_FALSE);
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		writeDeferredName();
+		out.write(TOKEN_DOUBLE);
+		writeFixedLong(Double.doubleToLongBits(value));
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		out.write(TOKEN_LONG);
+		writeVarLong((value << 1) ^ (value >> 63));
+
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof AtomicLong || value instanceof AtomicInteger) {
+			return value(value.longValue());
+		}
+
+		if (value instanceof Double || value instanceof Float) {
+			return value(value.doubleValue());
+		}
+
+		if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+			return value(value.longValue());
+		}
+
+		writeDeferredName();
+		out.write(TOKEN_NUMBER);
+		writeString(value.toString());
+
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName != null) {
+			out.write(TOKEN_NAME);
+			writeString(deferredName);
+
+			deferredName = null;
+		}
+	}
+
+	private void writeString(String str) throws IOException {
+		Integer index = stringIndexes.get(str);
+
+		if (index != null) {
+			writeVarLong(index + 1);
+		} else {
+			byte[] bytes = str.getBytes(UTF8);
+
+			stringIndexes.put(str, stringIndexes.size());
+
+			writeVarLong(0);
+			writeVarLong(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+
+			value >>>= 7;
+		}
+
+		out.write((int) value);
+	}
+
+	private void writeFixedLong(long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			out.write((int) (value >>> shift));
+		}
+	}
+}
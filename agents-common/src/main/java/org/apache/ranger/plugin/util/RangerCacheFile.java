@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes files in which plugins cache policies and tags downloaded from ranger-admin.
+ *
+ * The cache can be written as JSON or in a compact binary format (see RangerBinaryJsonWriter); load() detects the
+ * format from the file contents, so the format can be changed without removing existing cache files. A binary file has
+ * a header with the length and CRC32 of the contents, which are verified before use; it is read through a memory
+ * mapping, without parsing text. Either format is written to a temporary file, which then replaces the cache file, so
+ * that a plugin restarting during the write doesn't find a partial file.
+ */
+public class RangerCacheFile {
+	private static final Log LOG = LogFactory.getLog(RangerCacheFile.class);
+
+	public static final String FORMAT_JSON   = "json";
+	public static final String FORMAT_BINARY = "binary";
+
+	private static final int    BINARY_MAGIC          = 0x52424A43; // "RBJC"
+	private static final int    BINARY_FORMAT_VERSION = 1;
+	private static final int    BINARY_HEADER_LENGTH  = 20;         // magic, format-version, contents-length (8 bytes), CRC32 of contents
+	private static final String DATE_FORMAT           = "yyyyMMdd-HH:mm:ss.SSS-Z";
+
+	private static final Gson jsonGson   = new GsonBuilder().setDateFormat(DATE_FORMAT).setPrettyPrinting().create();
+	private static final Gson binaryGson = new GsonBuilder().setDateFormat(DATE_FORMAT).registerTypeAdapterFactory(new MapTypeAdapterFactory()).create();
+
+	private RangerCacheFile() {
+	}
+
+	public static boolean isBinaryFormat(String format) {
+		return StringUtils.equalsIgnoreCase(format, FORMAT_BINARY);
+	}
+
+	public static <T> T load(File file, Class<T> cls) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerCacheFile.load(" + file + ")");
+		}
+
+		T               ret;
+		FileInputStream in = new FileInputStream(file);
+
+		try {
+			FileChannel channel  = in.getChannel();
+			long        fileSize = channel.size();
+			ByteBuffer  header   = ByteBuffer.allocate(BINARY_HEADER_LENGTH);
+
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// read the header, if the file has one
+			}
+
+			header.flip();
+
+			if (header.remaining() == BINARY_HEADER_LENGTH && header.getInt(0) == BINARY_MAGIC) {
+				ret = loadBinary(file, channel, fileSize, header, cls);
+			} else {
+				channel.position(0);
+
+				Reader reader = new InputStreamReader(in, RangerBinaryJsonWriter.UTF8);
+
+				ret = jsonGson.fromJson(reader, cls);
+			}
+		} finally {
+			in.close();
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerCacheFile.load(" + file + ")");
+		}
+
+		return ret;
+	}
+
+	public static void save(File file, Object obj, boolean isBinary) throws IOException {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerCacheFile.save(" + file + ", isBinary=" + isBinary + ")");
+		}
+
+		File tmpFile = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+
+		try {
+			FileOutputStream out = new FileOutputStream(tmpFile);
+
+			try {
+				if (isBinary) {
+					saveBinary(out, obj);
+				} else {
+					Writer writer = new OutputStreamWriter(new BufferedOutputStream(out), RangerBinaryJsonWriter.UTF8);
+
+					jsonGson.toJson(obj, writer);
+
+					writer.flush();
+				}
+
+				out.getChannel().force(true);
+			} finally {
+				out.close();
+			}
+
+			try {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException excp) {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			if (tmpFile.exists() && !tmpFile.delete()) {
+				LOG.warn("failed to delete temporary file " + tmpFile.getAbsolutePath());
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerCacheFile.save(" + file + ", isBinary=" + isBinary + ")");
+		}
+	}
+
+	private static <T> T loadBinary(File file, FileChannel channel, long fileSize, ByteBuffer header, Class<T> cls) throws IOException {
+		int  formatVersion  = header.getInt(4);
+		long contentsLength = header.getLong(8);
+		int  contentsCrc    = header.getInt(16);
+
+		if (formatVersion != BINARY_FORMAT_VERSION) {
+			throw new IOException(file + ": unsupported format version " + formatVersion);
+		}
+
+		if (contentsLength != fileSize - BINARY_HEADER_LENGTH || contentsLength > Integer.MAX_VALUE) {
+			throw new IOException(file + ": invalid length " + contentsLength + "; file size is " + fileSize);
+		}
+
+		ByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, BINARY_HEADER_LENGTH, contentsLength);
+
+		if (computeCrc(contents.duplicate()) != contentsCrc) {
+			throw new IOException(file + ": checksum mismatch");
+		}
+
+		return binaryGson.fromJson(new RangerBinaryJsonReader(contents), cls);
+	}
+
+	private static void saveBinary(FileOutputStream out, Object obj) throws IOException {
+		FileChannel         channel       = out.getChannel();
+		CheckedOutputStream contentStream = new CheckedOutputStream(new BufferedOutputStream(out, 64 * 1024), new CRC32());
+		JsonWriter          writer        = new RangerBinaryJsonWriter(contentStream);
+
+		channel.position(BINARY_HEADER_LENGTH);
+
+		binaryGson.toJson(obj, obj.getClass(), writer);
+
+		writer.flush();
+
+		ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_LENGTH);
+
+		header.putInt(BINARY_MAGIC);
+		header.putInt(BINARY_FORMAT_VERSION);
+		header.putLong(channel.position() - BINARY_HEADER_LENGTH);
+		header.putInt((int) contentStream.getChecksum().getValue());
+		header.flip();
+
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+
+	private static int computeCrc(ByteBuffer buffer) {
+		CRC32  crc   = new CRC32();
+		byte[] chunk = new byte[64 * 1024];
+
+		while (buffer.hasRemaining()) {
+			int len = Math.min(chunk.length, buffer.remaining());
+
+			buffer.get(chunk, 0, len);
+			crc.update(chunk, 0, len);
+		}
+
+		return (int) crc.getValue();
+	}
+
+	/*
+	 * Gson reads map keys using an internal API that works only with its own JsonReader implementations; this reads
+	 * maps written by Gson's map type-adapter, with keys written as names, through other readers.
+	 */
+	static class MapTypeAdapterFactory implements TypeAdapterFactory {
+		@Override
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+			if (!Map.class.isAssignableFrom(typeToken.getRawType())) {
+				return null;
+			}
+
+			Type   type      = typeToken.getType();
+			Type   keyType   = Object.class;
+			Type   valueType = Object.class;
+
+			if (type instanceof ParameterizedType && ((ParameterizedType) type).getActualTypeArguments().length == 2) {
+				keyType   = ((ParameterizedType) type).getActualTypeArguments()[0];
+				valueType = ((ParameterizedType) type).getActualTypeArguments()[1];
+			}
+
+			@SuppressWarnings("unchecked")
+			TypeAdapter<T> ret = (TypeAdapter<T>) new MapTypeAdapter(gson.getDelegateAdapter(this, typeToken), typeToken.getRawType(), gson.getAdapter(TypeToken.get(keyType)), gson.getAdapter(TypeToken.get(valueType)));
+
+			return ret;
+		}
+	}
+
+	private static class MapTypeAdapter extends TypeAdapter<Map<Object, Object>> {
+		private final TypeAdapter<Object> writeDelegate;
+		private final Class<?>            mapType;
+		private final TypeAdapter<?>      keyAdapter;
+		private final TypeAdapter<?>      valueAdapter;
+
+		@SuppressWarnings("unchecked")
+		MapTypeAdapter(TypeAdapter<?> writeDelegate, Class<?> mapType, TypeAdapter<?> keyAdapter, TypeAdapter<?> valueAdapter) {
+			this.writeDelegate = (TypeAdapter<Object>) writeDelegate;
+			this.mapType       = mapType;
+			this.keyAdapter    = keyAdapter;
+			this.valueAdapter  = valueAdapter;
+		}
+
+		@Override
+		public void write(JsonWriter out, Map<Object, Object> value) throws IOException {
+			writeDelegate.write(out, value);
+		}
+
+		@Override
+		public Map<Object, Object> read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+
+				return null;
+			}
+
+			Map<Object, Object> ret = createMap();
+
+			in.beginObject();
+
+			while (in.hasNext()) {
+				Object key = keyAdapter.fromJsonTree(new JsonPrimitive(in.nextName()));
+
+				ret.put(key, valueAdapter.read(in));
+			}
+
+			in.endObject();
+
+			return ret;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Map<Object, Object> createMap() throws IOException {
+			if (mapType.isInterface() || Modifier.isAbstract(mapType.getModifiers())) {
+				if (SortedMap.class.isAssignableFrom(mapType)) {
+					return new TreeMap<Object, Object>();
+				} else if (ConcurrentMap.class.isAssignableFrom(mapType)) {
+					return new ConcurrentHashMap<Object, Object>();
+				} else {
+					return new LinkedHashMap<Object, Object>();
+				}
+			}
+
+			try {
+				return (Map<Object, Object>) mapType.newInstance();
+			} catch (Exception excp) {
+				throw new IOException("failed to create instance of " + mapType.getName(), excp);
+			}
+		}
+	}
+}
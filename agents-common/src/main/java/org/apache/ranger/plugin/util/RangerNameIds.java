@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+
+/**
+ * Dense integer ids for names of users, groups and access-types, so that policy items can keep the names they refer
+ * to in a BitSet, and a request's user/groups can be tested against a policy item with a few word ANDs.
+ *
+ * Each policy repository has its own dictionaries, built with the repository. Ids are assigned only to names that
+ * appear in policies, as evaluators are initialized; names seen only in requests don't get an id. Once the repository
+ * is built, its dictionaries don't change: a repository that reuses evaluators from the previous one starts with a
+ * copy of the previous dictionaries, so that the reused evaluators' ids stay valid.
+ */
+public class RangerNameIds {
+	private final Dictionary users;
+	private final Dictionary groups;
+	private final Dictionary accessTypes; // names are lower-cased
+
+	public RangerNameIds() {
+		this(new Dictionary(), new Dictionary(), new Dictionary());
+	}
+
+	private RangerNameIds(Dictionary users, Dictionary groups, Dictionary accessTypes) {
+		this.users       = users;
+		this.groups      = groups;
+		this.accessTypes = accessTypes;
+	}
+
+	public Dictionary getUsers() {
+		return users;
+	}
+
+	public Dictionary getGroups() {
+		return groups;
+	}
+
+	public Dictionary getAccessTypes() {
+		return accessTypes;
+	}
+
+	public RangerNameIds copy() {
+		return new RangerNameIds(users.copy(), groups.copy(), accessTypes.copy());
+	}
+
+	public int size() {
+		return users.size() + groups.size() + accessTypes.size();
+	}
+
+	/**
+	 * @return number of distinct users, groups and access-types referenced by items of the given policies
+	 */
+	public static int countNames(Collection<RangerPolicy> policies) {
+		RangerNameIds names = new RangerNameIds();
+
+		if(policies != null) {
+			for(RangerPolicy policy : policies) {
+				names.addNames(policy.getPolicyItems());
+				names.addNames(policy.getDenyPolicyItems());
+				names.addNames(policy.getAllowExceptions());
+				names.addNames(policy.getDenyExceptions());
+				names.addNames(policy.getDataMaskPolicyItems());
+			}
+		}
+
+		return names.size();
+	}
+
+	private void addNames(List<? extends RangerPolicyItem> policyItems) {
+		if(policyItems != null) {
+			for(RangerPolicyItem policyItem : policyItems) {
+				users.getOrCreateIds(policyItem.getUsers());
+				groups.getOrCreateIds(policyItem.getGroups());
+
+				if(policyItem.getAccesses() != null) {
+					for(RangerPolicyItemAccess access : policyItem.getAccesses()) {
+						if(access.getType() != null) {
+							accessTypes.getOrCreateId(toAccessTypeName(access.getType()));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public static String toAccessTypeName(String accessType) {
+		return accessType == null ? null : accessType.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Name to id map of one kind of names. Ids are never reused.
+	 */
+	public static class Dictionary {
+		private final ConcurrentHashMap<String, Integer> ids;
+		private final AtomicInteger                      nextId;
+
+		public Dictionary() {
+			this(new ConcurrentHashMap<String, Integer>(), 0);
+		}
+
+		private Dictionary(ConcurrentHashMap<String, Integer> ids, int nextId) {
+			this.ids    = ids;
+			this.nextId = new AtomicInteger(nextId);
+		}
+
+		public int getOrCreateId(String name) {
+			Integer ret = ids.get(name);
+
+			if(ret == null) {
+				ret = createId(name);
+			}
+
+			return ret;
+		}
+
+		/**
+		 * @return id of the given name, or -1 if the name doesn't have an id
+		 */
+		public int getId(String name) {
+			Integer ret = name == null ? null : ids.get(name);
+
+			return ret == null ? -1 : ret;
+		}
+
+		public BitSet getOrCreateIds(Collection<String> names) {
+			BitSet ret = new BitSet();
+
+			if(names != null) {
+				for(String name : names) {
+					if(name != null) {
+						ret.set(getOrCreateId(name));
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		public BitSet getIds(Collection<String> names) {
+			BitSet ret = new BitSet();
+
+			if(names != null) {
+				for(String name : names) {
+					int id = getId(name);
+
+					if(id != -1) {
+						ret.set(id);
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		public int size() {
+			return nextId.get();
+		}
+
+		synchronized Dictionary copy() {
+			return new Dictionary(new ConcurrentHashMap<String, Integer>(ids), nextId.get());
+		}
+
+		// ids are allocated under the lock, so that no id is lost to a racing thread and size() is the number of names
+		private synchronized Integer createId(String name) {
+			Integer ret = ids.get(name);
+
+			if(ret == null) {
+				ret = nextId.getAndIncrement();
+
+				ids.put(name, ret);
+			}
+
+			return ret;
+		}
+	}
+
+	/**
+	 * Ids of user, groups and access-type of a request in the dictionaries of one repository. Computed once per request
+	 * and saved in the request context.
+	 */
+	public static class RequestIds {
+		private final RangerNameIds nameIds;
+		private final String        user;
+		private final Set<String>   userGroups;
+		private final int           userGroupsCount;
+		private final String        accessType;
+
+		private final int    userId;
+		private final BitSet groupIds;
+		private final int    accessTypeId;
+
+		RequestIds(RangerAccessRequest request, RangerNameIds nameIds) {
+			this.nameIds         = nameIds;
+			this.user            = request.getUser();
+			this.userGroups      = request.getUserGroups();
+			this.userGroupsCount = userGroups == null ? 0 : userGroups.size();
+			this.accessType      = request.getAccessType();
+
+			this.userId       = nameIds.users.getId(user);
+			this.groupIds     = nameIds.groups.getIds(userGroups);
+			this.accessTypeId = nameIds.accessTypes.getId(toAccessTypeName(accessType));
+		}
+
+		public int getUserId() {
+			return userId;
+		}
+
+		public boolean hasUserGroups() {
+			return userGroups != null;
+		}
+
+		public BitSet getGroupIds() {
+			return groupIds;
+		}
+
+		public int getAccessTypeId() {
+			return accessTypeId;
+		}
+
+		@Override
+		public String toString() {
+			return "RequestIds={userId={" + userId + "} groupIds={" + groupIds + "} accessTypeId={" + accessTypeId + "}}";
+		}
+
+		// ids are stale if the request was updated, or if they were computed for the dictionaries of another repository
+		boolean isValidFor(RangerAccessRequest request, RangerNameIds nameIds) {
+			Set<String> requestUserGroups = request.getUserGroups();
+
+			return this.nameIds == nameIds
+					&& user == request.getUser()
+					&& userGroups == requestUserGroups
+					&& userGroupsCount == (requestUserGroups == null ? 0 : requestUserGroups.size())
+					&& accessType == request.getAccessType();
+		}
+	}
+}
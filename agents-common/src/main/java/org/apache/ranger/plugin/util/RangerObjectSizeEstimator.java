@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the heap retained by an object graph, like the policies of a service, for debug logs.
+ *
+ * The estimate assumes a 64-bit JVM with compressed references: 12-byte object header, 4-byte references, objects
+ * aligned to 8 bytes. Each object reachable from the root is counted once; objects shared with other graphs, like
+ * interned strings, are counted too, hence the estimate can be higher than the heap actually freed when the root is
+ * released. Collections and maps are walked through their API, with an approximate per-element overhead.
+ */
+public class RangerObjectSizeEstimator {
+	private static final int OBJECT_HEADER_SIZE = 12;
+	private static final int ARRAY_HEADER_SIZE  = 16;
+	private static final int REFERENCE_SIZE     = 4;
+	private static final int LIST_ENTRY_SIZE    = REFERENCE_SIZE;                 // in ArrayList.elementData
+	private static final int MAP_ENTRY_SIZE     = 32 + REFERENCE_SIZE;            // HashMap.Node, plus slot in table
+	private static final int SET_ENTRY_SIZE     = MAP_ENTRY_SIZE;                 // HashSet is backed by HashMap
+
+	private static final ConcurrentMap<Class<?>, List<Field>> REFERENCE_FIELDS = new ConcurrentHashMap<Class<?>, List<Field>>();
+	private static final ConcurrentMap<Class<?>, Long>        SHALLOW_SIZES    = new ConcurrentHashMap<Class<?>, Long>();
+
+	private RangerObjectSizeEstimator() {
+	}
+
+	public static long estimateRetainedSize(Object root) {
+		long                            ret     = 0;
+		IdentityHashMap<Object, Object> visited = new IdentityHashMap<Object, Object>();
+		Deque<Object>                   pending = new ArrayDeque<Object>();
+
+		if (root != null) {
+			pending.push(root);
+		}
+
+		while (!pending.isEmpty()) {
+			Object obj = pending.pop();
+
+			if (visited.put(obj, obj) != null) {
+				continue;
+			}
+
+			Class<?> cls = obj.getClass();
+
+			if (obj instanceof String) {
+				ret += align(OBJECT_HEADER_SIZE + REFERENCE_SIZE + 4) + align(ARRAY_HEADER_SIZE + 2L * ((String) obj).length());
+			} else if (cls.isArray()) {
+				Class<?> componentType = cls.getComponentType();
+				int      length        = Array.getLength(obj);
+
+				ret += align(ARRAY_HEADER_SIZE + (long) length * (componentType.isPrimitive() ? primitiveSize(componentType) : REFERENCE_SIZE));
+
+				if (!componentType.isPrimitive()) {
+					for (int i = 0; i < length; i++) {
+						push(pending, Array.get(obj, i));
+					}
+				}
+			} else if (obj instanceof Collection) {
+				Collection<?> collection = (Collection<?>) obj;
+
+				ret += align(OBJECT_HEADER_SIZE + 4 * REFERENCE_SIZE) + (long) collection.size() * (obj instanceof java.util.Set ? SET_ENTRY_SIZE : LIST_ENTRY_SIZE);
+
+				for (Object element : collection) {
+					push(pending, element);
+				}
+			} else if (obj instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) obj;
+
+				ret += align(OBJECT_HEADER_SIZE + 6 * REFERENCE_SIZE) + (long) map.size() * MAP_ENTRY_SIZE;
+
+				for (Map.Entry<?, ?> e : map.entrySet()) {
+					push(pending, e.getKey());
+					push(pending, e.getValue());
+				}
+			} else if (!(obj instanceof Class) && !(obj instanceof Enum)) {
+				ret += getShallowSize(cls);
+
+				for (Field field : getReferenceFields(cls)) {
+					try {
+						push(pending, field.get(obj));
+					} catch (IllegalAccessException excp) {
+						// ignore; only the shallow size of the field is counted
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static void push(Deque<Object> pending, Object obj) {
+		if (obj != null) {
+			pending.push(obj);
+		}
+	}
+
+	private static long getShallowSize(Class<?> cls) {
+		Long ret = SHALLOW_SIZES.get(cls);
+
+		if (ret == null) {
+			long size = OBJECT_HEADER_SIZE;
+
+			for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers())) {
+						size += field.getType().isPrimitive() ? primitiveSize(field.getType()) : REFERENCE_SIZE;
+					}
+				}
+			}
+
+			ret = align(size);
+
+			SHALLOW_SIZES.put(cls, ret);
+		}
+
+		return ret;
+	}
+
+	private static List<Field> getReferenceFields(Class<?> cls) {
+		List<Field> ret = REFERENCE_FIELDS.get(cls);
+
+		if (ret == null) {
+			ret = new ArrayList<Field>();
+
+			for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+						continue;
+					}
+
+					try {
+						field.setAccessible(true);
+
+						ret.add(field);
+					} catch (RuntimeException excp) {
+						// field not accessible, like of JDK classes in recent JVMs; only its shallow size is counted
+					}
+				}
+			}
+
+			REFERENCE_FIELDS.put(cls, ret);
+		}
+
+		return ret;
+	}
+
+	private static int primitiveSize(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		} else if (type == int.class || type == float.class) {
+			return 4;
+		} else if (type == short.class || type == char.class) {
+			return 2;
+		} else {
+			return 1;
+		}
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerDataMaskPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemDataMaskInfo;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+
+/**
+ * Reduces the heap used by policies in a plugin: strings that repeat across policies - resource names and values,
+ * users, groups, access types, condition types and values - are interned; and equal RangerPolicyItemAccess and
+ * RangerPolicyResource instances are replaced by a single shared instance.
+ *
+ * Shared instances must not be modified: code that needs a different access or resource must replace the instance in
+ * the containing list/map, instead of updating it.
+ */
+public class RangerPolicyDeduplicator {
+	private final Map<RangerPolicyItemAccess, RangerPolicyItemAccess> accesses  = new HashMap<RangerPolicyItemAccess, RangerPolicyItemAccess>();
+	private final Map<RangerPolicyResource, RangerPolicyResource>     resources = new HashMap<RangerPolicyResource, RangerPolicyResource>();
+
+	private int internedStringCount  = 0;
+	private int sharedAccessCount    = 0;
+	private int sharedResourceCount  = 0;
+
+	public void dedup(ServicePolicies servicePolicies) {
+		if (servicePolicies == null) {
+			return;
+		}
+
+		dedup(servicePolicies.getPolicies());
+
+		if (servicePolicies.getTagPolicies() != null) {
+			dedup(servicePolicies.getTagPolicies().getPolicies());
+		}
+	}
+
+	public void dedup(List<RangerPolicy> policies) {
+		if (policies != null) {
+			for (RangerPolicy policy : policies) {
+				dedup(policy);
+			}
+		}
+	}
+
+	public void dedup(RangerPolicy policy) {
+		if (policy == null) {
+			return;
+		}
+
+		policy.setService(dedupString(policy.getService()));
+
+		if (MapUtils.isNotEmpty(policy.getResources())) {
+			Map<String, RangerPolicyResource> policyResources = new LinkedHashMap<String, RangerPolicyResource>();
+
+			for (Map.Entry<String, RangerPolicyResource> e : policy.getResources().entrySet()) {
+				policyResources.put(dedupString(e.getKey()), dedup(e.getValue()));
+			}
+
+			policy.setResources(policyResources);
+		}
+
+		dedupPolicyItems(policy.getPolicyItems());
+		dedupPolicyItems(policy.getDenyPolicyItems());
+		dedupPolicyItems(policy.getAllowExceptions());
+		dedupPolicyItems(policy.getDenyExceptions());
+		dedupPolicyItems(policy.getDataMaskPolicyItems());
+	}
+
+	public RangerPolicyResource dedup(RangerPolicyResource resource) {
+		if (resource == null) {
+			return null;
+		}
+
+		dedupStrings(resource.getValues());
+
+		RangerPolicyResource ret = resources.get(resource);
+
+		if (ret == null) {
+			resources.put(resource, resource);
+
+			ret = resource;
+		} else if (ret != resource) {
+			sharedResourceCount++;
+		}
+
+		return ret;
+	}
+
+	public RangerPolicyItemAccess dedup(RangerPolicyItemAccess access) {
+		if (access == null) {
+			return null;
+		}
+
+		access.setType(dedupString(access.getType()));
+
+		RangerPolicyItemAccess ret = accesses.get(access);
+
+		if (ret == null) {
+			accesses.put(access, access);
+
+			ret = access;
+		} else if (ret != access) {
+			sharedAccessCount++;
+		}
+
+		return ret;
+	}
+
+	public String dedupString(String str) {
+		String ret = str == null ? null : str.intern();
+
+		if (ret != str) {
+			internedStringCount++;
+		}
+
+		return ret;
+	}
+
+	public int getInternedStringCount() {
+		return internedStringCount;
+	}
+
+	public int getSharedAccessCount() {
+		return sharedAccessCount;
+	}
+
+	public int getSharedResourceCount() {
+		return sharedResourceCount;
+	}
+
+	@Override
+	public String toString() {
+		return "RangerPolicyDeduplicator={internedStringCount=" + internedStringCount + ", sharedAccessCount=" + sharedAccessCount + ", sharedResourceCount=" + sharedResourceCount + "}";
+	}
+
+	private void dedupPolicyItems(List<? extends RangerPolicyItem> policyItems) {
+		if (CollectionUtils.isEmpty(policyItems)) {
+			return;
+		}
+
+		for (RangerPolicyItem policyItem : policyItems) {
+			dedupStrings(policyItem.getUsers());
+			dedupStrings(policyItem.getGroups());
+
+			List<RangerPolicyItemAccess> itemAccesses = policyItem.getAccesses();
+
+			if (itemAccesses != null) {
+				for (ListIterator<RangerPolicyItemAccess> iter = itemAccesses.listIterator(); iter.hasNext(); ) {
+					RangerPolicyItemAccess access = iter.next();
+					RangerPolicyItemAccess shared = dedup(access);
+
+					if (shared != access) {
+						iter.set(shared);
+					}
+				}
+			}
+
+			if (policyItem.getConditions() != null) {
+				for (RangerPolicyItemCondition condition : policyItem.getConditions()) {
+					if (condition != null) {
+						condition.setType(dedupString(condition.getType()));
+
+						dedupStrings(condition.getValues());
+					}
+				}
+			}
+
+			if (policyItem instanceof RangerDataMaskPolicyItem) {
+				RangerPolicyItemDataMaskInfo dataMaskInfo = ((RangerDataMaskPolicyItem) policyItem).getDataMaskInfo();
+
+				if (dataMaskInfo != null) {
+					dataMaskInfo.setDataMaskType(dedupString(dataMaskInfo.getDataMaskType()));
+				}
+			}
+		}
+	}
+
+	private void dedupStrings(List<String> strings) {
+		if (strings != null) {
+			for (ListIterator<String> iter = strings.listIterator(); iter.hasNext(); ) {
+				String str    = iter.next();
+				String shared = dedupString(str);
+
+				if (shared != str) {
+					iter.set(shared);
+				}
+			}
+		}
+	}
+}
@@ -55,6 +55,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
@@ -216,6 +217,9 @@ public class RangerRESTClient {
 			client.addFilter(new HTTPBasicAuthFilter(mUsername, mPassword)); 
 		}
 
+		// sends Accept-Encoding: gzip and decompresses gzip responses, like policies; request bodies are not compressed
+		client.addFilter(new GZIPContentEncodingFilter(false));
+
 		// Set Connection Timeout and ReadTime for the PolicyRefresh
 		client.setConnectTimeout(mRestClientConnTimeOutMs);
 		client.setReadTimeout(mRestClientReadTimeOutMs);
@@ -54,6 +54,12 @@ public class RangerRESTUtils {
 
 	public static final String REST_PARAM_LAST_KNOWN_POLICY_VERSION = "lastKnownVersion";
 	public static final String REST_PARAM_PLUGIN_ID                 = "pluginId";
+	public static final String REST_PARAM_SUPPORTS_POLICY_DELTAS    = "supportsPolicyDeltas";
+	public static final String REST_PARAM_SUPPORTS_TAG_DELTAS       = "supportsTagDeltas";
+	public static final String REST_PARAM_LONG_POLL_WAIT_MS         = "longPollWaitMs";
+
+	public static final String REST_HEADER_IF_NONE_MATCH        = "If-None-Match";
+	public static final String REST_HEADER_LONG_POLL_MAX_WAIT_MS = "X-Ranger-Long-Poll-Max-Wait-Ms";
 
 	private static final int MAX_PLUGIN_ID_LEN = 255 ;
 
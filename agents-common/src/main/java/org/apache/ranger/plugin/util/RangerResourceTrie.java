@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerDefaultResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+
+/**
+ * Index of policy-resource values for a single resource-def.
+ *
+ * Each indexed entry is identified by an ordinal (its position in the caller's evaluator list). A lookup returns the
+ * ordinals of all entries that could possibly match the given resource value; the caller is expected to run the
+ * actual matcher on these candidates. Values are stored in a compressed (radix) trie, with separate buckets for:
+ *  - exact values: candidates only when the resource value is equal to the value
+ *  - wildcard values: stored at the prefix before the first wildcard; candidates for every value with that prefix
+ *  - recursive values: candidates for every value having the policy value as prefix
+ *  - excludes values, and entries that don't specify a value for this resource: candidates for every resource value
+ */
+public class RangerResourceTrie {
+	private static final Log LOG = LogFactory.getLog(RangerResourceTrie.class);
+
+	private static final int[] EMPTY_ORDINALS = new int[0];
+
+	private final String   resourceName;
+	private final boolean  optIgnoreCase;
+	private final boolean  optWildCard;
+	private final TrieNode root;
+	private       int[]    alwaysOrdinals; // excludes, and entries that don't specify a value for this resource
+	private       int      maxOrdinal = -1;
+
+	private List<Integer> alwaysOrdinalList = new ArrayList<Integer>();
+
+	public RangerResourceTrie(RangerResourceDef resourceDef) {
+		this.resourceName  = resourceDef.getName();
+		this.optIgnoreCase = getBooleanOption(resourceDef, RangerAbstractResourceMatcher.OPTION_IGNORE_CASE, true);
+		this.optWildCard   = getBooleanOption(resourceDef, RangerAbstractResourceMatcher.OPTION_WILD_CARD, true);
+		this.root          = new TrieNode("");
+	}
+
+	/**
+	 * Only resource-defs that use one of the matchers known to the trie can be indexed; values of a custom matcher could
+	 * match resources in ways the trie can't predict.
+	 */
+	public static boolean isIndexable(RangerResourceDef resourceDef) {
+		String matcher = resourceDef == null ? null : resourceDef.getMatcher();
+
+		return resourceDef != null && (StringUtils.isEmpty(matcher)
+				|| StringUtils.equals(matcher, RangerDefaultResourceMatcher.class.getName())
+				|| StringUtils.equals(matcher, RangerPathResourceMatcher.class.getName()));
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	public void add(RangerPolicyResource policyResource, int ordinal) {
+		maxOrdinal = Math.max(maxOrdinal, ordinal);
+
+		if(policyResource == null || policyResource.getIsExcludes()) {
+			alwaysOrdinalList.add(ordinal);
+
+			return;
+		}
+
+		List<String> values = policyResource.getValues();
+
+		if(values == null || values.isEmpty()) {
+			root.addWildcard(ordinal);
+
+			return;
+		}
+
+		boolean isRecursive = policyResource.getIsRecursive();
+
+		for(String value : values) {
+			if(StringUtils.isEmpty(value) || StringUtils.containsOnly(value, RangerAbstractResourceMatcher.WILDCARD_ASTERISK)) {
+				root.addWildcard(ordinal);
+
+				continue;
+			}
+
+			int wildcardIdx = optWildCard ? StringUtils.indexOfAny(value, RangerAbstractResourceMatcher.WILDCARDS) : -1;
+
+			if(wildcardIdx != -1) {
+				getOrCreateNode(fold(value.substring(0, wildcardIdx))).addWildcard(ordinal);
+			} else if(isRecursive) {
+				getOrCreateNode(fold(value)).addRecursive(ordinal);
+			} else {
+				getOrCreateNode(fold(value)).addExact(ordinal);
+			}
+		}
+	}
+
+	/**
+	 * To be called after all entries are added; compacts the buckets for lookup.
+	 */
+	public void done() {
+		alwaysOrdinals    = toArray(alwaysOrdinalList);
+		alwaysOrdinalList = null;
+
+		root.done();
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("RangerResourceTrie.done(): resourceName=" + resourceName + ", nodeCount=" + root.getNodeCount() + ", alwaysCount=" + alwaysOrdinals.length);
+		}
+	}
+
+	/**
+	 * @return ordinals of entries that might match the given value; bits are set in the returned BitSet
+	 */
+	public BitSet getOrdinalsForResource(String resource) {
+		BitSet ret = new BitSet(maxOrdinal + 1);
+
+		setBits(ret, alwaysOrdinals);
+
+		String   value = fold(resource);
+		int      len   = value == null ? 0 : value.length();
+		int      pos   = 0;
+		TrieNode curr  = root;
+
+		curr.collect(ret, pos == len);
+
+		while(pos < len) {
+			TrieNode child = curr.getChild(value.charAt(pos));
+
+			if(child == null || !value.regionMatches(pos, child.str, 0, child.str.length())) {
+				break;
+			}
+
+			pos += child.str.length();
+			curr = child;
+
+			curr.collect(ret, pos == len);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerResourceTrie={");
+
+		sb.append("resourceName={").append(resourceName).append("} ");
+		sb.append("optIgnoreCase={").append(optIgnoreCase).append("} ");
+		sb.append("optWildCard={").append(optWildCard).append("} ");
+		sb.append("nodeCount={").append(root.getNodeCount()).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+
+	private TrieNode getOrCreateNode(String key) {
+		TrieNode curr = root;
+		int      pos  = 0;
+
+		while(pos < key.length()) {
+			char     c     = key.charAt(pos);
+			TrieNode child = curr.getChild(c);
+
+			if(child == null) {
+				child = new TrieNode(key.substring(pos));
+
+				curr.addChild(child);
+
+				return child;
+			}
+
+			String label  = child.str;
+			int    common = 0;
+
+			while(common < label.length() && (pos + common) < key.length() && label.charAt(common) == key.charAt(pos + common)) {
+				common++;
+			}
+
+			if(common < label.length()) { // split the child at the point of divergence
+				TrieNode mid = new TrieNode(label.substring(0, common));
+
+				child.str = label.substring(common);
+
+				mid.addChild(child);
+				curr.addChild(mid);
+
+				child = mid;
+			}
+
+			pos += common;
+			curr = child;
+		}
+
+		return curr;
+	}
+
+	// same folding as String.equalsIgnoreCase() and FilenameUtils.wildcardMatch(IOCase.INSENSITIVE), to keep the trie a superset of the matcher
+	private String fold(String str) {
+		if(!optIgnoreCase || str == null) {
+			return str;
+		}
+
+		char[] chars = null;
+
+		for(int i = 0; i < str.length(); i++) {
+			char c      = str.charAt(i);
+			char folded = Character.toLowerCase(Character.toUpperCase(c));
+
+			if(folded != c) {
+				if(chars == null) {
+					chars = str.toCharArray();
+				}
+
+				chars[i] = folded;
+			}
+		}
+
+		return chars == null ? str : new String(chars);
+	}
+
+	private static boolean getBooleanOption(RangerResourceDef resourceDef, String name, boolean defaultValue) {
+		Map<String, String> options = resourceDef.getMatcherOptions();
+		String              val     = options == null ? null : options.get(name);
+
+		return val == null ? defaultValue : Boolean.parseBoolean(val);
+	}
+
+	private static void setBits(BitSet bits, int[] ordinals) {
+		for(int ordinal : ordinals) {
+			bits.set(ordinal);
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		if(list == null || list.isEmpty()) {
+			return EMPTY_ORDINALS;
+		}
+
+		int[] ret = new int[list.size()];
+
+		for(int i = 0; i < ret.length; i++) {
+			ret[i] = list.get(i);
+		}
+
+		return ret;
+	}
+
+	private static class TrieNode {
+		String                   str;
+		Map<Character, TrieNode> children = null;
+
+		List<Integer> exactList     = null;
+		List<Integer> wildcardList  = null;
+		List<Integer> recursiveList = null;
+
+		int[] exactOrdinals     = EMPTY_ORDINALS;
+		int[] wildcardOrdinals  = EMPTY_ORDINALS;
+		int[] recursiveOrdinals = EMPTY_ORDINALS;
+
+		TrieNode(String str) {
+			this.str = str;
+		}
+
+		TrieNode getChild(char c) {
+			return children == null ? null : children.get(c);
+		}
+
+		void addChild(TrieNode child) {
+			if(children == null) {
+				children = new HashMap<Character, TrieNode>();
+			}
+
+			children.put(child.str.charAt(0), child);
+		}
+
+		void addExact(int ordinal) {
+			if(exactList == null) {
+				exactList = new ArrayList<Integer>();
+			}
+
+			exactList.add(ordinal);
+		}
+
+		void addWildcard(int ordinal) {
+			if(wildcardList == null) {
+				wildcardList = new ArrayList<Integer>();
+			}
+
+			wildcardList.add(ordinal);
+		}
+
+		void addRecursive(int ordinal) {
+			if(recursiveList == null) {
+				recursiveList = new ArrayList<Integer>();
+			}
+
+			recursiveList.add(ordinal);
+		}
+
+		// wildcard and recursive entries match any value having this node as prefix; exact entries only at the end of value
+		void collect(BitSet bits, boolean isValueEnd) {
+			setBits(bits, wildcardOrdinals);
+			setBits(bits, recursiveOrdinals);
+
+			if(isValueEnd) {
+				setBits(bits, exactOrdinals);
+			}
+		}
+
+		void done() {
+			exactOrdinals     = toArray(exactList);
+			wildcardOrdinals  = toArray(wildcardList);
+			recursiveOrdinals = toArray(recursiveList);
+
+			exactList     = null;
+			wildcardList  = null;
+			recursiveList = null;
+
+			if(children != null) {
+				for(TrieNode child : children.values()) {
+					child.done();
+				}
+			}
+		}
+
+		int getNodeCount() {
+			int ret = 1;
+
+			if(children != null) {
+				for(TrieNode child : children.values()) {
+					ret += child.getNodeCount();
+				}
+			}
+
+			return ret;
+		}
+	}
+}
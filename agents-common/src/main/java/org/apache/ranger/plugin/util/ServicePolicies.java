@@ -20,8 +20,13 @@
 package org.apache.ranger.plugin.util;
 
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -51,6 +56,8 @@ public class ServicePolicies implements java.io.Serializable {
 	private List<RangerPolicy> policies;
 	private RangerServiceDef   serviceDef;
 	private TagPolicies        tagPolicies;
+	private Long               deltaFromVersion;
+	private List<Long>         deletedPolicyIds;
 
 	/**
 	 * @return the serviceName
@@ -136,7 +143,89 @@ public class ServicePolicies implements java.io.Serializable {
 	public void setTagPolicies(ServicePolicies.TagPolicies tagPolicies) {
 		this.tagPolicies = tagPolicies;
 	}
-	
+	/**
+	 * @return the policyVersion this delta applies to; null if this has all policies of the service
+	 */
+	public Long getDeltaFromVersion() {
+		return deltaFromVersion;
+	}
+	/**
+	 * @param deltaFromVersion the deltaFromVersion to set
+	 */
+	public void setDeltaFromVersion(Long deltaFromVersion) {
+		this.deltaFromVersion = deltaFromVersion;
+	}
+	/**
+	 * @return ids of policies deleted since deltaFromVersion
+	 */
+	public List<Long> getDeletedPolicyIds() {
+		return deletedPolicyIds;
+	}
+	/**
+	 * @param deletedPolicyIds the deletedPolicyIds to set
+	 */
+	public void setDeletedPolicyIds(List<Long> deletedPolicyIds) {
+		this.deletedPolicyIds = deletedPolicyIds;
+	}
+
+	/**
+	 * Merges a delta, returned by policy-admin for a download with lastKnownVersion of base, into base.
+	 *
+	 * @return all policies of the service as of the version in delta; null if delta doesn't apply to base
+	 */
+	public static ServicePolicies applyDelta(ServicePolicies base, ServicePolicies delta) {
+		if (base == null || delta == null || delta.getDeltaFromVersion() == null || !delta.getDeltaFromVersion().equals(base.getPolicyVersion())) {
+			return null;
+		}
+
+		Map<Long, RangerPolicy> changedPolicies = new HashMap<Long, RangerPolicy>();
+		Set<Long>               deletedIds      = new HashSet<Long>();
+
+		if (delta.getPolicies() != null) {
+			for (RangerPolicy policy : delta.getPolicies()) {
+				changedPolicies.put(policy.getId(), policy);
+			}
+		}
+
+		if (delta.getDeletedPolicyIds() != null) {
+			deletedIds.addAll(delta.getDeletedPolicyIds());
+		}
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		if (base.getPolicies() != null) {
+			for (RangerPolicy policy : base.getPolicies()) {
+				if (deletedIds.contains(policy.getId())) {
+					continue;
+				}
+
+				RangerPolicy changedPolicy = changedPolicies.remove(policy.getId());
+
+				policies.add(changedPolicy != null ? changedPolicy : policy);
+			}
+		}
+
+		if (delta.getPolicies() != null) {
+			for (RangerPolicy policy : delta.getPolicies()) {
+				if (changedPolicies.containsKey(policy.getId())) { // created since base
+					policies.add(policy);
+				}
+			}
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(delta.getServiceName());
+		ret.setServiceId(delta.getServiceId());
+		ret.setPolicyVersion(delta.getPolicyVersion());
+		ret.setPolicyUpdateTime(delta.getPolicyUpdateTime());
+		ret.setServiceDef(delta.getServiceDef() != null ? delta.getServiceDef() : base.getServiceDef());
+		ret.setPolicies(policies);
+		ret.setTagPolicies(delta.getTagPolicies() != null ? delta.getTagPolicies() : base.getTagPolicies());
+
+		return ret;
+	}
+
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this.getClass())
@@ -147,6 +236,8 @@ public class ServicePolicies implements java.io.Serializable {
 			.add("policies", policies)
 			.add("serviceDef", serviceDef)
 			.add("tagPolicies", tagPolicies)
+			.add("deltaFromVersion", deltaFromVersion)
+			.add("deletedPolicyIds", deletedPolicyIds)
 			.toString();
 	}
 
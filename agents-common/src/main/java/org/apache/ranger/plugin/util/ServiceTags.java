@@ -21,10 +21,12 @@ package org.apache.ranger.plugin.util;
 
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Set;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -62,6 +64,9 @@ public class ServiceTags implements java.io.Serializable {
 	private Map<Long, RangerTag>        tags;
 	private List<RangerServiceResource> serviceResources;
 	private Map<Long, List<Long>>       resourceToTagIds;
+	private Long                        deltaFromVersion;
+	private List<Long>                  deletedTagIds;
+	private List<Long>                  deletedServiceResourceIds;
 
 	public ServiceTags() {
 		this(OP_ADD_OR_UPDATE, TAGMODEL_SHARED, null, 0L, null, null, null, null, null);
@@ -182,6 +187,131 @@ public class ServiceTags implements java.io.Serializable {
 		this.resourceToTagIds = resourceToTagIds == null ? new HashMap<Long, List<Long>>() : resourceToTagIds;
 	}
 
+	/**
+	 * @return the tagVersion this delta applies to; null if this has all tags of the service
+	 */
+	public Long getDeltaFromVersion() {
+		return deltaFromVersion;
+	}
+
+	/**
+	 * @param deltaFromVersion the deltaFromVersion to set
+	 */
+	public void setDeltaFromVersion(Long deltaFromVersion) {
+		this.deltaFromVersion = deltaFromVersion;
+	}
+
+	/**
+	 * @return ids of tags deleted, or no longer mapped to resources of the service, since deltaFromVersion
+	 */
+	public List<Long> getDeletedTagIds() {
+		return deletedTagIds;
+	}
+
+	/**
+	 * @param deletedTagIds the deletedTagIds to set
+	 */
+	public void setDeletedTagIds(List<Long> deletedTagIds) {
+		this.deletedTagIds = deletedTagIds;
+	}
+
+	/**
+	 * @return ids of service-resources deleted since deltaFromVersion
+	 */
+	public List<Long> getDeletedServiceResourceIds() {
+		return deletedServiceResourceIds;
+	}
+
+	/**
+	 * @param deletedServiceResourceIds the deletedServiceResourceIds to set
+	 */
+	public void setDeletedServiceResourceIds(List<Long> deletedServiceResourceIds) {
+		this.deletedServiceResourceIds = deletedServiceResourceIds;
+	}
+
+	/**
+	 * Merges a delta, returned by tag-admin for a download with lastKnownVersion of base, into base. base is not
+	 * modified; service-resources and tags not changed in delta are the same instances in the returned service-tags.
+	 *
+	 * @return all tags of the service as of the version in delta; null if delta doesn't apply to base
+	 */
+	public static ServiceTags applyDelta(ServiceTags base, ServiceTags delta) {
+		if (base == null || delta == null || delta.getDeltaFromVersion() == null || !delta.getDeltaFromVersion().equals(base.getTagVersion())) {
+			return null;
+		}
+
+		Map<Long, RangerTagDef>          tagDefinitions   = new HashMap<Long, RangerTagDef>(base.getTagDefinitions());
+		Map<Long, RangerTag>             tags             = new HashMap<Long, RangerTag>(base.getTags());
+		Map<Long, List<Long>>            resourceToTagIds = new HashMap<Long, List<Long>>(base.getResourceToTagIds());
+		Map<Long, RangerServiceResource> changedResources = new HashMap<Long, RangerServiceResource>();
+		Set<Long>                        deletedIds       = new HashSet<Long>();
+
+		tagDefinitions.putAll(delta.getTagDefinitions());
+
+		if (delta.getDeletedTagIds() != null) {
+			for (Long tagId : delta.getDeletedTagIds()) {
+				tags.remove(tagId);
+			}
+		}
+
+		tags.putAll(delta.getTags());
+
+		for (RangerServiceResource serviceResource : delta.getServiceResources()) {
+			changedResources.put(serviceResource.getId(), serviceResource);
+		}
+
+		if (delta.getDeletedServiceResourceIds() != null) {
+			deletedIds.addAll(delta.getDeletedServiceResourceIds());
+		}
+
+		List<RangerServiceResource> serviceResources = new ArrayList<RangerServiceResource>(base.getServiceResources().size() + changedResources.size());
+
+		for (RangerServiceResource serviceResource : base.getServiceResources()) {
+			if (deletedIds.contains(serviceResource.getId())) {
+				continue;
+			}
+
+			RangerServiceResource changedResource = changedResources.remove(serviceResource.getId());
+
+			serviceResources.add(changedResource != null ? changedResource : serviceResource);
+		}
+
+		for (RangerServiceResource serviceResource : delta.getServiceResources()) {
+			if (changedResources.containsKey(serviceResource.getId())) { // created since base
+				serviceResources.add(serviceResource);
+			}
+		}
+
+		for (Long resourceId : deletedIds) {
+			resourceToTagIds.remove(resourceId);
+		}
+
+		// a changed service-resource without an entry in delta has no tags now
+		for (RangerServiceResource serviceResource : delta.getServiceResources()) {
+			List<Long> tagIds = delta.getResourceToTagIds().get(serviceResource.getId());
+
+			if (tagIds != null) {
+				resourceToTagIds.put(serviceResource.getId(), tagIds);
+			} else {
+				resourceToTagIds.remove(serviceResource.getId());
+			}
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(delta.getOp());
+		ret.setTagModel(delta.getTagModel());
+		ret.setServiceName(delta.getServiceName());
+		ret.setTagVersion(delta.getTagVersion());
+		ret.setTagUpdateTime(delta.getTagUpdateTime());
+		ret.setTagDefinitions(tagDefinitions);
+		ret.setTags(tags);
+		ret.setServiceResources(serviceResources);
+		ret.setResourceToTagIds(resourceToTagIds);
+
+		return ret;
+	}
+
 	@Override
 	public String toString( ) {
 		StringBuilder sb = new StringBuilder();
@@ -197,7 +327,8 @@ public class ServiceTags implements java.io.Serializable {
 				.append("tagModel=").append(tagModel).append(", ")
 				.append("serviceName=").append(serviceName).append(", ")
 				.append("tagVersion=").append(tagVersion).append(", ")
-				.append("tagUpdateTime={").append(tagUpdateTime).append("}")
+				.append("tagUpdateTime={").append(tagUpdateTime).append("}, ")
+				.append("deltaFromVersion=").append(deltaFromVersion)
 				.append("}");
 
 		return sb;
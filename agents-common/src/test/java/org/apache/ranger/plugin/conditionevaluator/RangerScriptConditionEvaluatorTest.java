@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.script.ScriptEngineManager;
+
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RangerScriptConditionEvaluatorTest {
+	// runs past the timeouts used below, but completes; script engines can't be interrupted
+	private static final String LONG_RUNNING_SCRIPT = "var end = Date.now() + 2000; while (Date.now() < end) { } false;";
+
+	@Before
+	public void setUp() throws Exception {
+		Assume.assumeTrue(new ScriptEngineManager().getEngineByName("JavaScript") != null);
+	}
+
+	@Test
+	public void testCompiledScriptIsEvaluatedPerRequest() {
+		RangerScriptConditionEvaluator evaluator = createEvaluator("ctx.getUser() == 'user1'", null);
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertFalse(evaluator.isMatched(createRequest("user2")));
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+
+		evaluator = createEvaluator("ctx.result = ctx.getUserGroups().contains('finance');", null);
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+
+		assertEquals(1, evaluator.getEvalCount());
+		assertEquals(0, evaluator.getErrorCount());
+		assertTrue(evaluator.getMaxEvalTimeNanos() > 0);
+		assertTrue(evaluator.getEvalTimeNanos() >= evaluator.getMaxEvalTimeNanos());
+	}
+
+	@Test
+	public void testScriptTimeout() throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+
+		options.put(RangerScriptConditionEvaluator.OPTION_TIMEOUT_MS, "200");
+
+		RangerScriptConditionEvaluator evaluator = createEvaluator("ctx.getUser() == 'user1'", options);
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertFalse(evaluator.isMatched(createRequest("user2")));
+
+		evaluator = createEvaluator(LONG_RUNNING_SCRIPT, options);
+
+		long startTime = System.currentTimeMillis();
+
+		assertTrue(evaluator.isMatched(createRequest("user1"))); // as for a script that failed
+		assertTrue(System.currentTimeMillis() - startTime < 10000);
+		assertEquals(1, evaluator.getTimeoutCount());
+	}
+
+	@Test
+	public void testPoolHeldByTimedOutScriptsIsReplaced() throws Exception {
+		RangerScriptConditionEvaluator.shutdownTimeoutExecutor();
+		RangerConfiguration.getInstance().setInt(RangerScriptConditionEvaluator.PROP_TIMEOUT_MAX_THREADS, 2);
+
+		try {
+			Map<String, String> options = new HashMap<String, String>();
+
+			options.put(RangerScriptConditionEvaluator.OPTION_TIMEOUT_MS, "100");
+
+			RangerScriptConditionEvaluator longRunning = createEvaluator(LONG_RUNNING_SCRIPT, options);
+			RangerScriptConditionEvaluator quick       = createEvaluator("ctx.getUser() == 'user1'", options);
+
+			// scripts that time out hold both threads of the pool; the next evaluation finds no thread
+			assertTrue(longRunning.isMatched(createRequest("user1")));
+			assertTrue(longRunning.isMatched(createRequest("user1")));
+			assertEquals(2, RangerScriptConditionEvaluator.getTimeoutExecutorActiveCount());
+			assertTrue(quick.isMatched(createRequest("user2")));
+			assertEquals(1, quick.getTimeoutCount());
+
+			// the pool was replaced, so scripts are evaluated again
+			assertTrue(quick.isMatched(createRequest("user1")));
+			assertFalse(quick.isMatched(createRequest("user2")));
+			assertEquals(1, quick.getTimeoutCount());
+		} finally {
+			RangerScriptConditionEvaluator.shutdownTimeoutExecutor();
+			RangerConfiguration.getInstance().unset(RangerScriptConditionEvaluator.PROP_TIMEOUT_MAX_THREADS);
+		}
+	}
+
+	@Test
+	public void testScriptErrorMatches() {
+		RangerScriptConditionEvaluator evaluator = createEvaluator("ctx.noSuchMethod()", null);
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertEquals(1, evaluator.getErrorCount());
+	}
+
+	@Test
+	public void testGlobalsAreNotSharedAcrossRequests() {
+		RangerScriptConditionEvaluator evaluator = createEvaluator("var count = (typeof count === 'undefined') ? 1 : count + 1; count == 1", null);
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertTrue(evaluator.isMatched(createRequest("user2")));
+	}
+
+	@Test
+	public void testUnavailableSandbox() {
+		Map<String, String> options = new HashMap<String, String>();
+
+		options.put(RangerScriptConditionEvaluator.OPTION_ENGINE_NAME, "no-such-engine");
+		options.put(RangerScriptConditionEvaluator.OPTION_ENABLE_SANDBOX, "true");
+
+		RangerScriptConditionEvaluator evaluator = createEvaluator("true", options);
+
+		assertTrue(evaluator.toString().contains("isInitFailed={true}"));
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertEquals(1, evaluator.getErrorCount());
+	}
+
+	@Test
+	public void testSandbox() {
+		String script = "typeof java === 'undefined' && typeof Java === 'undefined' && ctx.getUser() == 'user1'";
+
+		RangerScriptConditionEvaluator evaluator = createEvaluator(script, null);
+
+		assertFalse(evaluator.isMatched(createRequest("user1")));
+
+		Map<String, String> options = new HashMap<String, String>();
+
+		options.put(RangerScriptConditionEvaluator.OPTION_ENABLE_SANDBOX, "true");
+
+		evaluator = createEvaluator(script, options);
+
+		Assume.assumeTrue(evaluator.toString().contains("isCompiled={true}")); // sandbox is supported only with Nashorn
+
+		assertTrue(evaluator.isMatched(createRequest("user1")));
+		assertFalse(evaluator.isMatched(createRequest("user2")));
+	}
+
+	RangerScriptConditionEvaluator createEvaluator(String script, Map<String, String> evaluatorOptions) {
+		RangerPolicyConditionDef  conditionDef = new RangerPolicyConditionDef();
+		RangerPolicyItemCondition condition    = new RangerPolicyItemCondition("script", Arrays.asList(script));
+
+		conditionDef.setName("script");
+		conditionDef.setEvaluatorOptions(evaluatorOptions);
+
+		RangerScriptConditionEvaluator evaluator = new RangerScriptConditionEvaluator();
+
+		evaluator.setConditionDef(conditionDef);
+		evaluator.setPolicyItemCondition(condition);
+		evaluator.init();
+
+		return evaluator;
+	}
+
+	RangerAccessRequest createRequest(String user) {
+		RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+		resource.setValue("database", "finance");
+
+		return new RangerAccessRequestImpl(resource, "select", user, new HashSet<String>(Arrays.asList("finance")));
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.contextenricher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyresourcematcher.RangerDefaultPolicyResourceMatcher;
+import org.apache.ranger.plugin.util.PoliciesResource;
+import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Test;
+
+public class TestRangerTagEnricher {
+
+	@Test
+	public void testTrieLookupMatchesAllMatchers() throws Exception {
+		RangerServiceDef  serviceDef  = PoliciesResource.readServiceDef("/policyengine/test_policyengine_hive.json");
+		ServiceTags       serviceTags = new ServiceTags();
+		RangerTagEnricher tagEnricher = new RangerTagEnricher();
+
+		List<RangerServiceResource> serviceResources = new ArrayList<RangerServiceResource>();
+		Map<Long, RangerTag>        tags             = new HashMap<Long, RangerTag>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<Long, List<Long>>();
+
+		for (int db = 0; db < 5; db++) {
+			for (int tbl = 0; tbl < 5; tbl++) {
+				for (int col = 0; col < 5; col++) {
+					addServiceResource(serviceResources, tags, resourceToTagIds, "db" + db, "tbl" + tbl, "col" + col, false);
+				}
+
+				addServiceResource(serviceResources, tags, resourceToTagIds, "db" + db, "tbl" + tbl, null, false);
+			}
+		}
+
+		addServiceResource(serviceResources, tags, resourceToTagIds, "db1", "tbl*", null, false);
+		addServiceResource(serviceResources, tags, resourceToTagIds, "DB2", "*", "col?", false);
+		addServiceResource(serviceResources, tags, resourceToTagIds, "db3", "tbl3", null, true);
+		addServiceResource(serviceResources, tags, resourceToTagIds, "*", null, null, false);
+
+		serviceTags.setServiceName("cl1_hive");
+		serviceTags.setServiceResources(serviceResources);
+		serviceTags.setTags(tags);
+		serviceTags.setResourceToTagIds(resourceToTagIds);
+
+		tagEnricher.setServiceDef(serviceDef);
+		tagEnricher.setServiceName("cl1_hive");
+		tagEnricher.setServiceTags(serviceTags);
+
+		assertTagsMatch(tagEnricher, serviceDef, serviceTags);
+	}
+
+	@Test
+	public void testSetServiceTagsWithDelta() throws Exception {
+		RangerServiceDef  serviceDef  = PoliciesResource.readServiceDef("/policyengine/test_policyengine_hive.json");
+		ServiceTags       serviceTags = new ServiceTags();
+		RangerTagEnricher tagEnricher = new RangerTagEnricher();
+
+		List<RangerServiceResource> serviceResources = new ArrayList<RangerServiceResource>();
+		Map<Long, RangerTag>        tags             = new HashMap<Long, RangerTag>();
+		Map<Long, List<Long>>       resourceToTagIds = new HashMap<Long, List<Long>>();
+
+		for (int db = 0; db < 5; db++) {
+			addServiceResource(serviceResources, tags, resourceToTagIds, "db" + db, "tbl1", null, false);
+		}
+
+		serviceTags.setServiceName("cl1_hive");
+		serviceTags.setTagVersion(5L);
+		serviceTags.setServiceResources(serviceResources);
+		serviceTags.setTags(tags);
+		serviceTags.setResourceToTagIds(resourceToTagIds);
+
+		tagEnricher.setServiceDef(serviceDef);
+		tagEnricher.setServiceName("cl1_hive");
+		tagEnricher.setServiceTags(serviceTags);
+
+		// resource 2 now on tbl3; resource 3 deleted; a resource created on db9
+		List<RangerServiceResource> changedResources = new ArrayList<RangerServiceResource>();
+		Map<Long, RangerTag>        changedTags      = new HashMap<Long, RangerTag>();
+		Map<Long, List<Long>>       changedTagIds    = new HashMap<Long, List<Long>>();
+
+		addServiceResource(changedResources, changedTags, changedTagIds, 2L, "db1", "tbl3", null, false);
+		addServiceResource(changedResources, changedTags, changedTagIds, 100L, "db9", "tbl1", null, false);
+
+		ServiceTags delta = new ServiceTags();
+
+		delta.setServiceName("cl1_hive");
+		delta.setTagVersion(7L);
+		delta.setDeltaFromVersion(5L);
+		delta.setServiceResources(changedResources);
+		delta.setTags(changedTags);
+		delta.setResourceToTagIds(changedTagIds);
+		delta.setDeletedServiceResourceIds(Arrays.asList(3L));
+		delta.setDeletedTagIds(Arrays.asList(3L));
+
+		ServiceTags merged = ServiceTags.applyDelta(serviceTags, delta);
+
+		tagEnricher.setServiceTags(merged);
+
+		assertEquals(5, merged.getServiceResources().size());
+		assertTagsMatch(tagEnricher, serviceDef, merged);
+	}
+
+	private void assertTagsMatch(RangerTagEnricher tagEnricher, RangerServiceDef serviceDef, ServiceTags serviceTags) {
+		String[] dbs    = { null, "*", "db1", "db2", "db3", "db9" };
+		String[] tables = { null, "*", "tbl1", "tbl3", "tbl", "other" };
+		String[] cols   = { null, "*", "col1", "col12", "other" };
+
+		for (String db : dbs) {
+			for (String table : tables) {
+				for (String col : cols) {
+					RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+					setValue(resource, "database", db);
+					setValue(resource, "table", table);
+					setValue(resource, "column", col);
+
+					RangerAccessRequestImpl request = new RangerAccessRequestImpl(resource, "select", "user1", null);
+
+					tagEnricher.enrich(request);
+
+					List<RangerTag> expected = findMatchingTags(serviceDef, serviceTags, resource);
+					List<RangerTag> actual   = RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext());
+
+					assertEquals("tags for " + resource, expected, actual == null ? new ArrayList<RangerTag>() : actual);
+				}
+			}
+		}
+	}
+
+	// matches every service-resource, without the resource-trie
+	private List<RangerTag> findMatchingTags(RangerServiceDef serviceDef, ServiceTags serviceTags, RangerAccessResourceImpl resource) {
+		List<RangerTag> ret = new ArrayList<RangerTag>();
+
+		for (RangerServiceResource serviceResource : serviceTags.getServiceResources()) {
+			RangerDefaultPolicyResourceMatcher matcher = new RangerDefaultPolicyResourceMatcher();
+
+			matcher.setServiceDef(serviceDef);
+			matcher.setPolicyResources(serviceResource.getResourceElements());
+			matcher.init();
+
+			if (new RangerServiceResourceMatcher(serviceResource, matcher).isMatch(resource)) {
+				List<Long> tagIds = serviceTags.getResourceToTagIds().get(serviceResource.getId());
+
+				if (tagIds != null) {
+					for (Long tagId : tagIds) {
+						ret.add(serviceTags.getTags().get(tagId));
+					}
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private void addServiceResource(List<RangerServiceResource> serviceResources, Map<Long, RangerTag> tags, Map<Long, List<Long>> resourceToTagIds, String db, String table, String column, boolean isExcludes) {
+		addServiceResource(serviceResources, tags, resourceToTagIds, (long) serviceResources.size() + 1, db, table, column, isExcludes);
+	}
+
+	private void addServiceResource(List<RangerServiceResource> serviceResources, Map<Long, RangerTag> tags, Map<Long, List<Long>> resourceToTagIds, Long id, String db, String table, String column, boolean isExcludes) {
+		Map<String, RangerPolicyResource> resourceElements = new HashMap<String, RangerPolicyResource>();
+
+		resourceElements.put("database", new RangerPolicyResource(db, isExcludes, false));
+
+		if (table != null) {
+			resourceElements.put("table", new RangerPolicyResource(table));
+		}
+
+		if (column != null) {
+			resourceElements.put("column", new RangerPolicyResource(column));
+		}
+
+		RangerServiceResource serviceResource = new RangerServiceResource(db + "." + table + "." + column, "cl1_hive", resourceElements);
+		RangerTag             tag             = new RangerTag("TAG_" + id, null);
+
+		serviceResource.setId(id);
+		tag.setId(id);
+
+		serviceResources.add(serviceResource);
+		tags.put(id, tag);
+		resourceToTagIds.put(id, Arrays.asList(id));
+	}
+
+	private void setValue(RangerAccessResourceImpl resource, String name, String value) {
+		if (value != null) {
+			resource.setValue(name, value);
+		}
+	}
+}
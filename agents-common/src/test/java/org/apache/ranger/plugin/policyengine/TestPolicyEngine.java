@@ -26,9 +26,11 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.audit.provider.AuditHandler;
 import org.apache.ranger.audit.provider.AuditProviderFactory;
 import org.apache.ranger.plugin.audit.RangerDefaultAuditHandler;
+import org.apache.ranger.plugin.contextenricher.RangerAbstractContextEnricher;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerTag;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.policyengine.TestPolicyEngine.PolicyEngineTestCase.TestData;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerRequestedResources;
@@ -39,6 +41,8 @@ import org.junit.Test;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -208,16 +212,156 @@ public class TestPolicyEngine {
 		runTestsFromResourceFiles(resourceFiles);
 	}
 
+	@Test
+	public void testPolicyEngine_withAccessResultCache() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hdfs.json", "/policyengine/test_policyengine_hive.json", "/policyengine/test_policyengine_conditions.json" };
+
+		runTestsFromResourceFiles(resourceFiles, true);
+	}
+
+	@Test
+	public void testPolicyEngine_batchEvaluation() {
+		String[] resourceFiles = { "/policyengine/test_policyengine_hdfs.json", "/policyengine/test_policyengine_hive.json", "/policyengine/test_policyengine_conditions.json" };
+
+		for(boolean evaluateInParallel : new boolean[] { false, true }) {
+			for(String resourceName : resourceFiles) {
+				InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
+				InputStreamReader reader   = new InputStreamReader(inStream);
+
+				runBatchTests(reader, resourceName, evaluateInParallel);
+			}
+		}
+	}
+
+	@Test
+	public void testPolicyEngine_reuseUnchangedEvaluators() {
+		String                    resourceName        = "/policyengine/test_policyengine_hive.json";
+		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
+
+		RangerPolicyEngineImpl prevEngine = new RangerPolicyEngineImpl("test-reuse", getVersionedServicePolicies(resourceName, 1L, 1L), policyEngineOptions);
+
+		// update one policy: its evaluator should be rebuilt, and the rest reused
+		ServicePolicies servicePolicies = getVersionedServicePolicies(resourceName, 1L, 2L);
+		RangerPolicy    updatedPolicy   = servicePolicies.getPolicies().get(0);
+
+		updatedPolicy.setVersion(2L);
+
+		RangerPolicyEngineImpl engine = new RangerPolicyEngineImpl("test-reuse", servicePolicies, policyEngineOptions, prevEngine);
+
+		List<RangerPolicyEvaluator> prevEvaluators = prevEngine.getPolicyRepository().getPolicyEvaluators();
+		List<RangerPolicyEvaluator> evaluators     = engine.getPolicyRepository().getPolicyEvaluators();
+
+		assertEquals(prevEvaluators.size(), evaluators.size());
+		assertEquals(evaluators.size() - 1, engine.getPolicyRepository().getReusedEvaluatorCount());
+
+		for(RangerPolicyEvaluator evaluator : evaluators) {
+			boolean isUpdated = evaluator.getPolicy().getId().equals(updatedPolicy.getId());
+
+			assertEquals("evaluator reuse mismatched for policy " + evaluator.getPolicy().getId(), !isUpdated, prevEvaluators.contains(evaluator));
+		}
+
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(this.getClass().getResourceAsStream(resourceName)), PolicyEngineTestCase.class);
+
+		for(TestData test : testCase.tests) {
+			if(test.result != null) {
+				engine.preProcess(test.request);
+
+				RangerAccessResult result = engine.isAccessAllowed(test.request, null);
+
+				assertEquals("isAllowed mismatched! - " + test.name, test.result.getIsAllowed(), result.getIsAllowed());
+				assertEquals("policyId mismatched! - " + test.name, test.result.getPolicyId(), result.getPolicyId());
+			}
+		}
+
+		// a change in service-def should rebuild all evaluators
+		RangerPolicyEngineImpl newEngine = new RangerPolicyEngineImpl("test-reuse", getVersionedServicePolicies(resourceName, 2L, 3L), policyEngineOptions, engine);
+
+		assertEquals(0, newEngine.getPolicyRepository().getReusedEvaluatorCount());
+	}
+
+	@Test
+	public void testPolicyEngine_reusedContextEnrichersCleanedUpOnce() {
+		String                    resourceName        = "/policyengine/test_policyengine_hive.json";
+		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
+
+		RangerPolicyEngineImpl prevEngine = new RangerPolicyEngineImpl("test-reuse", getEnrichedServicePolicies(resourceName, 1L), policyEngineOptions);
+		CleanupCountingEnricher enricher = (CleanupCountingEnricher) prevEngine.getPolicyRepository().getContextEnrichers().get(0);
+
+		// an engine that never replaced prevEngine must leave the enricher it reused alone
+		RangerPolicyEngineImpl discardedEngine = new RangerPolicyEngineImpl("test-reuse", getEnrichedServicePolicies(resourceName, 2L), policyEngineOptions, prevEngine);
+
+		assertSame(enricher, discardedEngine.getPolicyRepository().getContextEnrichers().get(0));
+
+		discardedEngine.cleanup();
+
+		assertEquals(0, enricher.cleanupCount);
+
+		RangerPolicyEngineImpl engine = new RangerPolicyEngineImpl("test-reuse", getEnrichedServicePolicies(resourceName, 3L), policyEngineOptions, prevEngine);
+
+		engine.takeOverContextEnrichers(prevEngine);
+
+		prevEngine.cleanup();
+
+		assertEquals(0, enricher.cleanupCount);
+
+		engine.cleanup();
+
+		assertEquals(1, enricher.cleanupCount);
+	}
+
+	private ServicePolicies getEnrichedServicePolicies(String resourceName, long policyVersion) {
+		ServicePolicies ret = getVersionedServicePolicies(resourceName, 1L, policyVersion);
+
+		ret.getServiceDef().getContextEnrichers().add(new RangerServiceDef.RangerContextEnricherDef(1L, "counting", CleanupCountingEnricher.class.getName(), null));
+
+		return ret;
+	}
+
+	public static class CleanupCountingEnricher extends RangerAbstractContextEnricher {
+		int cleanupCount = 0;
+
+		@Override
+		public void enrich(RangerAccessRequest request) {
+		}
+
+		@Override
+		public void cleanup() {
+			cleanupCount++;
+		}
+	}
+
+	private ServicePolicies getVersionedServicePolicies(String resourceName, long serviceDefVersion, long policyVersion) {
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(this.getClass().getResourceAsStream(resourceName)), PolicyEngineTestCase.class);
+
+		testCase.serviceDef.setVersion(serviceDefVersion);
+
+		for(RangerPolicy policy : testCase.policies) {
+			policy.setVersion(1L);
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+		ret.setServiceName(testCase.serviceName);
+		ret.setServiceDef(testCase.serviceDef);
+		ret.setPolicies(testCase.policies);
+		ret.setPolicyVersion(policyVersion);
+
+		return ret;
+	}
+
 	private void runTestsFromResourceFiles(String[] resourceNames) {
+		runTestsFromResourceFiles(resourceNames, false);
+	}
+
+	private void runTestsFromResourceFiles(String[] resourceNames, boolean cacheAccessResults) {
 		for(String resourceName : resourceNames) {
 			InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
 			InputStreamReader reader   = new InputStreamReader(inStream);
 
-			runTests(reader, resourceName);
+			runTests(reader, resourceName, cacheAccessResults);
 		}
 	}
 
-	private void runTests(InputStreamReader reader, String testName) {
+	private void runTests(InputStreamReader reader, String testName, boolean cacheAccessResults) {
 		PolicyEngineTestCase testCase = gsonBuilder.fromJson(reader, PolicyEngineTestCase.class);
 
 		assertTrue("invalid input: " + testName, testCase != null && testCase.serviceDef != null && testCase.policies != null && testCase.tests != null);
@@ -239,6 +383,7 @@ public class TestPolicyEngine {
 		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
 
 		policyEngineOptions.disableTagPolicyEvaluation = false;
+		policyEngineOptions.cacheAccessResults         = cacheAccessResults;
 
 		policyEngine = new RangerPolicyEngineImpl(testName, servicePolicies, policyEngineOptions);
 
@@ -326,6 +471,14 @@ public class TestPolicyEngine {
 				assertEquals("isAllowed mismatched! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
 				assertEquals("isAudited mismatched! - " + test.name, expected.getIsAudited(), result.getIsAudited());
 				assertEquals("policyId mismatched! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+
+				if(cacheAccessResults) { // evaluate again, to get the result from cache
+					result = policyEngine.isAccessAllowed(request, auditHandler);
+
+					assertEquals("isAllowed mismatched (cached)! - " + test.name, expected.getIsAllowed(), result.getIsAllowed());
+					assertEquals("isAudited mismatched (cached)! - " + test.name, expected.getIsAudited(), result.getIsAudited());
+					assertEquals("policyId mismatched (cached)! - " + test.name, expected.getPolicyId(), result.getPolicyId());
+				}
 			}
 
 			if(test.dataMaskResult != null) {
@@ -352,6 +505,60 @@ public class TestPolicyEngine {
 		}
 	}
 
+	// evaluates all requests of the test case in one batch, with each request repeated so that duplicates get deduped
+	private void runBatchTests(InputStreamReader reader, String testName, boolean evaluateInParallel) {
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(reader, PolicyEngineTestCase.class);
+
+		ServicePolicies servicePolicies = new ServicePolicies();
+		servicePolicies.setServiceName(testCase.serviceName);
+		servicePolicies.setServiceDef(testCase.serviceDef);
+		servicePolicies.setPolicies(testCase.policies);
+
+		RangerPolicyEngineOptions policyEngineOptions = new RangerPolicyEngineOptions();
+
+		policyEngineOptions.evaluateBatchInParallel           = evaluateInParallel;
+		policyEngineOptions.batchParallelism                  = 4;
+		policyEngineOptions.minBatchSizeForParallelEvaluation = 2;
+
+		policyEngine = new RangerPolicyEngineImpl(testName, servicePolicies, policyEngineOptions);
+
+		List<RangerAccessRequest> requests = new ArrayList<RangerAccessRequest>();
+		List<TestData>            tests    = new ArrayList<TestData>();
+
+		for(int i = 0; i < 3; i++) {
+			for(TestData test : testCase.tests) {
+				if(test.result != null && !test.request.getContext().containsKey(RangerAccessRequestUtil.KEY_CONTEXT_TAGS)
+						&& !test.request.getContext().containsKey(RangerAccessRequestUtil.KEY_CONTEXT_REQUESTED_RESOURCES)) {
+					RangerAccessRequestImpl request = new RangerAccessRequestImpl(test.request.getResource(), test.request.getAccessType(), test.request.getUser(), test.request.getUserGroups());
+
+					request.setAccessTime(test.request.getAccessTime());
+					request.setClientIPAddress(test.request.getClientIPAddress());
+					request.setContext(new HashMap<String, Object>(test.request.getContext()));
+
+					requests.add(request);
+					tests.add(test);
+				}
+			}
+		}
+
+		policyEngine.preProcess(requests);
+
+		List<RangerAccessResult> results = new ArrayList<RangerAccessResult>(policyEngine.isAccessAllowed(requests, new RangerDefaultAuditHandler()));
+
+		assertEquals("result count mismatched! - " + testName, requests.size(), results.size());
+
+		for(int i = 0; i < results.size(); i++) {
+			RangerAccessResult expected = tests.get(i).result;
+			RangerAccessResult result   = results.get(i);
+			String             name     = tests.get(i).name + " (batch, parallel=" + evaluateInParallel + ")";
+
+			assertSame("request mismatched! - " + name, requests.get(i), result.getAccessRequest());
+			assertEquals("isAllowed mismatched! - " + name, expected.getIsAllowed(), result.getIsAllowed());
+			assertEquals("isAudited mismatched! - " + name, expected.getIsAudited(), result.getIsAudited());
+			assertEquals("policyId mismatched! - " + name, expected.getPolicyId(), result.getPolicyId());
+		}
+	}
+
 	static class PolicyEngineTestCase {
 		public String             serviceName;
 		public RangerServiceDef   serviceDef;
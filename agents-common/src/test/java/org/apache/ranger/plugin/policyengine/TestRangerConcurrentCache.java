@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class TestRangerConcurrentCache {
+
+	@Test
+	public void testEvictionKeepsReferencedEntries() {
+		RangerConcurrentCache<String, String> cache = new RangerConcurrentCache<String, String>(4, 1);
+
+		for(int i = 0; i < 4; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+
+		assertEquals("value0", cache.get("key0"));
+		assertEquals("value2", cache.get("key2"));
+
+		cache.put("key4", "value4");
+		cache.put("key5", "value5");
+
+		assertEquals(4, cache.size());
+		assertEquals(2, cache.getEvictionCount());
+		assertNotNull(cache.get("key0"));
+		assertNotNull(cache.get("key2"));
+		assertNull(cache.get("key1"));
+		assertNull(cache.get("key3"));
+
+		assertEquals(4, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testZeroMaxSizeDisablesCache() {
+		RangerConcurrentCache<String, String> cache = new RangerConcurrentCache<String, String>(0, 0);
+
+		cache.put("key0", "value0");
+
+		assertNull(cache.get("key0"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getSegmentCount());
+	}
+
+	@Test
+	public void testSegmentCountFromMaxSize() {
+		assertEquals(1, new RangerConcurrentCache<String, String>(100, 0).getSegmentCount());
+		assertEquals(16, new RangerConcurrentCache<String, String>(1000, 0).getSegmentCount());
+		assertEquals(64, new RangerConcurrentCache<String, String>(64 * 1024, 0).getSegmentCount());
+		assertEquals(4, new RangerConcurrentCache<String, String>(64 * 1024, 4).getSegmentCount());
+	}
+
+	@Test
+	public void testConcurrentAccessStaysBounded() throws Exception {
+		final int                                    maxSize = 256;
+		final RangerConcurrentCache<Integer, Integer> cache  = new RangerConcurrentCache<Integer, Integer>(maxSize, 8);
+		final AtomicBoolean                          failed  = new AtomicBoolean(false);
+		List<Thread>                                 threads = new ArrayList<Thread>();
+
+		for(int t = 0; t < 8; t++) {
+			final int seed = t;
+
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for(int i = 0; i < 20000; i++) {
+						Integer key   = (i * 31 + seed) % 1024;
+						Integer value = cache.get(key);
+
+						if(value == null) {
+							cache.put(key, key);
+						} else if(!value.equals(key)) {
+							failed.set(true);
+						}
+					}
+				}
+			};
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(!failed.get());
+		assertTrue(cache.size() <= maxSize);
+		assertEquals(8 * 20000, cache.getHitCount() + cache.getMissCount());
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+public class RangerPolicyValueMatcherTest {
+
+	String[] patterns = {
+			"finance", "fin*", "*nce", "f?nance", "*an*", "f*n*e", "*", "**", "?", "*?", "fin**", "Fin*",
+			"/app/hive", "/app/hive/", "/app/*/warehouse", "/app/h*", "/*/hive", "/app/hive/*", "/", "/*", "Ét?",
+			"*a?e", "?*", "f*?e", "*a*?", "f*n?n*", "*/h*e", "/app/*e/*",
+	};
+
+	String[] resources = {
+			"finance", "FINANCE", "Finance", "fin", "finances", "financ", "nce", "f", "", "fnance", "fxnance",
+			"/app/hive", "/app/Hive", "/app/hive/db1/t1", "/app/hive/", "/app/x/warehouse", "/app/x/warehouse/t1",
+			"/app", "/", "app/hive", "/app/hive2", "/tmp/hive", "état", "ÉTE",
+	};
+
+	@Test
+	public void testIsMatchSameAsWildcardMatch() {
+		for(boolean ignoreCase : new boolean[] { true, false }) {
+			for(String pattern : patterns) {
+				RangerPolicyValueMatcher matcher = new RangerPolicyValueMatcher(Collections.singletonList(pattern), ignoreCase, true);
+
+				for(String resource : resources) {
+					boolean expected = FilenameUtils.wildcardMatch(resource, pattern, ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+
+					assertEquals(getMessage(pattern, resource, ignoreCase), expected, matcher.isMatch(resource));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIsMatchWithoutWildcard() {
+		RangerPolicyValueMatcher matcher = new RangerPolicyValueMatcher(Arrays.asList("fin*", "Sales"), true, false);
+
+		assertEquals(true, matcher.isMatch("fin*"));
+		assertEquals(false, matcher.isMatch("finance"));
+		assertEquals(true, matcher.isMatch("SALES"));
+
+		matcher = new RangerPolicyValueMatcher(Arrays.asList("fin*", "Sales"), false, false);
+
+		assertEquals(false, matcher.isMatch("SALES"));
+		assertEquals(true, matcher.isMatch("Sales"));
+	}
+
+	@Test
+	public void testIsRecursiveMatchSameAsLegacy() {
+		for(boolean ignoreCase : new boolean[] { true, false }) {
+			for(String pattern : patterns) {
+				// as done by RangerPathResourceMatcher for recursive policies
+				String                   valueForMatch = pattern.endsWith("/") ? (pattern + "*") : pattern;
+				RangerPolicyValueMatcher matcher       = new RangerPolicyValueMatcher(Collections.singletonList(valueForMatch), ignoreCase, true);
+
+				for(String resource : resources) {
+					boolean expected = isRecursiveWildCardMatchLegacy(resource, valueForMatch, '/', ignoreCase ? IOCase.INSENSITIVE : IOCase.SENSITIVE);
+
+					assertEquals(getMessage(valueForMatch, resource, ignoreCase), expected, matcher.isRecursiveMatch(resource, '/'));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLongPattern() {
+		String pattern  = StringUtils.repeat("a?", 40) + "*";
+		String resource = StringUtils.repeat("ab", 40) + "c";
+
+		RangerPolicyValueMatcher matcher = new RangerPolicyValueMatcher(Collections.singletonList(pattern), false, true);
+
+		assertEquals(true, matcher.isMatch(resource));
+		assertEquals(false, matcher.isMatch("b" + resource));
+		assertEquals(true, matcher.isRecursiveMatch("/x/../" + resource, '/') == FilenameUtils.wildcardMatch("/x/../" + resource, pattern));
+	}
+
+	private String getMessage(String pattern, String resource, boolean ignoreCase) {
+		return "pattern=" + pattern + ", resource=" + resource + ", ignoreCase=" + ignoreCase;
+	}
+
+	// copy of the earlier implementation in RangerPathResourceMatcher
+	private static boolean isRecursiveWildCardMatchLegacy(String pathToCheck, String wildcardPath, char pathSeparatorChar, IOCase caseSensitivity) {
+		boolean ret = false;
+
+		if (! StringUtils.isEmpty(pathToCheck)) {
+			String[] pathElements = StringUtils.split(pathToCheck, pathSeparatorChar);
+
+			if(pathElements.length > 0) {
+				StringBuilder sb = new StringBuilder();
+
+				if(pathToCheck.charAt(0) == pathSeparatorChar) {
+					sb.append(pathSeparatorChar);
+				}
+
+				for(String p : pathElements) {
+					sb.append(p);
+
+					ret = FilenameUtils.wildcardMatch(sb.toString(), wildcardPath, caseSensitivity) ;
+
+					if (ret) {
+						break;
+					}
+
+					sb.append(pathSeparatorChar) ;
+				}
+			} else {
+				ret = FilenameUtils.wildcardMatch(pathToCheck, wildcardPath, caseSensitivity) ;
+			}
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.PoliciesResource;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+
+public class TestRangerAccessRequestRecorder {
+
+	@Test
+	public void testRingBufferKeepsLatestRequests() {
+		RangerAccessRequestRecorder recorder = new RangerAccessRequestRecorder(4, 1);
+
+		for (int i = 0; i < 10; i++) {
+			recorder.record(createRequest("db" + i));
+		}
+
+		List<RangerAccessRequest> requests = recorder.getRequests();
+		Set<String>               dbNames  = new HashSet<String>();
+
+		for (RangerAccessRequest request : requests) {
+			dbNames.add(request.getResource().getValue("database"));
+		}
+
+		assertEquals(new HashSet<String>(Arrays.asList("db6", "db7", "db8", "db9")), dbNames);
+	}
+
+	@Test
+	public void testRecordedRequestIsACopy() {
+		RangerAccessRequestRecorder recorder = new RangerAccessRequestRecorder(4, 1);
+		RangerAccessRequestImpl     request  = createRequest("db1");
+
+		recorder.record(request);
+
+		request.getContext().put("key", "value");
+		request.getUserGroups().add("group2");
+
+		RangerAccessRequest recorded = recorder.getRequests().get(0);
+
+		assertNotSame(request, recorded);
+		assertTrue(recorded.getContext().isEmpty());
+		assertEquals(new HashSet<String>(Arrays.asList("group1")), recorded.getUserGroups());
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		RangerPolicyEngine          policyEngine = createPolicyEngine("/policyengine/test_policyengine_hive.json");
+		RangerAccessRequestRecorder recorder     = new RangerAccessRequestRecorder(8, 1);
+
+		for (int i = 0; i < 5; i++) {
+			recorder.record(createRequest("db" + i));
+		}
+
+		assertEquals(5, recorder.replay(policyEngine, 0));
+
+		// replay doesn't change the recorded requests, so that they can be replayed against later policy engines
+		for (RangerAccessRequest recorded : recorder.getRequests()) {
+			assertTrue(recorded.getContext().isEmpty());
+			assertEquals(null, recorded.getResource().getServiceDef());
+		}
+
+		assertEquals(5, recorder.replay(policyEngine, 60 * 1000L));
+	}
+
+	private RangerAccessRequestImpl createRequest(String dbName) {
+		Map<String, String> resource = new HashMap<String, String>();
+
+		resource.put("database", dbName);
+		resource.put("table", "tbl1");
+
+		return new RangerAccessRequestImpl(new RangerAccessResourceImpl(resource), "select", "user1", new HashSet<String>(Arrays.asList("group1")));
+	}
+
+	private RangerPolicyEngine createPolicyEngine(String resourceName) throws Exception {
+		ServicePolicies servicePolicies = PoliciesResource.readServicePolicies(resourceName);
+
+		return new RangerPolicyEngineImpl("test-warmup", servicePolicies, new RangerPolicyEngineOptions());
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * serviceDef and policies in the test resources used by the policy-engine tests, like
+ * /policyengine/test_policyengine_hive.json.
+ */
+public class PoliciesResource {
+	public static final long POLICY_VERSION = 10L;
+
+	private static final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	public String             serviceName;
+	public RangerServiceDef   serviceDef;
+	public List<RangerPolicy> policies;
+
+	public static ServicePolicies readServicePolicies(String resource) throws IOException {
+		PoliciesResource policiesResource = readResource(resource, PoliciesResource.class);
+		ServicePolicies  ret              = new ServicePolicies();
+
+		ret.setServiceName(policiesResource.serviceName);
+		ret.setServiceDef(policiesResource.serviceDef);
+		ret.setPolicies(policiesResource.policies);
+		ret.setPolicyVersion(POLICY_VERSION);
+
+		return ret;
+	}
+
+	public static RangerServiceDef readServiceDef(String resource) throws IOException {
+		return readResource(resource, PoliciesResource.class).serviceDef;
+	}
+
+	public static <T> T readResource(String resource, Class<T> cls) throws IOException {
+		InputStream in = PoliciesResource.class.getResourceAsStream(resource);
+
+		if (in == null) {
+			throw new IOException("resource not found: " + resource);
+		}
+
+		try {
+			return gson.fromJson(new InputStreamReader(in, "UTF-8"), cls);
+		} finally {
+			in.close();
+		}
+	}
+}
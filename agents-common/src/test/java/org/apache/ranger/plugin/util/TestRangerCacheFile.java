@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class TestRangerCacheFile {
+	private static final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	@Test
+	public void testPoliciesInBothFormats() throws Exception {
+		ServicePolicies policies   = PoliciesResource.readServicePolicies("/policyengine/test_policyengine_hive.json");
+		File            jsonFile   = tmpFolder.newFile("hive_cl1_hive.json");
+		File            binaryFile = tmpFolder.newFile("hive_cl1_hive.bin");
+
+		RangerCacheFile.save(jsonFile, policies, false);
+		RangerCacheFile.save(binaryFile, policies, true);
+
+		assertTrue("binary cache must be smaller than JSON", binaryFile.length() < jsonFile.length());
+
+		assertEquals(gson.toJson(policies), gson.toJson(RangerCacheFile.load(jsonFile, ServicePolicies.class)));
+		assertEquals(gson.toJson(policies), gson.toJson(RangerCacheFile.load(binaryFile, ServicePolicies.class)));
+
+		assertEquals(2, tmpFolder.getRoot().list().length); // no temporary files left behind
+	}
+
+	@Test
+	public void testServiceTags() throws Exception {
+		ServiceTags serviceTags = PoliciesResource.readResource("/policyengine/resourceTags.json", ServiceTags.class);
+		File        binaryFile  = tmpFolder.newFile("hive_cl1_hive_tag.json");
+
+		RangerCacheFile.save(binaryFile, serviceTags, true);
+
+		ServiceTags loaded = RangerCacheFile.load(binaryFile, ServiceTags.class);
+
+		assertEquals(gson.toJson(serviceTags), gson.toJson(loaded));
+		assertEquals(serviceTags.getTags().keySet(), loaded.getTags().keySet()); // Map<Long, RangerTag>
+	}
+
+	@Test
+	public void testCorruptedFileIsNotLoaded() throws Exception {
+		ServicePolicies policies   = PoliciesResource.readServicePolicies("/policyengine/test_policyengine_hive.json");
+		File            binaryFile = tmpFolder.newFile("hive_cl1_hive.json");
+
+		RangerCacheFile.save(binaryFile, policies, true);
+
+		RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+
+		try {
+			long offset = file.length() / 2;
+
+			file.seek(offset);
+
+			int b = file.read();
+
+			file.seek(offset);
+			file.write(b ^ 0x01);
+		} finally {
+			file.close();
+		}
+
+		try {
+			RangerCacheFile.load(binaryFile, ServicePolicies.class);
+
+			fail("corrupted cache file must not be loaded");
+		} catch (IOException excp) {
+			assertTrue(excp.getMessage().contains("checksum"));
+		}
+	}
+}
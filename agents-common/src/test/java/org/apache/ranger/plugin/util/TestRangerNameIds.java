@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.junit.Test;
+
+public class TestRangerNameIds {
+
+	@Test
+	public void testIdsAreDense() {
+		RangerNameIds.Dictionary names = new RangerNameIds.Dictionary();
+
+		assertEquals(0, names.getOrCreateId("finance"));
+		assertEquals(1, names.getOrCreateId("hr"));
+		assertEquals(0, names.getOrCreateId("finance"));
+		assertEquals(-1, names.getId("sales"));
+		assertEquals(2, names.size());
+
+		BitSet ids = names.getIds(Arrays.asList("hr", "sales"));
+
+		assertEquals(1, ids.cardinality());
+		assertTrue(ids.get(1));
+	}
+
+	@Test
+	public void testConcurrentCreateKeepsIdsDense() throws Exception {
+		final RangerNameIds.Dictionary names       = new RangerNameIds.Dictionary();
+		final CountDownLatch           start       = new CountDownLatch(1);
+		final int                      threadCount = 8;
+		final int                      nameCount   = 1000;
+		Thread[]                       threads     = new Thread[threadCount];
+
+		for(int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch(InterruptedException excp) {
+						return;
+					}
+
+					// all threads create the same names, in the same order
+					for(int j = 0; j < nameCount; j++) {
+						names.getOrCreateId("name-" + j);
+					}
+				}
+			};
+
+			threads[i].start();
+		}
+
+		start.countDown();
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(nameCount, names.size());
+
+		BitSet ids = new BitSet();
+
+		for(int j = 0; j < nameCount; j++) {
+			ids.set(names.getId("name-" + j));
+		}
+
+		assertEquals(nameCount, ids.cardinality());
+		assertEquals(nameCount, ids.nextClearBit(0));
+	}
+
+	@Test
+	public void testCopyKeepsIds() {
+		RangerNameIds names = new RangerNameIds();
+
+		names.getGroups().getOrCreateId("finance");
+
+		RangerNameIds copy = names.copy();
+
+		copy.getGroups().getOrCreateId("hr");
+
+		assertEquals(0, copy.getGroups().getId("finance"));
+		assertEquals(1, copy.getGroups().getId("hr"));
+		assertEquals(-1, names.getGroups().getId("hr"));
+		assertEquals(1, names.size());
+	}
+
+	@Test
+	public void testRequestIdsSavedInContext() {
+		String        group   = "finance";
+		RangerNameIds nameIds = new RangerNameIds();
+
+		nameIds.getGroups().getOrCreateId(group);
+
+		RangerAccessRequestImpl request = new RangerAccessRequestImpl(new RangerAccessResourceImpl(), "read", "user1", new HashSet<String>(Arrays.asList(group, "unknown-group")));
+
+		RangerNameIds.RequestIds ids = RangerAccessRequestUtil.getRequestIds(request, nameIds);
+
+		assertEquals(1, ids.getGroupIds().cardinality());
+		assertTrue(ids.getGroupIds().get(nameIds.getGroups().getId(group)));
+		assertSame(ids, RangerAccessRequestUtil.getRequestIds(request, nameIds));
+
+		// ids saved for the dictionaries of one repository are not valid for another, even one of the same size
+		RangerNameIds otherNameIds = new RangerNameIds();
+
+		otherNameIds.getGroups().getOrCreateId("unknown-group");
+
+		RangerNameIds.RequestIds otherIds = RangerAccessRequestUtil.getRequestIds(request, otherNameIds);
+
+		assertNotSame(ids, otherIds);
+		assertTrue(otherIds.getGroupIds().get(otherNameIds.getGroups().getId("unknown-group")));
+
+		request.setUser("user2");
+
+		assertNotSame(otherIds, RangerAccessRequestUtil.getRequestIds(request, otherNameIds));
+		assertFalse(RangerAccessRequestUtil.copyContext(request.getContext()).containsKey(RangerAccessRequestUtil.KEY_CONTEXT_REQUEST_IDS));
+	}
+}
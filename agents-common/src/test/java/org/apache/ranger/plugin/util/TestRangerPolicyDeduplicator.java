@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerAccessTypeDef;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+public class TestRangerPolicyDeduplicator {
+	private static final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testDedup() throws Exception {
+		ServicePolicies servicePolicies = PoliciesResource.readServicePolicies("/policyengine/test_policyengine_hive.json");
+
+		servicePolicies.getPolicies().add(createPolicy(100L, "db1", new RangerPolicyItemAccess(new String("select"), Boolean.TRUE)));
+		servicePolicies.getPolicies().add(createPolicy(101L, "db1", new RangerPolicyItemAccess(new String("select"), Boolean.TRUE)));
+
+		String json         = gson.toJson(servicePolicies);
+		long   retainedSize = RangerObjectSizeEstimator.estimateRetainedSize(servicePolicies);
+
+		RangerPolicyDeduplicator deduplicator = new RangerPolicyDeduplicator();
+
+		deduplicator.dedup(servicePolicies);
+
+		assertEquals("dedup must not change the policies", json, gson.toJson(servicePolicies));
+		assertTrue(deduplicator.getInternedStringCount() > 0);
+		assertTrue(deduplicator.getSharedAccessCount() > 0);
+		assertTrue(deduplicator.getSharedResourceCount() > 0);
+		assertTrue(RangerObjectSizeEstimator.estimateRetainedSize(servicePolicies) < retainedSize);
+
+		List<RangerPolicy> policies = servicePolicies.getPolicies();
+		RangerPolicy       policy1  = policies.get(policies.size() - 2);
+		RangerPolicy       policy2  = policies.get(policies.size() - 1);
+
+		assertSame(policy1.getPolicyItems().get(0).getAccesses().get(0), policy2.getPolicyItems().get(0).getAccesses().get(0));
+		assertSame(policy1.getResources().get("database"), policy2.getResources().get("database"));
+		assertSame("database", policy1.getResources().keySet().iterator().next());
+		assertSame("user1", policy2.getPolicyItems().get(0).getUsers().get(0));
+	}
+
+	@Test
+	public void testSharedAccessIsNotModified() throws Exception {
+		ServicePolicies servicePolicies = PoliciesResource.readServicePolicies("/policyengine/test_policyengine_hive.json");
+
+		for (RangerAccessTypeDef accessTypeDef : servicePolicies.getServiceDef().getAccessTypes()) {
+			if ("all".equals(accessTypeDef.getName())) {
+				accessTypeDef.setImpliedGrants(Arrays.asList("select", "update"));
+			}
+		}
+
+		// policy 100 grants 'all', which implies 'select'; policy 101 denies 'select'
+		RangerPolicy policy1 = createPolicy(100L, "db1", new RangerPolicyItemAccess("all", Boolean.TRUE), new RangerPolicyItemAccess("select", Boolean.FALSE));
+		RangerPolicy policy2 = createPolicy(101L, "db2", new RangerPolicyItemAccess("select", Boolean.FALSE));
+
+		servicePolicies.setPolicies(new ArrayList<RangerPolicy>(Arrays.asList(policy1, policy2)));
+
+		new RangerPolicyDeduplicator().dedup(servicePolicies);
+
+		assertSame(policy1.getPolicyItems().get(0).getAccesses().get(1), policy2.getPolicyItems().get(0).getAccesses().get(0));
+
+		new RangerPolicyEngineImpl("test-dedup", servicePolicies, new RangerPolicyEngineOptions());
+
+		assertTrue(policy1.getPolicyItems().get(0).getAccesses().get(1).getIsAllowed());
+		assertFalse(policy2.getPolicyItems().get(0).getAccesses().get(0).getIsAllowed());
+	}
+
+	private RangerPolicy createPolicy(Long id, String database, RangerPolicyItemAccess... accesses) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put(new String("database"), new RangerPolicyResource(new String(database)));
+
+		RangerPolicyItem policyItem = new RangerPolicyItem(Arrays.asList(accesses), Arrays.asList(new String("user1")), null, null, Boolean.FALSE);
+		RangerPolicy     ret        = new RangerPolicy("hivedev", "policy-" + id, RangerPolicy.POLICY_TYPE_ACCESS, null, resources, Arrays.asList(policyItem), null);
+
+		ret.setId(id);
+
+		return ret;
+	}
+}
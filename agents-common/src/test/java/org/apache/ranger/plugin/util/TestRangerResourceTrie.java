@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.junit.Test;
+
+public class TestRangerResourceTrie {
+
+	@Test
+	public void testExactWildcardAndExcludes() {
+		RangerResourceTrie trie = new RangerResourceTrie(createResourceDef("database", null, true));
+
+		trie.add(createResource(false, false, "finance"), 0);
+		trie.add(createResource(false, false, "fin*"), 1);
+		trie.add(createResource(false, false, "*"), 2);
+		trie.add(createResource(true, false, "hr"), 3);
+		trie.add(null, 4);
+		trie.add(createResource(false, false, "finance_archive", "hr"), 5);
+		trie.add(createResource(false, false, "?inance"), 6);
+		trie.done();
+
+		assertOrdinals(trie.getOrdinalsForResource("finance"), 0, 1, 2, 3, 4, 6);
+		assertOrdinals(trie.getOrdinalsForResource("FINANCE"), 0, 1, 2, 3, 4, 6);
+		assertOrdinals(trie.getOrdinalsForResource("finance_archive"), 1, 2, 3, 4, 5, 6);
+		assertOrdinals(trie.getOrdinalsForResource("fi"), 2, 3, 4, 6);
+		assertOrdinals(trie.getOrdinalsForResource("hr"), 2, 3, 4, 5, 6);
+		assertOrdinals(trie.getOrdinalsForResource("sales"), 2, 3, 4, 6);
+	}
+
+	@Test
+	public void testRecursivePaths() {
+		Map<String, String> options = new HashMap<String, String>();
+
+		options.put("ignoreCase", "false");
+
+		RangerResourceTrie trie = new RangerResourceTrie(createResourceDef("path", options, true));
+
+		trie.add(createResource(false, true, "/app/hive"), 0);
+		trie.add(createResource(false, false, "/app/hive"), 1);
+		trie.add(createResource(false, true, "/app/*/warehouse"), 2);
+		trie.add(createResource(false, true, "/"), 3);
+		trie.add(createResource(false, false, "/tmp"), 4);
+		trie.done();
+
+		assertOrdinals(trie.getOrdinalsForResource("/app/hive"), 0, 1, 2, 3);
+		assertOrdinals(trie.getOrdinalsForResource("/app/hive/db1/t1"), 0, 2, 3);
+		assertOrdinals(trie.getOrdinalsForResource("/app/Hive"), 2, 3);
+		assertOrdinals(trie.getOrdinalsForResource("/tmp"), 3, 4);
+		assertOrdinals(trie.getOrdinalsForResource("/tmp2"), 3);
+		assertOrdinals(trie.getOrdinalsForResource("tmp"));
+	}
+
+	@Test
+	public void testIsIndexable() {
+		assertTrue(RangerResourceTrie.isIndexable(createResourceDef("path", null, true)));
+		assertTrue(RangerResourceTrie.isIndexable(createResourceDef("path", null, false)));
+
+		RangerResourceDef resourceDef = createResourceDef("custom", null, false);
+
+		resourceDef.setMatcher("com.example.CustomResourceMatcher");
+
+		assertFalse(RangerResourceTrie.isIndexable(resourceDef));
+	}
+
+	private static void assertOrdinals(BitSet actual, int... expected) {
+		BitSet expectedBits = new BitSet();
+
+		for(int ordinal : expected) {
+			expectedBits.set(ordinal);
+		}
+
+		assertEquals(expectedBits, actual);
+	}
+
+	private static RangerResourceDef createResourceDef(String name, Map<String, String> options, boolean isPath) {
+		RangerResourceDef ret = new RangerResourceDef();
+
+		ret.setName(name);
+		ret.setMatcherOptions(options);
+
+		if(isPath) {
+			ret.setMatcher(RangerPathResourceMatcher.class.getName());
+		}
+
+		return ret;
+	}
+
+	private static RangerPolicyResource createResource(boolean isExcludes, boolean isRecursive, String... values) {
+		return new RangerPolicyResource(Arrays.asList(values), isExcludes, isRecursive);
+	}
+}
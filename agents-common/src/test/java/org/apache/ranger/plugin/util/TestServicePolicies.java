@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.junit.Test;
+
+public class TestServicePolicies {
+
+	@Test
+	public void testApplyDelta() {
+		ServicePolicies base = createServicePolicies(5L, createPolicy(1L, "p1"), createPolicy(2L, "p2"), createPolicy(3L, "p3"));
+
+		base.setTagPolicies(new ServicePolicies.TagPolicies());
+
+		ServicePolicies delta = createServicePolicies(7L, createPolicy(2L, "p2-updated"), createPolicy(4L, "p4"));
+
+		delta.setDeltaFromVersion(5L);
+		delta.setDeletedPolicyIds(Arrays.asList(3L));
+
+		ServicePolicies merged = ServicePolicies.applyDelta(base, delta);
+
+		assertEquals(Long.valueOf(7L), merged.getPolicyVersion());
+		assertNull(merged.getDeltaFromVersion());
+		assertSame(base.getTagPolicies(), merged.getTagPolicies());
+		assertEquals(Arrays.asList("p1", "p2-updated", "p4"), getPolicyNames(merged));
+		assertEquals(Arrays.asList("p1", "p2", "p3"), getPolicyNames(base)); // base is not updated
+	}
+
+	@Test
+	public void testApplyDeltaToDifferentVersion() {
+		ServicePolicies base  = createServicePolicies(5L, createPolicy(1L, "p1"));
+		ServicePolicies delta = createServicePolicies(7L, createPolicy(1L, "p1-updated"));
+
+		delta.setDeltaFromVersion(6L);
+
+		assertNull(ServicePolicies.applyDelta(base, delta));
+		assertNull(ServicePolicies.applyDelta(null, delta));
+	}
+
+	private ServicePolicies createServicePolicies(Long version, RangerPolicy... policies) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName("hdfsdev");
+		ret.setPolicyVersion(version);
+		ret.setPolicies(new ArrayList<RangerPolicy>(Arrays.asList(policies)));
+
+		return ret;
+	}
+
+	private RangerPolicy createPolicy(Long id, String name) {
+		RangerPolicy ret = new RangerPolicy();
+
+		ret.setId(id);
+		ret.setName(name);
+
+		return ret;
+	}
+
+	private List<String> getPolicyNames(ServicePolicies servicePolicies) {
+		List<String> ret = new ArrayList<String>();
+
+		for(RangerPolicy policy : servicePolicies.getPolicies()) {
+			ret.add(policy.getName());
+		}
+
+		return ret;
+	}
+}
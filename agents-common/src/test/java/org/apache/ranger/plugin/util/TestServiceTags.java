@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.junit.Test;
+
+public class TestServiceTags {
+
+	@Test
+	public void testApplyDelta() {
+		ServiceTags base = createServiceTags(5L);
+
+		addTaggedResource(base, 1L, "db1", 11L, "PII");
+		addTaggedResource(base, 2L, "db2", 12L, "PCI");
+		addTaggedResource(base, 3L, "db3", 13L, "EXPIRED");
+
+		RangerServiceResource resource1 = base.getServiceResources().get(0);
+
+		// resource 2 updated and tagged with 11 as well; resource 3 and tag 13 deleted; resource 4 and tag 14 created
+		ServiceTags delta = createServiceTags(8L);
+
+		addTaggedResource(delta, 2L, "db2-updated", 12L, "PCI");
+		addTaggedResource(delta, 4L, "db4", 14L, "SENSITIVE");
+
+		delta.getResourceToTagIds().put(2L, Arrays.asList(11L, 12L));
+		delta.setDeltaFromVersion(5L);
+		delta.setDeletedTagIds(Arrays.asList(13L));
+		delta.setDeletedServiceResourceIds(Arrays.asList(3L));
+
+		ServiceTags merged = ServiceTags.applyDelta(base, delta);
+
+		assertEquals(Long.valueOf(8L), merged.getTagVersion());
+		assertNull(merged.getDeltaFromVersion());
+		assertEquals(Arrays.asList("db1", "db2-updated", "db4"), getResourceSignatures(merged));
+		assertSame(resource1, merged.getServiceResources().get(0));
+		assertEquals(new HashSet<Long>(Arrays.asList(11L, 12L, 14L)), merged.getTags().keySet());
+		assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 4L)), merged.getResourceToTagIds().keySet());
+		assertEquals(Arrays.asList(11L, 12L), merged.getResourceToTagIds().get(2L));
+
+		// base is not updated
+		assertEquals(Arrays.asList("db1", "db2", "db3"), getResourceSignatures(base));
+		assertEquals(3, base.getTags().size());
+		assertEquals(Arrays.asList(12L), base.getResourceToTagIds().get(2L));
+	}
+
+	@Test
+	public void testApplyDeltaUntagsResource() {
+		ServiceTags base = createServiceTags(5L);
+
+		addTaggedResource(base, 1L, "db1", 11L, "PII");
+
+		ServiceTags delta = createServiceTags(6L);
+
+		delta.getServiceResources().add(base.getServiceResources().get(0));
+		delta.setDeltaFromVersion(5L);
+		delta.setDeletedTagIds(Arrays.asList(11L));
+
+		ServiceTags merged = ServiceTags.applyDelta(base, delta);
+
+		assertEquals(1, merged.getServiceResources().size());
+		assertEquals(0, merged.getTags().size());
+		assertEquals(0, merged.getResourceToTagIds().size());
+	}
+
+	@Test
+	public void testApplyDeltaToDifferentVersion() {
+		ServiceTags base  = createServiceTags(5L);
+		ServiceTags delta = createServiceTags(7L);
+
+		delta.setDeltaFromVersion(6L);
+
+		assertNull(ServiceTags.applyDelta(base, delta));
+		assertNull(ServiceTags.applyDelta(null, delta));
+		assertNull(ServiceTags.applyDelta(base, createServiceTags(7L))); // not a delta
+	}
+
+	private ServiceTags createServiceTags(Long version) {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setServiceName("cl1_hive");
+		ret.setTagVersion(version);
+
+		return ret;
+	}
+
+	private void addTaggedResource(ServiceTags serviceTags, Long resourceId, String signature, Long tagId, String tagType) {
+		RangerServiceResource resource = new RangerServiceResource(null, "cl1_hive", null, signature);
+		RangerTag             tag      = new RangerTag(tagType, new HashMap<String, String>());
+
+		resource.setId(resourceId);
+		tag.setId(tagId);
+
+		serviceTags.getServiceResources().add(resource);
+		serviceTags.getTags().put(tagId, tag);
+		serviceTags.getResourceToTagIds().put(resourceId, new ArrayList<Long>(Arrays.asList(tagId)));
+	}
+
+	private List<String> getResourceSignatures(ServiceTags serviceTags) {
+		List<String> ret = new ArrayList<String>();
+
+		for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+			ret.add(resource.getResourceSignature());
+		}
+
+		return ret;
+	}
+}
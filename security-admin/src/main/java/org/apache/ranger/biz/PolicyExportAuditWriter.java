@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes audits of policy downloads by plugins in a background thread.
+ *
+ * Audits are coalesced per (agentId, service, httpRetCode) until the next flush, keeping the latest one; so a plugin
+ * polling every 30 seconds results in one row per flush interval instead of one row per poll. Each flush writes the
+ * audits in a single transaction, with a single flush; the inserts are sent in JDBC batches when EclipseLink
+ * batch-writing is enabled with ranger.jpa.jdbc.batch-writing.
+ */
+@Component
+public class PolicyExportAuditWriter {
+	private static final Log LOG = LogFactory.getLog(PolicyExportAuditWriter.class);
+
+	private static final String PROP_ASYNC               = "ranger.admin.policy.download.audit.async";
+	private static final String PROP_FLUSH_INTERVAL_MS   = "ranger.admin.policy.download.audit.flush.interval.ms";
+	private static final String PROP_BATCH_SIZE          = "ranger.admin.policy.download.audit.batch.size";
+	private static final String PROP_MAX_PENDING         = "ranger.admin.policy.download.audit.max.pending";
+	private static final String PROP_VERSION_CHANGE_ONLY = "ranger.admin.policy.download.audit.version.change.only";
+	private static final String PROP_LOG_NOT_MODIFIED    = "ranger.log.SC_NOT_MODIFIED";
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	@Autowired
+	AssetMgr assetMgr;
+
+	private final Map<String, XXPolicyExportAudit> pendingAudits = new ConcurrentHashMap<String, XXPolicyExportAudit>();
+	private final AtomicLong                       droppedCount  = new AtomicLong();
+
+	private boolean                  isAsync;
+	private int                      batchSize;
+	private int                      maxPending;
+	private boolean                  versionChangeOnly;
+	private boolean                  logNotModified;
+	private ScheduledExecutorService flusher;
+
+	@PostConstruct
+	void initialize() {
+		isAsync           = PropertiesUtil.getBooleanProperty(PROP_ASYNC, true);
+		batchSize         = PropertiesUtil.getIntProperty(PROP_BATCH_SIZE, 100);
+		maxPending        = PropertiesUtil.getIntProperty(PROP_MAX_PENDING, 100000);
+		versionChangeOnly = PropertiesUtil.getBooleanProperty(PROP_VERSION_CHANGE_ONLY, false);
+		logNotModified    = PropertiesUtil.getBooleanProperty(PROP_LOG_NOT_MODIFIED, false);
+
+		if (isAsync) {
+			int flushIntervalMs = PropertiesUtil.getIntProperty(PROP_FLUSH_INTERVAL_MS, 5 * 1000);
+
+			flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+																	.setDaemon(true)
+																	.setNameFormat("policy-export-audit-writer-%d")
+																	.build());
+
+			flusher.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+		}
+
+		LOG.info("PolicyExportAuditWriter: isAsync=" + isAsync + ", batchSize=" + batchSize + ", maxPending=" + maxPending + ", versionChangeOnly=" + versionChangeOnly + ", logNotModified=" + logNotModified);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		if (flusher != null) {
+			flusher.shutdown();
+
+			flush();
+		}
+	}
+
+	public void add(XXPolicyExportAudit audit) {
+		if (audit == null || !isToBeRecorded(audit)) {
+			return;
+		}
+
+		if (!isAsync) {
+			assetMgr.createPolicyAudit(audit);
+		} else if (pendingAudits.size() < maxPending) {
+			pendingAudits.put(getCoalesceKey(audit), audit);
+		} else {
+			long count = droppedCount.incrementAndGet();
+
+			if (count == 1 || count % 1000 == 0) {
+				LOG.warn("PolicyExportAuditWriter: " + pendingAudits.size() + " audits pending write. Dropped " + count + " audits so far");
+			}
+		}
+	}
+
+	void flush() {
+		if (pendingAudits.isEmpty()) {
+			return;
+		}
+
+		final List<XXPolicyExportAudit> audits = new ArrayList<XXPolicyExportAudit>(pendingAudits.size());
+
+		for (Map.Entry<String, XXPolicyExportAudit> entry : pendingAudits.entrySet()) {
+			// an audit coalesced after this point is left for the next flush
+			if (pendingAudits.remove(entry.getKey(), entry.getValue())) {
+				audits.add(entry.getValue());
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> PolicyExportAuditWriter.flush(): count=" + audits.size());
+		}
+
+		try {
+			TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+			txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+			for (int fromIdx = 0; fromIdx < audits.size(); fromIdx += batchSize) {
+				final List<XXPolicyExportAudit> batch = audits.subList(fromIdx, Math.min(audits.size(), fromIdx + batchSize));
+
+				txTemplate.execute(new TransactionCallback<Object>() {
+					@Override
+					public Object doInTransaction(TransactionStatus status) {
+						daoMgr.getXXPolicyExportAudit().batchCreate(batch);
+
+						return null;
+					}
+				});
+			}
+		} catch (Throwable excp) {
+			LOG.error("PolicyExportAuditWriter.flush(): failed to write " + audits.size() + " policy download audits", excp);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== PolicyExportAuditWriter.flush(): count=" + audits.size());
+		}
+	}
+
+	private boolean isToBeRecorded(XXPolicyExportAudit audit) {
+		final boolean ret;
+
+		if (versionChangeOnly) {
+			ret = audit.getHttpRetCode() == HttpServletResponse.SC_OK;
+		} else if (audit.getHttpRetCode() == HttpServletResponse.SC_NOT_MODIFIED) {
+			ret = logNotModified;
+		} else {
+			ret = true;
+		}
+
+		return ret;
+	}
+
+	private String getCoalesceKey(XXPolicyExportAudit audit) {
+		return audit.getAgentId() + '\u0001' + audit.getRepositoryName() + '\u0001' + audit.getHttpRetCode();
+	}
+}
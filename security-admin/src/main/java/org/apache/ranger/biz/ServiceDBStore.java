@@ -30,6 +30,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.common.*;
+import org.apache.ranger.common.RangerServicePolicyVersionCache.ServiceVersion;
 import org.apache.ranger.db.*;
 import org.apache.ranger.entity.*;
 import org.apache.ranger.plugin.model.RangerPolicy;
@@ -75,6 +76,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 
@@ -134,6 +137,9 @@ public class ServiceDBStore extends AbstractServiceStore {
 
     
 	private static volatile boolean legacyServiceDefsInitDone = false;
+
+	private static volatile RangerServiceChangeLog<Long> policyChangeLog = null;
+
 	private Boolean populateExistingBaseFields = false;
 	
 	public static final String HIDDEN_PASSWORD_STR = "*****";
@@ -182,6 +188,10 @@ public class ServiceDBStore extends AbstractServiceStore {
 	                    }
 					});
 
+					if (RangerServicePolicyVersionCache.getInstance().isEnabled()) {
+						startServicePolicyVersionReconciler();
+					}
+
 					legacyServiceDefsInitDone = true;
 				}
 			}
@@ -192,6 +202,45 @@ public class ServiceDBStore extends AbstractServiceStore {
 		}
 	}
 
+	// picks up changes made through other ranger-admin instances, like in an HA setup
+	private void startServicePolicyVersionReconciler() {
+		final TransactionTemplate             txTemplate   = new TransactionTemplate(txManager);
+		final RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+
+		txTemplate.setReadOnly(true);
+
+		Thread reconciler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						List<XXService> services = txTemplate.execute(new TransactionCallback<List<XXService>>() {
+							@Override
+							public List<XXService> doInTransaction(TransactionStatus status) {
+								return daoMgr.getXXService().getAll();
+							}
+						});
+
+						versionCache.reconcile(services);
+					} catch (Throwable excp) {
+						LOG.error("ServiceDBStore: failed to reconcile service policy-versions with database", excp);
+					}
+
+					try {
+						Thread.sleep(versionCache.getReconcileIntervalMs());
+					} catch (InterruptedException excp) {
+						LOG.info("ServiceDBStore: service policy-version reconciler interrupted. Exiting thread", excp);
+
+						break;
+					}
+				}
+			}
+		}, "RangerServicePolicyVersionReconciler");
+
+		reconciler.setDaemon(true);
+		reconciler.start();
+	}
+
 	@Override
 	public RangerServiceDef createServiceDef(RangerServiceDef serviceDef) throws Exception {
 		if (LOG.isDebugEnabled()) {
@@ -1333,7 +1382,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 			service = svcService.update(service);
 
 			if (hasTagServiceValueChanged || hasIsEnabledChanged) {
-				updatePolicyVersion(service);
+				updatePolicyVersion(service, null);
 			}
 		}
 
@@ -1394,6 +1443,26 @@ public class ServiceDBStore extends AbstractServiceStore {
 			xConfMap = xConfMapDao.create(xConfMap);
 		}
 
+		final String  oldServiceName = renamed ? existingName : null;
+		final Long    serviceId      = xUpdService.getId();
+		final String  serviceName    = xUpdService.getName();
+		final Long    policyVersion  = xUpdService.getPolicyVersion();
+		final Long    tagVersion     = xUpdService.getTagVersion();
+		final Boolean isEnabled      = xUpdService.getIsenabled();
+
+		runAfterCommit(new Runnable() {
+			@Override
+			public void run() {
+				if(oldServiceName != null) {
+					getPolicyChangeLog().removeService(oldServiceName);
+					TagDBStore.getTagChangeLog().removeService(oldServiceName);
+					RangerServicePolicyVersionCache.getInstance().remove(oldServiceName);
+				}
+
+				RangerServicePolicyVersionCache.getInstance().update(serviceId, serviceName, policyVersion, tagVersion, isEnabled);
+			}
+		});
+
 		RangerService updService = svcService.getPopulatedViewObject(xUpdService);
 		dataHistService.createObjectDataHistory(updService, RangerDataHistService.ACTION_UPDATE);
 		bizUtil.createTrxLog(trxLogList);
@@ -1436,6 +1505,17 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		svcService.delete(service);
 
+		final String serviceName = service.getName();
+
+		runAfterCommit(new Runnable() {
+			@Override
+			public void run() {
+				getPolicyChangeLog().removeService(serviceName);
+				TagDBStore.getTagChangeLog().removeService(serviceName);
+				RangerServicePolicyVersionCache.getInstance().remove(serviceName);
+			}
+		});
+
 		dataHistService.createObjectDataHistory(service, RangerDataHistService.ACTION_DELETE);
 
 		List<XXTrxLog> trxLogList = svcService.getTransactionLog(service, RangerServiceService.OPERATION_DELETE_CONTEXT);
@@ -1592,7 +1672,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewPolicyItemsForPolicy(policy, xCreatedPolicy, allowExceptions, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ALLOW_EXCEPTIONS);
 		createNewPolicyItemsForPolicy(policy, xCreatedPolicy, denyExceptions, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DENY_EXCEPTIONS);
 		createNewDataMaskPolicyItemsForPolicy(policy, xCreatedPolicy, dataMaskItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DATA_MASKING);
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policy.getId());
 		RangerPolicy createdPolicy = policyService.getPopulatedViewObject(xCreatedPolicy);
 		dataHistService.createObjectDataHistory(createdPolicy, RangerDataHistService.ACTION_CREATE);
 
@@ -1667,7 +1747,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewPolicyItemsForPolicy(policy, newUpdPolicy, denyExceptions, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DENY_EXCEPTIONS);
 		createNewDataMaskPolicyItemsForPolicy(policy, newUpdPolicy, dataMaskPolicyItems, xServiceDef, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_DATA_MASKING);
 
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policy.getId());
 		RangerPolicy updPolicy = policyService.getPopulatedViewObject(newUpdPolicy);
 		dataHistService.createObjectDataHistory(updPolicy, RangerDataHistService.ACTION_UPDATE);
 		
@@ -1711,7 +1791,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		deleteExistingPolicyResources(policy);
 		
 		policyService.delete(policy);
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policy.getId());
 		
 		dataHistService.createObjectDataHistory(policy, RangerDataHistService.ACTION_DELETE);
 		
@@ -1906,14 +1986,26 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		ServicePolicies ret = null;
 
-		XXService serviceDbObj = daoMgr.getXXService().findByName(serviceName);
+		// the cache can lag the database, by up to the reconcile interval for changes made in other ranger-admin instances;
+		// hence it is used only to find that the plugin is up to date. Otherwise the database is looked up, so that policies
+		// older than lastKnownVersion are not returned
+		ServiceVersion serviceVersion = RangerServicePolicyVersionCache.getInstance().get(serviceName);
+		boolean        isUpToDate     = lastKnownVersion != null && serviceVersion != null && lastKnownVersion.equals(serviceVersion.getPolicyVersion());
 
-		if (serviceDbObj == null) {
-			throw new Exception("service does not exist. name=" + serviceName);
-		}
+		if (!isUpToDate) {
+			XXService serviceDbObj = daoMgr.getXXService().findByName(serviceName);
+
+			if (serviceDbObj == null) {
+				throw new Exception("service does not exist. name=" + serviceName);
+			}
+
+			Long policyVersion = serviceDbObj.getPolicyVersion();
+
+			RangerServicePolicyVersionCache.getInstance().addIfAbsent(serviceDbObj.getId(), serviceName, policyVersion, serviceDbObj.getTagVersion(), serviceDbObj.getIsenabled());
 
-		if (lastKnownVersion == null || serviceDbObj.getPolicyVersion() == null || !lastKnownVersion.equals(serviceDbObj.getPolicyVersion())) {
-			ret = RangerServicePoliciesCache.getInstance().getServicePolicies(serviceName, this);
+			if (lastKnownVersion == null || policyVersion == null || !lastKnownVersion.equals(policyVersion)) {
+				ret = RangerServicePoliciesCache.getInstance().getServicePolicies(serviceName, this);
+			}
 		}
 
 		if (ret != null && lastKnownVersion != null && lastKnownVersion.equals(ret.getPolicyVersion())) {
@@ -1932,9 +2024,64 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return ret;
 	}
 
+	/**
+	 * Same as getServicePoliciesIfUpdated(), except that when the policies changed since lastKnownVersion are known, only
+	 * these are returned: policies created or updated in policies, and ids of deleted policies in deletedPolicyIds.
+	 */
+	public ServicePolicies getServicePolicyDeltasIfUpdated(String serviceName, Long lastKnownVersion) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> ServiceDBStore.getServicePolicyDeltasIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+		}
+
+		ServicePolicies ret = getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+
+		if (ret != null && lastKnownVersion != null && ret.getPolicyVersion() != null) {
+			Set<Long> changedPolicyIds = getPolicyChangeLog().getChanges(serviceName, lastKnownVersion, ret.getPolicyVersion());
+
+			if (changedPolicyIds != null) {
+				ret = getServicePolicyDeltas(ret, lastKnownVersion, changedPolicyIds);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceDBStore.getServicePolicyDeltasIfUpdated(" + serviceName + ", " + lastKnownVersion + "): isDelta=" + (ret != null && ret.getDeltaFromVersion() != null) + ", count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()));
+		}
+
+		return ret;
+	}
+
+	private ServicePolicies getServicePolicyDeltas(ServicePolicies servicePolicies, Long fromVersion, Set<Long> changedPolicyIds) {
+		List<RangerPolicy> changedPolicies  = new ArrayList<RangerPolicy>();
+		List<Long>         deletedPolicyIds = new ArrayList<Long>(changedPolicyIds);
+
+		if (servicePolicies.getPolicies() != null) {
+			for (RangerPolicy policy : servicePolicies.getPolicies()) {
+				if (changedPolicyIds.contains(policy.getId())) {
+					changedPolicies.add(policy);
+					deletedPolicyIds.remove(policy.getId());
+				}
+			}
+		}
+
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(servicePolicies.getServiceId());
+		ret.setServiceName(servicePolicies.getServiceName());
+		ret.setPolicyVersion(servicePolicies.getPolicyVersion());
+		ret.setPolicyUpdateTime(servicePolicies.getPolicyUpdateTime());
+		ret.setServiceDef(servicePolicies.getServiceDef());
+		ret.setPolicies(changedPolicies);
+		ret.setDeletedPolicyIds(deletedPolicyIds);
+		ret.setDeltaFromVersion(fromVersion);
+		// tagPolicies are not set: a change in tag-policies requires a full download
+
+		return ret;
+	}
+
 	@Override
 	public Long getServicePolicyVersion(String serviceName) {
-
+		// not looked up in RangerServicePolicyVersionCache: RangerServicePoliciesCache uses this to find whether its policies
+		// are stale, which the version cache can't tell until it is reconciled with the database
 		XXService serviceDbObj = daoMgr.getXXService().findByName(serviceName);
 
 		return serviceDbObj != null ? serviceDbObj.getPolicyVersion() : null;
@@ -2211,11 +2358,14 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return validConfigs;
 	}
 
-	private void handlePolicyUpdate(RangerService service) throws Exception {
-		updatePolicyVersion(service);
+	private void handlePolicyUpdate(RangerService service, Long policyId) throws Exception {
+		updatePolicyVersion(service, policyId);
 	}
 
-	private void updatePolicyVersion(RangerService service) throws Exception {
+	/**
+	 * @param policyId id of the policy whose change caused the update; null if the update is not due to a policy change
+	 */
+	private void updatePolicyVersion(RangerService service, Long policyId) throws Exception {
 		if(service == null || service.getId() == null) {
 			return;
 		}
@@ -2238,6 +2388,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		serviceDao.update(serviceDbObj);
 
+		onPolicyVersionChange(serviceDbObj, policyId);
+
 		// if this is a tag service, update all services that refer to this tag service
 		// so that next policy-download from plugins will get updated tag policies
 		boolean isTagService = serviceDbObj.getType() == EmbeddedServiceDefsUtil.instance().getTagServiceDefId();
@@ -2250,11 +2402,62 @@ public class ServiceDBStore extends AbstractServiceStore {
 					referringService.setPolicyUpdateTime(service.getPolicyUpdateTime());
 
 					serviceDao.update(referringService);
+
+					onPolicyVersionChange(referringService, null); // tag-policies are sent only in full download
 				}
 			}
 		}
 	}
 
+	private void onPolicyVersionChange(XXService service, final Long policyId) {
+		final Long    serviceId     = service.getId();
+		final String  serviceName   = service.getName();
+		final Long    policyVersion = service.getPolicyVersion();
+		final Long    tagVersion    = service.getTagVersion();
+		final Boolean isEnabled     = service.getIsenabled();
+
+		runAfterCommit(new Runnable() {
+			@Override
+			public void run() {
+				getPolicyChangeLog().onVersionChange(serviceName, policyVersion, policyId);
+				RangerServicePolicyVersionCache.getInstance().update(serviceId, serviceName, policyVersion, tagVersion, isEnabled);
+			}
+		});
+	}
+
+	// ids of policies changed in each policy-version; a null id requires a full download
+	static RangerServiceChangeLog<Long> getPolicyChangeLog() {
+		RangerServiceChangeLog<Long> ret = policyChangeLog;
+
+		if (ret == null) {
+			synchronized (ServiceDBStore.class) {
+				ret = policyChangeLog;
+
+				if (ret == null) {
+					ret = new RangerServiceChangeLog<Long>("policy", RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.delta.max.versions", 100));
+
+					policyChangeLog = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	// changes are logged only after the transaction commits, so that the log doesn't have changes that were rolled back
+	static void runAfterCommit(final Runnable runnable) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					runnable.run();
+				}
+			});
+		} else {
+			runnable.run();
+		}
+	}
+
 	private XXPolicyItem createNewPolicyItemForPolicy(RangerPolicy policy, XXPolicy xPolicy, RangerPolicy.RangerPolicyItem policyItem, XXServiceDef xServiceDef, int itemOrder, int policyItemType) throws Exception {
 		XXPolicyItem xPolicyItem = new XXPolicyItem();
 
@@ -2568,6 +2771,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 				serviceDao.update(service);
 
+				onPolicyVersionChange(service, null);
+
 				if(isTagServiceDef) {
 					List<XXService> referrringServices = serviceDao.findByTagServiceId(service.getId());
 
@@ -2577,6 +2782,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 							referringService.setPolicyUpdateTime(serviceDef.getUpdateTime());
 
 							serviceDao.update(referringService);
+
+							onPolicyVersionChange(referringService, null);
 						}
 					}
 				}
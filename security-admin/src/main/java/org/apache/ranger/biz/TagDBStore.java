@@ -21,17 +21,22 @@ package org.apache.ranger.biz;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.common.GUIDUtil;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.RangerServiceChangeLog;
+import org.apache.ranger.common.RangerServicePolicyVersionCache;
 import org.apache.ranger.common.RangerServiceTagsCache;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.entity.XXDBBase;
@@ -63,6 +68,8 @@ import org.springframework.stereotype.Component;
 public class TagDBStore extends AbstractTagStore {
 	private static final Log LOG = LogFactory.getLog(TagDBStore.class);
 
+	private static volatile RangerServiceChangeLog<TagChange> tagChangeLog = null;
+
 	@Autowired
 	RangerTagDefService rangerTagDefService;
 
@@ -125,6 +132,8 @@ public class TagDBStore extends AbstractTagStore {
 
 		RangerTagDef ret = rangerTagDefService.update(tagDef);
 
+		onTagVersionChange(daoManager.getXXService().updateServiceForTagDefUpdate(ret.getId(), ret.getUpdateTime()), null); // tag-defs are sent only in full download
+
 		// TODO: delete attributes might fail; so instead of delete+create, following should be updated to deal with only attributes that changed
 		deleteTagAttributeDefs(ret.getId());
 		createTagAttributeDefs(ret.getId(), tagDef.getAttributeDefs());
@@ -315,6 +324,8 @@ public class TagDBStore extends AbstractTagStore {
 
 		RangerTag ret = rangerTagService.update(tag);
 
+		onTagVersionChange(daoManager.getXXService().updateServiceForTagUpdate(ret.getId(), ret.getUpdateTime()), new TagChange(ret.getId(), null));
+
 		deleteTagAttributes(existing.getId());
 		createTagAttributes(existing.getId(), tag.getAttributes());
 
@@ -498,7 +509,10 @@ public class TagDBStore extends AbstractTagStore {
 		resource.setGuid(existing.getGuid());
 		resource.setVersion(existing.getVersion());
 
-		rangerServiceResourceService.update(resource);
+		RangerServiceResource updated = rangerServiceResourceService.update(resource);
+
+		onTagVersionChange(daoManager.getXXService().updateServiceForServiceResourceUpdate(updated.getId(), updated.getUpdateTime()), new TagChange(null, updated.getId()));
+
 		deleteResourceForServiceResource(existing.getId());
 		createResourceForServiceResource(existing.getId(), resource);
 
@@ -634,6 +648,8 @@ public class TagDBStore extends AbstractTagStore {
 
 		RangerTagResourceMap ret = rangerTagResourceMapService.create(tagResourceMap);
 
+		onTagVersionChange(daoManager.getXXService().updateServiceForServiceResourceUpdate(ret.getResourceId(), ret.getUpdateTime()), new TagChange(ret.getTagId(), ret.getResourceId()));
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== TagDBStore.createTagResourceMap(" + tagResourceMap + "): " + ret);
 		}
@@ -649,6 +665,10 @@ public class TagDBStore extends AbstractTagStore {
 
 		RangerTagResourceMap tagResourceMap = rangerTagResourceMapService.read(id);
 
+		if (tagResourceMap != null) { // services are found through the mapping; hence before it is deleted
+			onTagVersionChange(daoManager.getXXService().updateServiceForServiceResourceUpdate(tagResourceMap.getResourceId(), null), new TagChange(tagResourceMap.getTagId(), tagResourceMap.getResourceId()));
+		}
+
 		rangerTagResourceMapService.delete(tagResourceMap);
 
 		if (LOG.isDebugEnabled()) {
@@ -857,6 +877,179 @@ public class TagDBStore extends AbstractTagStore {
 		return ret;
 	}
 
+	/**
+	 * Same as getServiceTagsIfUpdated(), except that when the tags and service-resources changed since lastKnownVersion
+	 * are known, only these are returned: tags and service-resources created or updated in tags and serviceResources,
+	 * tag-ids of changed service-resources in resourceToTagIds, and ids of deleted ones in deletedTagIds and
+	 * deletedServiceResourceIds.
+	 */
+	public ServiceTags getServiceTagDeltasIfUpdated(String serviceName, Long lastKnownVersion) throws Exception {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> TagDBStore.getServiceTagDeltasIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+		}
+
+		ServiceTags ret = getServiceTagsIfUpdated(serviceName, lastKnownVersion);
+
+		if (ret != null && lastKnownVersion != null && ret.getTagVersion() != null) {
+			Set<TagChange> changes = getTagChangeLog().getChanges(serviceName, lastKnownVersion, ret.getTagVersion());
+
+			if (changes != null) {
+				ret = getServiceTagDeltas(ret, lastKnownVersion, changes);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== TagDBStore.getServiceTagDeltasIfUpdated(" + serviceName + ", " + lastKnownVersion + "): isDelta=" + (ret != null && ret.getDeltaFromVersion() != null) + ", count=" + ((ret == null || ret.getTags() == null) ? 0 : ret.getTags().size()));
+		}
+
+		return ret;
+	}
+
+	private ServiceTags getServiceTagDeltas(ServiceTags serviceTags, Long fromVersion, Set<TagChange> changes) {
+		Set<Long> changedTagIds             = new HashSet<Long>();
+		Set<Long> changedServiceResourceIds = new HashSet<Long>();
+
+		for (TagChange change : changes) {
+			if (change.tagId != null) {
+				changedTagIds.add(change.tagId);
+			}
+
+			if (change.serviceResourceId != null) {
+				changedServiceResourceIds.add(change.serviceResourceId);
+			}
+		}
+
+		Map<Long, RangerTag>        changedTags               = new HashMap<Long, RangerTag>();
+		List<Long>                  deletedTagIds             = new ArrayList<Long>();
+		List<RangerServiceResource> changedServiceResources   = new ArrayList<RangerServiceResource>();
+		Map<Long, List<Long>>       changedResourceToTagIds   = new HashMap<Long, List<Long>>();
+		List<Long>                  deletedServiceResourceIds = new ArrayList<Long>(changedServiceResourceIds);
+
+		for (Long tagId : changedTagIds) {
+			RangerTag tag = serviceTags.getTags().get(tagId);
+
+			if (tag != null) {
+				changedTags.put(tagId, tag);
+			} else { // deleted, or no longer mapped to a resource of this service
+				deletedTagIds.add(tagId);
+			}
+		}
+
+		for (RangerServiceResource serviceResource : serviceTags.getServiceResources()) {
+			if (changedServiceResourceIds.contains(serviceResource.getId())) {
+				List<Long> tagIds = serviceTags.getResourceToTagIds().get(serviceResource.getId());
+
+				changedServiceResources.add(serviceResource);
+				deletedServiceResourceIds.remove(serviceResource.getId());
+
+				if (tagIds != null) {
+					changedResourceToTagIds.put(serviceResource.getId(), tagIds);
+				}
+			}
+		}
+
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(serviceTags.getOp());
+		ret.setTagModel(serviceTags.getTagModel());
+		ret.setServiceName(serviceTags.getServiceName());
+		ret.setTagVersion(serviceTags.getTagVersion());
+		ret.setTagUpdateTime(serviceTags.getTagUpdateTime());
+		ret.setTagDefinitions(serviceTags.getTagDefinitions());
+		ret.setTags(changedTags);
+		ret.setServiceResources(changedServiceResources);
+		ret.setResourceToTagIds(changedResourceToTagIds);
+		ret.setDeletedTagIds(deletedTagIds);
+		ret.setDeletedServiceResourceIds(deletedServiceResourceIds);
+		ret.setDeltaFromVersion(fromVersion);
+
+		return ret;
+	}
+
+	// ids of tags and service-resources changed in each tag-version; a null change requires a full download
+	static RangerServiceChangeLog<TagChange> getTagChangeLog() {
+		RangerServiceChangeLog<TagChange> ret = tagChangeLog;
+
+		if (ret == null) {
+			synchronized (TagDBStore.class) {
+				ret = tagChangeLog;
+
+				if (ret == null) {
+					ret = new RangerServiceChangeLog<TagChange>("tag", RangerConfiguration.getInstance().getInt("ranger.admin.tag.download.delta.max.versions", 100));
+
+					tagChangeLog = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private void onTagVersionChange(List<XXService> services, final TagChange change) {
+		final int      count        = services.size();
+		final Long[]   serviceIds   = new Long[count];
+		final String[] serviceNames = new String[count];
+		final Long[]   tagVersions  = new Long[count];
+
+		// versions are read now, as the entities can be updated again in this transaction
+		for (int i = 0; i < count; i++) {
+			XXService service = services.get(i);
+
+			serviceIds[i]   = service.getId();
+			serviceNames[i] = service.getName();
+			tagVersions[i]  = service.getTagVersion();
+		}
+
+		ServiceDBStore.runAfterCommit(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					getTagChangeLog().onVersionChange(serviceNames[i], tagVersions[i], change);
+					RangerServicePolicyVersionCache.getInstance().updateTagVersion(serviceIds[i], serviceNames[i], tagVersions[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * A tag, a service-resource, or a mapping between the two, that was created, updated or deleted.
+	 */
+	static class TagChange {
+		final Long tagId;
+		final Long serviceResourceId;
+
+		TagChange(Long tagId, Long serviceResourceId) {
+			this.tagId             = tagId;
+			this.serviceResourceId = serviceResourceId;
+		}
+
+		@Override
+		public int hashCode() {
+			return (tagId == null ? 0 : tagId.hashCode()) * 31 + (serviceResourceId == null ? 0 : serviceResourceId.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof TagChange)) {
+				return false;
+			}
+
+			TagChange other = (TagChange) obj;
+
+			return (tagId == null ? other.tagId == null : tagId.equals(other.tagId))
+					&& (serviceResourceId == null ? other.serviceResourceId == null : serviceResourceId.equals(other.serviceResourceId));
+		}
+
+		@Override
+		public String toString() {
+			return "TagChange={tagId=" + tagId + ", serviceResourceId=" + serviceResourceId + "}";
+		}
+	}
+
 	@Override
 	public Long getTagVersion(String serviceName) {
 
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Changes made in each version of a service, for the recent versions; like ids of the policies changed in each
+ * policy-version. Used to send plugins only what changed since the version they have.
+ *
+ * The log is kept in memory, hence it has only the changes made through this instance since it started. A version
+ * with a change that can't be recorded as an individual change (like to the service, or to a tag-def) is recorded as
+ * requiring a full download. Callers must download everything when getChanges() returns null.
+ *
+ * @param <T> type of the changes recorded, like the id of a changed policy
+ */
+public class RangerServiceChangeLog<T> {
+	private static final Log LOG = LogFactory.getLog(RangerServiceChangeLog.class);
+
+	private final String                              name;
+	private final int                                 maxVersionsPerService;
+	private final Set<T>                              fullDownload   = new HashSet<T>();
+	private final Map<String, TreeMap<Long, Set<T>>> serviceChanges = new HashMap<String, TreeMap<Long, Set<T>>>();
+
+	/**
+	 * @param name used in log messages, like "policy"
+	 * @param maxVersionsPerService number of recent versions kept for each service; 0 disables the log
+	 */
+	public RangerServiceChangeLog(String name, int maxVersionsPerService) {
+		this.name                  = name;
+		this.maxVersionsPerService = maxVersionsPerService;
+	}
+
+	/**
+	 * @param change change made in this version; null if the change requires a full download
+	 */
+	public synchronized void onVersionChange(String serviceName, Long version, T change) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerServiceChangeLog.onVersionChange(" + name + ", " + serviceName + ", " + version + ", " + change + ")");
+		}
+
+		if (serviceName == null || version == null || maxVersionsPerService <= 0) {
+			return;
+		}
+
+		TreeMap<Long, Set<T>> changes = serviceChanges.get(serviceName);
+
+		if (changes == null) {
+			changes = new TreeMap<Long, Set<T>>();
+
+			serviceChanges.put(serviceName, changes);
+		}
+
+		Set<T> versionChanges = changes.get(version);
+
+		if (change == null) {
+			changes.put(version, fullDownload);
+		} else if (versionChanges == null) {
+			versionChanges = new HashSet<T>();
+
+			versionChanges.add(change);
+
+			changes.put(version, versionChanges);
+		} else if (versionChanges != fullDownload) {
+			versionChanges.add(change);
+		}
+
+		while (changes.size() > maxVersionsPerService) {
+			changes.pollFirstEntry();
+		}
+	}
+
+	/**
+	 * @return changes made after fromVersion up to toVersion; null if these are not known, in which case everything
+	 * must be downloaded
+	 */
+	public synchronized Set<T> getChanges(String serviceName, long fromVersion, long toVersion) {
+		Set<T> ret = null;
+
+		TreeMap<Long, Set<T>> changes = serviceChanges.get(serviceName);
+
+		if (changes != null && fromVersion >= 0 && fromVersion < toVersion && (toVersion - fromVersion) <= changes.size()) {
+			ret = new HashSet<T>();
+
+			for (long version = fromVersion + 1; version <= toVersion; version++) {
+				Set<T> versionChanges = changes.get(version);
+
+				if (versionChanges == null || versionChanges == fullDownload) { // not in the log, or requires a full download
+					ret = null;
+
+					break;
+				}
+
+				ret.addAll(versionChanges);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerServiceChangeLog.getChanges(" + name + ", " + serviceName + ", " + fromVersion + ", " + toVersion + "): " + ret);
+		}
+
+		return ret;
+	}
+
+	public synchronized void removeService(String serviceName) {
+		serviceChanges.remove(serviceName);
+	}
+}
@@ -28,10 +28,13 @@ import org.apache.ranger.plugin.store.ServiceStore;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.util.ServicePolicies;
+import org.codehaus.jackson.map.ObjectMapper;
 
+import java.io.ByteArrayOutputStream;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 public class RangerServicePoliciesCache {
 	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
@@ -41,6 +44,8 @@ public class RangerServicePoliciesCache {
 	private static volatile RangerServicePoliciesCache sInstance = null;
 	private final boolean useServicePoliciesCache;
 	private final int waitTimeInSeconds;
+	private final boolean cacheSerializedPolicies;
+	private final ObjectMapper mapper = new ObjectMapper();
 
 	private final Map<String, ServicePoliciesWrapper> servicePoliciesMap = new HashMap<String, ServicePoliciesWrapper>();
 
@@ -58,6 +63,7 @@ public class RangerServicePoliciesCache {
 	private RangerServicePoliciesCache() {
 		useServicePoliciesCache = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.usecache", true);
 		waitTimeInSeconds = RangerConfiguration.getInstance().getInt("ranger.admin.policy.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
+		cacheSerializedPolicies = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.download.cache.serialized", true);
 	}
 
 	public void dump() {
@@ -99,6 +105,30 @@ public class RangerServicePoliciesCache {
 		return ret;
 	}
 
+	/**
+	 * @return JSON of servicePolicies, serialized when the policies were loaded into the cache; null if servicePolicies
+	 * is not the instance in the cache for the service
+	 */
+	public SerializedServicePolicies getSerializedServicePolicies(String serviceName, ServicePolicies servicePolicies) {
+		SerializedServicePolicies ret = null;
+
+		if (useServicePoliciesCache && cacheSerializedPolicies && servicePolicies != null && StringUtils.isNotBlank(serviceName)) {
+			ServicePoliciesWrapper cachedServicePoliciesWrapper = null;
+			synchronized (this) {
+				cachedServicePoliciesWrapper = servicePoliciesMap.get(serviceName);
+			}
+			if (cachedServicePoliciesWrapper != null) {
+				ret = cachedServicePoliciesWrapper.getSerializedServicePolicies();
+
+				if (ret != null && ret.getServicePolicies() != servicePolicies) {
+					ret = null;
+				}
+			}
+		}
+
+		return ret;
+	}
+
 	public ServicePolicies getServicePolicies(String serviceName, ServiceStore serviceStore) throws Exception {
 
 		if (LOG.isDebugEnabled()) {
@@ -163,8 +193,37 @@ public class RangerServicePoliciesCache {
 		return ret;
 	}
 
+	/**
+	 * JSON of a ServicePolicies, and its gzip compressed copy; serialized once per policy version, instead of once per
+	 * download.
+	 */
+	public static class SerializedServicePolicies {
+		private final ServicePolicies servicePolicies;
+		private final byte[]          json;
+		private final byte[]          gzipJson;
+
+		SerializedServicePolicies(ServicePolicies servicePolicies, byte[] json, byte[] gzipJson) {
+			this.servicePolicies = servicePolicies;
+			this.json            = json;
+			this.gzipJson        = gzipJson;
+		}
+
+		public ServicePolicies getServicePolicies() {
+			return servicePolicies;
+		}
+
+		public byte[] getJson() {
+			return json;
+		}
+
+		public byte[] getGzipJson() {
+			return gzipJson;
+		}
+	}
+
 	private class ServicePoliciesWrapper {
 		ServicePolicies servicePolicies;
+		volatile SerializedServicePolicies serializedServicePolicies;
 		Date updateTime = null;
 		long longestDbLoadTimeInMs = -1;
 
@@ -178,6 +237,10 @@ public class RangerServicePoliciesCache {
 			return servicePolicies;
 		}
 
+		SerializedServicePolicies getSerializedServicePolicies() {
+			return serializedServicePolicies;
+		}
+
 		Date getUpdateTime() {
 			return updateTime;
 		}
@@ -240,6 +303,7 @@ public class RangerServicePoliciesCache {
 					}
 					servicePolicies = servicePoliciesFromDb;
 					pruneUnusedAttributes();
+					serializedServicePolicies = cacheSerializedPolicies ? serialize(servicePolicies) : null;
 				}
 			}
 
@@ -248,6 +312,30 @@ public class RangerServicePoliciesCache {
 			}
 		}
 
+		private SerializedServicePolicies serialize(ServicePolicies servicePolicies) {
+			SerializedServicePolicies ret = null;
+
+			try {
+				byte[] json = mapper.writeValueAsBytes(servicePolicies);
+
+				ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(json.length / 8 + 64);
+				GZIPOutputStream      gzipOut  = new GZIPOutputStream(bytesOut);
+
+				gzipOut.write(json);
+				gzipOut.close();
+
+				ret = new SerializedServicePolicies(servicePolicies, json, bytesOut.toByteArray());
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("serialized servicePolicies: version=" + servicePolicies.getPolicyVersion() + ", jsonLength=" + json.length + ", gzipLength=" + ret.getGzipJson().length);
+				}
+			} catch (Exception excp) {
+				LOG.error("failed to serialize servicePolicies for service " + servicePolicies.getServiceName() + ". Policies will be serialized for each download", excp);
+			}
+
+			return ret;
+		}
+
 		private void pruneUnusedAttributes() {
 			if (servicePolicies != null) {
 				pruneUnusedPolicyAttributes(servicePolicies.getPolicies());
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.entity.XXService;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * policyVersion, tagVersion and isEnabled of each service, so that a plugin polling for policies it already has can be
+ * answered without a database lookup. Listeners are notified when a version of a service moves ahead; these are used to
+ * complete long-poll downloads by plugins.
+ *
+ * Updated by ServiceDBStore after each transaction that changes a service or its policyVersion commits. Changes made
+ * through other ranger-admin instances are picked up by a periodic reconcile with the database, hence these can be
+ * seen here only after ranger.admin.policy.version.cache.reconcile.interval.ms.
+ *
+ * isEnabled is ordered by policyVersion, which is incremented when isEnabled of a service changes; hence a stale read of
+ * the database can't undo a change to isEnabled. Services removed from the cache are remembered for a reconcile interval,
+ * so that a read of the database that completes after the delete doesn't add the service back.
+ */
+public class RangerServicePolicyVersionCache {
+	private static final Log LOG = LogFactory.getLog(RangerServicePolicyVersionCache.class);
+
+	public static final long DEFAULT_RECONCILE_INTERVAL_MS = 30 * 1000;
+
+	private static volatile RangerServicePolicyVersionCache sInstance = null;
+
+	private final boolean                                   isEnabled;
+	private final long                                      reconcileIntervalMs;
+	private final ConcurrentHashMap<String, ServiceVersion> serviceVersions = new ConcurrentHashMap<String, ServiceVersion>();
+	private final ConcurrentHashMap<String, RemovedService> removedServices = new ConcurrentHashMap<String, RemovedService>();
+	private final List<ServiceVersionListener>              listeners       = new CopyOnWriteArrayList<ServiceVersionListener>();
+
+	public static RangerServicePolicyVersionCache getInstance() {
+		if (sInstance == null) {
+			synchronized (RangerServicePolicyVersionCache.class) {
+				if (sInstance == null) {
+					sInstance = new RangerServicePolicyVersionCache();
+				}
+			}
+		}
+
+		return sInstance;
+	}
+
+	private RangerServicePolicyVersionCache() {
+		isEnabled           = RangerConfiguration.getInstance().getBoolean("ranger.admin.policy.version.cache.enabled", true);
+		reconcileIntervalMs = RangerConfiguration.getInstance().getLong("ranger.admin.policy.version.cache.reconcile.interval.ms", DEFAULT_RECONCILE_INTERVAL_MS);
+	}
+
+	public boolean isEnabled() {
+		return isEnabled;
+	}
+
+	public long getReconcileIntervalMs() {
+		return reconcileIntervalMs;
+	}
+
+	/**
+	 * @return version of the service; null if not known, in which case the caller must look up the database
+	 */
+	public ServiceVersion get(String serviceName) {
+		return isEnabled && serviceName != null ? serviceVersions.get(serviceName) : null;
+	}
+
+	public void addListener(ServiceVersionListener listener) {
+		if (listener != null) {
+			listeners.add(listener);
+		}
+	}
+
+	public void removeListener(ServiceVersionListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * To be called after a transaction that updated the service commits.
+	 */
+	public void update(Long serviceId, String serviceName, Long policyVersion, Long tagVersion, Boolean isServiceEnabled) {
+		// the transaction committed after the removal, for example a service renamed back to this name
+		if (serviceId != null && serviceName != null && isRemoved(serviceId, serviceName)) {
+			removedServices.remove(serviceName);
+		}
+
+		updateIfNotRemoved(serviceId, serviceName, policyVersion, tagVersion, isServiceEnabled);
+	}
+
+	private void updateIfNotRemoved(Long serviceId, String serviceName, Long policyVersion, Long tagVersion, Boolean isServiceEnabled) {
+		if (!isEnabled || serviceId == null || serviceName == null || isRemoved(serviceId, serviceName)) {
+			return;
+		}
+
+		ServiceVersion newVersion = new ServiceVersion(serviceId, policyVersion, tagVersion, isServiceEnabled);
+		ServiceVersion oldVersion;
+
+		while (true) {
+			oldVersion = serviceVersions.putIfAbsent(serviceName, newVersion);
+
+			// for the same service, keep the higher versions: reads of the database can complete out of order
+			if (oldVersion == null) {
+				break;
+			} else if (oldVersion.isSameService(newVersion)) {
+				newVersion = newVersion.merge(oldVersion);
+			}
+
+			if (serviceVersions.replace(serviceName, oldVersion, newVersion)) {
+				break;
+			}
+		}
+
+		if (isRemoved(serviceId, serviceName)) { // removed while this update was in progress
+			serviceVersions.remove(serviceName, newVersion);
+
+			return;
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerServicePolicyVersionCache.update(" + serviceName + "): " + newVersion);
+		}
+
+		if (!listeners.isEmpty() && (oldVersion == null || !oldVersion.isSameService(newVersion) || newVersion.isNewerThan(oldVersion) || oldVersion.isServiceEnabled() != newVersion.isServiceEnabled())) {
+			for (ServiceVersionListener listener : listeners) {
+				try {
+					listener.onServiceVersionChange(serviceName, newVersion);
+				} catch (Throwable excp) {
+					LOG.error("RangerServicePolicyVersionCache.update(" + serviceName + "): listener failed", excp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * To be called after a transaction that updated tagVersion of services commits.
+	 */
+	public void updateTagVersion(Long serviceId, String serviceName, Long tagVersion) {
+		ServiceVersion serviceVersion = get(serviceName);
+
+		// services not in the cache yet will be added on next lookup or reconcile
+		if (serviceVersion != null && serviceId != null && serviceId.equals(serviceVersion.getServiceId())) {
+			update(serviceId, serviceName, serviceVersion.getPolicyVersion(), tagVersion, serviceVersion.isServiceEnabled());
+		}
+	}
+
+	/**
+	 * Adds the service if it isn't known yet. Used to populate from reads of the database that are not serialized with
+	 * updates, so that an update made since the read is not overwritten.
+	 */
+	public void addIfAbsent(Long serviceId, String serviceName, Long policyVersion, Long tagVersion, Boolean isServiceEnabled) {
+		if (isEnabled && serviceId != null && serviceName != null && !isRemoved(serviceId, serviceName)) {
+			ServiceVersion newVersion = new ServiceVersion(serviceId, policyVersion, tagVersion, isServiceEnabled);
+
+			if (serviceVersions.putIfAbsent(serviceName, newVersion) == null && isRemoved(serviceId, serviceName)) {
+				serviceVersions.remove(serviceName, newVersion);
+			}
+		}
+	}
+
+	/**
+	 * To be called after a transaction that deleted or renamed the service commits.
+	 */
+	public void remove(String serviceName) {
+		if (serviceName != null) {
+			ServiceVersion serviceVersion = serviceVersions.get(serviceName);
+
+			// recorded before the removal, so that a concurrent update or addIfAbsent either sees it or is removed below
+			if (serviceVersion != null) {
+				removedServices.put(serviceName, new RemovedService(serviceVersion.getServiceId(), System.currentTimeMillis()));
+			}
+
+			serviceVersions.remove(serviceName);
+		}
+	}
+
+	/**
+	 * Updates the cache with services read from the database, and removes services that are not in the database.
+	 */
+	public void reconcile(Collection<XXService> servicesInDb) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerServicePolicyVersionCache.reconcile(" + (servicesInDb == null ? 0 : servicesInDb.size()) + ")");
+		}
+
+		if (isEnabled && servicesInDb != null) {
+			Set<String> serviceNames  = new HashSet<String>();
+			long        removedExpiry = System.currentTimeMillis() - reconcileIntervalMs;
+
+			// servicesInDb were read after these removals, hence won't have the removed services
+			for (Map.Entry<String, RemovedService> entry : removedServices.entrySet()) {
+				if (entry.getValue().removeTime < removedExpiry) {
+					removedServices.remove(entry.getKey(), entry.getValue());
+				}
+			}
+
+			for (XXService service : servicesInDb) {
+				serviceNames.add(service.getName());
+
+				updateIfNotRemoved(service.getId(), service.getName(), service.getPolicyVersion(), service.getTagVersion(), service.getIsenabled());
+			}
+
+			serviceVersions.keySet().retainAll(serviceNames);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerServicePolicyVersionCache.reconcile(" + (servicesInDb == null ? 0 : servicesInDb.size()) + "): serviceCount=" + serviceVersions.size());
+		}
+	}
+
+	private boolean isRemoved(Long serviceId, String serviceName) {
+		RemovedService removedService = removedServices.get(serviceName);
+
+		return removedService != null && removedService.serviceId.equals(serviceId);
+	}
+
+	public interface ServiceVersionListener {
+		void onServiceVersionChange(String serviceName, ServiceVersion serviceVersion);
+	}
+
+	public static class ServiceVersion {
+		private final Long    serviceId;
+		private final Long    policyVersion;
+		private final Long    tagVersion;
+		private final boolean isServiceEnabled;
+
+		ServiceVersion(Long serviceId, Long policyVersion, Long tagVersion, Boolean isServiceEnabled) {
+			this.serviceId        = serviceId;
+			this.policyVersion    = policyVersion;
+			this.tagVersion       = tagVersion;
+			this.isServiceEnabled = isServiceEnabled == null || isServiceEnabled;
+		}
+
+		public Long getServiceId() {
+			return serviceId;
+		}
+
+		public Long getPolicyVersion() {
+			return policyVersion;
+		}
+
+		public Long getTagVersion() {
+			return tagVersion;
+		}
+
+		public boolean isServiceEnabled() {
+			return isServiceEnabled;
+		}
+
+		boolean isSameService(ServiceVersion other) {
+			return serviceId.equals(other.serviceId);
+		}
+
+		boolean isNewerThan(ServiceVersion other) {
+			return isNewer(policyVersion, other.policyVersion) || isNewer(tagVersion, other.tagVersion);
+		}
+
+		// the higher of each version in this and other; isServiceEnabled is taken from the one with higher policyVersion
+		ServiceVersion merge(ServiceVersion other) {
+			boolean isPolicyVersionOlder = isNewer(other.policyVersion, policyVersion);
+			boolean isTagVersionOlder    = isNewer(other.tagVersion, tagVersion);
+
+			if (!isPolicyVersionOlder && !isTagVersionOlder) {
+				return this;
+			}
+
+			return new ServiceVersion(serviceId, isPolicyVersionOlder ? other.policyVersion : policyVersion, isTagVersionOlder ? other.tagVersion : tagVersion, isPolicyVersionOlder ? other.isServiceEnabled : isServiceEnabled);
+		}
+
+		private static boolean isNewer(Long version, Long otherVersion) {
+			return version != null && (otherVersion == null || version > otherVersion);
+		}
+
+		@Override
+		public String toString() {
+			return "ServiceVersion={serviceId=" + serviceId + ", policyVersion=" + policyVersion + ", tagVersion=" + tagVersion + ", isServiceEnabled=" + isServiceEnabled + "}";
+		}
+	}
+
+	private static class RemovedService {
+		final Long serviceId;
+		final long removeTime;
+
+		RemovedService(Long serviceId, long removeTime) {
+			this.serviceId  = serviceId;
+			this.removeTime = removeTime;
+		}
+	}
+}
@@ -1336,6 +1336,17 @@ public class ServiceUtil {
 					MessageEnums.OPER_NOT_ALLOWED_FOR_ENTITY);
 		}
 
+		if (httpEnabled) {
+			// only existence and isEnabled of the service need to be checked; avoid the database lookup if the service is known
+			// to be enabled. A service not in the cache or disabled in it is looked up in the database, as it could have been
+			// created or enabled in another ranger-admin instance since the cache was last reconciled
+			RangerServicePolicyVersionCache.ServiceVersion serviceVersion = RangerServicePolicyVersionCache.getInstance().get(serviceName);
+
+			if (serviceVersion != null && serviceVersion.isServiceEnabled()) {
+				return true;
+			}
+		}
+
 		RangerService service = null;
 		try {
 			service = svcStore.getServiceByName(serviceName);
@@ -1349,6 +1360,8 @@ public class ServiceUtil {
 			throw restErrorUtil.createRESTException("Serivce:" + serviceName + " not found",
 					MessageEnums.DATA_NOT_FOUND);
 		}
+		RangerServicePolicyVersionCache.getInstance().addIfAbsent(service.getId(), service.getName(), service.getPolicyVersion(), service.getTagVersion(), service.getIsEnabled());
+
 		if(!service.getIsEnabled()){
 			LOG.error("Requested Service is disabled. serviceName=" + serviceName);
 			throw restErrorUtil.createRESTException("Unauthorized access.",
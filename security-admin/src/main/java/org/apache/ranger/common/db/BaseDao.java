@@ -92,6 +92,21 @@ public abstract class BaseDao<T> {
 		return ret;
 	}
 
+	/**
+	 * Persists the given objects with a single flush, so that the inserts can be sent to the database in JDBC batches
+	 */
+	public List<T> batchCreate(List<T> objs) {
+		if (objs != null && !objs.isEmpty()) {
+			for (T obj : objs) {
+				em.persist(obj);
+			}
+
+			em.flush();
+		}
+
+		return objs;
+	}
+
 	public T update(T obj) {
 		em.merge(obj);
 		em.flush();
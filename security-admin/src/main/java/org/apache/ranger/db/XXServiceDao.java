@@ -83,45 +83,51 @@ public class XXServiceDao extends BaseDao<XXService> {
 		}
 	}
 
-	public void updateServiceForServiceResourceUpdate(Long resourceId, Date updateTime) {
+	public List<XXService> updateServiceForServiceResourceUpdate(Long resourceId, Date updateTime) {
 		if (resourceId == null) {
-			return;
+			return new ArrayList<XXService>();
 		}
 
 		try {
 			List<XXService> services = getEntityManager().createNamedQuery("XXService.findByServiceResourceId", tClass).setParameter("resourceId", resourceId).getResultList();
 
 			updateTagVersionAndTagUpdateTime(services, updateTime);
+
+			return services;
 		} catch (NoResultException e) {
-			return;
+			return new ArrayList<XXService>();
 		}
 	}
 
-	public void updateServiceForTagUpdate(Long tagId, Date updateTime) {
+	public List<XXService> updateServiceForTagUpdate(Long tagId, Date updateTime) {
 		if (tagId == null) {
-			return;
+			return new ArrayList<XXService>();
 		}
 
 		try {
 			List<XXService> services = getEntityManager().createNamedQuery("XXService.findByTagId", tClass).setParameter("tagId", tagId).getResultList();
 
 			updateTagVersionAndTagUpdateTime(services, updateTime);
+
+			return services;
 		} catch (NoResultException e) {
-			return;
+			return new ArrayList<XXService>();
 		}
 	}
 
-	public void updateServiceForTagDefUpdate(Long tagDefId, Date updateTime) {
+	public List<XXService> updateServiceForTagDefUpdate(Long tagDefId, Date updateTime) {
 		if (tagDefId == null) {
-			return;
+			return new ArrayList<XXService>();
 		}
 
 		try {
 			List<XXService> services = getEntityManager().createNamedQuery("XXService.findByTagDefId", tClass).setParameter("tagDefId", tagDefId).getResultList();
 
 			updateTagVersionAndTagUpdateTime(services, updateTime);
+
+			return services;
 		} catch (NoResultException e) {
-			return;
+			return new ArrayList<XXService>();
 		}
 	}
 
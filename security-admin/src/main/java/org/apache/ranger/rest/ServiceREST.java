@@ -33,7 +33,11 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -43,6 +47,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.datatype.RESTResponse;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.biz.AssetMgr;
+import org.apache.ranger.biz.PolicyExportAuditWriter;
 import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.biz.ServiceMgr;
@@ -52,6 +57,8 @@ import org.apache.ranger.common.GUIDUtil;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.RangerServicePoliciesCache;
+import org.apache.ranger.common.RangerServicePoliciesCache.SerializedServicePolicies;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.db.RangerDaoManager;
@@ -111,6 +118,9 @@ public class ServiceREST {
 	@Autowired
 	AssetMgr assetMgr;
 
+	@Autowired
+	PolicyExportAuditWriter policyExportAuditWriter;
+
 	@Autowired
 	XUserMgr userMgr;
 
@@ -1520,9 +1530,44 @@ public class ServiceREST {
 	@GET
 	@Path("/policies/download/{serviceName}")
 	@Produces({ "application/json", "application/xml" })
-	public ServicePolicies getServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @QueryParam("pluginId") String pluginId, @Context HttpServletRequest request) throws Exception {
+	public Response downloadServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @QueryParam("pluginId") String pluginId, @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas, @Context HttpServletRequest request) throws Exception {
+		if(lastKnownVersion == null) {
+			lastKnownVersion = getPolicyVersionFromETag(request.getHeader(HttpHeaders.IF_NONE_MATCH));
+		}
+
+		ServicePolicies servicePolicies = getServicePoliciesIfUpdated(serviceName, lastKnownVersion, pluginId, supportsPolicyDeltas, request);
+
+		if(servicePolicies == null) {
+			return Response.noContent().build();
+		}
+
+		// policies in the cache are serialized once per version; stream these bytes, instead of serializing for every download
+		SerializedServicePolicies serializedPolicies = isJsonAccepted(request) ? RangerServicePoliciesCache.getInstance().getSerializedServicePolicies(serviceName, servicePolicies) : null;
+		ResponseBuilder           builder;
+
+		if(serializedPolicies != null) {
+			boolean isGzipAccepted = isGzipAccepted(request);
+
+			builder = Response.ok(isGzipAccepted ? serializedPolicies.getGzipJson() : serializedPolicies.getJson(), MediaType.APPLICATION_JSON_TYPE)
+							  .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+			if(isGzipAccepted) {
+				builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+			}
+		} else {
+			builder = Response.ok(servicePolicies);
+		}
+
+		if(servicePolicies.getPolicyVersion() != null) {
+			builder.tag(new EntityTag(servicePolicies.getPolicyVersion().toString()));
+		}
+
+		return builder.build();
+	}
+
+	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion, String pluginId, Boolean supportsPolicyDeltas, HttpServletRequest request) throws Exception {
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + supportsPolicyDeltas + ")");
 		}
 
 		ServicePolicies ret      = null;
@@ -1539,11 +1584,18 @@ public class ServiceREST {
 				if(RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
 					perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceREST.getServicePoliciesIfUpdated(serviceName=" + serviceName + ",lastKnownVersion=" + lastKnownVersion + ")");
 				}
-				ret = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+				if(Boolean.TRUE.equals(supportsPolicyDeltas)) {
+					ret = svcStore.getServicePolicyDeltasIfUpdated(serviceName, lastKnownVersion);
+				} else {
+					ret = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+				}
 	
 				if(ret == null) {
 					httpCode = HttpServletResponse.SC_NOT_MODIFIED;
 					logMsg   = "No change since last update";
+				} else if(ret.getDeltaFromVersion() != null) {
+					httpCode = HttpServletResponse.SC_OK;
+					logMsg   = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " changed and " + (ret.getDeletedPolicyIds() != null ? ret.getDeletedPolicyIds().size() : 0) + " deleted policies since version " + ret.getDeltaFromVersion() + ". Policy version=" + ret.getPolicyVersion();
 				} else {
 					httpCode = HttpServletResponse.SC_OK;
 					logMsg   = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
@@ -1572,6 +1624,40 @@ public class ServiceREST {
 		return ret;
 	}
 
+	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion, String pluginId, HttpServletRequest request) throws Exception {
+		return getServicePoliciesIfUpdated(serviceName, lastKnownVersion, pluginId, Boolean.FALSE, request);
+	}
+
+	private Long getPolicyVersionFromETag(String eTag) {
+		Long ret = null;
+
+		if(StringUtils.isNotBlank(eTag)) {
+			String version = StringUtils.removeStart(eTag.trim(), "W/");
+
+			version = StringUtils.removeEnd(StringUtils.removeStart(version, "\""), "\"");
+
+			try {
+				ret = Long.valueOf(version);
+			} catch(NumberFormatException excp) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("ignoring unexpected " + HttpHeaders.IF_NONE_MATCH + ": " + eTag);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private boolean isJsonAccepted(HttpServletRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+		return StringUtils.isBlank(accept) || StringUtils.containsIgnoreCase(accept, "json") || accept.contains("*/*");
+	}
+
+	private boolean isGzipAccepted(HttpServletRequest request) {
+		return StringUtils.containsIgnoreCase(request.getHeader(HttpHeaders.ACCEPT_ENCODING), "gzip");
+	}
+
 	private void createPolicyDownloadAudit(String serviceName, Long lastKnownVersion, String pluginId, ServicePolicies policies, int httpRespCode, HttpServletRequest request) {
 		try {
 			String ipAddress = request.getHeader("X-FORWARDED-FOR");
@@ -1588,7 +1674,7 @@ public class ServiceREST {
 			policyExportAudit.setRequestedEpoch(lastKnownVersion);
 			policyExportAudit.setHttpRetCode(httpRespCode);
 
-			assetMgr.createPolicyAudit(policyExportAudit);
+			policyExportAuditWriter.add(policyExportAudit);
 		} catch(Exception excp) {
 			LOG.error("error while creating policy download audit", excp);
 		}
@@ -1071,9 +1071,10 @@ public class TagREST {
     @Path(TagRESTConstants.TAGS_DOWNLOAD + "{serviceName}")
     @Produces({ "application/json", "application/xml" })
     public ServiceTags getServiceTagsIfUpdated(@PathParam("serviceName") String serviceName,
-                                                   @QueryParam(TagRESTConstants.LAST_KNOWN_TAG_VERSION_PARAM) Long lastKnownVersion, @QueryParam("pluginId") String pluginId) {
+                                                   @QueryParam(TagRESTConstants.LAST_KNOWN_TAG_VERSION_PARAM) Long lastKnownVersion, @QueryParam("pluginId") String pluginId,
+                                                   @QueryParam(TagRESTConstants.SUPPORTS_TAG_DELTAS_PARAM) Boolean supportsTagDeltas) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> TagREST.getServiceTagsIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + pluginId + ")");
+            LOG.debug("==> TagREST.getServiceTagsIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + pluginId + ", " + supportsTagDeltas + ")");
         }
 
 		ServiceTags ret      = null;
@@ -1081,11 +1082,18 @@ public class TagREST {
 		String      logMsg   = null;
 
         try {
-            ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion);
+            if(Boolean.TRUE.equals(supportsTagDeltas)) {
+                ret = tagStore.getServiceTagDeltasIfUpdated(serviceName, lastKnownVersion);
+            } else {
+                ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion);
+            }
 
 			if(ret == null) {
 				httpCode = HttpServletResponse.SC_NOT_MODIFIED;
 				logMsg   = "No change since last update";
+			} else if(ret.getDeltaFromVersion() != null) {
+				httpCode = HttpServletResponse.SC_OK;
+				logMsg   = "Returning " + (ret.getTags() != null ? ret.getTags().size() : 0) + " changed tags and " + (ret.getServiceResources() != null ? ret.getServiceResources().size() : 0) + " changed resources since version " + ret.getDeltaFromVersion() + ". Tag version=" + ret.getTagVersion();
 			} else {
 				httpCode = HttpServletResponse.SC_OK;
 				logMsg   = "Returning " + (ret.getTags() != null ? ret.getTags().size() : 0) + " tags. Tag version=" + ret.getTagVersion();
@@ -1103,7 +1111,7 @@ public class TagREST {
 		}
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<==> TagREST.getServiceTagsIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + pluginId + ")");
+            LOG.debug("<==> TagREST.getServiceTagsIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + pluginId + ", " + supportsTagDeltas + ")");
         }
 
         return ret;
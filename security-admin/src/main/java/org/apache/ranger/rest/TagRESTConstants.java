@@ -37,5 +37,6 @@ public class TagRESTConstants {
 
 	public static final String SERVICE_NAME_PARAM           = "serviceName";
 	public static final String LAST_KNOWN_TAG_VERSION_PARAM = "lastKnownVersion";
+	public static final String SUPPORTS_TAG_DELTAS_PARAM    = "supportsTagDeltas";
 	public static final String PATTERN_PARAM                = "pattern";
 }
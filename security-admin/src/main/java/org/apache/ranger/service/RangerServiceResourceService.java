@@ -50,15 +50,6 @@ public class RangerServiceResourceService extends RangerServiceResourceServiceBa
 
 	}
 
-	@Override
-	public RangerServiceResource postUpdate(XXServiceResource resource) {
-		RangerServiceResource ret = super.postUpdate(resource);
-
-		daoMgr.getXXService().updateServiceForServiceResourceUpdate(resource.getId(), resource.getUpdateTime());
-
-		return ret;
-	}
-	
 	public RangerServiceResource getPopulatedViewObject(XXServiceResource xObj) {
 		return populateViewBean(xObj);
 	}
@@ -50,15 +50,6 @@ public class RangerTagDefService extends RangerTagDefServiceBase<XXTagDef, Range
 
 	}
 
-	@Override
-	public RangerTagDef postUpdate(XXTagDef tagDef) {
-		RangerTagDef ret = super.postUpdate(tagDef);
-
-		daoMgr.getXXService().updateServiceForTagDefUpdate(tagDef.getId(), tagDef.getUpdateTime());
-
-		return ret;
-	}
-
 	public RangerTagDef getPopulatedViewObject(XXTagDef xObj) {
 		return populateViewBean(xObj);
 	}
@@ -50,35 +50,6 @@ public class RangerTagResourceMapService extends RangerTagResourceMapServiceBase
 
 	}
 
-	@Override
-	public RangerTagResourceMap postCreate(XXTagResourceMap tagResMap) {
-		RangerTagResourceMap ret = super.postCreate(tagResMap);
-
-		daoMgr.getXXService().updateServiceForTagUpdate(tagResMap.getTagId(), tagResMap.getUpdateTime());
-
-		return ret;
-	}
-
-	@Override
-	public RangerTagResourceMap postUpdate(XXTagResourceMap tagResMap) {
-		RangerTagResourceMap ret = super.postUpdate(tagResMap);
-
-		daoMgr.getXXService().updateServiceForTagUpdate(tagResMap.getTagId(), tagResMap.getUpdateTime());
-
-		return ret;
-	}
-
-	@Override
-	protected XXTagResourceMap preDelete(Long id) {
-		XXTagResourceMap tagResMap = super.preDelete(id);
-
-		if (tagResMap != null) {
-			daoMgr.getXXService().updateServiceForServiceResourceUpdate(tagResMap.getResourceId(), null);
-		}
-
-		return tagResMap;
-	}
-
 	public RangerTagResourceMap getPopulatedViewObject(XXTagResourceMap xObj) {
 		return populateViewBean(xObj);
 	}
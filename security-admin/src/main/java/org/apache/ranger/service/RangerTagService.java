@@ -51,15 +51,6 @@ public class RangerTagService extends RangerTagServiceBase<XXTag, RangerTag> {
 
 	}
 
-	@Override
-	public RangerTag postUpdate(XXTag tag) {
-		RangerTag ret = super.postUpdate(tag);
-
-		daoMgr.getXXService().updateServiceForTagUpdate(tag.getId(), tag.getUpdateTime());
-
-		return ret;
-	}
-
 	public RangerTag getPopulatedViewObject(XXTag xObj) {
 		return populateViewBean(xObj);
 	}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.service.filter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.common.RangerServicePolicyVersionCache;
+import org.apache.ranger.common.RangerServicePolicyVersionCache.ServiceVersion;
+import org.apache.ranger.common.RangerServicePolicyVersionCache.ServiceVersionListener;
+import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+/**
+ * Long-poll for policy and tag downloads by plugins.
+ *
+ * A download request with parameter longPollWaitMs, for a service whose version is not past lastKnownVersion, is held
+ * via Servlet 3 async until the version in RangerServicePolicyVersionCache moves past lastKnownVersion or the wait
+ * times out. The request is then dispatched to the download REST API as is, which responds with the updated
+ * policies/tags or with 304. Responses that can be long-polled have header X-Ranger-Long-Poll-Max-Wait-Ms, which
+ * plugins use to find whether the admin supports long-poll.
+ *
+ * Only requests that pass the authentication done by the download REST API are held; others are passed on right
+ * away, to be rejected by the API. As the request is re-dispatched, beans of request scope used by the REST API need
+ * RequestContextFilter to be mapped for ASYNC dispatch as well.
+ */
+public class RangerDownloadLongPollFilter implements Filter, ServiceVersionListener {
+	private static final Log LOG = LogFactory.getLog(RangerDownloadLongPollFilter.class);
+
+	private static final String PROP_ENABLED     = "ranger.admin.download.longpoll.enabled";
+	private static final String PROP_MAX_WAIT_MS = "ranger.admin.download.longpoll.max.wait.ms";
+	private static final String PROP_MAX_WAITERS = "ranger.admin.download.longpoll.max.waiters";
+
+	private static final String POLICY_DOWNLOAD_PATH = StringUtils.removeEnd(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED, "/");
+	private static final String TAG_DOWNLOAD_PATH    = StringUtils.removeEnd(RangerRESTUtils.REST_URL_GET_SERVICE_TAGS_IF_UPDATED, "/");
+
+	private final ConcurrentHashMap<String, Set<Waiter>> waiters     = new ConcurrentHashMap<String, Set<Waiter>>();
+	private final AtomicInteger                          waiterCount = new AtomicInteger();
+
+	private boolean     isEnabled;
+	private long        maxWaitMs;
+	private int         maxWaiters;
+	private ServiceUtil serviceUtil;
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+
+		// versions of services are known without database lookup only when the version cache is enabled
+		isEnabled  = PropertiesUtil.getBooleanProperty(PROP_ENABLED, true) && versionCache.isEnabled();
+		maxWaitMs  = PropertiesUtil.getIntProperty(PROP_MAX_WAIT_MS, 60 * 1000);
+		maxWaiters = PropertiesUtil.getIntProperty(PROP_MAX_WAITERS, 10000);
+
+		if (isEnabled && serviceUtil == null && filterConfig.getServletContext() != null) {
+			WebApplicationContext context = WebApplicationContextUtils.getWebApplicationContext(filterConfig.getServletContext());
+
+			if (context != null) {
+				serviceUtil = context.getBean(ServiceUtil.class);
+			}
+		}
+
+		if (isEnabled && serviceUtil == null) {
+			LOG.error("RangerDownloadLongPollFilter: ServiceUtil is not available to authenticate requests. Disabling long-poll");
+
+			isEnabled = false;
+		}
+
+		if (isEnabled) {
+			versionCache.addListener(this);
+		}
+
+		LOG.info("RangerDownloadLongPollFilter: isEnabled=" + isEnabled + ", maxWaitMs=" + maxWaitMs + ", maxWaiters=" + maxWaiters);
+	}
+
+	@Override
+	public void destroy() {
+		RangerServicePolicyVersionCache.getInstance().removeListener(this);
+
+		for (Set<Waiter> serviceWaiters : waiters.values()) {
+			for (Waiter waiter : serviceWaiters) {
+				waiter.wakeUp();
+			}
+		}
+	}
+
+	@Override
+	public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain) throws IOException, ServletException {
+		if (!isEnabled || !(servletRequest instanceof HttpServletRequest) || !(servletResponse instanceof HttpServletResponse)) {
+			chain.doFilter(servletRequest, servletResponse);
+
+			return;
+		}
+
+		HttpServletRequest  request       = (HttpServletRequest) servletRequest;
+		HttpServletResponse response      = (HttpServletResponse) servletResponse;
+		String              path          = request.getServletPath() + StringUtils.defaultString(request.getPathInfo());
+		boolean             isTagDownload = path.startsWith(TAG_DOWNLOAD_PATH + "/");
+		String              serviceName   = StringUtils.substringAfterLast(path, "/");
+		ServiceVersion      version       = RangerServicePolicyVersionCache.getInstance().get(serviceName);
+
+		if (version == null || !version.isServiceEnabled() || getVersion(version, isTagDownload) == null || (!isTagDownload && !path.startsWith(POLICY_DOWNLOAD_PATH + "/"))) {
+			chain.doFilter(request, response);
+
+			return;
+		}
+
+		long lastKnownVersion = getLongParam(request, isTagDownload ? RangerRESTUtils.LAST_KNOWN_TAG_VERSION_PARAM : RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, -1);
+		long waitMs           = Math.min(getLongParam(request, RangerRESTUtils.REST_PARAM_LONG_POLL_WAIT_MS, 0), maxWaitMs);
+		Waiter waiter         = new Waiter(serviceName, isTagDownload, lastKnownVersion);
+
+		if (waiter.isVersionChanged(version)) { // updated policies/tags will be returned; the plugin can poll again right after
+			response.setHeader(RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS, Long.toString(maxWaitMs));
+
+			chain.doFilter(request, response);
+		} else if (!request.isAsyncSupported() || waiterCount.get() >= maxWaiters) { // plugin to wait for its polling interval
+			chain.doFilter(request, response);
+		} else if (!isAuthenticated(serviceName, request)) { // the REST API will respond with the error
+			chain.doFilter(request, response);
+		} else if (waitMs <= 0) { // plugin doesn't long-poll yet; advertise the support
+			response.setHeader(RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS, Long.toString(maxWaitMs));
+
+			chain.doFilter(request, response);
+		} else {
+			response.setHeader(RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS, Long.toString(maxWaitMs));
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerDownloadLongPollFilter: waiting for " + waitMs + "ms: serviceName=" + serviceName + ", isTagDownload=" + isTagDownload + ", lastKnownVersion=" + lastKnownVersion);
+			}
+
+			AsyncContext asyncContext = request.startAsync(request, response);
+
+			asyncContext.setTimeout(waitMs);
+
+			waiter.start(asyncContext);
+
+			// the version could have changed before the waiter was added
+			if (waiter.isVersionChanged(RangerServicePolicyVersionCache.getInstance().get(serviceName))) {
+				waiter.wakeUp();
+			}
+		}
+	}
+
+	@Override
+	public void onServiceVersionChange(String serviceName, ServiceVersion serviceVersion) {
+		Set<Waiter> serviceWaiters = waiters.get(serviceName);
+
+		if (serviceWaiters != null) {
+			for (Waiter waiter : serviceWaiters) {
+				if (waiter.isVersionChanged(serviceVersion)) {
+					waiter.wakeUp();
+				}
+			}
+		}
+	}
+
+	int getWaiterCount() {
+		return waiterCount.get();
+	}
+
+	void setServiceUtil(ServiceUtil serviceUtil) {
+		this.serviceUtil = serviceUtil;
+	}
+
+	private boolean isAuthenticated(String serviceName, HttpServletRequest request) {
+		boolean ret = false;
+
+		try {
+			ret = serviceUtil.isValidateHttpsAuthentication(serviceName, request);
+		} catch (Exception excp) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerDownloadLongPollFilter: authentication failed for serviceName=" + serviceName, excp);
+			}
+		}
+
+		return ret;
+	}
+
+	private void addWaiter(Waiter waiter) {
+		Set<Waiter> serviceWaiters = waiters.get(waiter.serviceName);
+
+		if (serviceWaiters == null) {
+			serviceWaiters = Collections.newSetFromMap(new ConcurrentHashMap<Waiter, Boolean>());
+
+			Set<Waiter> existing = waiters.putIfAbsent(waiter.serviceName, serviceWaiters);
+
+			if (existing != null) {
+				serviceWaiters = existing;
+			}
+		}
+
+		serviceWaiters.add(waiter);
+		waiterCount.incrementAndGet();
+	}
+
+	// sets of services without waiters are retained; these are at most one per service
+	private void removeWaiter(Waiter waiter) {
+		Set<Waiter> serviceWaiters = waiters.get(waiter.serviceName);
+
+		if (serviceWaiters != null && serviceWaiters.remove(waiter)) {
+			waiterCount.decrementAndGet();
+		}
+	}
+
+	private static Long getVersion(ServiceVersion serviceVersion, boolean isTagVersion) {
+		return isTagVersion ? serviceVersion.getTagVersion() : serviceVersion.getPolicyVersion();
+	}
+
+	private static long getLongParam(HttpServletRequest request, String name, long defaultValue) {
+		String value = request.getParameter(name);
+
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException excp) {
+				// the download REST API will report the invalid value
+			}
+		}
+
+		return defaultValue;
+	}
+
+	private class Waiter implements AsyncListener {
+		private final String        serviceName;
+		private final boolean       isTagDownload;
+		private final long          lastKnownVersion;
+		private final AtomicBoolean isDone = new AtomicBoolean(false);
+		private       AsyncContext  asyncContext;
+
+		Waiter(String serviceName, boolean isTagDownload, long lastKnownVersion) {
+			this.serviceName      = serviceName;
+			this.isTagDownload    = isTagDownload;
+			this.lastKnownVersion = lastKnownVersion;
+		}
+
+		void start(AsyncContext asyncContext) {
+			this.asyncContext = asyncContext;
+
+			asyncContext.addListener(this);
+
+			addWaiter(this);
+		}
+
+		boolean isVersionChanged(ServiceVersion serviceVersion) {
+			if (serviceVersion == null || !serviceVersion.isServiceEnabled()) {
+				return true;
+			}
+
+			Long version = getVersion(serviceVersion, isTagDownload);
+
+			return version == null || version > lastKnownVersion;
+		}
+
+		// dispatches the request to the download REST API, at most once
+		void wakeUp() {
+			if (isDone.compareAndSet(false, true)) {
+				removeWaiter(this);
+
+				try {
+					asyncContext.dispatch();
+				} catch (IllegalStateException excp) {
+					LOG.debug("RangerDownloadLongPollFilter: failed to dispatch request for serviceName=" + serviceName, excp);
+				}
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			wakeUp();
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+			isDone.set(true);
+			removeWaiter(this);
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException {
+			isDone.set(true);
+			removeWaiter(this);
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
+		}
+	}
+}
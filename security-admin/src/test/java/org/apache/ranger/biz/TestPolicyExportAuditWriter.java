@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXPolicyExportAuditDao;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestPolicyExportAuditWriter {
+
+	@InjectMocks
+	PolicyExportAuditWriter auditWriter = new PolicyExportAuditWriter();
+
+	@Mock
+	RangerDaoManager daoManager;
+
+	@Mock
+	PlatformTransactionManager txManager;
+
+	@Mock
+	AssetMgr assetMgr;
+
+	@Mock
+	XXPolicyExportAuditDao policyExportAuditDao;
+
+	@Captor
+	ArgumentCaptor<List<XXPolicyExportAudit>> batchCaptor;
+
+	@Before
+	public void setup() {
+		Mockito.when(daoManager.getXXPolicyExportAudit()).thenReturn(policyExportAuditDao);
+
+		auditWriter.initialize();
+	}
+
+	@After
+	public void tearDown() {
+		auditWriter.shutdown();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testAuditsAreCoalesced() {
+		XXPolicyExportAudit latest = createAudit("agent1", "hdfsdev", 5L, HttpServletResponse.SC_OK);
+
+		auditWriter.add(createAudit("agent1", "hdfsdev", 4L, HttpServletResponse.SC_OK));
+		auditWriter.add(latest);
+		auditWriter.add(createAudit("agent2", "hdfsdev", 4L, HttpServletResponse.SC_OK));
+		auditWriter.add(createAudit("agent1", "hdfsdev", 5L, HttpServletResponse.SC_BAD_REQUEST));
+		auditWriter.add(createAudit("agent1", "hdfsdev", 5L, HttpServletResponse.SC_NOT_MODIFIED)); // not recorded by default
+
+		auditWriter.flush();
+
+		Mockito.verify(policyExportAuditDao, Mockito.times(1)).batchCreate(batchCaptor.capture());
+		Assert.assertEquals(3, batchCaptor.getValue().size());
+		Assert.assertTrue(batchCaptor.getValue().contains(latest));
+
+		auditWriter.flush(); // nothing pending
+
+		Mockito.verify(policyExportAuditDao, Mockito.times(1)).batchCreate(Mockito.anyList());
+		Mockito.verifyZeroInteractions(assetMgr);
+	}
+
+	private XXPolicyExportAudit createAudit(String agentId, String serviceName, Long lastKnownVersion, int httpRetCode) {
+		XXPolicyExportAudit ret = new XXPolicyExportAudit();
+
+		ret.setAgentId(agentId);
+		ret.setRepositoryName(serviceName);
+		ret.setClientIP("10.0.0.1");
+		ret.setRequestedEpoch(lastKnownVersion);
+		ret.setHttpRetCode(httpRetCode);
+
+		return ret;
+	}
+}
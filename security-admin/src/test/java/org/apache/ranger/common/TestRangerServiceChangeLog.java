@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerServiceChangeLog {
+
+	@Test
+	public void testChanges() {
+		RangerServiceChangeLog<Long> changeLog = new RangerServiceChangeLog<Long>("policy", 3);
+
+		changeLog.onVersionChange("hdfs", 2L, 10L);
+		changeLog.onVersionChange("hdfs", 3L, 11L);
+		changeLog.onVersionChange("hdfs", 3L, 12L);
+		changeLog.onVersionChange("hive", 3L, 20L);
+
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(10L, 11L, 12L)), changeLog.getChanges("hdfs", 1L, 3L));
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(11L, 12L)), changeLog.getChanges("hdfs", 2L, 3L));
+		Assert.assertNull(changeLog.getChanges("hdfs", 0L, 3L));  // version 1 not in the log
+		Assert.assertNull(changeLog.getChanges("hdfs", -1L, 3L)); // no version known to the plugin
+		Assert.assertNull(changeLog.getChanges("hive", 2L, 4L));  // version 4 not in the log
+		Assert.assertNull(changeLog.getChanges("hbase", 2L, 3L));
+	}
+
+	@Test
+	public void testFullDownloadRequired() {
+		RangerServiceChangeLog<Long> changeLog = new RangerServiceChangeLog<Long>("policy", 10);
+
+		changeLog.onVersionChange("hdfs", 2L, 10L);
+		changeLog.onVersionChange("hdfs", 3L, null);
+		changeLog.onVersionChange("hdfs", 3L, 11L);
+		changeLog.onVersionChange("hdfs", 4L, 12L);
+
+		Assert.assertNull(changeLog.getChanges("hdfs", 1L, 4L));
+		Assert.assertNull(changeLog.getChanges("hdfs", 2L, 3L));
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(12L)), changeLog.getChanges("hdfs", 3L, 4L));
+
+		changeLog.removeService("hdfs");
+
+		Assert.assertNull(changeLog.getChanges("hdfs", 3L, 4L));
+	}
+
+	@Test
+	public void testOldVersionsAreTrimmed() {
+		RangerServiceChangeLog<Long> changeLog = new RangerServiceChangeLog<Long>("policy", 2);
+
+		for (long version = 1; version <= 5; version++) {
+			changeLog.onVersionChange("hdfs", version, version * 10);
+		}
+
+		Assert.assertNull(changeLog.getChanges("hdfs", 2L, 5L));
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(40L, 50L)), changeLog.getChanges("hdfs", 3L, 5L));
+	}
+
+	@Test
+	public void testDisabled() {
+		RangerServiceChangeLog<Long> changeLog = new RangerServiceChangeLog<Long>("policy", 0);
+
+		changeLog.onVersionChange("hdfs", 2L, 10L);
+
+		Assert.assertNull(changeLog.getChanges("hdfs", 1L, 2L));
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.ranger.common.RangerServicePoliciesCache.SerializedServicePolicies;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.store.ServiceStore;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestRangerServicePoliciesCache {
+
+	@Test
+	public void testSerializedServicePolicies() throws Exception {
+		String          serviceName     = "testSerializedServicePolicies";
+		ServiceStore    serviceStore    = Mockito.mock(ServiceStore.class);
+		ServicePolicies servicePolicies = new ServicePolicies();
+		RangerPolicy    policy          = new RangerPolicy();
+
+		policy.setId(1L);
+		policy.setName("policy1");
+		policy.setDescription("pruned from the cache");
+
+		servicePolicies.setServiceName(serviceName);
+		servicePolicies.setPolicyVersion(5L);
+		servicePolicies.setPolicies(new ArrayList<RangerPolicy>());
+		servicePolicies.getPolicies().add(policy);
+
+		Mockito.when(serviceStore.getServicePolicyVersion(serviceName)).thenReturn(5L);
+		Mockito.when(serviceStore.getServicePolicies(serviceName)).thenReturn(servicePolicies);
+
+		RangerServicePoliciesCache cache  = RangerServicePoliciesCache.getInstance();
+		ServicePolicies            cached = cache.getServicePolicies(serviceName, serviceStore);
+
+		SerializedServicePolicies serialized = cache.getSerializedServicePolicies(serviceName, cached);
+
+		Assert.assertNotNull(serialized);
+		Assert.assertNull(cache.getSerializedServicePolicies(serviceName, new ServicePolicies()));
+
+		byte[] json = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(serialized.getGzipJson())));
+
+		Assert.assertArrayEquals(serialized.getJson(), json);
+
+		ServicePolicies deserialized = new ObjectMapper().readValue(json, ServicePolicies.class);
+
+		Assert.assertEquals(Long.valueOf(5L), deserialized.getPolicyVersion());
+		Assert.assertEquals("policy1", deserialized.getPolicies().get(0).getName());
+		Assert.assertNull(deserialized.getPolicies().get(0).getDescription());
+
+		// not serialized again for the same version
+		Assert.assertSame(serialized, cache.getSerializedServicePolicies(serviceName, cache.getServicePolicies(serviceName, serviceStore)));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ranger.common.RangerServicePolicyVersionCache.ServiceVersion;
+import org.apache.ranger.common.RangerServicePolicyVersionCache.ServiceVersionListener;
+import org.apache.ranger.entity.XXService;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRangerServicePolicyVersionCache {
+
+	@Test
+	public void testUpdateKeepsHigherVersion() {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+		String                          serviceName  = "testUpdateKeepsHigherVersion";
+
+		versionCache.addIfAbsent(1L, serviceName, 5L, 1L, true);
+		versionCache.addIfAbsent(1L, serviceName, 4L, 1L, true);
+
+		Assert.assertEquals(Long.valueOf(5L), versionCache.get(serviceName).getPolicyVersion());
+
+		versionCache.update(1L, serviceName, 6L, 1L, false);
+		versionCache.update(1L, serviceName, 5L, 1L, true);
+
+		// isServiceEnabled is taken from the higher policyVersion
+		Assert.assertEquals(Long.valueOf(6L), versionCache.get(serviceName).getPolicyVersion());
+		Assert.assertFalse(versionCache.get(serviceName).isServiceEnabled());
+
+		// service recreated with the same name
+		versionCache.update(2L, serviceName, 1L, 1L, true);
+
+		Assert.assertEquals(Long.valueOf(1L), versionCache.get(serviceName).getPolicyVersion());
+
+		versionCache.remove(serviceName);
+
+		Assert.assertNull(versionCache.get(serviceName));
+	}
+
+	@Test
+	public void testReconcile() {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+
+		versionCache.update(11L, "testReconcile-svc1", 3L, 1L, true);
+		versionCache.update(12L, "testReconcile-svc2", 3L, 1L, true);
+
+		versionCache.reconcile(Arrays.asList(createService(11L, "testReconcile-svc1", 7L, false)));
+
+		Assert.assertEquals(Long.valueOf(7L), versionCache.get("testReconcile-svc1").getPolicyVersion());
+		Assert.assertFalse(versionCache.get("testReconcile-svc1").isServiceEnabled());
+		Assert.assertNull(versionCache.get("testReconcile-svc2"));
+	}
+
+	@Test
+	public void testStaleReadDoesNotEnableService() {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+		String                          serviceName  = "testStaleReadDoesNotEnableService";
+
+		versionCache.update(31L, serviceName, 3L, 1L, true);
+
+		// disabling the service increments policyVersion
+		versionCache.update(31L, serviceName, 4L, 1L, false);
+
+		// read of the database before the service was disabled
+		versionCache.reconcile(Arrays.asList(createService(31L, serviceName, 3L, true)));
+
+		Assert.assertEquals(Long.valueOf(4L), versionCache.get(serviceName).getPolicyVersion());
+		Assert.assertFalse(versionCache.get(serviceName).isServiceEnabled());
+
+		versionCache.update(31L, serviceName, 5L, 1L, true);
+
+		Assert.assertTrue(versionCache.get(serviceName).isServiceEnabled());
+
+		versionCache.remove(serviceName);
+	}
+
+	@Test
+	public void testRemovedServiceIsNotAddedBack() {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+		String                          serviceName  = "testRemovedServiceIsNotAddedBack";
+
+		versionCache.update(41L, serviceName, 3L, 1L, true);
+		versionCache.remove(serviceName);
+
+		// reads of the database that completed after the service was deleted
+		versionCache.addIfAbsent(41L, serviceName, 3L, 1L, true);
+		versionCache.reconcile(Arrays.asList(createService(41L, serviceName, 3L, true)));
+
+		Assert.assertNull(versionCache.get(serviceName));
+
+		// service created with the same name
+		versionCache.addIfAbsent(42L, serviceName, 1L, 1L, true);
+
+		Assert.assertEquals(Long.valueOf(42L), versionCache.get(serviceName).getServiceId());
+
+		versionCache.remove(serviceName);
+
+		// service renamed back to this name, after the rename commits
+		versionCache.update(42L, serviceName, 2L, 1L, true);
+
+		Assert.assertEquals(Long.valueOf(2L), versionCache.get(serviceName).getPolicyVersion());
+
+		versionCache.remove(serviceName);
+	}
+
+	@Test
+	public void testTagVersionAndListener() {
+		RangerServicePolicyVersionCache versionCache = RangerServicePolicyVersionCache.getInstance();
+		String                          serviceName  = "testTagVersionAndListener";
+		final List<ServiceVersion>      notified     = new ArrayList<ServiceVersion>();
+
+		ServiceVersionListener listener = new ServiceVersionListener() {
+			@Override
+			public void onServiceVersionChange(String name, ServiceVersion serviceVersion) {
+				notified.add(serviceVersion);
+			}
+		};
+
+		versionCache.addListener(listener);
+
+		try {
+			versionCache.update(21L, serviceName, 3L, 1L, true);
+			versionCache.updateTagVersion(21L, serviceName, 2L);
+
+			Assert.assertEquals(Long.valueOf(3L), versionCache.get(serviceName).getPolicyVersion());
+			Assert.assertEquals(Long.valueOf(2L), versionCache.get(serviceName).getTagVersion());
+			Assert.assertEquals(2, notified.size());
+
+			// no change in versions; listeners are not notified
+			versionCache.update(21L, serviceName, 3L, 1L, true);
+
+			Assert.assertEquals(Long.valueOf(2L), versionCache.get(serviceName).getTagVersion());
+			Assert.assertEquals(2, notified.size());
+		} finally {
+			versionCache.removeListener(listener);
+			versionCache.remove(serviceName);
+		}
+	}
+
+	private XXService createService(Long id, String name, Long policyVersion, Boolean isEnabled) {
+		XXService ret = new XXService();
+
+		ret.setId(id);
+		ret.setName(name);
+		ret.setPolicyVersion(policyVersion);
+		ret.setIsEnabled(isEnabled);
+
+		return ret;
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.service.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.deploy.FilterDef;
+import org.apache.catalina.deploy.FilterMap;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.IOUtils;
+import org.apache.ranger.common.RangerServicePolicyVersionCache;
+import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.RequestContextFilter;
+
+public class TestRangerDownloadLongPollFilter {
+	private static final String SERVICE_NAME = "testLongPollService";
+
+	private RangerDownloadLongPollFilter filter;
+	private RangerServicePolicyVersionCache versionCache;
+	private ServiceUtil serviceUtil;
+
+	@Before
+	public void setUp() throws Exception {
+		versionCache = RangerServicePolicyVersionCache.getInstance();
+		filter       = new RangerDownloadLongPollFilter();
+
+		serviceUtil  = Mockito.mock(ServiceUtil.class);
+
+		versionCache.update(1L, SERVICE_NAME, 5L, 3L, true);
+
+		Mockito.when(serviceUtil.isValidateHttpsAuthentication(Mockito.eq(SERVICE_NAME), Mockito.any(HttpServletRequest.class))).thenReturn(true);
+
+		filter.setServiceUtil(serviceUtil);
+		filter.init(Mockito.mock(FilterConfig.class));
+	}
+
+	@After
+	public void tearDown() {
+		filter.destroy();
+
+		versionCache.remove(SERVICE_NAME);
+	}
+
+	@Test
+	public void testChangedVersionIsNotHeld() throws Exception {
+		HttpServletRequest  request  = createRequest("/plugins/policies/download/" + SERVICE_NAME, 4L, 30000L);
+		HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+		FilterChain         chain    = Mockito.mock(FilterChain.class);
+
+		filter.doFilter(request, response, chain);
+
+		Mockito.verify(chain).doFilter(request, response);
+		Mockito.verify(request, Mockito.never()).startAsync(request, response);
+		Mockito.verify(response).setHeader(Mockito.eq(RangerRESTUtils.REST_HEADER_LONG_POLL_MAX_WAIT_MS), Mockito.anyString());
+	}
+
+	@Test
+	public void testPolicyDownloadIsHeldUntilVersionChange() throws Exception {
+		HttpServletRequest  request      = createRequest("/plugins/policies/download/" + SERVICE_NAME, 5L, 30000L);
+		HttpServletResponse response     = Mockito.mock(HttpServletResponse.class);
+		FilterChain         chain        = Mockito.mock(FilterChain.class);
+		AsyncContext        asyncContext = Mockito.mock(AsyncContext.class);
+
+		Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+		filter.doFilter(request, response, chain);
+
+		Mockito.verify(chain, Mockito.never()).doFilter(request, response);
+		Mockito.verify(asyncContext).setTimeout(30000L);
+		Assert.assertEquals(1, filter.getWaiterCount());
+
+		// change in tagVersion doesn't complete a policy download
+		versionCache.update(1L, SERVICE_NAME, 5L, 4L, true);
+
+		Mockito.verify(asyncContext, Mockito.never()).dispatch();
+
+		versionCache.update(1L, SERVICE_NAME, 6L, 4L, true);
+
+		Mockito.verify(asyncContext).dispatch();
+		Assert.assertEquals(0, filter.getWaiterCount());
+	}
+
+	@Test
+	public void testTagDownloadIsDispatchedOnTimeout() throws Exception {
+		HttpServletRequest  request      = createRequest("/tags/download/" + SERVICE_NAME, 3L, 90000L);
+		HttpServletResponse response     = Mockito.mock(HttpServletResponse.class);
+		FilterChain         chain        = Mockito.mock(FilterChain.class);
+		AsyncContext        asyncContext = Mockito.mock(AsyncContext.class);
+
+		Mockito.when(request.startAsync(request, response)).thenReturn(asyncContext);
+
+		filter.doFilter(request, response, chain);
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+
+		Mockito.verify(asyncContext).setTimeout(60000L); // limited to ranger.admin.download.longpoll.max.wait.ms
+		Mockito.verify(asyncContext).addListener(listener.capture());
+
+		listener.getValue().onTimeout(Mockito.mock(AsyncEvent.class));
+
+		Mockito.verify(asyncContext).dispatch();
+		Assert.assertEquals(0, filter.getWaiterCount());
+
+		// late version change after the dispatch must not dispatch again
+		versionCache.update(1L, SERVICE_NAME, 5L, 4L, true);
+
+		Mockito.verify(asyncContext, Mockito.times(1)).dispatch();
+	}
+
+	@Test
+	public void testUnauthenticatedRequestIsNotHeld() throws Exception {
+		HttpServletRequest  request  = createRequest("/plugins/policies/download/" + SERVICE_NAME, 5L, 30000L);
+		HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+		FilterChain         chain    = Mockito.mock(FilterChain.class);
+
+		Mockito.when(serviceUtil.isValidateHttpsAuthentication(SERVICE_NAME, request)).thenThrow(new RuntimeException("Unauthorized access"));
+
+		filter.doFilter(request, response, chain);
+
+		Mockito.verify(chain).doFilter(request, response);
+		Mockito.verify(request, Mockito.never()).startAsync(request, response);
+		Assert.assertEquals(0, filter.getWaiterCount());
+	}
+
+	@Test
+	public void testHeldRequestIsDispatchedWithRequestContext() throws Exception {
+		File   baseDir = new File(System.getProperty("java.io.tmpdir"), "TestRangerDownloadLongPollFilter-" + System.nanoTime());
+		Tomcat tomcat  = new Tomcat();
+
+		tomcat.setBaseDir(baseDir.getPath());
+		tomcat.setPort(0);
+
+		Context context = tomcat.addContext("", baseDir.getPath());
+		Wrapper servlet = Tomcat.addServlet(context, "rest", new RequestContextServlet());
+
+		servlet.setAsyncSupported(true);
+		context.addServletMapping("/service/*", "rest");
+
+		// as in web.xml
+		addFilter(context, "requestContextFilter", new RequestContextFilter(), "/service/*", "REQUEST", "ASYNC");
+		addFilter(context, "downloadLongPollFilter", filter, "/service/plugins/policies/download/*", "REQUEST");
+
+		tomcat.start();
+
+		try {
+			int  port      = tomcat.getConnector().getLocalPort();
+			URL  url       = new URL("http://localhost:" + port + "/service/plugins/policies/download/" + SERVICE_NAME + "?" + RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION + "=5&" + RangerRESTUtils.REST_PARAM_LONG_POLL_WAIT_MS + "=30000");
+			long startTime = System.currentTimeMillis();
+
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(500);
+					} catch (InterruptedException excp) {
+						// update right away
+					}
+
+					versionCache.update(1L, SERVICE_NAME, 6L, 3L, true);
+				}
+			}.start();
+
+			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+			InputStream       in   = conn.getInputStream();
+
+			try {
+				Assert.assertEquals(200, conn.getResponseCode());
+				Assert.assertEquals("dispatched", IOUtils.toString(in, "UTF-8"));
+			} finally {
+				in.close();
+			}
+
+			Assert.assertTrue(System.currentTimeMillis() - startTime >= 500);
+			Assert.assertEquals(0, filter.getWaiterCount());
+		} finally {
+			tomcat.stop();
+			tomcat.destroy();
+		}
+	}
+
+	private static void addFilter(Context context, String name, Filter filter, String urlPattern, String... dispatchers) {
+		FilterDef filterDef = new FilterDef();
+		FilterMap filterMap = new FilterMap();
+
+		filterDef.setFilterName(name);
+		filterDef.setFilter(filter);
+		filterDef.setAsyncSupported("true");
+
+		filterMap.setFilterName(name);
+		filterMap.addURLPattern(urlPattern);
+
+		for (String dispatcher : dispatchers) {
+			filterMap.setDispatcher(dispatcher);
+		}
+
+		context.addFilterDef(filterDef);
+		context.addFilterMap(filterMap);
+	}
+
+	// stands in for the REST APIs, whose beans of request scope need the request bound to the thread
+	private static class RequestContextServlet extends HttpServlet {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+			ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+
+			if (attributes.getRequest() != request) {
+				throw new ServletException("stale request bound to thread");
+			}
+
+			response.getWriter().write(request.getDispatcherType() == DispatcherType.ASYNC ? "dispatched" : "not held");
+		}
+	}
+
+	private HttpServletRequest createRequest(String pathInfo, Long lastKnownVersion, Long longPollWaitMs) {
+		HttpServletRequest ret = Mockito.mock(HttpServletRequest.class);
+
+		Mockito.when(ret.getServletPath()).thenReturn("/service");
+		Mockito.when(ret.getPathInfo()).thenReturn(pathInfo);
+		Mockito.when(ret.getParameter(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION)).thenReturn(lastKnownVersion.toString());
+		Mockito.when(ret.getParameter(RangerRESTUtils.REST_PARAM_LONG_POLL_WAIT_MS)).thenReturn(longPollWaitMs.toString());
+		Mockito.when(ret.isAsyncSupported()).thenReturn(true);
+
+		return ret;
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.authorization.storm.StormRangerPlugin;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
@@ -95,7 +96,8 @@ public class RangerStormAuthorizer implements IAuthorizer {
 					if (userName != null) {
 						UserGroupInformation ugi = UserGroupInformation.createRemoteUser(userName) ;
 						userName = ugi.getShortUserName() ;
-						groups = ugi.getGroupNames() ;
+						Set<String> userGroups = MiscUtil.getGroupsForRequestUser(userName) ;
+						groups = userGroups == null ? null : userGroups.toArray(new String[userGroups.size()]) ;
 						if (LOG.isDebugEnabled()) {
 							LOG.debug("User found from principal [" + user.getName() + "] => user:[" + userName + "], groups:[" + StringUtil.toString(groups) + "]") ;
 						}